@@ -0,0 +1,88 @@
+package vn.zalopay.benchmark.core;
+
+import com.google.common.base.Strings;
+import com.google.protobuf.DescriptorProtos;
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.DynamicMessage;
+import com.google.protobuf.util.JsonFormat;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import vn.zalopay.benchmark.core.protobuf.ProtoMethodName;
+import vn.zalopay.benchmark.core.protobuf.ProtocInvoker;
+import vn.zalopay.benchmark.core.protobuf.ServiceResolver;
+
+/**
+ * The Bookstore messages shared by the benchmarks, in three sizes. A small payload is one shelf with a short
+ * theme, a medium one 16 shelves with 256 character themes (about 4 KiB) and a large one 256 shelves with
+ * 4096 character themes (about 1 MiB). Requests are {@code CreateShelfRequest}s, sent as a JSON array when
+ * there is more than one shelf, and responses a {@code ListShelvesResponse} of all the shelves.
+ */
+@State(Scope.Benchmark)
+public class BookstoreMessages {
+    public static final String CREATE_SHELF = "bookstore.Bookstore/CreateShelf";
+    public static final String LIST_SHELVES = "bookstore.Bookstore/ListShelves";
+
+    public enum Size {
+        SMALL(1, 16), MEDIUM(16, 256), LARGE(256, 4096);
+
+        private final int shelves;
+        private final int themeLength;
+
+        Size(int shelves, int themeLength) {
+            this.shelves = shelves;
+            this.themeLength = themeLength;
+        }
+    }
+
+    @Param({"SMALL", "MEDIUM", "LARGE"})
+    public Size size;
+
+    public ServiceResolver serviceResolver;
+    public JsonFormat.TypeRegistry registry;
+    public Descriptors.MethodDescriptor createShelf;
+    public Descriptors.Descriptor responseType;
+    public String requestJson;
+    public DynamicMessage request;
+    public DynamicMessage response;
+    public byte[] responseBytes;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        serviceResolver = serviceResolver();
+        registry = JsonFormat.TypeRegistry.newBuilder().add(serviceResolver.listMessageTypes()).build();
+        createShelf = serviceResolver.resolveServiceMethod(ProtoMethodName.parseFullGrpcMethodName(CREATE_SHELF));
+        responseType = serviceResolver.resolveServiceMethod(ProtoMethodName.parseFullGrpcMethodName(LIST_SHELVES))
+                .getOutputType();
+
+        Descriptors.Descriptor requestType = createShelf.getInputType();
+        Descriptors.Descriptor shelfType = createShelf.getOutputType();
+        DynamicMessage.Builder responseBuilder = DynamicMessage.newBuilder(responseType);
+        StringBuilder json = new StringBuilder();
+        for (int i = 0; i < size.shelves; i++) {
+            DynamicMessage shelf = DynamicMessage.newBuilder(shelfType)
+                    .setField(shelfType.findFieldByName("id"), 1599156420811L + i)
+                    .setField(shelfType.findFieldByName("theme"), Strings.repeat("t", size.themeLength))
+                    .build();
+            DynamicMessage shelfRequest = DynamicMessage.newBuilder(requestType)
+                    .setField(requestType.findFieldByName("shelf"), shelf)
+                    .build();
+            if (request == null) {
+                request = shelfRequest;
+            }
+            responseBuilder.addRepeatedField(responseType.findFieldByName("shelves"), shelf);
+            json.append(json.length() == 0 ? "" : ",").append(JsonFormat.printer().print(shelfRequest));
+        }
+        requestJson = size.shelves == 1 ? json.toString() : "[" + json + "]";
+        response = responseBuilder.build();
+        responseBytes = response.toByteArray();
+    }
+
+    public static ServiceResolver serviceResolver() throws Exception {
+        DescriptorProtos.FileDescriptorSet fileDescriptorSet = ProtocInvoker.forConfig(
+                BaseTest.PROTO_WITH_EXTERNAL_IMPORT_FOLDER.toString(), BaseTest.LIB_FOLDER.toString()).invoke();
+        return ServiceResolver.fromFileDescriptorSet(fileDescriptorSet);
+    }
+}
@@ -0,0 +1,69 @@
+package vn.zalopay.benchmark.core;
+
+import io.grpc.inprocess.InProcessChannelBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import vn.zalopay.benchmark.core.grpc.CallTimelineInterceptor;
+import vn.zalopay.benchmark.core.grpc.MetricsInterceptor;
+import vn.zalopay.benchmark.core.specification.GrpcResponse;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the work of {@link ClientCaller} per sample: building the request and metadata, and a whole
+ * unary {@code CreateShelf} call to an in-process Bookstore server. The call runs through the plugin's
+ * interceptors, tracers, marshallers and JSON rendering on the calling thread but skips the network, so
+ * it measures the generator's own overhead. Unary calls send the first shelf of the payload only.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ClientCallerBenchmark {
+    private static final String SERVER_NAME = "bookstore-benchmark";
+    private static final String METADATA = "key1:Value1,key2:Value2";
+
+    private BookstoreTestServer server;
+    private ClientCaller clientCaller;
+
+    @Setup
+    public void setUp(BookstoreMessages messages) throws Exception {
+        server = BookstoreTestServer.startInProcess(BaseTest.PROTO_WITH_EXTERNAL_IMPORT_FOLDER.toString(),
+                BaseTest.LIB_FOLDER.toString(), SERVER_NAME);
+        // The channel is replaced before any call, the address is never connected to.
+        clientCaller = new ClientCaller("localhost:8005", BaseTest.PROTO_WITH_EXTERNAL_IMPORT_FOLDER.toString(),
+                BaseTest.LIB_FOLDER.toString(), BookstoreMessages.CREATE_SHELF, false, false);
+        clientCaller.useChannel(InProcessChannelBuilder.forName(SERVER_NAME)
+                .directExecutor()
+                .intercept(CallTimelineInterceptor.getInstance(), MetricsInterceptor.getInstance())
+                .build());
+        clientCaller.buildRequestAndMetadata(messages.requestJson, METADATA);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        clientCaller.shutdownNettyChannel();
+        server.close();
+    }
+
+    @Benchmark
+    public String buildRequestAndMetadata(BookstoreMessages messages) {
+        return clientCaller.buildRequestAndMetadata(messages.requestJson, METADATA);
+    }
+
+    @Benchmark
+    public GrpcResponse unaryCall() {
+        return clientCaller.call("10000");
+    }
+}
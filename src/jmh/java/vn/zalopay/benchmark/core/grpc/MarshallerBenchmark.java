@@ -0,0 +1,48 @@
+package vn.zalopay.benchmark.core.grpc;
+
+import com.google.common.io.ByteStreams;
+import com.google.protobuf.DynamicMessage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import vn.zalopay.benchmark.core.BookstoreMessages;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parses and serializes a response with {@link DynamicMessageMarshaller}. Streaming drains the returned
+ * stream, as the transport does when it frames the message.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MarshallerBenchmark {
+    private DynamicMessageMarshaller marshaller;
+
+    @Setup
+    public void setUp(BookstoreMessages messages) {
+        marshaller = new DynamicMessageMarshaller(messages.responseType);
+    }
+
+    @Benchmark
+    public DynamicMessage parse(BookstoreMessages messages) {
+        return marshaller.parse(new ByteArrayInputStream(messages.responseBytes));
+    }
+
+    @Benchmark
+    public long stream(BookstoreMessages messages) throws IOException {
+        return ByteStreams.exhaust(marshaller.stream(messages.response));
+    }
+}
@@ -0,0 +1,102 @@
+package vn.zalopay.benchmark.core.grpc;
+
+import com.google.protobuf.Empty;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.protobuf.ProtoUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import vn.zalopay.benchmark.core.BookstoreMessages;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Starts a call through the interceptor which adds the sampler's metadata to the headers of every call.
+ * The sizes are 1, 8 and 32 metadata entries, the call below the interceptor does nothing.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MetadataInterceptorBenchmark {
+    @Param({"1", "8", "32"})
+    public int entries;
+
+    private ClientInterceptor interceptor;
+    private MethodDescriptor<Empty, Empty> method;
+    private Channel channel;
+
+    @Setup
+    public void setUp() {
+        Map<String, String> metadata = new LinkedHashMap<>();
+        for (int i = 0; i < entries; i++) {
+            metadata.put("key" + i, "value" + i);
+        }
+        interceptor = ChannelFactory.metadataInterceptor(metadata);
+        method = MethodDescriptor.<Empty, Empty>newBuilder()
+                .setFullMethodName(BookstoreMessages.CREATE_SHELF)
+                .setType(MethodDescriptor.MethodType.UNARY)
+                .setRequestMarshaller(ProtoUtils.marshaller(Empty.getDefaultInstance()))
+                .setResponseMarshaller(ProtoUtils.marshaller(Empty.getDefaultInstance()))
+                .build();
+        channel = new NoopChannel();
+    }
+
+    @Benchmark
+    public Metadata startCall() {
+        Metadata headers = new Metadata();
+        interceptor.interceptCall(method, CallOptions.DEFAULT, channel).start(new ClientCall.Listener<Empty>() {
+        }, headers);
+        return headers;
+    }
+
+    private static class NoopChannel extends Channel {
+        @Override
+        public <ReqT, RespT> ClientCall<ReqT, RespT> newCall(MethodDescriptor<ReqT, RespT> methodDescriptor,
+                CallOptions callOptions) {
+            return new ClientCall<ReqT, RespT>() {
+                @Override
+                public void start(Listener<RespT> responseListener, Metadata headers) {
+                }
+
+                @Override
+                public void request(int numMessages) {
+                }
+
+                @Override
+                public void cancel(String message, Throwable cause) {
+                }
+
+                @Override
+                public void halfClose() {
+                }
+
+                @Override
+                public void sendMessage(ReqT message) {
+                }
+            };
+        }
+
+        @Override
+        public String authority() {
+            return "localhost";
+        }
+    }
+}
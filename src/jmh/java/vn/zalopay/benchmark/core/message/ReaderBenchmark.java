@@ -0,0 +1,30 @@
+package vn.zalopay.benchmark.core.message;
+
+import com.google.common.collect.ImmutableList;
+import com.google.protobuf.DynamicMessage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import vn.zalopay.benchmark.core.BookstoreMessages;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parses the JSON request of a sample into messages, as every sample does before its call.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReaderBenchmark {
+
+    @Benchmark
+    public ImmutableList<DynamicMessage> read(BookstoreMessages messages) {
+        return Reader.create(messages.createShelf.getInputType(), messages.requestJson, messages.registry).read();
+    }
+}
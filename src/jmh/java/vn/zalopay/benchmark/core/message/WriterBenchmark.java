@@ -0,0 +1,42 @@
+package vn.zalopay.benchmark.core.message;
+
+import com.google.protobuf.DynamicMessage;
+import com.google.protobuf.util.JsonFormat;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import vn.zalopay.benchmark.core.BookstoreMessages;
+import vn.zalopay.benchmark.core.specification.GrpcResponse;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Renders a response message as JSON into a fresh response, as every sample does for its responses, with the
+ * type's compiled printer and, for comparison, with {@code JsonFormat}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WriterBenchmark {
+
+    @Benchmark
+    public GrpcResponse onNext(BookstoreMessages messages) {
+        GrpcResponse output = new GrpcResponse();
+        Writer.<DynamicMessage>create(output, messages.registry).onNext(messages.response);
+        return output;
+    }
+
+    @Benchmark
+    public GrpcResponse onNextWithJsonFormat(BookstoreMessages messages) {
+        GrpcResponse output = new GrpcResponse();
+        new Writer<DynamicMessage>(JsonFormat.printer().usingTypeRegistry(messages.registry), output)
+                .onNext(messages.response);
+        return output;
+    }
+}
@@ -0,0 +1,41 @@
+package vn.zalopay.benchmark.core.protobuf;
+
+import com.google.protobuf.Descriptors;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import vn.zalopay.benchmark.core.BookstoreMessages;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parses a full method name and resolves it against the Bookstore protos and their imports, as every
+ * sampler does when it sets up its caller.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ServiceResolverBenchmark {
+    private ServiceResolver serviceResolver;
+
+    @Setup
+    public void setUp() throws Exception {
+        serviceResolver = BookstoreMessages.serviceResolver();
+    }
+
+    @Benchmark
+    public Descriptors.MethodDescriptor resolveServiceMethod() {
+        return serviceResolver.resolveServiceMethod(
+                ProtoMethodName.parseFullGrpcMethodName(BookstoreMessages.CREATE_SHELF));
+    }
+}
@@ -0,0 +1,23 @@
+package vn.zalopay.benchmark;
+
+import org.apache.jmeter.samplers.SampleResult;
+
+/**
+ * A result which stands for several calls. Plain results derive their error count from the success flag,
+ * so listeners would count a batch with any failed call as a single error.
+ */
+public class BatchSampleResult extends SampleResult {
+    private static final long serialVersionUID = 240L;
+
+    private int errorCount;
+
+    @Override
+    public int getErrorCount() {
+        return errorCount;
+    }
+
+    @Override
+    public void setErrorCount(int errorCount) {
+        this.errorCount = errorCount;
+    }
+}
@@ -0,0 +1,154 @@
+package vn.zalopay.benchmark;
+
+import org.apache.jmeter.config.ConfigTestElement;
+import org.apache.jmeter.engine.util.NoThreadClone;
+import org.apache.jmeter.testelement.TestStateListener;
+import org.apache.jmeter.testelement.property.FunctionProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import vn.zalopay.benchmark.core.GrpcConnection;
+import vn.zalopay.benchmark.core.ProtoPrecompiler;
+import vn.zalopay.benchmark.core.grpc.ChannelCloser;
+
+/**
+ * The endpoint, TLS and proto settings of the {@link GRPCSampler}s in its scope which leave their host
+ * empty. It compiles the protos and opens the channels once for all of them and all threads, and closes
+ * the channels when the test ends.
+ */
+public class GRPCConnectionConfig extends ConfigTestElement implements TestStateListener, NoThreadClone {
+
+    private static final Logger log = LoggerFactory.getLogger(GRPCConnectionConfig.class);
+    private static final long serialVersionUID = 232L;
+
+    public static final String HOST = "GRPCConnectionConfig.host";
+    public static final String PORT = "GRPCConnectionConfig.port";
+    public static final String TLS = "GRPCConnectionConfig.tls";
+    public static final String TLS_DISABLE_VERIFICATION = "GRPCConnectionConfig.tlsDisableVerification";
+    public static final String PROTO_FOLDER = "GRPCConnectionConfig.protoFolder";
+    public static final String LIB_FOLDER = "GRPCConnectionConfig.libFolder";
+    public static final String SERVICE_CONFIG = "GRPCConnectionConfig.serviceConfig";
+    public static final String CHANNELS = "GRPCConnectionConfig.channels";
+    public static final int DEFAULT_CHANNELS = 1;
+
+    private transient GrpcConnection connection;
+
+    /**
+     * Returns the connection of this element, compiling the protos and opening the channels on first use.
+     */
+    public synchronized GrpcConnection getConnection() {
+        if (connection == null) {
+            connection = GrpcConnection.create(getHostPort(), getProtoFolder(), getLibFolder(), isTls(),
+                    isTlsDisableVerification(), getServiceConfig(), getChannels());
+        }
+        return connection;
+    }
+
+    @Override
+    public void testStarted() {
+        closeConnection();
+        if (!getProtoFolder().trim().isEmpty() && !(getProperty(PROTO_FOLDER) instanceof FunctionProperty)
+                && !(getProperty(LIB_FOLDER) instanceof FunctionProperty)) {
+            ProtoPrecompiler.precompile(getProtoFolder(), getLibFolder(), null);
+        }
+    }
+
+    @Override
+    public void testStarted(String host) {
+        testStarted();
+    }
+
+    @Override
+    public void testEnded() {
+        closeConnection();
+        try {
+            ChannelCloser.getInstance().awaitClosed();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void testEnded(String host) {
+        testEnded();
+    }
+
+    private synchronized void closeConnection() {
+        if (connection != null) {
+            log.debug("Closing the connection to {}", connection.getHostAndPort());
+            connection.shutdown();
+            connection = null;
+        }
+    }
+
+    /**
+     * GETTER AND SETTER
+     */
+
+    public String getHost() {
+        return getPropertyAsString(HOST);
+    }
+
+    public void setHost(String host) {
+        setProperty(HOST, host);
+    }
+
+    public String getPort() {
+        return getPropertyAsString(PORT);
+    }
+
+    public void setPort(String port) {
+        setProperty(PORT, port);
+    }
+
+    public String getHostPort() {
+        return getHost() + ":" + getPort();
+    }
+
+    public boolean isTls() {
+        return getPropertyAsBoolean(TLS);
+    }
+
+    public void setTls(boolean tls) {
+        setProperty(TLS, tls);
+    }
+
+    public boolean isTlsDisableVerification() {
+        return getPropertyAsBoolean(TLS_DISABLE_VERIFICATION);
+    }
+
+    public void setTlsDisableVerification(boolean tlsDisableVerification) {
+        setProperty(TLS_DISABLE_VERIFICATION, tlsDisableVerification);
+    }
+
+    public String getProtoFolder() {
+        return getPropertyAsString(PROTO_FOLDER);
+    }
+
+    public void setProtoFolder(String protoFolder) {
+        setProperty(PROTO_FOLDER, protoFolder);
+    }
+
+    public String getLibFolder() {
+        return getPropertyAsString(LIB_FOLDER);
+    }
+
+    public void setLibFolder(String libFolder) {
+        setProperty(LIB_FOLDER, libFolder);
+    }
+
+    public String getServiceConfig() {
+        return getPropertyAsString(SERVICE_CONFIG);
+    }
+
+    public void setServiceConfig(String serviceConfig) {
+        setProperty(SERVICE_CONFIG, serviceConfig);
+    }
+
+    public int getChannels() {
+        return getPropertyAsInt(CHANNELS, DEFAULT_CHANNELS);
+    }
+
+    public void setChannels(String channels) {
+        setProperty(CHANNELS, channels);
+    }
+}
@@ -0,0 +1,178 @@
+package vn.zalopay.benchmark;
+
+import kg.apc.jmeter.JMeterPluginsUtils;
+import kg.apc.jmeter.gui.BrowseAction;
+import org.apache.jmeter.config.gui.AbstractConfigGui;
+import org.apache.jmeter.gui.util.HorizontalPanel;
+import org.apache.jmeter.gui.util.VerticalPanel;
+import org.apache.jmeter.testelement.TestElement;
+import org.apache.jorphan.gui.JLabeledTextField;
+
+import javax.swing.*;
+import java.awt.*;
+
+public class GRPCConnectionConfigGui extends AbstractConfigGui {
+
+    private static final long serialVersionUID = 240L;
+    private static final String WIKI_PAGE = "https://github.com/zalopay-oss/jmeter-grpc-request";
+
+    private JLabeledTextField hostField;
+    private JLabeledTextField portField;
+    private JCheckBox isTLSCheckBox;
+    private JCheckBox isTLSDisableVerificationCheckBox;
+    private JLabeledTextField protoFolderField;
+    private JLabeledTextField libFolderField;
+    private JLabeledTextField serviceConfigField;
+    private JLabeledTextField channelsField;
+
+    public GRPCConnectionConfigGui() {
+        super();
+        initGui();
+        initGuiValues();
+    }
+
+    @Override
+    public String getLabelResource() {
+        return "grpc_connection_config_title"; // $NON-NLS-1$
+    }
+
+    @Override
+    public String getStaticLabel() {
+        return "GRPC Connection Config";
+    }
+
+    @Override
+    public TestElement createTestElement() {
+        GRPCConnectionConfig config = new GRPCConnectionConfig();
+        modifyTestElement(config);
+        return config;
+    }
+
+    @Override
+    public void modifyTestElement(TestElement element) {
+        configureTestElement(element);
+        if (!(element instanceof GRPCConnectionConfig)) {
+            return;
+        }
+        GRPCConnectionConfig config = (GRPCConnectionConfig) element;
+        config.setHost(hostField.getText());
+        config.setPort(portField.getText());
+        config.setTls(isTLSCheckBox.isSelected());
+        config.setTlsDisableVerification(isTLSDisableVerificationCheckBox.isSelected());
+        config.setProtoFolder(protoFolderField.getText());
+        config.setLibFolder(libFolderField.getText());
+        config.setServiceConfig(serviceConfigField.getText());
+        config.setChannels(channelsField.getText());
+    }
+
+    @Override
+    public void configure(TestElement element) {
+        super.configure(element);
+        if (!(element instanceof GRPCConnectionConfig)) {
+            return;
+        }
+        GRPCConnectionConfig config = (GRPCConnectionConfig) element;
+        hostField.setText(config.getHost());
+        portField.setText(config.getPort());
+        isTLSCheckBox.setSelected(config.isTls());
+        isTLSDisableVerificationCheckBox.setSelected(config.isTlsDisableVerification());
+        protoFolderField.setText(config.getProtoFolder());
+        libFolderField.setText(config.getLibFolder());
+        serviceConfigField.setText(config.getServiceConfig());
+        channelsField.setText(config.getPropertyAsString(GRPCConnectionConfig.CHANNELS));
+    }
+
+    @Override
+    public void clearGui() {
+        super.clearGui();
+        initGuiValues();
+    }
+
+    private void initGuiValues() {
+        hostField.setText("");
+        portField.setText("");
+        isTLSCheckBox.setSelected(false);
+        isTLSDisableVerificationCheckBox.setSelected(false);
+        protoFolderField.setText("");
+        libFolderField.setText("");
+        serviceConfigField.setText("");
+        channelsField.setText(Integer.toString(GRPCConnectionConfig.DEFAULT_CHANNELS));
+    }
+
+    private void initGui() {
+        setLayout(new BorderLayout(0, 5));
+        setBorder(makeBorder());
+
+        Container topPanel = makeTitlePanel();
+        add(JMeterPluginsUtils.addHelpLinkToPanel(topPanel, WIKI_PAGE), BorderLayout.NORTH);
+
+        JPanel mainPanel = new VerticalPanel();
+        mainPanel.add(getWebServerPanel());
+        mainPanel.add(getProtoPanel());
+        mainPanel.add(getChannelPanel());
+        add(mainPanel, BorderLayout.CENTER);
+    }
+
+    private JPanel getWebServerPanel() {
+        hostField = new JLabeledTextField("Server Name or IP:", 11); // $NON-NLS-1$
+        portField = new JLabeledTextField("Port Number:", 3); // $NON-NLS-1$
+        isTLSCheckBox = new JCheckBox("SSL/TLS");
+        isTLSDisableVerificationCheckBox = new JCheckBox("Disable SSL/TLS Cert Verification");
+
+        JPanel hostPanel = new HorizontalPanel();
+        hostPanel.add(hostField);
+        hostPanel.add(portField);
+
+        JPanel tlsPanel = new HorizontalPanel();
+        tlsPanel.add(isTLSCheckBox);
+        tlsPanel.add(isTLSDisableVerificationCheckBox);
+
+        JPanel webServerPanel = new VerticalPanel();
+        webServerPanel.setBorder(BorderFactory.createTitledBorder("Web Server")); // $NON-NLS-1$
+        webServerPanel.add(hostPanel);
+        webServerPanel.add(tlsPanel);
+        return webServerPanel;
+    }
+
+    private JPanel getProtoPanel() {
+        protoFolderField = new JLabeledTextField("Proto Root Directory:", 20); // $NON-NLS-1$
+        libFolderField = new JLabeledTextField("Library Directory (Optional):", 20); // $NON-NLS-1$
+
+        JPanel protoPanel = new VerticalPanel();
+        protoPanel.setBorder(BorderFactory.createCompoundBorder(
+                BorderFactory.createEmptyBorder(9, 0, 0, 0),
+                BorderFactory.createTitledBorder("Protos")
+        ));
+        protoPanel.add(withBrowseButton(protoFolderField));
+        protoPanel.add(withBrowseButton(libFolderField));
+        return protoPanel;
+    }
+
+    private static JPanel withBrowseButton(JLabeledTextField folderField) {
+        JButton browseButton = new JButton("Browse...");
+        // BrowseAction fills the text field of the labeled field
+        for (Component component : folderField.getComponentList()) {
+            if (component instanceof JTextField) {
+                browseButton.addActionListener(new BrowseAction((JTextField) component, true));
+            }
+        }
+        JPanel panel = new HorizontalPanel();
+        panel.add(folderField);
+        panel.add(browseButton);
+        return panel;
+    }
+
+    private JPanel getChannelPanel() {
+        serviceConfigField = new JLabeledTextField("Service Config:", 24); // $NON-NLS-1$
+        channelsField = new JLabeledTextField("Channels:", 3); // $NON-NLS-1$
+
+        JPanel channelPanel = new HorizontalPanel();
+        channelPanel.setBorder(BorderFactory.createCompoundBorder(
+                BorderFactory.createEmptyBorder(9, 0, 0, 0),
+                BorderFactory.createTitledBorder("Channels")
+        ));
+        channelPanel.add(serviceConfigField);
+        channelPanel.add(channelsField);
+        return channelPanel;
+    }
+}
@@ -0,0 +1,233 @@
+package vn.zalopay.benchmark;
+
+import io.grpc.MethodDescriptor.MethodType;
+import org.apache.jmeter.samplers.Entry;
+import org.apache.jmeter.samplers.SampleResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import vn.zalopay.benchmark.core.ClientCaller;
+import vn.zalopay.benchmark.core.load.ArrivalSchedule;
+import vn.zalopay.benchmark.core.load.CallCompletion;
+import vn.zalopay.benchmark.core.load.OpenModelEngine;
+import vn.zalopay.benchmark.core.metrics.LatencyHistograms;
+import vn.zalopay.benchmark.core.specification.GrpcResponse;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * A gRPC sampler driven by an open workload model: calls are sent asynchronously on an arrival schedule
+ * and the JMeter threads only report the completions, so the request rate does not depend on the thread
+ * count or on the server latency.
+ *
+ * <p>All threads running the same sampler share one {@link OpenModelEngine}, started by the first thread
+ * which samples and stopped when the last thread finishes. Each sample returns one completed call, or
+ * nothing when no call completed within the poll timeout.
+ */
+public class GRPCOpenModelSampler extends GRPCSampler {
+
+    private static final Logger log = LoggerFactory.getLogger(GRPCOpenModelSampler.class);
+    private static final long serialVersionUID = 232L;
+
+    public static final String RATE = "GRPCOpenModelSampler.rate";
+    public static final String PROFILE = "GRPCOpenModelSampler.profile";
+    public static final String ARRIVALS = "GRPCOpenModelSampler.arrivals";
+    public static final String PROFILE_RATE = "GRPCOpenModelSampler.profileRate";
+    public static final String PROFILE_PERIOD = "GRPCOpenModelSampler.profilePeriod";
+    public static final String SPIKE_DURATION = "GRPCOpenModelSampler.spikeDuration";
+    public static final String MAX_OUTSTANDING = "GRPCOpenModelSampler.maxOutstanding";
+    public static final int DEFAULT_MAX_OUTSTANDING = 1000;
+    private static final long POLL_TIMEOUT_MS = 1000;
+
+    private static final Map<String, SharedEngine> ENGINES = new HashMap<>();
+
+    private transient SharedEngine sharedEngine = null;
+    private transient LatencyHistograms.ThreadRecorder latencyRecorder = null;
+
+    @Override
+    public SampleResult sample(Entry ignored) {
+        SharedEngine engine;
+        try {
+            engine = acquireEngine();
+        } catch (RuntimeException e) {
+            SampleResult sampleResult = new SampleResult();
+            sampleResult.setSampleLabel(getName());
+            sampleResult.sampleStart();
+            errorResult(new GrpcResponse(), sampleResult, e);
+            return sampleResult;
+        }
+        CallCompletion completion;
+        try {
+            completion = engine.engine.pollCompletion(POLL_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        if (completion == null) {
+            return null;
+        }
+        recordLatency(engine, completion);
+        return createCompletionResult(completion, engine.samplerData);
+    }
+
+    /**
+     * Records a completion in the latency histograms from the polling thread, as the engine's caller is shared
+     * by every thread.
+     */
+    private void recordLatency(SharedEngine engine, CallCompletion completion) {
+        LatencyHistograms histograms = LatencyHistograms.getActive();
+        if (histograms == null) {
+            return;
+        }
+        if (latencyRecorder == null || !latencyRecorder.belongsTo(histograms)) {
+            latencyRecorder = histograms.newThreadRecorder();
+        }
+        latencyRecorder.recordFromIntendedStart(engine.fullMethodName, completion.getStatusCode(),
+                completion.getElapsedNanos(), completion.getCallCount());
+    }
+
+    private SharedEngine acquireEngine() {
+        if (sharedEngine != null) {
+            return sharedEngine;
+        }
+        String key = getEngineKey();
+        synchronized (ENGINES) {
+            SharedEngine engine = ENGINES.get(key);
+            if (engine == null) {
+                engine = createEngine(key);
+                ENGINES.put(key, engine);
+            }
+            engine.users++;
+            sharedEngine = engine;
+            return engine;
+        }
+    }
+
+    private SharedEngine createEngine(String key) {
+        ClientCaller caller = createClientCaller();
+        String samplerData = caller.buildRequestAndMetadata(getRequestJson(), getMetadata());
+        long deadlineMs;
+        try {
+            deadlineMs = Long.parseLong(getDeadline());
+        } catch (NumberFormatException e) {
+            caller.shutdownNettyChannel();
+            throw new RuntimeException("Caught exception while parsing deadline to long", e);
+        }
+        MethodType methodType = caller.getMethodType();
+        if (methodType != MethodType.UNARY && methodType != MethodType.SERVER_STREAMING) {
+            caller.shutdownNettyChannel();
+            throw new RuntimeException("Unable to start open model load", new IllegalArgumentException(
+                    "Open model load supports unary and server-streaming methods only but found: " + methodType));
+        }
+        ArrivalSchedule schedule = new ArrivalSchedule(getProfile(), getArrivals(), getRate(), getProfileRate(),
+                getProfilePeriod(), getSpikeDuration(), new Random());
+        OpenModelEngine engine = new OpenModelEngine(getName(), caller, schedule, deadlineMs, getMaxOutstanding());
+        engine.start();
+        log.debug("Started open model engine {}", key);
+        return new SharedEngine(engine, samplerData, caller.getFullMethodName());
+    }
+
+    private String getEngineKey() {
+        return getName() + '|' + getHostPort() + '|' + getFullMethod() + '|' + getRate() + '|' + getProfile()
+                + '|' + getArrivals() + '|' + getProfileRate() + '|' + getProfilePeriod() + '|'
+                + getSpikeDuration() + '|' + getMaxOutstanding() + '|' + getRequestJson();
+    }
+
+    @Override
+    public void threadFinished() {
+        super.threadFinished();
+        if (sharedEngine == null) {
+            return;
+        }
+        synchronized (ENGINES) {
+            if (--sharedEngine.users == 0) {
+                ENGINES.values().remove(sharedEngine);
+                sharedEngine.engine.stop();
+            }
+        }
+        sharedEngine = null;
+    }
+
+    @Override
+    public void testEnded() {
+        synchronized (ENGINES) {
+            ENGINES.values().forEach(engine -> engine.engine.stop());
+            ENGINES.clear();
+        }
+        super.testEnded();
+    }
+
+    private static class SharedEngine {
+        private final OpenModelEngine engine;
+        private final String samplerData;
+        private final String fullMethodName;
+        private int users;
+
+        private SharedEngine(OpenModelEngine engine, String samplerData, String fullMethodName) {
+            this.engine = engine;
+            this.samplerData = samplerData;
+            this.fullMethodName = fullMethodName;
+        }
+    }
+
+    /**
+     * GETTER AND SETTER
+     */
+
+    public double getRate() {
+        return getPropertyAsDouble(RATE);
+    }
+
+    public void setRate(String rate) {
+        setProperty(RATE, rate);
+    }
+
+    public ArrivalSchedule.Profile getProfile() {
+        return ArrivalSchedule.Profile.valueOf(getPropertyAsString(PROFILE, ArrivalSchedule.Profile.CONSTANT.name()));
+    }
+
+    public void setProfile(String profile) {
+        setProperty(PROFILE, profile);
+    }
+
+    public ArrivalSchedule.Arrivals getArrivals() {
+        return ArrivalSchedule.Arrivals.valueOf(getPropertyAsString(ARRIVALS, ArrivalSchedule.Arrivals.FIXED.name()));
+    }
+
+    public void setArrivals(String arrivals) {
+        setProperty(ARRIVALS, arrivals);
+    }
+
+    public double getProfileRate() {
+        return getPropertyAsDouble(PROFILE_RATE);
+    }
+
+    public void setProfileRate(String profileRate) {
+        setProperty(PROFILE_RATE, profileRate);
+    }
+
+    public long getProfilePeriod() {
+        return getPropertyAsLong(PROFILE_PERIOD, 0);
+    }
+
+    public void setProfilePeriod(String profilePeriod) {
+        setProperty(PROFILE_PERIOD, profilePeriod);
+    }
+
+    public long getSpikeDuration() {
+        return getPropertyAsLong(SPIKE_DURATION, 0);
+    }
+
+    public void setSpikeDuration(String spikeDuration) {
+        setProperty(SPIKE_DURATION, spikeDuration);
+    }
+
+    public int getMaxOutstanding() {
+        return getPropertyAsInt(MAX_OUTSTANDING, DEFAULT_MAX_OUTSTANDING);
+    }
+
+    public void setMaxOutstanding(String maxOutstanding) {
+        setProperty(MAX_OUTSTANDING, maxOutstanding);
+    }
+}
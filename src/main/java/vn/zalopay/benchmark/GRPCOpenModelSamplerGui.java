@@ -0,0 +1,119 @@
+package vn.zalopay.benchmark;
+
+import org.apache.jmeter.gui.util.HorizontalPanel;
+import org.apache.jmeter.testelement.TestElement;
+import org.apache.jorphan.gui.JLabeledTextField;
+import vn.zalopay.benchmark.core.load.ArrivalSchedule;
+
+import javax.swing.*;
+import java.awt.*;
+
+public class GRPCOpenModelSamplerGui extends GRPCSamplerGui {
+
+    private static final long serialVersionUID = 240L;
+
+    private JLabeledTextField rateField;
+    private JComboBox<ArrivalSchedule.Profile> profileField;
+    private JComboBox<ArrivalSchedule.Arrivals> arrivalsField;
+    private JLabeledTextField profileRateField;
+    private JLabeledTextField profilePeriodField;
+    private JLabeledTextField spikeDurationField;
+    private JLabeledTextField maxOutstandingField;
+
+    public GRPCOpenModelSamplerGui() {
+        super();
+        add(getOpenModelPanel(), BorderLayout.SOUTH);
+        initOpenModelValues();
+    }
+
+    @Override
+    public String getLabelResource() {
+        return "grpc_open_model_sampler_title"; // $NON-NLS-1$
+    }
+
+    @Override
+    public String getStaticLabel() {
+        return "GRPC Open Model Request";
+    }
+
+    @Override
+    public TestElement createTestElement() {
+        GRPCOpenModelSampler sampler = new GRPCOpenModelSampler();
+        modifyTestElement(sampler);
+        return sampler;
+    }
+
+    @Override
+    public void modifyTestElement(TestElement element) {
+        super.modifyTestElement(element);
+        if (!(element instanceof GRPCOpenModelSampler)) {
+            return;
+        }
+        GRPCOpenModelSampler sampler = (GRPCOpenModelSampler) element;
+        sampler.setRate(rateField.getText());
+        sampler.setProfile(profileField.getSelectedItem().toString());
+        sampler.setArrivals(arrivalsField.getSelectedItem().toString());
+        sampler.setProfileRate(profileRateField.getText());
+        sampler.setProfilePeriod(profilePeriodField.getText());
+        sampler.setSpikeDuration(spikeDurationField.getText());
+        sampler.setMaxOutstanding(maxOutstandingField.getText());
+    }
+
+    @Override
+    public void configure(TestElement element) {
+        super.configure(element);
+        if (!(element instanceof GRPCOpenModelSampler)) {
+            return;
+        }
+        GRPCOpenModelSampler sampler = (GRPCOpenModelSampler) element;
+        rateField.setText(sampler.getPropertyAsString(GRPCOpenModelSampler.RATE));
+        profileField.setSelectedItem(sampler.getProfile());
+        arrivalsField.setSelectedItem(sampler.getArrivals());
+        profileRateField.setText(sampler.getPropertyAsString(GRPCOpenModelSampler.PROFILE_RATE));
+        profilePeriodField.setText(Long.toString(sampler.getProfilePeriod()));
+        spikeDurationField.setText(Long.toString(sampler.getSpikeDuration()));
+        maxOutstandingField.setText(Integer.toString(sampler.getMaxOutstanding()));
+    }
+
+    @Override
+    public void clearGui() {
+        super.clearGui();
+        initOpenModelValues();
+    }
+
+    private void initOpenModelValues() {
+        rateField.setText("100");
+        profileField.setSelectedItem(ArrivalSchedule.Profile.CONSTANT);
+        arrivalsField.setSelectedItem(ArrivalSchedule.Arrivals.FIXED);
+        profileRateField.setText("0");
+        profilePeriodField.setText("0");
+        spikeDurationField.setText("0");
+        maxOutstandingField.setText(Integer.toString(GRPCOpenModelSampler.DEFAULT_MAX_OUTSTANDING));
+    }
+
+    private JPanel getOpenModelPanel() {
+        rateField = new JLabeledTextField("Calls/sec:", 6); // $NON-NLS-1$
+        profileField = new JComboBox<>(ArrivalSchedule.Profile.values());
+        arrivalsField = new JComboBox<>(ArrivalSchedule.Arrivals.values());
+        profileRateField = new JLabeledTextField("Step/Spike Calls/sec:", 6); // $NON-NLS-1$
+        profilePeriodField = new JLabeledTextField("Period (ms):", 6); // $NON-NLS-1$
+        spikeDurationField = new JLabeledTextField("Spike Duration (ms):", 6); // $NON-NLS-1$
+        maxOutstandingField = new JLabeledTextField("Max Outstanding Calls:", 6); // $NON-NLS-1$
+
+        JPanel openModelPanel = new HorizontalPanel();
+        openModelPanel.setBorder(BorderFactory.createCompoundBorder(
+                BorderFactory.createEmptyBorder(9, 0, 0, 0),
+                BorderFactory.createTitledBorder("Open Model Load")
+        ));
+        openModelPanel.add(rateField);
+        openModelPanel.add(new JLabel("Profile:"));
+        openModelPanel.add(profileField);
+        openModelPanel.add(new JLabel("Arrivals:"));
+        openModelPanel.add(arrivalsField);
+        openModelPanel.add(profileRateField);
+        openModelPanel.add(profilePeriodField);
+        openModelPanel.add(spikeDurationField);
+        openModelPanel.add(maxOutstandingField);
+        return openModelPanel;
+    }
+}
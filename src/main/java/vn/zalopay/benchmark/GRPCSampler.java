@@ -1,17 +1,51 @@
 package vn.zalopay.benchmark;
 
+import io.grpc.MethodDescriptor.MethodType;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
 import org.apache.jmeter.samplers.AbstractSampler;
 import org.apache.jmeter.samplers.Entry;
+import org.apache.jmeter.samplers.SampleEvent;
+import org.apache.jmeter.samplers.SampleListener;
 import org.apache.jmeter.samplers.SampleResult;
+import org.apache.jmeter.testelement.TestElement;
+import org.apache.jmeter.testelement.TestStateListener;
 import org.apache.jmeter.testelement.ThreadListener;
+import org.apache.jmeter.testelement.property.FunctionProperty;
+import org.apache.jmeter.threads.AbstractThreadGroup;
+import org.apache.jmeter.threads.JMeterContext;
+import org.apache.jmeter.threads.JMeterContextService;
+import org.apache.jmeter.threads.JMeterThread;
+import org.apache.jmeter.threads.JMeterVariables;
+import org.apache.jmeter.threads.ListenerNotifier;
+import org.apache.jmeter.threads.SamplePackage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import vn.zalopay.benchmark.core.ClientCaller;
+import vn.zalopay.benchmark.core.CompiledProtos;
+import vn.zalopay.benchmark.core.ProtoPrecompiler;
+import vn.zalopay.benchmark.core.grpc.ChannelCloser;
+import vn.zalopay.benchmark.core.load.BatchMetrics;
+import vn.zalopay.benchmark.core.load.CallBatch;
+import vn.zalopay.benchmark.core.load.CallCompletion;
+import vn.zalopay.benchmark.core.load.CallPipeline;
+import vn.zalopay.benchmark.core.load.TokenBucket;
+import vn.zalopay.benchmark.core.message.CompiledJsonPrinter;
+import vn.zalopay.benchmark.core.message.MappedFiles;
+import vn.zalopay.benchmark.core.metrics.GrpcMetrics;
+import vn.zalopay.benchmark.core.metrics.LatencyHistograms;
+import vn.zalopay.benchmark.core.specification.CallTimeline;
+import vn.zalopay.benchmark.core.specification.CallTrace;
 import vn.zalopay.benchmark.core.specification.GrpcResponse;
+import vn.zalopay.benchmark.core.specification.SendMetrics;
+import vn.zalopay.benchmark.core.specification.StreamMetrics;
+import vn.zalopay.benchmark.core.specification.WireMetrics;
 
-import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
-public class GRPCSampler extends AbstractSampler implements ThreadListener {
+public class GRPCSampler extends AbstractSampler implements ThreadListener, TestStateListener {
 
     private static final Logger log = LoggerFactory.getLogger(GRPCSampler.class);
     private static final long serialVersionUID = 232L;
@@ -26,7 +60,29 @@ public class GRPCSampler extends AbstractSampler implements ThreadListener {
     public static final String DEADLINE = "GRPCSampler.deadline";
     public static final String TLS = "GRPCSampler.tls";
     public static final String TLS_DISABLE_VERIFICATION = "GRPCSampler.tlsDisableVerification";
+    public static final String DISCARD_RESPONSE = "GRPCSampler.discardResponse";
+    public static final String RESPONSE_CHECKSUM = "GRPCSampler.responseChecksum";
+    public static final String STREAM_MESSAGE_LIMIT = "GRPCSampler.streamMessageLimit";
+    public static final String STREAM_SUB_RESULTS = "GRPCSampler.streamSubResults";
+    public static final String STREAM_MESSAGE_COUNT = "GRPCSampler.streamMessageCount";
+    public static final String STREAM_MESSAGES_PER_SECOND = "GRPCSampler.streamMessagesPerSecond";
+    public static final String PIPELINE_DEPTH = "GRPCSampler.pipelineDepth";
+    public static final String BATCH_SIZE = "GRPCSampler.batchSize";
+    public static final String BATCH_CONCURRENCY = "GRPCSampler.batchConcurrency";
+    public static final String BATCH_SUB_RESULTS = "GRPCSampler.batchSubResults";
+    public static final String SERVICE_CONFIG = "GRPCSampler.serviceConfig";
+    public static final String RATE_LIMIT = "GRPCSampler.rateLimit";
+    public static final String RATE_LIMIT_SCOPE = "GRPCSampler.rateLimitScope";
+    public static final String RATE_LIMIT_SCOPE_METHOD = "method";
+    public static final String RATE_LIMIT_SCOPE_ENDPOINT = "endpoint";
+    public static final String RATE_LIMIT_SCOPE_GLOBAL = "global";
+    public static final int DEFAULT_STREAM_MESSAGE_LIMIT = 10;
+    private static final long PIPELINE_DRAIN_TIMEOUT_MS = 5000;
     private transient ClientCaller clientCaller = null;
+    private transient CallPipeline callPipeline = null;
+    private transient SampleListeners pipelineListeners = null;
+    private transient TokenBucket rateLimiter = null;
+    private transient GRPCConnectionConfig connectionConfig = null;
 
     public GRPCSampler() {
         trace("init GRPCSampler");
@@ -47,7 +103,75 @@ public class GRPCSampler extends AbstractSampler implements ThreadListener {
 
     private void initGrpcClient() {
         if (clientCaller == null) {
-            clientCaller = new ClientCaller(
+            clientCaller = createClientCaller();
+            rateLimiter = createRateLimiter();
+        }
+    }
+
+    /**
+     * Returns the bucket shared by every sampler with the same rate limit and scope, or {@code null} when
+     * calls are not limited.
+     */
+    private TokenBucket createRateLimiter() {
+        double rateLimit = getRateLimit();
+        if (rateLimit <= 0) {
+            return null;
+        }
+        switch (getRateLimitScope()) {
+            case RATE_LIMIT_SCOPE_GLOBAL:
+                return TokenBucket.shared(RATE_LIMIT_SCOPE_GLOBAL, rateLimit);
+            case RATE_LIMIT_SCOPE_ENDPOINT:
+                return TokenBucket.shared(getHostPort(), rateLimit);
+            default:
+                return TokenBucket.shared(getHostPort() + "/" + getFullMethod(), rateLimit);
+        }
+    }
+
+    /**
+     * Waits for the rate limiter before a call and returns how long that took.
+     */
+    private long acquirePermit() throws InterruptedException {
+        return rateLimiter == null ? 0 : rateLimiter.acquire();
+    }
+
+    /**
+     * Keeps the nearest connection config in scope, which JMeter adds first; the others are ignored.
+     */
+    @Override
+    public void addTestElement(TestElement el) {
+        if (el instanceof GRPCConnectionConfig) {
+            if (connectionConfig == null) {
+                connectionConfig = (GRPCConnectionConfig) el;
+            }
+            return;
+        }
+        super.addTestElement(el);
+    }
+
+    @Override
+    public void clearTestElementChildren() {
+        super.clearTestElementChildren();
+        connectionConfig = null;
+    }
+
+    /**
+     * Returns the connection config this sampler uses, i.e. the one in scope when its own host is empty, or
+     * {@code null}.
+     */
+    protected GRPCConnectionConfig getConnectionConfig() {
+        return connectionConfig != null && getHost().trim().isEmpty() ? connectionConfig : null;
+    }
+
+    protected ClientCaller createClientCaller() {
+        GRPCConnectionConfig config = getConnectionConfig();
+        CompiledProtos protos = config == null ? ProtoPrecompiler.get(getProtoFolder(), getLibFolder()) : null;
+        ClientCaller caller;
+        if (config != null) {
+            caller = new ClientCaller(config.getConnection(), getFullMethod());
+        } else if (protos != null) {
+            caller = new ClientCaller(getHostPort(), protos, getFullMethod(), isTls(), isTlsDisableVerification());
+        } else {
+            caller = new ClientCaller(
                     getHostPort(),
                     getProtoFolder(),
                     getLibFolder(),
@@ -55,32 +179,365 @@ public class GRPCSampler extends AbstractSampler implements ThreadListener {
                     isTls(),
                     isTlsDisableVerification());
         }
+        caller.setDiscardResponse(isDiscardResponse(), isResponseChecksum());
+        caller.setStreamMessageLimit(getStreamMessageLimit());
+        caller.setRequestStream(getStreamMessageCount(), getStreamMessagesPerSecond());
+        if (config != null) {
+            // The service config of a shared connection is set on its config element
+            return caller;
+        }
+        try {
+            caller.setServiceConfig(getServiceConfig());
+        } catch (RuntimeException e) {
+            caller.shutdownNettyChannel();
+            throw new RuntimeException("Unable to apply service config", e);
+        }
+        return caller;
     }
 
     @Override
     public SampleResult sample(Entry ignored) {
+        if (getBatchSize() > 1) {
+            return sampleBatch();
+        }
+        if (getPipelineDepth() > 1) {
+            return samplePipelined();
+        }
         GrpcResponse grpcResponse = new GrpcResponse();
         SampleResult sampleResult = new SampleResult();
+        long rateLimitWaitNanos = 0;
         try {
             initGrpcClient();
             sampleResult.setSampleLabel(getName());
             String grpcRequest = clientCaller.buildRequestAndMetadata(getRequestJson(),getMetadata());
             sampleResult.setSamplerData(grpcRequest);
             sampleResult.setRequestHeaders(clientCaller.getMetadataString());
+            rateLimitWaitNanos = acquirePermit();
             sampleResult.sampleStart();
-            grpcResponse = clientCaller.call(getDeadline());
+            grpcResponse = callGrpc();
             sampleResult.sampleEnd();
             sampleResult.setSuccessful(true);
-            sampleResult.setResponseData(grpcResponse.getGrpcMessageString().getBytes(StandardCharsets.UTF_8));
+            sampleResult.setResponseData(grpcResponse.getGrpcMessageBytes());
+            if (grpcResponse.getResponseBytes() >= 0) {
+                sampleResult.setBodySize(grpcResponse.getResponseBytes());
+            }
             sampleResult.setResponseMessage("Success");
             sampleResult.setDataType(SampleResult.TEXT);
             sampleResult.setResponseCodeOK();
+            if (grpcResponse.getStreamMetrics() != null) {
+                applyStreamMetrics(sampleResult, grpcResponse.getStreamMetrics());
+            }
+            if (grpcResponse.getSendMetrics() != null) {
+                applySendMetrics(sampleResult, grpcResponse.getSendMetrics());
+            }
+            applyCallTrace(sampleResult, clientCaller.getLastCallTrace());
+            applyCallTimeline(sampleResult, clientCaller.getLastCallTimeline(),
+                    grpcResponse.getStreamMetrics() == null);
+            applyWireMetrics(sampleResult, clientCaller.getLastWireMetrics());
+            applyRateLimitWait(sampleResult, rateLimitWaitNanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            errorResult(grpcResponse, sampleResult, new RuntimeException("Interrupted while waiting for rate limit", e));
         } catch (RuntimeException e) {
             errorResult(grpcResponse, sampleResult, e);
+            if (clientCaller != null) {
+                applyCallTrace(sampleResult, clientCaller.getLastCallTrace());
+                applyCallTimeline(sampleResult, clientCaller.getLastCallTimeline(), true);
+                applyWireMetrics(sampleResult, clientCaller.getLastWireMetrics());
+            }
+            applyRateLimitWait(sampleResult, rateLimitWaitNanos);
+        }
+        return sampleResult;
+    }
+
+    /**
+     * Keeps up to the pipeline depth of calls in flight and reports the next one to complete, timed from
+     * its own send.
+     */
+    private SampleResult samplePipelined() {
+        SampleResult sampleResult = new SampleResult();
+        sampleResult.setSampleLabel(getName());
+        try {
+            initGrpcClient();
+            if (callPipeline == null) {
+                callPipeline = new CallPipeline(clientCaller, getPipelineDepth());
+                callPipeline.setRateLimiter(rateLimiter);
+                pipelineListeners = SampleListeners.ofCurrentSample();
+            }
+            String grpcRequest = clientCaller.buildRequestAndMetadata(getRequestJson(), getMetadata());
+            sampleResult.sampleStart();
+            CallCompletion completion = callPipeline.next(parsingDeadline(), grpcRequest,
+                    clientCaller.getMetadataString());
+            // The call reported may have been sent by an earlier sample, with another request
+            SampleResult completionResult = createCompletionResult(completion, completion.getSamplerData());
+            completionResult.setRequestHeaders(completion.getRequestHeaders());
+            applyRateLimitWait(completionResult, callPipeline.getRateLimitWaitNanos());
+            return completionResult;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            errorResult(new GrpcResponse(), sampleResult, new RuntimeException("Interrupted while waiting for rpc", e));
+        } catch (RuntimeException e) {
+            errorResult(new GrpcResponse(), sampleResult, e);
+        }
+        return sampleResult;
+    }
+
+    /**
+     * Sends a batch of calls and reports them as a single result which counts every call. As with JMeter's
+     * statistical sample results, the elapsed time is the sum of the call latencies, so listener averages
+     * stay per call; the latency distribution goes to the response headers.
+     */
+    private SampleResult sampleBatch() {
+        SampleResult sampleResult = new SampleResult();
+        sampleResult.setSampleLabel(getName());
+        try {
+            initGrpcClient();
+            String grpcRequest = clientCaller.buildRequestAndMetadata(getRequestJson(), getMetadata());
+            long deadlineMs = parsingDeadline();
+            sampleResult.sampleStart();
+            CallBatch callBatch = new CallBatch(clientCaller, getBatchSize(), getBatchConcurrency());
+            callBatch.setRateLimiter(rateLimiter);
+            List<CallCompletion> completions = callBatch.run(deadlineMs);
+            SampleResult batchResult = createBatchResult(sampleResult.getStartTime(), completions, grpcRequest);
+            applyRateLimitWait(batchResult, callBatch.getRateLimitWaitNanos());
+            return batchResult;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            errorResult(new GrpcResponse(), sampleResult, new RuntimeException("Interrupted while waiting for rpc", e));
+        } catch (RuntimeException e) {
+            errorResult(new GrpcResponse(), sampleResult, e);
         }
         return sampleResult;
     }
 
+    private SampleResult createBatchResult(long startTime, List<CallCompletion> completions, String grpcRequest) {
+        BatchMetrics metrics = BatchMetrics.of(completions);
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(metrics.getTotalLatencyNanos());
+        SampleResult batchResult = stampAndTime(new BatchSampleResult(), startTime, elapsedMs);
+        batchResult.setSampleLabel(getName());
+        batchResult.setSamplerData(grpcRequest);
+        batchResult.setRequestHeaders(clientCaller.getMetadataString());
+        batchResult.setLatency(elapsedMs);
+        batchResult.setSampleCount(metrics.getCallCount());
+        batchResult.setErrorCount(metrics.getErrorCount());
+        batchResult.setBodySize(metrics.getByteCount());
+        batchResult.setResponseHeaders(metrics.toHeaderString());
+        batchResult.setDataType(SampleResult.TEXT);
+        CallCompletion failed = completions.stream().filter(c -> !c.isSuccessful()).findFirst().orElse(null);
+        if (failed == null) {
+            batchResult.setSuccessful(true);
+            batchResult.setResponseData(metrics.toHeaderString(), "UTF-8");
+            batchResult.setResponseMessage("Success");
+            batchResult.setResponseCodeOK();
+        } else {
+            String message = "Exception: " + errorMessage(failed.getError());
+            batchResult.setSuccessful(false);
+            batchResult.setResponseData(metrics.toHeaderString() + "\n\n" + message, "UTF-8");
+            batchResult.setResponseMessage(message + " (" + metrics.getErrorCount() + " of "
+                    + metrics.getCallCount() + " calls failed)");
+            batchResult.setResponseCode(responseCode(failed.getError()));
+        }
+        if (isBatchSubResults()) {
+            for (CallCompletion completion : completions) {
+                SampleResult callResult = createCompletionResult(completion, grpcRequest);
+                callResult.setSampleLabel(getName() + " - call");
+                batchResult.addRawSubResult(callResult);
+            }
+        }
+        return batchResult;
+    }
+
+    private long parsingDeadline() {
+        try {
+            return Long.parseLong(getDeadline());
+        } catch (NumberFormatException e) {
+            throw new RuntimeException("Caught exception while parsing deadline to long", e);
+        }
+    }
+
+    /**
+     * Converts a call which completed asynchronously into a result stamped with the call's own start time.
+     */
+    protected SampleResult createCompletionResult(CallCompletion completion, String samplerData) {
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(completion.getElapsedNanos());
+        // Calls rejected together are counted by one result, like a batch
+        SampleResult sampleResult = completion.getCallCount() > 1
+                ? stampAndTime(new BatchSampleResult(), completion.getStartMillis(), elapsedMs)
+                : createSampleResult(completion.getStartMillis(), elapsedMs);
+        sampleResult.setSampleLabel(getName());
+        sampleResult.setSamplerData(samplerData);
+        sampleResult.setLatency(elapsedMs);
+        sampleResult.setDataType(SampleResult.TEXT);
+        if (completion.isSuccessful()) {
+            GrpcResponse grpcResponse = completion.getResponse();
+            sampleResult.setSuccessful(true);
+            sampleResult.setResponseData(grpcResponse.getGrpcMessageBytes());
+            if (grpcResponse.getResponseBytes() >= 0) {
+                sampleResult.setBodySize(grpcResponse.getResponseBytes());
+            }
+            sampleResult.setResponseMessage("Success");
+            sampleResult.setResponseCodeOK();
+            applyCallTrace(sampleResult, grpcResponse.getCallTrace());
+            applyCallTimeline(sampleResult, grpcResponse.getCallTimeline(), true);
+            applyWireMetrics(sampleResult, grpcResponse.getWireMetrics());
+        } else {
+            String message = errorMessage(completion.getError());
+            if (completion.getCallCount() > 1) {
+                message += " (" + completion.getCallCount() + " calls)";
+            }
+            sampleResult.setSuccessful(false);
+            sampleResult.setResponseData("Exception: " + message, "UTF-8");
+            sampleResult.setResponseMessage("Exception: " + message);
+            sampleResult.setResponseCode(completion.getStatusCode().name());
+            if (completion.getCallCount() > 1) {
+                sampleResult.setSampleCount(completion.getCallCount());
+                sampleResult.setErrorCount(completion.getCallCount());
+            }
+        }
+        return sampleResult;
+    }
+
+    /**
+     * Returns the name of the gRPC status code a call failed with, {@code UNKNOWN} when it did not fail in gRPC.
+     */
+    private static String responseCode(Throwable error) {
+        return Status.fromThrowable(error).getCode().name();
+    }
+
+    private static String errorMessage(Throwable error) {
+        if (error instanceof ExecutionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error instanceof StatusRuntimeException ? error.getMessage() : error.toString();
+    }
+
+    private GrpcResponse callGrpc() {
+        MethodType methodType = clientCaller.getMethodType();
+        switch (methodType) {
+            case SERVER_STREAMING:
+                return clientCaller.callServerStreaming(getDeadline());
+            case CLIENT_STREAMING:
+                return clientCaller.callClientStreaming(getDeadline());
+            case BIDI_STREAMING:
+                return clientCaller.callBidiStreaming(getDeadline());
+            default:
+                return clientCaller.call(getDeadline());
+        }
+    }
+
+    /**
+     * Appends the send-side statistics of a request stream to the response headers and counts the sent
+     * payload bytes.
+     */
+    private void applySendMetrics(SampleResult sampleResult, SendMetrics sendMetrics) {
+        appendResponseHeaders(sampleResult, sendMetrics.toHeaderString());
+        sampleResult.setSentBytes(sendMetrics.getByteCount());
+    }
+
+    /**
+     * Appends how many attempts the call took and which one won to the response headers.
+     */
+    private void applyCallTrace(SampleResult sampleResult, CallTrace callTrace) {
+        if (callTrace != null) {
+            appendResponseHeaders(sampleResult, callTrace.toHeaderString());
+        }
+    }
+
+    /**
+     * Reports the wait for a ready transport as connect time and, unless the stream metrics already set it,
+     * the time to the first response byte as latency. The whole timeline goes to the response headers.
+     */
+    private void applyCallTimeline(SampleResult sampleResult, CallTimeline callTimeline, boolean firstByteLatency) {
+        if (callTimeline == null) {
+            return;
+        }
+        long connectNanos = callTimeline.getConnectNanos();
+        if (connectNanos >= 0) {
+            sampleResult.setConnectTime(TimeUnit.NANOSECONDS.toMillis(connectNanos));
+        }
+        long firstByteNanos = callTimeline.getFirstByteNanos();
+        if (firstByteLatency && firstByteNanos >= 0) {
+            sampleResult.setLatency(TimeUnit.NANOSECONDS.toMillis(firstByteNanos));
+        }
+        appendResponseHeaders(sampleResult, callTimeline.toHeaderString());
+    }
+
+    /**
+     * Replaces the byte counts derived from the rendered response with what the transport sent and received:
+     * message and header bytes sent, message bytes received as the body and response headers and trailers
+     * as the headers.
+     */
+    private void applyWireMetrics(SampleResult sampleResult, WireMetrics wireMetrics) {
+        if (wireMetrics == null) {
+            return;
+        }
+        sampleResult.setSentBytes(wireMetrics.getOutboundWireBytes() + wireMetrics.getOutboundHeaderBytes());
+        sampleResult.setBodySize(wireMetrics.getInboundWireBytes());
+        sampleResult.setHeadersSize((int) wireMetrics.getInboundHeaderBytes());
+        appendResponseHeaders(sampleResult, wireMetrics.toHeaderString());
+    }
+
+    /**
+     * Appends the time spent waiting for the rate limiter, which is not part of the elapsed time, to the
+     * response headers.
+     */
+    private void applyRateLimitWait(SampleResult sampleResult, long rateLimitWaitNanos) {
+        if (rateLimiter != null) {
+            appendResponseHeaders(sampleResult,
+                    "grpc-rate-limit-wait-us: " + TimeUnit.NANOSECONDS.toMicros(rateLimitWaitNanos));
+        }
+    }
+
+    private static void appendResponseHeaders(SampleResult sampleResult, String headers) {
+        String current = sampleResult.getResponseHeaders();
+        sampleResult.setResponseHeaders(current.isEmpty() ? headers : current + "\n" + headers);
+    }
+
+    /**
+     * Reports the time to first message as latency and, when enabled, splits the stream into a
+     * "first message" and a "stream" sub-result.
+     */
+    private void applyStreamMetrics(SampleResult sampleResult, StreamMetrics streamMetrics) {
+        sampleResult.setResponseHeaders(streamMetrics.toHeaderString());
+        long timeToFirstMessage = streamMetrics.getTimeToFirstMessageNanos();
+        if (timeToFirstMessage < 0) {
+            return;
+        }
+        long timeToFirstMessageMs = TimeUnit.NANOSECONDS.toMillis(timeToFirstMessage);
+        sampleResult.setLatency(timeToFirstMessageMs);
+        if (!isStreamSubResults()) {
+            return;
+        }
+        SampleResult firstMessage = createSampleResult(sampleResult.getStartTime(), timeToFirstMessageMs);
+        firstMessage.setSampleLabel(getName() + " - first message");
+        firstMessage.setSuccessful(true);
+        firstMessage.setResponseCodeOK();
+        firstMessage.setLatency(timeToFirstMessageMs);
+        sampleResult.addRawSubResult(firstMessage);
+
+        SampleResult stream = createSampleResult(sampleResult.getStartTime() + timeToFirstMessageMs,
+                TimeUnit.NANOSECONDS.toMillis(streamMetrics.getStreamDurationNanos()));
+        stream.setSampleLabel(getName() + " - stream");
+        stream.setSuccessful(true);
+        stream.setResponseCodeOK();
+        stream.setSampleCount(Math.max(1, streamMetrics.getMessageCount() - 1));
+        stream.setBodySize(streamMetrics.getByteCount());
+        stream.setResponseHeaders(streamMetrics.toHeaderString());
+        sampleResult.addRawSubResult(stream);
+    }
+
+    /**
+     * Creates a result with the given start time and elapsed time, whichever end JMeter stamps results at.
+     */
+    protected static SampleResult createSampleResult(long startTime, long elapsed) {
+        return stampAndTime(new SampleResult(), startTime, elapsed);
+    }
+
+    private static SampleResult stampAndTime(SampleResult sampleResult, long startTime, long elapsed) {
+        sampleResult.setStampAndTime(sampleResult.isStampedAtStart() ? startTime : startTime + elapsed, elapsed);
+        return sampleResult;
+    }
+
     @Override
     public void clear() {
         super.clear();
@@ -94,10 +551,91 @@ public class GRPCSampler extends AbstractSampler implements ThreadListener {
     @Override
     public void threadFinished() {
         log.debug("{}\ttestEnded", whoAmI());
+        if (callPipeline != null) {
+            try {
+                reportDrainedCalls(callPipeline.drain(PIPELINE_DRAIN_TIMEOUT_MS));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (callPipeline.getInFlight() > 0) {
+                log.warn("{}\t{} pipelined calls were still in flight when the thread finished and are not reported",
+                        whoAmI(), callPipeline.getInFlight());
+            }
+            callPipeline = null;
+            pipelineListeners = null;
+        }
         if (clientCaller != null) {
             clientCaller.shutdownNettyChannel();
             clientCaller = null;
         }
+        rateLimiter = null;
+    }
+
+    /**
+     * Reports the pipelined calls which completed after the thread's last sample, each as its own result like
+     * the calls reported by samples.
+     */
+    private void reportDrainedCalls(List<CallCompletion> completions) {
+        if (pipelineListeners == null) {
+            return;
+        }
+        for (CallCompletion completion : completions) {
+            SampleResult completionResult = createCompletionResult(completion, completion.getSamplerData());
+            completionResult.setRequestHeaders(completion.getRequestHeaders());
+            pipelineListeners.sampleOccurred(completionResult);
+        }
+    }
+
+    @Override
+    public void testStarted() {
+        LatencyHistograms.startFromProperties();
+        GrpcMetrics.startFromProperties();
+        precompile();
+    }
+
+    /**
+     * Starts compiling the protos of this sampler, so its threads do not run protoc during ramp-up. Samplers
+     * using a connection config, or whose folders or method are only known per thread, compile on first use.
+     */
+    private void precompile() {
+        if (getHost().trim().isEmpty() || getProtoFolder().trim().isEmpty()
+                || isVariable(PROTO_FOLDER) || isVariable(LIB_FOLDER) || isVariable(FULL_METHOD)) {
+            return;
+        }
+        ProtoPrecompiler.precompile(getProtoFolder(), getLibFolder(), getFullMethod());
+    }
+
+    private boolean isVariable(String property) {
+        return getProperty(property) instanceof FunctionProperty;
+    }
+
+    @Override
+    public void testStarted(String host) {
+        testStarted();
+    }
+
+    /**
+     * Waits once for the channels the threads closed, so hung streams delay the end of the test instead of
+     * every thread which finishes.
+     */
+    @Override
+    public void testEnded() {
+        try {
+            ChannelCloser.getInstance().awaitClosed();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        LatencyHistograms.stop();
+        GrpcMetrics.stop();
+        TokenBucket.clearShared();
+        ProtoPrecompiler.clear();
+        MappedFiles.clear();
+        CompiledJsonPrinter.clear();
+    }
+
+    @Override
+    public void testEnded(String host) {
+        testEnded();
     }
 
     private String whoAmI() {
@@ -108,13 +646,13 @@ public class GRPCSampler extends AbstractSampler implements ThreadListener {
                 getName();
     }
 
-    private void errorResult(GrpcResponse grpcResponse, SampleResult sampleResult, Exception e) {
+    protected void errorResult(GrpcResponse grpcResponse, SampleResult sampleResult, Exception e) {
         sampleResult.sampleEnd();
         sampleResult.setSuccessful(false);
         sampleResult.setResponseData(String.format("Exception: %s. %s", e.getCause().getMessage(), grpcResponse.getGrpcMessageString()), "UTF-8");
         sampleResult.setResponseMessage("Exception: " + e.getCause().getMessage());
         sampleResult.setDataType(SampleResult.TEXT);
-        sampleResult.setResponseCode("500");
+        sampleResult.setResponseCode(responseCode(e));
     }
 
     /**
@@ -185,6 +723,110 @@ public class GRPCSampler extends AbstractSampler implements ThreadListener {
         setProperty(TLS_DISABLE_VERIFICATION, tlsDisableVerification);
     }
 
+    public boolean isDiscardResponse() {
+        return getPropertyAsBoolean(DISCARD_RESPONSE);
+    }
+
+    public void setDiscardResponse(boolean discardResponse) {
+        setProperty(DISCARD_RESPONSE, discardResponse);
+    }
+
+    public boolean isResponseChecksum() {
+        return getPropertyAsBoolean(RESPONSE_CHECKSUM);
+    }
+
+    public void setResponseChecksum(boolean responseChecksum) {
+        setProperty(RESPONSE_CHECKSUM, responseChecksum);
+    }
+
+    public int getStreamMessageLimit() {
+        return getPropertyAsInt(STREAM_MESSAGE_LIMIT, DEFAULT_STREAM_MESSAGE_LIMIT);
+    }
+
+    public void setStreamMessageLimit(String streamMessageLimit) {
+        setProperty(STREAM_MESSAGE_LIMIT, streamMessageLimit);
+    }
+
+    public boolean isStreamSubResults() {
+        return getPropertyAsBoolean(STREAM_SUB_RESULTS);
+    }
+
+    public void setStreamSubResults(boolean streamSubResults) {
+        setProperty(STREAM_SUB_RESULTS, streamSubResults);
+    }
+
+    public int getStreamMessageCount() {
+        return getPropertyAsInt(STREAM_MESSAGE_COUNT, 0);
+    }
+
+    public void setStreamMessageCount(String streamMessageCount) {
+        setProperty(STREAM_MESSAGE_COUNT, streamMessageCount);
+    }
+
+    public double getStreamMessagesPerSecond() {
+        return getPropertyAsDouble(STREAM_MESSAGES_PER_SECOND);
+    }
+
+    public void setStreamMessagesPerSecond(String streamMessagesPerSecond) {
+        setProperty(STREAM_MESSAGES_PER_SECOND, streamMessagesPerSecond);
+    }
+
+    public int getPipelineDepth() {
+        return getPropertyAsInt(PIPELINE_DEPTH, 1);
+    }
+
+    public void setPipelineDepth(String pipelineDepth) {
+        setProperty(PIPELINE_DEPTH, pipelineDepth);
+    }
+
+    public String getServiceConfig() {
+        return getPropertyAsString(SERVICE_CONFIG);
+    }
+
+    public void setServiceConfig(String serviceConfig) {
+        setProperty(SERVICE_CONFIG, serviceConfig);
+    }
+
+    public int getBatchSize() {
+        return getPropertyAsInt(BATCH_SIZE, 1);
+    }
+
+    public void setBatchSize(String batchSize) {
+        setProperty(BATCH_SIZE, batchSize);
+    }
+
+    public int getBatchConcurrency() {
+        return getPropertyAsInt(BATCH_CONCURRENCY, 1);
+    }
+
+    public void setBatchConcurrency(String batchConcurrency) {
+        setProperty(BATCH_CONCURRENCY, batchConcurrency);
+    }
+
+    public boolean isBatchSubResults() {
+        return getPropertyAsBoolean(BATCH_SUB_RESULTS);
+    }
+
+    public void setBatchSubResults(boolean batchSubResults) {
+        setProperty(BATCH_SUB_RESULTS, batchSubResults);
+    }
+
+    public double getRateLimit() {
+        return getPropertyAsDouble(RATE_LIMIT);
+    }
+
+    public void setRateLimit(String rateLimit) {
+        setProperty(RATE_LIMIT, rateLimit);
+    }
+
+    public String getRateLimitScope() {
+        return getPropertyAsString(RATE_LIMIT_SCOPE, RATE_LIMIT_SCOPE_METHOD);
+    }
+
+    public void setRateLimitScope(String rateLimitScope) {
+        setProperty(RATE_LIMIT_SCOPE, rateLimitScope);
+    }
+
     public String getHost() {
         return getPropertyAsString(HOST);
     }
@@ -201,7 +843,50 @@ public class GRPCSampler extends AbstractSampler implements ThreadListener {
         setProperty(PORT, port);
     }
 
-    private String getHostPort() {
+    protected String getHostPort() {
+        GRPCConnectionConfig config = getConnectionConfig();
+        if (config != null) {
+            return config.getHostPort();
+        }
         return getHost() + ":" + getPort();
     }
+
+    /**
+     * The listeners of a sample, kept to report results after JMeter has cleared the thread's context, which
+     * it does before calling {@link #threadFinished}.
+     */
+    private static final class SampleListeners {
+        private final ListenerNotifier notifier;
+        private final List<SampleListener> listeners;
+        private final String threadGroupName;
+        private final JMeterVariables variables;
+
+        private SampleListeners(ListenerNotifier notifier, List<SampleListener> listeners, String threadGroupName,
+                                JMeterVariables variables) {
+            this.notifier = notifier;
+            this.listeners = listeners;
+            this.threadGroupName = threadGroupName;
+            this.variables = variables;
+        }
+
+        /**
+         * Returns the listeners of the sample in progress, or {@code null} outside a JMeter thread.
+         */
+        static SampleListeners ofCurrentSample() {
+            JMeterContext context = JMeterContextService.getContext();
+            JMeterVariables variables = context.getVariables();
+            Object pack = variables == null ? null : variables.getObject(JMeterThread.PACKAGE_OBJECT);
+            if (context.getThread() == null || !(pack instanceof SamplePackage)) {
+                return null;
+            }
+            AbstractThreadGroup threadGroup = context.getThreadGroup();
+            return new SampleListeners(context.getThread().getNotifier(),
+                    ((SamplePackage) pack).getSampleListeners(), threadGroup == null ? "" : threadGroup.getName(),
+                    variables);
+        }
+
+        void sampleOccurred(SampleResult result) {
+            notifier.notifyListeners(new SampleEvent(result, threadGroupName, variables), listeners);
+        }
+    }
 }
@@ -30,6 +30,7 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
 
 import javax.swing.*;
 import java.awt.*;
@@ -53,15 +54,33 @@ public class GRPCSamplerGui extends AbstractSamplerGui {
 
     private JComboBox<String> fullMethodField;
     private JButton fullMethodButton;
+    private JProgressBar fullMethodProgress;
+    private transient MethodDiscovery methodDiscovery;
+    /** The latest listing which finished, whose resolver the mock request reuses */
+    private transient MethodDiscovery listedMethods;
 
     private JTextField metadataField;
     private JLabeledTextField hostField;
     private JLabeledTextField portField;
     private JLabeledTextField deadlineField;
+    private JLabeledTextField serviceConfigField;
 
     private JCheckBox isTLSCheckBox;
     private JCheckBox isTLSDisableVerificationCheckBox;
 
+    private JCheckBox discardResponseCheckBox;
+    private JCheckBox responseChecksumCheckBox;
+    private JLabeledTextField streamMessageLimitField;
+    private JCheckBox streamSubResultsCheckBox;
+    private JLabeledTextField streamMessageCountField;
+    private JLabeledTextField streamMessagesPerSecondField;
+    private JLabeledTextField pipelineDepthField;
+    private JLabeledTextField batchSizeField;
+    private JLabeledTextField batchConcurrencyField;
+    private JCheckBox batchSubResultsCheckBox;
+    private JLabeledTextField rateLimitField;
+    private JComboBox<String> rateLimitScopeField;
+
     private JSyntaxTextArea requestJsonArea;
 
     public GRPCSamplerGui() {
@@ -101,8 +120,21 @@ public class GRPCSamplerGui extends AbstractSamplerGui {
         grpcSampler.setPort(this.portField.getText());
         grpcSampler.setFullMethod(this.fullMethodField.getSelectedItem().toString());
         grpcSampler.setDeadline(this.deadlineField.getText());
+        grpcSampler.setServiceConfig(this.serviceConfigField.getText());
         grpcSampler.setTls(this.isTLSCheckBox.isSelected());
         grpcSampler.setTlsDisableVerification(this.isTLSDisableVerificationCheckBox.isSelected());
+        grpcSampler.setDiscardResponse(this.discardResponseCheckBox.isSelected());
+        grpcSampler.setResponseChecksum(this.responseChecksumCheckBox.isSelected());
+        grpcSampler.setStreamMessageLimit(this.streamMessageLimitField.getText());
+        grpcSampler.setStreamSubResults(this.streamSubResultsCheckBox.isSelected());
+        grpcSampler.setStreamMessageCount(this.streamMessageCountField.getText());
+        grpcSampler.setStreamMessagesPerSecond(this.streamMessagesPerSecondField.getText());
+        grpcSampler.setPipelineDepth(this.pipelineDepthField.getText());
+        grpcSampler.setBatchSize(this.batchSizeField.getText());
+        grpcSampler.setBatchConcurrency(this.batchConcurrencyField.getText());
+        grpcSampler.setBatchSubResults(this.batchSubResultsCheckBox.isSelected());
+        grpcSampler.setRateLimit(this.rateLimitField.getText());
+        grpcSampler.setRateLimitScope(this.rateLimitScopeField.getSelectedItem().toString());
         grpcSampler.setRequestJson(this.requestJsonArea.getText());
     }
 
@@ -113,6 +145,7 @@ public class GRPCSamplerGui extends AbstractSamplerGui {
             return;
         }
         grpcSampler = (GRPCSampler) element;
+        cancelMethodDiscovery();
         protoFolderField.setText(grpcSampler.getProtoFolder());
         libFolderField.setText(grpcSampler.getLibFolder());
         metadataField.setText(grpcSampler.getMetadata());
@@ -120,8 +153,21 @@ public class GRPCSamplerGui extends AbstractSamplerGui {
         portField.setText(grpcSampler.getPort());
         fullMethodField.setSelectedItem(grpcSampler.getFullMethod());
         deadlineField.setText(grpcSampler.getDeadline());
+        serviceConfigField.setText(grpcSampler.getServiceConfig());
         isTLSCheckBox.setSelected(grpcSampler.isTls());
         isTLSDisableVerificationCheckBox.setSelected(grpcSampler.isTlsDisableVerification());
+        discardResponseCheckBox.setSelected(grpcSampler.isDiscardResponse());
+        responseChecksumCheckBox.setSelected(grpcSampler.isResponseChecksum());
+        streamMessageLimitField.setText(Integer.toString(grpcSampler.getStreamMessageLimit()));
+        streamSubResultsCheckBox.setSelected(grpcSampler.isStreamSubResults());
+        streamMessageCountField.setText(Integer.toString(grpcSampler.getStreamMessageCount()));
+        streamMessagesPerSecondField.setText(grpcSampler.getPropertyAsString(GRPCSampler.STREAM_MESSAGES_PER_SECOND, "0"));
+        pipelineDepthField.setText(Integer.toString(grpcSampler.getPipelineDepth()));
+        batchSizeField.setText(Integer.toString(grpcSampler.getBatchSize()));
+        batchConcurrencyField.setText(Integer.toString(grpcSampler.getBatchConcurrency()));
+        batchSubResultsCheckBox.setSelected(grpcSampler.isBatchSubResults());
+        rateLimitField.setText(grpcSampler.getPropertyAsString(GRPCSampler.RATE_LIMIT, "0"));
+        rateLimitScopeField.setSelectedItem(grpcSampler.getRateLimitScope());
         requestJsonArea.setText(grpcSampler.getRequestJson());
     }
 
@@ -132,6 +178,7 @@ public class GRPCSamplerGui extends AbstractSamplerGui {
     }
 
     private void initGuiValues() {
+        cancelMethodDiscovery();
         protoFolderField.setText("");
         libFolderField.setText("");
         metadataField.setText("");
@@ -139,8 +186,21 @@ public class GRPCSamplerGui extends AbstractSamplerGui {
         portField.setText("");
         fullMethodField.setSelectedItem("");
         deadlineField.setText("1000");
+        serviceConfigField.setText("");
         isTLSCheckBox.setSelected(false);
         isTLSDisableVerificationCheckBox.setSelected(false);
+        discardResponseCheckBox.setSelected(false);
+        responseChecksumCheckBox.setSelected(false);
+        streamMessageLimitField.setText(Integer.toString(GRPCSampler.DEFAULT_STREAM_MESSAGE_LIMIT));
+        streamSubResultsCheckBox.setSelected(false);
+        streamMessageCountField.setText("0");
+        streamMessagesPerSecondField.setText("0");
+        pipelineDepthField.setText("1");
+        batchSizeField.setText("1");
+        batchConcurrencyField.setText("1");
+        batchSubResultsCheckBox.setSelected(false);
+        rateLimitField.setText("0");
+        rateLimitScopeField.setSelectedItem(GRPCSampler.RATE_LIMIT_SCOPE_METHOD);
         requestJsonArea.setText("");
     }
 
@@ -159,6 +219,7 @@ public class GRPCSamplerGui extends AbstractSamplerGui {
         mainPanel.add(getWebServerPanel());
         mainPanel.add(getGRPCRequestPanel());
         mainPanel.add(getOptionConfigPanel());
+        mainPanel.add(getPerformanceOptionPanel());
         mainPanel.add(getRequestJSONPanel());
         add(mainPanel, BorderLayout.CENTER);
     }
@@ -212,6 +273,7 @@ public class GRPCSamplerGui extends AbstractSamplerGui {
         JLabel metadataLabel = new JLabel("Metadata:");
         metadataField = new JTextField("Metadata", 32); // $NON-NLS-1$
         deadlineField = new JLabeledTextField("Deadline:", 7); // $NON-NLS-1$
+        serviceConfigField = new JLabeledTextField("Service Config:", 24); // $NON-NLS-1$
 
         JPanel webServerPanel = new HorizontalPanel();
         webServerPanel.setBorder(BorderFactory.createCompoundBorder(
@@ -221,9 +283,48 @@ public class GRPCSamplerGui extends AbstractSamplerGui {
         webServerPanel.add(metadataLabel);
         webServerPanel.add(metadataField);
         webServerPanel.add(deadlineField);
+        webServerPanel.add(serviceConfigField);
         return webServerPanel;
     }
 
+    private JPanel getPerformanceOptionPanel() {
+        discardResponseCheckBox = new JCheckBox("Discard Response Body");
+        responseChecksumCheckBox = new JCheckBox("CRC32 Checksum");
+        streamMessageLimitField = new JLabeledTextField("Stored Stream Messages:", 4); // $NON-NLS-1$
+        streamSubResultsCheckBox = new JCheckBox("Stream Sub-Results");
+        streamMessageCountField = new JLabeledTextField("Sent Stream Messages:", 4); // $NON-NLS-1$
+        streamMessagesPerSecondField = new JLabeledTextField("Send Messages/sec:", 4); // $NON-NLS-1$
+        pipelineDepthField = new JLabeledTextField("Outstanding Calls/Thread:", 3); // $NON-NLS-1$
+        batchSizeField = new JLabeledTextField("Batch Calls:", 4); // $NON-NLS-1$
+        batchConcurrencyField = new JLabeledTextField("Batch Concurrency:", 3); // $NON-NLS-1$
+        batchSubResultsCheckBox = new JCheckBox("Batch Sub-Results");
+        rateLimitField = new JLabeledTextField("Rate Limit (calls/sec):", 5); // $NON-NLS-1$
+        rateLimitScopeField = new JComboBox<>(new String[]{
+                GRPCSampler.RATE_LIMIT_SCOPE_METHOD,
+                GRPCSampler.RATE_LIMIT_SCOPE_ENDPOINT,
+                GRPCSampler.RATE_LIMIT_SCOPE_GLOBAL});
+
+        JPanel performancePanel = new HorizontalPanel();
+        performancePanel.setBorder(BorderFactory.createCompoundBorder(
+                BorderFactory.createEmptyBorder(9, 0, 0, 0),
+                BorderFactory.createTitledBorder("Performance Options")
+        ));
+        performancePanel.add(discardResponseCheckBox);
+        performancePanel.add(responseChecksumCheckBox);
+        performancePanel.add(streamMessageLimitField);
+        performancePanel.add(streamSubResultsCheckBox);
+        performancePanel.add(streamMessageCountField);
+        performancePanel.add(streamMessagesPerSecondField);
+        performancePanel.add(pipelineDepthField);
+        performancePanel.add(batchSizeField);
+        performancePanel.add(batchConcurrencyField);
+        performancePanel.add(batchSubResultsCheckBox);
+        performancePanel.add(rateLimitField);
+        performancePanel.add(new JLabel("per"));
+        performancePanel.add(rateLimitScopeField);
+        return performancePanel;
+    }
+
     private JPanel getGRPCRequestPanel() {
         JPanel requestPanel = new JPanel(new GridBagLayout());
 
@@ -265,15 +366,24 @@ public class GRPCSamplerGui extends AbstractSamplerGui {
 
         // Full method
         addToPanel(requestPanel, labelConstraints, 0, row, new JLabel("Full Method: ", JLabel.RIGHT));
-        addToPanel(requestPanel, editConstraints, 1, row, fullMethodField = new JComboBox<>());
+        JPanel fullMethodPanel = new JPanel(new BorderLayout(4, 0));
+        fullMethodPanel.add(fullMethodField = new JComboBox<>(), BorderLayout.CENTER);
         fullMethodField.setEditable(true);
+        fullMethodPanel.add(fullMethodProgress = new JProgressBar(), BorderLayout.EAST);
+        fullMethodProgress.setIndeterminate(true);
+        fullMethodProgress.setVisible(false);
+        addToPanel(requestPanel, editConstraints, 1, row, fullMethodPanel);
         addToPanel(requestPanel, labelConstraints, 2, row, fullMethodButton = new JButton("Listing..."));
 
         fullMethodButton.addActionListener(new ActionListener() {
-            // fullMethodButton click listener
+            // fullMethodButton click listener, cancels the listing in progress
             @Override
             public void actionPerformed(ActionEvent e) {
-                getMethods(fullMethodField);
+                if (methodDiscovery != null) {
+                    cancelMethodDiscovery();
+                } else {
+                    getMethods(fullMethodField);
+                }
             }
         });
         fullMethodField.addPopupMenuListener(new PopupMenuListener() {
@@ -309,11 +419,76 @@ public class GRPCSamplerGui extends AbstractSamplerGui {
         return container;
     }
 
+    /**
+     * Lists the methods of the proto folder in the background, as protoc can take seconds on a large proto
+     * tree. The resolver of an earlier listing is reused while no proto file changed.
+     */
     private void getMethods(JComboBox<String> fullMethodField) {
         if (StringUtils.isNotBlank(grpcSampler.getProtoFolder())) {
             JMeterVariableUtils.undoVariableReplacement(grpcSampler);
-            ServiceResolver serviceResolver = ClientList.getServiceResolver(grpcSampler.getProtoFolder(), grpcSampler.getLibFolder(), true);
-            List<String> methods = ClientList.listServices(serviceResolver);
+            methodDiscovery = new MethodDiscovery(grpcSampler.getProtoFolder(), grpcSampler.getLibFolder(),
+                    fullMethodField);
+            showMethodDiscovery(true);
+            methodDiscovery.execute();
+        }
+    }
+
+    private void cancelMethodDiscovery() {
+        if (methodDiscovery != null) {
+            methodDiscovery.cancel(true);
+            methodDiscovery = null;
+            showMethodDiscovery(false);
+        }
+    }
+
+    private void showMethodDiscovery(boolean running) {
+        fullMethodProgress.setVisible(running);
+        fullMethodButton.setText(running ? "Cancel" : "Listing...");
+        fullMethodProgress.getParent().revalidate();
+    }
+
+    private class MethodDiscovery extends SwingWorker<List<String>, Void> {
+        private final String protoFolder;
+        private final String libFolder;
+        private final JComboBox<String> fullMethodField;
+        private volatile ServiceResolver serviceResolver;
+
+        private MethodDiscovery(String protoFolder, String libFolder, JComboBox<String> fullMethodField) {
+            this.protoFolder = protoFolder;
+            this.libFolder = libFolder;
+            this.fullMethodField = fullMethodField;
+        }
+
+        @Override
+        protected List<String> doInBackground() {
+            serviceResolver = ClientList.getServiceResolver(protoFolder, libFolder);
+            return ClientList.listServices(serviceResolver);
+        }
+
+        private boolean listed(String protoFolder, String libFolder) {
+            return serviceResolver != null && StringUtils.equals(this.protoFolder, protoFolder)
+                    && StringUtils.equals(this.libFolder, libFolder);
+        }
+
+        @Override
+        protected void done() {
+            // A cancelled or replaced listing must not overwrite the methods of the current element.
+            if (methodDiscovery != this || isCancelled()) {
+                return;
+            }
+            methodDiscovery = null;
+            showMethodDiscovery(false);
+            List<String> methods;
+            try {
+                methods = get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                log.error("Unable to list the methods of " + protoFolder, e.getCause());
+                return;
+            }
+            listedMethods = this;
 
             log.info("Full Methods: " + methods.toString());
             String[] methodsArr = new String[methods.size()];
@@ -329,37 +504,85 @@ public class GRPCSamplerGui extends AbstractSamplerGui {
         }
     }
 
+    /**
+     * Fills a blank request with mock values for the selected method. The method is resolved in the background
+     * with the resolver of the latest listing when its folders are unchanged, so protoc never runs on the EDT.
+     */
     private void requestMock() {
         try {
             if (StringUtils.isNotBlank(requestJsonArea.getText())) {
                 return;
             }
             String fullMethod = fullMethodField.getSelectedItem().toString();
-            ProtoMethodName grpcMethodName = ProtoMethodName.parseFullGrpcMethodName(fullMethod);
             JMeterVariableUtils.undoVariableReplacement(grpcSampler);
-            ServiceResolver serviceResolver = ClientList.getServiceResolver(grpcSampler.getProtoFolder(), grpcSampler.getLibFolder());
-            Descriptors.MethodDescriptor methodDescriptor = serviceResolver.resolveServiceMethod(grpcMethodName);
-            if (methodDescriptor != null) {
-                Descriptors.Descriptor inputType = methodDescriptor.getInputType();
-                List<Descriptors.FieldDescriptor> fields = inputType.getFields();
-                JSONObject requestBody = new JSONObject(true);
-                for (Descriptors.FieldDescriptor field : fields) {
-                    String name = field.getName();
-                    Object defaultValue = getValue(field);
-                    requestBody.put(name, defaultValue);
-                }
-                String text = requestBody.toString(
-                        SerializerFeature.PrettyFormat,         // Formatting Json String
-                        SerializerFeature.WriteMapNullValue,    // Outputs Null values
-                        SerializerFeature.WriteNullListAsEmpty  // Null List output is []
-                );
-                requestJsonArea.setText(text);
-            }
+            String protoFolder = grpcSampler.getProtoFolder();
+            String libFolder = grpcSampler.getLibFolder();
+            ServiceResolver listedResolver = listedMethods != null && listedMethods.listed(protoFolder, libFolder)
+                    ? listedMethods.serviceResolver : null;
+            new RequestMock(fullMethod, protoFolder, libFolder, listedResolver).execute();
         } catch (Exception ex) {
             log.error("request mock error", ex);
         }
     }
 
+    private class RequestMock extends SwingWorker<String, Void> {
+        private final String fullMethod;
+        private final String protoFolder;
+        private final String libFolder;
+        private final ServiceResolver listedResolver;
+
+        private RequestMock(String fullMethod, String protoFolder, String libFolder,
+                            ServiceResolver listedResolver) {
+            this.fullMethod = fullMethod;
+            this.protoFolder = protoFolder;
+            this.libFolder = libFolder;
+            this.listedResolver = listedResolver;
+        }
+
+        @Override
+        protected String doInBackground() {
+            ServiceResolver serviceResolver = listedResolver != null
+                    ? listedResolver : ClientList.getServiceResolver(protoFolder, libFolder);
+            Descriptors.MethodDescriptor methodDescriptor = serviceResolver.resolveServiceMethod(
+                    ProtoMethodName.parseFullGrpcMethodName(fullMethod));
+            if (methodDescriptor == null) {
+                return null;
+            }
+            Descriptors.Descriptor inputType = methodDescriptor.getInputType();
+            List<Descriptors.FieldDescriptor> fields = inputType.getFields();
+            JSONObject requestBody = new JSONObject(true);
+            for (Descriptors.FieldDescriptor field : fields) {
+                String name = field.getName();
+                Object defaultValue = getValue(field);
+                requestBody.put(name, defaultValue);
+            }
+            return requestBody.toString(
+                    SerializerFeature.PrettyFormat,         // Formatting Json String
+                    SerializerFeature.WriteMapNullValue,    // Outputs Null values
+                    SerializerFeature.WriteNullListAsEmpty  // Null List output is []
+            );
+        }
+
+        @Override
+        protected void done() {
+            String text;
+            try {
+                text = get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                log.error("request mock error", e.getCause());
+                return;
+            }
+            // The request may have been typed, or another element shown, while the method was resolved.
+            if (text != null && StringUtils.isBlank(requestJsonArea.getText())
+                    && fullMethod.equals(String.valueOf(fullMethodField.getSelectedItem()))) {
+                requestJsonArea.setText(text);
+            }
+        }
+    }
+
     private Object getValue(Descriptors.FieldDescriptor field) {
         String name = field.getName();
         String type = field.getType().name().toLowerCase();
@@ -1,32 +1,53 @@
 package vn.zalopay.benchmark.core;
 
 import com.alibaba.fastjson.JSONObject;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableList;
 import com.google.common.net.HostAndPort;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.google.protobuf.DescriptorProtos;
 import com.google.protobuf.Descriptors;
 import com.google.protobuf.DynamicMessage;
 import com.google.protobuf.util.JsonFormat;
 import io.grpc.CallOptions;
+import io.grpc.ClientInterceptors;
 import io.grpc.ManagedChannel;
+import io.grpc.MethodDescriptor.Marshaller;
+import io.grpc.MethodDescriptor.MethodType;
+import io.grpc.Status;
 import io.grpc.stub.StreamObserver;
 import vn.zalopay.benchmark.core.channel.ComponentObserver;
+import vn.zalopay.benchmark.core.channel.StreamMetricsObserver;
+import vn.zalopay.benchmark.core.grpc.CallTimelineInterceptor;
+import vn.zalopay.benchmark.core.grpc.CallTracer;
+import vn.zalopay.benchmark.core.grpc.ChannelCloser;
 import vn.zalopay.benchmark.core.grpc.ChannelFactory;
+import vn.zalopay.benchmark.core.grpc.DiscardMessageMarshaller;
 import vn.zalopay.benchmark.core.grpc.DynamicGrpcClient;
+import vn.zalopay.benchmark.core.grpc.DynamicMessageMarshaller;
+import vn.zalopay.benchmark.core.grpc.RequestStreamer;
 import vn.zalopay.benchmark.core.message.Reader;
+import vn.zalopay.benchmark.core.metrics.LatencyHistograms;
 import vn.zalopay.benchmark.core.message.Writer;
-import vn.zalopay.benchmark.core.protobuf.ProtoMethodName;
 import vn.zalopay.benchmark.core.protobuf.ProtocInvoker;
 import vn.zalopay.benchmark.core.protobuf.ServiceResolver;
+import vn.zalopay.benchmark.core.specification.CallTimeline;
+import vn.zalopay.benchmark.core.specification.CallTrace;
 import vn.zalopay.benchmark.core.specification.GrpcResponse;
+import vn.zalopay.benchmark.core.specification.SendMetrics;
+import vn.zalopay.benchmark.core.specification.StreamMetrics;
+import vn.zalopay.benchmark.core.specification.WireMetrics;
 
 import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
@@ -40,42 +61,75 @@ public class ClientCaller {
     private Map<String, String> metadataMap;
     private boolean tls;
     private boolean disableTtlVerification;
+    private boolean discardResponse;
+    private boolean responseChecksum;
+    private int streamMessageLimit;
+    private String fullMethodName;
+    private LatencyHistograms.ThreadRecorder latencyRecorder;
+    private int streamMessageCount;
+    private double streamMessagesPerSecond;
+    private Map<String, ?> serviceConfig;
+    private GrpcResponse lastBlockingOutput;
+    private GrpcConnection connection;
     ChannelFactory channelFactory;
 
     public ClientCaller(String HOST_PORT, String TEST_PROTO_FILES, String LIB_FOLDER, String FULL_METHOD, boolean TLS, boolean TLS_DISABLE_VERIFICATION) {
-        this.init(HOST_PORT, TEST_PROTO_FILES, LIB_FOLDER, FULL_METHOD, TLS, TLS_DISABLE_VERIFICATION);
+        this(HOST_PORT, compile(TEST_PROTO_FILES, LIB_FOLDER), FULL_METHOD, TLS, TLS_DISABLE_VERIFICATION);
     }
 
-    private void init(String HOST_PORT, String TEST_PROTO_FILES, String LIB_FOLDER, String FULL_METHOD, boolean TLS, boolean TLS_DISABLE_VERIFICATION) {
+    /**
+     * Creates a caller with its own channel for protos which are already compiled, e.g. when the test started.
+     */
+    public ClientCaller(String HOST_PORT, CompiledProtos protos, String FULL_METHOD, boolean TLS, boolean TLS_DISABLE_VERIFICATION) {
+        this.init(HOST_PORT, protos, FULL_METHOD, TLS, TLS_DISABLE_VERIFICATION);
+    }
+
+    /**
+     * Creates a caller which uses the descriptors and one of the channels of a shared connection. Its
+     * metadata is added to each call instead of the channel, and the channel is left open when the caller
+     * is shut down or a call fails; it is closed with the connection.
+     */
+    public ClientCaller(GrpcConnection connection, String FULL_METHOD) {
+        this.connection = connection;
+        hostAndPort = connection.getHostAndPort();
+        metadataMap = new LinkedHashMap<>();
+        methodDescriptor = connection.getProtos().resolveMethod(FULL_METHOD);
+        fullMethodName = io.grpc.MethodDescriptor.generateFullMethodName(
+                methodDescriptor.getService().getFullName(), methodDescriptor.getName());
+        registry = connection.getProtos().getRegistry();
+        channel = connection.nextChannel();
+        dynamicClient = DynamicGrpcClient.create(methodDescriptor,
+                ClientInterceptors.intercept(channel, ChannelFactory.metadataInterceptor(metadataMap)));
+    }
+
+    private static CompiledProtos compile(String TEST_PROTO_FILES, String LIB_FOLDER) {
+        // Fetch the appropriate file descriptors for the service.
+        final DescriptorProtos.FileDescriptorSet fileDescriptorSet;
+
+        try {
+            fileDescriptorSet = ProtocInvoker.forConfig(TEST_PROTO_FILES, LIB_FOLDER).invoke();
+        } catch (Throwable t) {
+            throw new RuntimeException("Unable to resolve service by invoking protoc", t);
+        }
+        return new CompiledProtos(ServiceResolver.fromFileDescriptorSet(fileDescriptorSet));
+    }
+
+    private void init(String HOST_PORT, CompiledProtos protos, String FULL_METHOD, boolean TLS, boolean TLS_DISABLE_VERIFICATION) {
         try {
             tls = TLS;
             disableTtlVerification = TLS_DISABLE_VERIFICATION;
             hostAndPort = HostAndPort.fromString(HOST_PORT);
             metadataMap = new LinkedHashMap<>();
             channelFactory = ChannelFactory.create();
-            ProtoMethodName grpcMethodName =
-                    ProtoMethodName.parseFullGrpcMethodName(FULL_METHOD);
-
-            // Fetch the appropriate file descriptors for the service.
-            final DescriptorProtos.FileDescriptorSet fileDescriptorSet;
-
-            try {
-                fileDescriptorSet = ProtocInvoker.forConfig(TEST_PROTO_FILES, LIB_FOLDER).invoke();
-            } catch (Throwable t) {
-                shutdownNettyChannel();
-                throw new RuntimeException("Unable to resolve service by invoking protoc", t);
-            }
 
             // Set up the dynamic client and make the call.
-            ServiceResolver serviceResolver = ServiceResolver.fromFileDescriptorSet(fileDescriptorSet);
-            methodDescriptor = serviceResolver.resolveServiceMethod(grpcMethodName);
+            methodDescriptor = protos.resolveMethod(FULL_METHOD);
+            fullMethodName = io.grpc.MethodDescriptor.generateFullMethodName(
+                    methodDescriptor.getService().getFullName(), methodDescriptor.getName());
 
             createDynamicClient();
 
-            // This collects all known types into a registry for resolution of potential "Any" types.
-            registry = JsonFormat.TypeRegistry.newBuilder()
-                    .add(serviceResolver.listMessageTypes())
-                    .build();
+            registry = protos.getRegistry();
         } catch (Throwable t) {
             shutdownNettyChannel();
             throw t;
@@ -119,7 +173,17 @@ public class ClientCaller {
     }
 
     public void createDynamicClient() {
-        channel = channelFactory.createChannel(hostAndPort, tls, disableTtlVerification, metadataMap);
+        channel = channelFactory.createChannel(hostAndPort, tls, disableTtlVerification, metadataMap, serviceConfig);
+        dynamicClient = DynamicGrpcClient.create(methodDescriptor, channel);
+    }
+
+    /**
+     * Replaces the channel of this caller, e.g. with an in-process channel so benchmarks skip the network.
+     */
+    @VisibleForTesting
+    void useChannel(ManagedChannel channel) {
+        shutdownNettyChannel();
+        this.channel = channel;
         dynamicClient = DynamicGrpcClient.create(methodDescriptor, channel);
     }
 
@@ -133,10 +197,24 @@ public class ClientCaller {
 
     public String buildRequestAndMetadata(String jsonData, String metadata) {
         try {
+            lastBlockingOutput = null;
             metadataMap.clear();
             metadataMap.putAll(buildHashMetadata(metadata));
-            requestMessages = Reader.create(methodDescriptor.getInputType(), jsonData, registry).read();
-            return JsonFormat.printer().includingDefaultValueFields().print(requestMessages.get(0));
+            Reader reader = Reader.create(methodDescriptor.getInputType(), jsonData, registry);
+            requestMessages = reader.read();
+            if (reader.hasFileBindings()) {
+                // Printing the request would encode the mapped files as base64 on every sample
+                return jsonData;
+            }
+            JsonFormat.Printer printer = JsonFormat.printer().includingDefaultValueFields();
+            if (requestMessages.size() == 1) {
+                return printer.print(requestMessages.get(0));
+            }
+            StringBuilder requests = new StringBuilder("[");
+            for (DynamicMessage message : requestMessages) {
+                requests.append(requests.length() > 1 ? ",\n" : "\n").append(printer.print(message));
+            }
+            return requests.append("\n]").toString();
         } catch (IllegalArgumentException e) {
             shutdownNettyChannel();
             throw e;
@@ -149,71 +227,190 @@ public class ClientCaller {
     public GrpcResponse call(String deadlineMs) {
         long deadline = parsingDeadlineTime(deadlineMs);
         GrpcResponse output = new GrpcResponse();
-        StreamObserver<DynamicMessage> streamObserver = ComponentObserver.of(Writer.create(output, registry));
+        Marshaller<DynamicMessage> responseMarshaller = createResponseMarshaller();
+        StreamObserver<DynamicMessage> streamObserver = ComponentObserver.of(createWriter(output));
+        long startNanos = System.nanoTime();
         try {
-            dynamicClient.blockingUnaryCall(requestMessages, streamObserver, callOptions(deadline)).get();
+            dynamicClient.callOnCallingThread(requestMessages, streamObserver, blockingCallOptions(deadline, output), responseMarshaller);
         } catch (Throwable t) {
+            recordLatency(startNanos, Status.fromThrowable(t).getCode());
             shutdownNettyChannel();
             throw new RuntimeException("Caught exception while waiting for rpc", t);
         }
+        recordLatency(startNanos, Status.Code.OK);
+        storeDiscardedResponse(output, responseMarshaller);
         return output;
     }
 
     public GrpcResponse callServerStreaming(String deadlineMs) {
         long deadline = parsingDeadlineTime(deadlineMs);
-        GrpcResponse output = new GrpcResponse();
-        StreamObserver<DynamicMessage> streamObserver = ComponentObserver.of(Writer.create(output, registry));
+        GrpcResponse output = new GrpcResponse(streamMessageLimit);
+        StreamMetrics streamMetrics = new StreamMetrics();
+        output.setStreamMetrics(streamMetrics);
+        Marshaller<DynamicMessage> responseMarshaller = createResponseMarshaller();
+        StreamObserver<DynamicMessage> streamObserver = ComponentObserver.of(
+                StreamMetricsObserver.of(streamMetrics), createWriter(output));
+        streamMetrics.start(System.nanoTime());
+        long startNanos = System.nanoTime();
         try {
-            dynamicClient.callServerStreaming(requestMessages, streamObserver, callOptions(deadline)).get();
+            dynamicClient.callOnCallingThread(requestMessages, streamObserver, blockingCallOptions(deadline, output), responseMarshaller);
         } catch (Throwable t) {
+            recordLatency(startNanos, Status.fromThrowable(t).getCode());
             shutdownNettyChannel();
             throw new RuntimeException("Caught exception while waiting for rpc", t);
         }
+        recordLatency(startNanos, Status.Code.OK);
+        storeDiscardedResponse(output, responseMarshaller);
+        if (output.getResponseBytes() >= 0) {
+            streamMetrics.setByteCount(output.getResponseBytes());
+        }
         return output;
     }
 
     public GrpcResponse callClientStreaming(String deadlineMs) {
         long deadline = parsingDeadlineTime(deadlineMs);
         GrpcResponse output = new GrpcResponse();
-        StreamObserver<DynamicMessage> streamObserver = ComponentObserver.of(Writer.create(output, registry));
+        RequestStreamer requestStreamer = createRequestStreamer(output);
+        Marshaller<DynamicMessage> responseMarshaller = createResponseMarshaller();
+        StreamObserver<DynamicMessage> streamObserver = ComponentObserver.of(createWriter(output));
+        long startNanos = System.nanoTime();
         try {
-            dynamicClient.callClientStreaming(requestMessages, streamObserver, callOptions(deadline)).get();
+            dynamicClient.callClientStreaming(requestMessages, streamObserver, blockingCallOptions(deadline, output), responseMarshaller,
+                    requestStreamer).get();
         } catch (Throwable t) {
+            recordLatency(startNanos, Status.fromThrowable(t).getCode());
             shutdownNettyChannel();
             throw new RuntimeException("Caught exception while waiting for rpc", t);
         }
+        recordLatency(startNanos, Status.Code.OK);
+        storeDiscardedResponse(output, responseMarshaller);
         return output;
     }
 
     public GrpcResponse callBidiStreaming(String deadlineMs) {
         long deadline = parsingDeadlineTime(deadlineMs);
-        GrpcResponse output = new GrpcResponse();
-        StreamObserver<DynamicMessage> streamObserver = ComponentObserver.of(Writer.create(output, registry));
+        GrpcResponse output = new GrpcResponse(streamMessageLimit);
+        RequestStreamer requestStreamer = createRequestStreamer(output);
+        StreamMetrics streamMetrics = new StreamMetrics();
+        output.setStreamMetrics(streamMetrics);
+        Marshaller<DynamicMessage> responseMarshaller = createResponseMarshaller();
+        StreamObserver<DynamicMessage> streamObserver = ComponentObserver.of(
+                StreamMetricsObserver.of(streamMetrics), createWriter(output));
+        streamMetrics.start(System.nanoTime());
+        long startNanos = System.nanoTime();
         try {
-            dynamicClient.callBidiStreaming(requestMessages, streamObserver, callOptions(deadline)).get();
+            dynamicClient.callBidiStreaming(requestMessages, streamObserver, blockingCallOptions(deadline, output), responseMarshaller,
+                    requestStreamer).get();
         } catch (Throwable t) {
+            recordLatency(startNanos, Status.fromThrowable(t).getCode());
             shutdownNettyChannel();
             throw new RuntimeException("Caught exception while waiting for rpc", t);
         }
+        recordLatency(startNanos, Status.Code.OK);
+        storeDiscardedResponse(output, responseMarshaller);
+        if (output.getResponseBytes() >= 0) {
+            streamMetrics.setByteCount(output.getResponseBytes());
+        }
         return output;
     }
 
-    private static CallOptions callOptions(long deadlineMs) {
-        CallOptions result = CallOptions.DEFAULT;
+    /**
+     * Starts a unary or server-streaming call without waiting for it. Unlike the blocking calls, a failure
+     * only fails the returned future and leaves the channel open for the calls which follow.
+     */
+    public ListenableFuture<GrpcResponse> callAsync(long deadlineMs) {
+        MethodType methodType = getMethodType();
+        Preconditions.checkArgument(methodType == MethodType.UNARY || methodType == MethodType.SERVER_STREAMING,
+                "Asynchronous calls support unary and server-streaming methods only but found: " + methodType);
+        GrpcResponse output = new GrpcResponse(streamMessageLimit);
+        Marshaller<DynamicMessage> responseMarshaller = createResponseMarshaller();
+        StreamObserver<DynamicMessage> streamObserver = ComponentObserver.of(createWriter(output));
+        ListenableFuture<Void> done = methodType == MethodType.UNARY
+                ? dynamicClient.blockingUnaryCall(requestMessages, streamObserver, callOptions(deadlineMs, output), responseMarshaller)
+                : dynamicClient.callServerStreaming(requestMessages, streamObserver, callOptions(deadlineMs, output), responseMarshaller);
+        return Futures.transform(done, ignored -> {
+            storeDiscardedResponse(output, responseMarshaller);
+            return output;
+        }, MoreExecutors.directExecutor());
+    }
+
+    private void recordLatency(long startNanos, Status.Code code) {
+        recordCallLatency(System.nanoTime() - startNanos, code);
+    }
+
+    /**
+     * Records the latency of a call when latency histograms are enabled. Like every other use of this
+     * caller, it must be called from the sampler thread.
+     */
+    public void recordCallLatency(long latencyNanos, Status.Code code) {
+        LatencyHistograms histograms = LatencyHistograms.getActive();
+        if (histograms == null) {
+            return;
+        }
+        if (latencyRecorder == null || !latencyRecorder.belongsTo(histograms)) {
+            latencyRecorder = histograms.newThreadRecorder();
+        }
+        latencyRecorder.record(fullMethodName, code, latencyNanos);
+    }
+
+    private RequestStreamer createRequestStreamer(GrpcResponse output) {
+        SendMetrics sendMetrics = new SendMetrics();
+        output.setSendMetrics(sendMetrics);
+        return RequestStreamer.create(streamMessageCount, streamMessagesPerSecond, sendMetrics);
+    }
+
+    private Marshaller<DynamicMessage> createResponseMarshaller() {
+        if (discardResponse) {
+            return new DiscardMessageMarshaller(methodDescriptor.getOutputType(), responseChecksum);
+        }
+        return new DynamicMessageMarshaller(methodDescriptor.getOutputType());
+    }
+
+    private StreamObserver<DynamicMessage> createWriter(GrpcResponse output) {
+        if (discardResponse) {
+            return Writer.createDiscarding(output);
+        }
+        return Writer.create(output, registry);
+    }
+
+    private static void storeDiscardedResponse(GrpcResponse output, Marshaller<DynamicMessage> responseMarshaller) {
+        if (responseMarshaller instanceof DiscardMessageMarshaller) {
+            DiscardMessageMarshaller discardMarshaller = (DiscardMessageMarshaller) responseMarshaller;
+            output.storeDiscardedResponse(discardMarshaller.getMessageCount(), discardMarshaller.getByteCount(),
+                    discardMarshaller.getChecksum());
+        }
+    }
+
+    private CallOptions blockingCallOptions(long deadlineMs, GrpcResponse output) {
+        CallOptions result = callOptions(deadlineMs, output);
+        lastBlockingOutput = output;
+        return result;
+    }
+
+    private static CallOptions callOptions(long deadlineMs, GrpcResponse output) {
+        CallTrace callTrace = new CallTrace();
+        output.setCallTrace(callTrace);
+        CallTimeline callTimeline = new CallTimeline();
+        output.setCallTimeline(callTimeline);
+        WireMetrics wireMetrics = new WireMetrics();
+        output.setWireMetrics(wireMetrics);
+        CallOptions result = CallOptions.DEFAULT
+                .withOption(CallTimelineInterceptor.TIMELINE, callTimeline)
+                .withOption(CallTimelineInterceptor.WIRE_METRICS, wireMetrics)
+                .withStreamTracerFactory(CallTracer.of(callTrace, callTimeline, wireMetrics));
         if (deadlineMs > 0) {
             result = result.withDeadlineAfter(deadlineMs, TimeUnit.MILLISECONDS);
         }
         return result;
     }
 
+    /**
+     * Shuts the channel down without waiting for it to terminate, see {@link ChannelCloser}. A shared
+     * connection's channel is left open.
+     */
     public void shutdownNettyChannel() {
-        try {
-            if (channel != null) {
-                channel.shutdown();
-                channel.awaitTermination(5, TimeUnit.SECONDS);
-            }
-        } catch (InterruptedException e) {
-            throw new RuntimeException("Caught exception while shutting down channel", e);
+        if (channel != null && connection == null && !channel.isShutdown()) {
+            ChannelCloser.getInstance().close(channel, hostAndPort.toString());
         }
     }
 
@@ -225,6 +422,89 @@ public class ClientCaller {
         }
     }
 
+    /**
+     * Drains responses without parsing them; only the message count, byte count and optionally a CRC32
+     * checksum are kept. The call status is reported as usual.
+     */
+    public void setDiscardResponse(boolean discardResponse, boolean responseChecksum) {
+        this.discardResponse = discardResponse;
+        this.responseChecksum = responseChecksum;
+    }
+
+    /**
+     * Limits how many messages of a response stream are rendered and kept, 0 keeps all of them.
+     */
+    public void setStreamMessageLimit(int streamMessageLimit) {
+        this.streamMessageLimit = streamMessageLimit;
+    }
+
+    /**
+     * Configures the request stream of client and bidi streaming calls.
+     *
+     * @param streamMessageCount      how many messages to send, cycling through the request messages; 0 sends
+     *                                each request message once
+     * @param streamMessagesPerSecond target send rate, 0 sends as fast as flow control allows
+     */
+    public void setRequestStream(int streamMessageCount, double streamMessagesPerSecond) {
+        this.streamMessageCount = streamMessageCount;
+        this.streamMessagesPerSecond = streamMessagesPerSecond;
+    }
+
+    /**
+     * Sets the default service config of the channel, e.g. retry or hedging policies, recreating the
+     * channel when the config changes. An empty config removes it.
+     *
+     * @throws IllegalArgumentException when the config is not a JSON object
+     * @throws IllegalStateException    when the caller uses a shared connection, whose service config is
+     *                                  set when it is created
+     */
+    public void setServiceConfig(String serviceConfigJson) {
+        Preconditions.checkState(connection == null,
+                "The service config of a shared connection is set on its config element");
+        Map<String, ?> newServiceConfig = ChannelFactory.parseServiceConfig(serviceConfigJson);
+        if (Objects.equals(newServiceConfig, serviceConfig)) {
+            return;
+        }
+        serviceConfig = newServiceConfig;
+        shutdownNettyChannel();
+        createDynamicClient();
+    }
+
+    /**
+     * Returns the attempts of the last blocking call since the request was built, which are also known when
+     * the call failed, or {@code null} when no call was made.
+     */
+    public CallTrace getLastCallTrace() {
+        return lastBlockingOutput == null ? null : lastBlockingOutput.getCallTrace();
+    }
+
+    /**
+     * Returns the timeline of the last blocking call since the request was built, which is also known when
+     * the call failed, or {@code null} when no call was made.
+     */
+    public CallTimeline getLastCallTimeline() {
+        return lastBlockingOutput == null ? null : lastBlockingOutput.getCallTimeline();
+    }
+
+    /**
+     * Returns the bytes the last blocking call put on and took off the wire since the request was built,
+     * which are also known when the call failed, or {@code null} when no call was made.
+     */
+    public WireMetrics getLastWireMetrics() {
+        return lastBlockingOutput == null ? null : lastBlockingOutput.getWireMetrics();
+    }
+
+    public MethodType getMethodType() {
+        return dynamicClient.getMethodType();
+    }
+
+    /**
+     * Returns the method called, as {@code package.Service/Method}.
+     */
+    public String getFullMethodName() {
+        return fullMethodName;
+    }
+
     public String getMetadataString() {
         return metadataMap.entrySet()
                 .stream()
@@ -4,17 +4,27 @@ import com.google.protobuf.DescriptorProtos;
 import com.google.protobuf.Descriptors.MethodDescriptor;
 import com.google.protobuf.Descriptors.ServiceDescriptor;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.jmeter.util.JMeterUtils;
 import vn.zalopay.benchmark.core.protobuf.ProtocInvoker;
 import vn.zalopay.benchmark.core.protobuf.ServiceResolver;
 
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 
 public class ClientList {
+    public static final String CACHE_SIZE_PROPERTY = "grpc.resolverCache.size";
+    public static final int DEFAULT_CACHE_SIZE = 16;
 
-    private static final Map<String, ServiceResolver> serviceResolverMap = new HashMap<>();
+    /**
+     * The resolvers of the latest proto roots used, least recently used first. A resolver is only reused
+     * while the fingerprint of its proto files is unchanged.
+     */
+    private static final Map<String, CachedResolver> serviceResolverMap =
+            Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true));
 
     public static ServiceResolver getServiceResolver(String protoFile, String libFolder) {
         return getServiceResolver(protoFile, libFolder, false);
@@ -25,26 +35,25 @@ public class ClientList {
      *
      * @param protoFile proto file root path
      * @param libFolder lib file path
-     * @param reload    reload not cache
+     * @param reload    reload not cache, even when no proto file changed
      * @return proto file resolver
      */
     public static ServiceResolver getServiceResolver(String protoFile, String libFolder, boolean reload) {
         try {
-            String serviceResolverKey = protoFile + libFolder;
-            if (reload == false) {
-                ServiceResolver serviceResolver = serviceResolverMap.get(serviceResolverKey);
-                if (serviceResolver != null) {
-                    return serviceResolver;
-                }
-            }
-
             if (StringUtils.isNotBlank(protoFile)) {
-                final DescriptorProtos.FileDescriptorSet fileDescriptorSet;
+                String serviceResolverKey = protoFile + libFolder;
                 ProtocInvoker invoker = ProtocInvoker.forConfig(protoFile, libFolder);
-                fileDescriptorSet = invoker.invoke();
+                long fingerprint = invoker.fingerprint();
+                if (reload == false) {
+                    CachedResolver cached = serviceResolverMap.get(serviceResolverKey);
+                    if (cached != null && cached.fingerprint == fingerprint) {
+                        return cached.serviceResolver;
+                    }
+                }
 
+                final DescriptorProtos.FileDescriptorSet fileDescriptorSet = invoker.invoke();
                 ServiceResolver serviceResolver = ServiceResolver.fromFileDescriptorSet(fileDescriptorSet);
-                serviceResolverMap.put(serviceResolverKey, serviceResolver);
+                cache(serviceResolverKey, new CachedResolver(serviceResolver, fingerprint));
                 return serviceResolver;
             }
         } catch (Throwable t) {
@@ -69,4 +78,25 @@ public class ClientList {
         return listServices(getServiceResolver(protoFile, libFolder, true));
     }
 
+    private static void cache(String serviceResolverKey, CachedResolver cachedResolver) {
+        int maxSize = Math.max(1, JMeterUtils.getPropDefault(CACHE_SIZE_PROPERTY, DEFAULT_CACHE_SIZE));
+        synchronized (serviceResolverMap) {
+            serviceResolverMap.put(serviceResolverKey, cachedResolver);
+            Iterator<String> leastRecentlyUsed = serviceResolverMap.keySet().iterator();
+            while (serviceResolverMap.size() > maxSize) {
+                leastRecentlyUsed.next();
+                leastRecentlyUsed.remove();
+            }
+        }
+    }
+
+    private static class CachedResolver {
+        private final ServiceResolver serviceResolver;
+        private final long fingerprint;
+
+        private CachedResolver(ServiceResolver serviceResolver, long fingerprint) {
+            this.serviceResolver = serviceResolver;
+            this.fingerprint = fingerprint;
+        }
+    }
 }
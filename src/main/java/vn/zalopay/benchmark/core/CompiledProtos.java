@@ -0,0 +1,42 @@
+package vn.zalopay.benchmark.core;
+
+import com.google.common.base.Preconditions;
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.util.JsonFormat;
+import vn.zalopay.benchmark.core.protobuf.ProtoMethodName;
+import vn.zalopay.benchmark.core.protobuf.ServiceResolver;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The descriptors of a proto folder, its type registry and the methods resolved so far. It is immutable
+ * apart from the method cache and is shared by the callers of every thread.
+ */
+public class CompiledProtos {
+    private final ServiceResolver serviceResolver;
+    private final JsonFormat.TypeRegistry registry;
+    private final Map<String, Descriptors.MethodDescriptor> methods = new ConcurrentHashMap<>();
+
+    public CompiledProtos(ServiceResolver serviceResolver) {
+        this.serviceResolver = serviceResolver;
+        // This collects all known types into a registry for resolution of potential "Any" types.
+        this.registry = JsonFormat.TypeRegistry.newBuilder()
+                .add(serviceResolver.listMessageTypes())
+                .build();
+    }
+
+    /**
+     * @throws IllegalArgumentException when the method is not a full method name or is not in the protos
+     */
+    public Descriptors.MethodDescriptor resolveMethod(String fullMethod) {
+        // The same message as parsing the name, which the cache skips
+        Preconditions.checkNotNull(fullMethod, "fullMethodName");
+        return methods.computeIfAbsent(fullMethod, method ->
+                serviceResolver.resolveServiceMethod(ProtoMethodName.parseFullGrpcMethodName(method)));
+    }
+
+    public JsonFormat.TypeRegistry getRegistry() {
+        return registry;
+    }
+}
@@ -0,0 +1,85 @@
+package vn.zalopay.benchmark.core;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.net.HostAndPort;
+import io.grpc.ManagedChannel;
+import vn.zalopay.benchmark.core.grpc.ChannelCloser;
+import vn.zalopay.benchmark.core.grpc.ChannelFactory;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The compiled descriptors and channels of one endpoint, shared by every {@link ClientCaller} created from
+ * it. Callers add their own metadata to each call, so they can share the channels whatever they send.
+ */
+public class GrpcConnection {
+    private final HostAndPort hostAndPort;
+    private final CompiledProtos protos;
+    private final ImmutableList<ManagedChannel> channels;
+    private final AtomicInteger nextChannel = new AtomicInteger();
+
+    /**
+     * Compiles the protos, or uses the protos compiled when the test started or by an earlier compilation, and
+     * opens the channels.
+     *
+     * @param serviceConfig the JSON service config of the channels, empty for none
+     * @param channelCount  how many channels to open, callers are spread over them round robin
+     * @throws IllegalArgumentException when the service config is not a JSON object
+     */
+    public static GrpcConnection create(String hostPort, String protoFolder, String libFolder, boolean tls,
+            boolean tlsDisableVerification, String serviceConfig, int channelCount) {
+        Preconditions.checkArgument(channelCount > 0, "Channel count must be positive but found: " + channelCount);
+        HostAndPort hostAndPort = HostAndPort.fromString(hostPort);
+        Map<String, ?> parsedServiceConfig = ChannelFactory.parseServiceConfig(serviceConfig);
+        CompiledProtos protos = ProtoPrecompiler.get(protoFolder, libFolder);
+        if (protos == null) {
+            protos = new CompiledProtos(ClientList.getServiceResolver(protoFolder, libFolder));
+        }
+
+        ChannelFactory channelFactory = ChannelFactory.create();
+        ImmutableList.Builder<ManagedChannel> channels = ImmutableList.builder();
+        for (int i = 0; i < channelCount; i++) {
+            // The metadata of each call is added by its caller, see ClientCaller(GrpcConnection, String)
+            channels.add(channelFactory.createChannel(hostAndPort, tls, tlsDisableVerification,
+                    Collections.emptyMap(), parsedServiceConfig));
+        }
+        return new GrpcConnection(hostAndPort, protos, channels.build());
+    }
+
+    private GrpcConnection(HostAndPort hostAndPort, CompiledProtos protos, ImmutableList<ManagedChannel> channels) {
+        this.hostAndPort = hostAndPort;
+        this.protos = protos;
+        this.channels = channels;
+    }
+
+    public CompiledProtos getProtos() {
+        return protos;
+    }
+
+    /**
+     * Returns the channels in turn, so the callers of a connection with several channels are spread over them.
+     */
+    public ManagedChannel nextChannel() {
+        return channels.get(Math.floorMod(nextChannel.getAndIncrement(), channels.size()));
+    }
+
+    public HostAndPort getHostAndPort() {
+        return hostAndPort;
+    }
+
+    public boolean isShutdown() {
+        return channels.stream().allMatch(ManagedChannel::isShutdown);
+    }
+
+    /**
+     * Shuts the channels down without waiting for them to terminate, see {@link ChannelCloser}.
+     */
+    public void shutdown() {
+        for (ManagedChannel channel : channels) {
+            ChannelCloser.getInstance().close(channel, hostAndPort.toString());
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package vn.zalopay.benchmark.core;
+
+import com.google.common.base.Strings;
+import org.apache.jmeter.engine.StandardJMeterEngine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Compiles the protos and resolves the methods of the samplers when the test starts, so the threads find them
+ * ready instead of running protoc during ramp-up.
+ *
+ * <p>Every distinct proto and library folder is compiled once, in parallel with the others, while the
+ * remaining test elements start. The first error stops the test, as every sample of the sampler would fail.
+ * The threads look the protos up with {@link #get}, which waits for a compilation still running.
+ */
+public class ProtoPrecompiler {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProtoPrecompiler.class);
+    private static final ConcurrentMap<String, CompletableFuture<CompiledProtos>> COMPILED = new ConcurrentHashMap<>();
+    private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "grpc-proto-precompiler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private ProtoPrecompiler() {
+    }
+
+    /**
+     * Starts compiling the protos unless they are compiled or compiling already, and then resolves the
+     * method, if any. Returns at once.
+     */
+    public static void precompile(String protoFolder, String libFolder, String fullMethod) {
+        String key = keyOf(protoFolder, libFolder);
+        CompletableFuture<CompiledProtos> compiled = COMPILED.computeIfAbsent(key, ignored ->
+                CompletableFuture.supplyAsync(() -> new CompiledProtos(
+                        ClientList.getServiceResolver(protoFolder, libFolder)), EXECUTOR));
+        compiled.whenComplete((protos, t) -> {
+            if (t == null && !Strings.isNullOrEmpty(fullMethod)) {
+                try {
+                    protos.resolveMethod(fullMethod);
+                } catch (RuntimeException e) {
+                    stopTest("Unable to resolve " + fullMethod + " in " + protoFolder, e);
+                }
+            } else if (t != null) {
+                stopTest("Unable to compile the protos in " + protoFolder, t);
+            }
+        });
+    }
+
+    /**
+     * Returns the protos compiled when the test started, waiting for them if needed, or {@code null} when
+     * they were not precompiled.
+     *
+     * @throws RuntimeException when they could not be compiled
+     */
+    public static CompiledProtos get(String protoFolder, String libFolder) {
+        CompletableFuture<CompiledProtos> compiled = COMPILED.get(keyOf(protoFolder, libFolder));
+        if (compiled == null) {
+            return null;
+        }
+        try {
+            return compiled.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Drops the precompiled protos, so the next test compiles the protos as they are then.
+     */
+    public static void clear() {
+        COMPILED.clear();
+    }
+
+    private static void stopTest(String message, Throwable t) {
+        LOGGER.error("{}, stopping the test", message, t);
+        StandardJMeterEngine.stopEngineNow();
+    }
+
+    private static String keyOf(String protoFolder, String libFolder) {
+        return protoFolder + '|' + libFolder;
+    }
+}
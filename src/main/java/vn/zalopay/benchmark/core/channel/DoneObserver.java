@@ -6,6 +6,10 @@ import io.grpc.stub.StreamObserver;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Completes a future when the call finishes. The future is thread-safe on its own, so nothing here locks
+ * and a virtual thread waiting for the call is never pinned to its carrier.
+ */
 public final class DoneObserver<T> implements StreamObserver<T> {
     private static final Logger LOGGER = LoggerFactory.getLogger(DoneObserver.class);
     private final SettableFuture<Void> doneFuture;
@@ -15,12 +19,12 @@ public final class DoneObserver<T> implements StreamObserver<T> {
     }
 
     @Override
-    public synchronized void onCompleted() {
+    public void onCompleted() {
         doneFuture.set(null);
     }
 
     @Override
-    public synchronized void onError(Throwable t) {
+    public void onError(Throwable t) {
         doneFuture.setException(t);
     }
 
@@ -0,0 +1,81 @@
+package vn.zalopay.benchmark.core.channel;
+
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+import io.grpc.stub.StreamObserver;
+
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Forwards responses to a delegate observer and exposes the outbound flow control of the call, so request
+ * messages are only sent while the transport reports {@code isReady()}.
+ */
+public final class FlowControlObserver<ReqT, RespT> implements ClientResponseObserver<ReqT, RespT> {
+    private static final long READY_POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final StreamObserver<RespT> delegate;
+    private volatile ClientCallStreamObserver<ReqT> requestStream;
+    private volatile Thread waiter;
+
+    public static <ReqT, RespT> FlowControlObserver<ReqT, RespT> of(StreamObserver<RespT> delegate) {
+        return new FlowControlObserver<>(delegate);
+    }
+
+    private FlowControlObserver(StreamObserver<RespT> delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void beforeStart(ClientCallStreamObserver<ReqT> requestStream) {
+        this.requestStream = requestStream;
+        requestStream.setOnReadyHandler(this::signalReady);
+    }
+
+    /**
+     * Blocks until the call can accept another outbound message. Returns false when the call finished first.
+     */
+    public boolean awaitReady(Future<?> done) {
+        while (!requestStream.isReady()) {
+            if (done.isDone()) {
+                return false;
+            }
+            waiter = Thread.currentThread();
+            if (!requestStream.isReady() && !done.isDone()) {
+                // The timeout covers a completion which does not fire the ready handler.
+                LockSupport.parkNanos(this, READY_POLL_NANOS);
+            }
+            waiter = null;
+        }
+        return !done.isDone();
+    }
+
+    public ClientCallStreamObserver<ReqT> getRequestStream() {
+        return requestStream;
+    }
+
+    private void signalReady() {
+        Thread thread = waiter;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    @Override
+    public void onNext(RespT value) {
+        delegate.onNext(value);
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        delegate.onError(t);
+        signalReady();
+    }
+
+    @Override
+    public void onCompleted() {
+        delegate.onCompleted();
+        signalReady();
+    }
+}
@@ -0,0 +1,35 @@
+package vn.zalopay.benchmark.core.channel;
+
+import com.google.protobuf.MessageLite;
+import io.grpc.stub.StreamObserver;
+import vn.zalopay.benchmark.core.specification.StreamMetrics;
+
+/**
+ * Records the arrival time and size of every message into a {@link StreamMetrics}.
+ */
+public final class StreamMetricsObserver<T extends MessageLite> implements StreamObserver<T> {
+    private final StreamMetrics metrics;
+
+    public static <T extends MessageLite> StreamMetricsObserver<T> of(StreamMetrics metrics) {
+        return new StreamMetricsObserver<>(metrics);
+    }
+
+    private StreamMetricsObserver(StreamMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void onNext(T value) {
+        metrics.recordMessage(System.nanoTime(), value.getSerializedSize());
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        metrics.finish(System.nanoTime());
+    }
+
+    @Override
+    public void onCompleted() {
+        metrics.finish(System.nanoTime());
+    }
+}
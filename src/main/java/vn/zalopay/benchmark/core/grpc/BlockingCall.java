@@ -0,0 +1,99 @@
+package vn.zalopay.benchmark.core.grpc;
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
+
+import java.util.concurrent.ExecutionException;
+
+/**
+ * A unary or server-streaming call driven by the calling thread: the call runs on a
+ * {@link ThreadlessExecutor}, so responses are delivered to the observer on the thread which waits for
+ * them, without a future, a lock or a thread hop per call.
+ */
+final class BlockingCall<ReqT, RespT> extends ClientCall.Listener<RespT> {
+    private final ClientCall<ReqT, RespT> call;
+    private final StreamObserver<RespT> responseObserver;
+    // Only ever touched on the calling thread, which runs every callback.
+    private Status status;
+    private Metadata trailers;
+
+    /**
+     * Sends the request and waits for the call to finish. A failed call throws an
+     * {@link ExecutionException} wrapping its {@code StatusRuntimeException}, the same way
+     * {@code Future.get()} reports it for the asynchronous calls. Interrupting the waiting thread cancels
+     * the call and keeps the thread's interrupt status, and an exception thrown by the observer cancels the call
+     * before it is rethrown.
+     */
+    static <ReqT, RespT> void call(Channel channel, MethodDescriptor<ReqT, RespT> method, CallOptions callOptions,
+                                   ReqT request, StreamObserver<RespT> responseObserver) throws ExecutionException {
+        ThreadlessExecutor executor = new ThreadlessExecutor();
+        BlockingCall<ReqT, RespT> blockingCall = new BlockingCall<>(
+                channel.newCall(method, callOptions.withExecutor(executor)), responseObserver);
+        blockingCall.start(request);
+        blockingCall.await(executor);
+    }
+
+    private BlockingCall(ClientCall<ReqT, RespT> call, StreamObserver<RespT> responseObserver) {
+        this.call = call;
+        this.responseObserver = responseObserver;
+    }
+
+    private void start(ReqT request) {
+        try {
+            call.start(this, new Metadata());
+            call.request(1);
+            call.sendMessage(request);
+            call.halfClose();
+        } catch (RuntimeException | Error e) {
+            call.cancel("Unable to start call", e);
+            throw e;
+        }
+    }
+
+    private void await(ThreadlessExecutor executor) throws ExecutionException {
+        boolean interrupted = false;
+        try {
+            while (status == null) {
+                try {
+                    executor.waitAndDrain();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                    call.cancel("Thread interrupted", e);
+                }
+            }
+        } catch (RuntimeException | Error e) {
+            // Thrown by a callback while draining, e.g. an Error from the observer, which gRPC does not catch
+            call.cancel("Thrown by observer", e);
+            throw e;
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (!status.isOk()) {
+            throw new ExecutionException(status.asRuntimeException(trailers));
+        }
+    }
+
+    @Override
+    public void onMessage(RespT message) {
+        responseObserver.onNext(message);
+        call.request(1);
+    }
+
+    @Override
+    public void onClose(Status status, Metadata trailers) {
+        this.status = status;
+        this.trailers = trailers;
+        if (status.isOk()) {
+            responseObserver.onCompleted();
+        } else {
+            responseObserver.onError(status.asRuntimeException(trailers));
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package vn.zalopay.benchmark.core.grpc;
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ForwardingClientCall;
+import io.grpc.ForwardingClientCallListener;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import vn.zalopay.benchmark.core.jfr.CallEvent;
+import vn.zalopay.benchmark.core.jfr.JfrEvents;
+import vn.zalopay.benchmark.core.specification.CallTimeline;
+import vn.zalopay.benchmark.core.specification.WireMetrics;
+
+import java.io.InputStream;
+
+/**
+ * Records the client side of a call into the {@link CallTimeline} set on its call options: when it starts,
+ * how long the messages take to serialize and parse, and how long the response observer takes with each
+ * message, which is where responses are rendered as JSON. Calls without a timeline pass through untouched.
+ * The transport events are recorded by {@link CallTracer}, except for the size of the response headers,
+ * which only the listener sees and which goes to the {@link WireMetrics} set on the call options. Each call
+ * is also a {@link CallEvent} for Flight Recorder.
+ */
+public final class CallTimelineInterceptor implements ClientInterceptor {
+    public static final CallOptions.Key<CallTimeline> TIMELINE = CallOptions.Key.create("callTimeline");
+    public static final CallOptions.Key<WireMetrics> WIRE_METRICS = CallOptions.Key.create("wireMetrics");
+
+    private static final CallTimelineInterceptor INSTANCE = new CallTimelineInterceptor();
+
+    public static CallTimelineInterceptor getInstance() {
+        return INSTANCE;
+    }
+
+    private CallTimelineInterceptor() {
+    }
+
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(MethodDescriptor<ReqT, RespT> method,
+            CallOptions callOptions, Channel next) {
+        CallTimeline timeline = callOptions.getOption(TIMELINE);
+        if (timeline == null) {
+            return next.newCall(method, callOptions);
+        }
+        MethodDescriptor<ReqT, RespT> timedMethod = method.toBuilder(
+                new SerializeTimer<>(method.getRequestMarshaller(), timeline),
+                new ParseTimer<>(method.getResponseMarshaller(), timeline)).build();
+        return new ForwardingClientCall.SimpleForwardingClientCall<ReqT, RespT>(
+                next.newCall(timedMethod, callOptions)) {
+            @Override
+            public void start(Listener<RespT> responseListener, Metadata headers) {
+                timeline.record(CallTimeline.Event.STARTED);
+                super.start(new TimelineListener<>(responseListener, timeline, callOptions.getOption(WIRE_METRICS),
+                        method.getFullMethodName()), headers);
+            }
+        };
+    }
+
+    private static final class SerializeTimer<T> implements MethodDescriptor.Marshaller<T> {
+        private final MethodDescriptor.Marshaller<T> delegate;
+        private final CallTimeline timeline;
+
+        private SerializeTimer(MethodDescriptor.Marshaller<T> delegate, CallTimeline timeline) {
+            this.delegate = delegate;
+            this.timeline = timeline;
+        }
+
+        @Override
+        public InputStream stream(T value) {
+            long startNanos = System.nanoTime();
+            try {
+                InputStream stream = delegate.stream(value);
+                if (stream instanceof MessageInputStream) {
+                    // The message is serialized when gRPC drains the stream, not here
+                    ((MessageInputStream) stream).timeSerialization(timeline::addSerializeNanos);
+                }
+                return stream;
+            } finally {
+                timeline.addSerializeNanos(System.nanoTime() - startNanos);
+            }
+        }
+
+        @Override
+        public T parse(InputStream stream) {
+            return delegate.parse(stream);
+        }
+    }
+
+    private static final class ParseTimer<T> implements MethodDescriptor.Marshaller<T> {
+        private final MethodDescriptor.Marshaller<T> delegate;
+        private final CallTimeline timeline;
+
+        private ParseTimer(MethodDescriptor.Marshaller<T> delegate, CallTimeline timeline) {
+            this.delegate = delegate;
+            this.timeline = timeline;
+        }
+
+        @Override
+        public InputStream stream(T value) {
+            return delegate.stream(value);
+        }
+
+        @Override
+        public T parse(InputStream stream) {
+            long startNanos = System.nanoTime();
+            try {
+                return delegate.parse(stream);
+            } finally {
+                timeline.addDeserializeNanos(System.nanoTime() - startNanos);
+            }
+        }
+    }
+
+    private static final class TimelineListener<RespT>
+            extends ForwardingClientCallListener.SimpleForwardingClientCallListener<RespT> {
+        private final CallTimeline timeline;
+        private final WireMetrics wireMetrics;
+        private final String fullMethodName;
+        private final CallEvent event;
+
+        private TimelineListener(ClientCall.Listener<RespT> delegate, CallTimeline timeline, WireMetrics wireMetrics,
+                                 String fullMethodName) {
+            super(delegate);
+            this.timeline = timeline;
+            this.wireMetrics = wireMetrics;
+            this.fullMethodName = fullMethodName;
+            this.event = JfrEvents.beginCall();
+        }
+
+        @Override
+        public void onHeaders(Metadata headers) {
+            if (wireMetrics != null) {
+                wireMetrics.recordInboundHeaderBytes(CallTracer.headerBytes(headers));
+            }
+            super.onHeaders(headers);
+        }
+
+        @Override
+        public void onMessage(RespT message) {
+            long startNanos = System.nanoTime();
+            try {
+                super.onMessage(message);
+            } finally {
+                timeline.addRenderNanos(System.nanoTime() - startNanos);
+            }
+        }
+
+        @Override
+        public void onClose(Status status, Metadata trailers) {
+            if (event != null) {
+                event.method = fullMethodName;
+                event.statusCode = status.getCode().name();
+                event.commit();
+            }
+            super.onClose(status, trailers);
+        }
+    }
+}
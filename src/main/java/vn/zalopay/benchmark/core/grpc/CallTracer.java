@@ -0,0 +1,128 @@
+package vn.zalopay.benchmark.core.grpc;
+
+import io.grpc.ClientStreamTracer;
+import io.grpc.Metadata;
+import io.grpc.Status;
+import vn.zalopay.benchmark.core.specification.CallTimeline;
+import vn.zalopay.benchmark.core.specification.CallTrace;
+import vn.zalopay.benchmark.core.specification.WireMetrics;
+
+/**
+ * Records every attempt of a call into a {@link CallTrace}, the transport events of the call into a
+ * {@link CallTimeline} and the sizes the transport sees into {@link WireMetrics}. gRPC asks the factory
+ * for a new tracer for each stream the call opens, which is once per attempt, as soon as a transport is
+ * ready for it.
+ */
+public final class CallTracer extends ClientStreamTracer.Factory {
+    private final CallTrace trace;
+    private final CallTimeline timeline;
+    private final WireMetrics wireMetrics;
+
+    public static CallTracer of(CallTrace trace, CallTimeline timeline, WireMetrics wireMetrics) {
+        return new CallTracer(trace, timeline, wireMetrics);
+    }
+
+    private CallTracer(CallTrace trace, CallTimeline timeline, WireMetrics wireMetrics) {
+        this.trace = trace;
+        this.timeline = timeline;
+        this.wireMetrics = wireMetrics;
+    }
+
+    @Override
+    public ClientStreamTracer newClientStreamTracer(ClientStreamTracer.StreamInfo info, Metadata headers) {
+        timeline.record(CallTimeline.Event.STREAM_CREATED);
+        wireMetrics.recordOutboundHeaderBytes(headerBytes(headers));
+        return new AttemptTracer(trace.startAttempt());
+    }
+
+    /**
+     * Returns the size of the metadata as HTTP/2 headers, with binary values base64 encoded as gRPC sends
+     * them.
+     */
+    static long headerBytes(Metadata metadata) {
+        long bytes = 0;
+        for (String name : metadata.keys()) {
+            if (name.endsWith(Metadata.BINARY_HEADER_SUFFIX)) {
+                for (byte[] value : metadata.getAll(Metadata.Key.of(name, Metadata.BINARY_BYTE_MARSHALLER))) {
+                    // Unpadded base64.
+                    bytes += WireMetrics.headerEntrySize(name.length(), (value.length * 4 + 2) / 3);
+                }
+            } else {
+                for (String value : metadata.getAll(Metadata.Key.of(name, Metadata.ASCII_STRING_MARSHALLER))) {
+                    bytes += WireMetrics.headerEntrySize(name.length(), value.length());
+                }
+            }
+        }
+        return bytes;
+    }
+
+    private final class AttemptTracer extends ClientStreamTracer {
+        private final int attempt;
+
+        private AttemptTracer(int attempt) {
+            this.attempt = attempt;
+        }
+
+        @Override
+        public void outboundHeaders() {
+            timeline.record(CallTimeline.Event.HEADERS_SENT);
+        }
+
+        @Override
+        public void outboundMessageSent(int seqNo, long optionalWireSize, long optionalUncompressedSize) {
+            if (seqNo == 0) {
+                timeline.record(CallTimeline.Event.MESSAGE_SENT);
+            }
+            wireMetrics.recordOutboundMessage();
+        }
+
+        @Override
+        public void outboundWireSize(long bytes) {
+            wireMetrics.recordOutboundWireBytes(bytes);
+        }
+
+        @Override
+        public void outboundUncompressedSize(long bytes) {
+            wireMetrics.recordOutboundUncompressedBytes(bytes);
+        }
+
+        @Override
+        public void inboundHeaders() {
+            timeline.record(CallTimeline.Event.HEADERS_RECEIVED);
+        }
+
+        @Override
+        public void inboundTrailers(Metadata trailers) {
+            wireMetrics.recordInboundHeaderBytes(headerBytes(trailers));
+        }
+
+        @Override
+        public void inboundMessageRead(int seqNo, long optionalWireSize, long optionalUncompressedSize) {
+            wireMetrics.recordInboundMessage();
+        }
+
+        @Override
+        public void inboundWireSize(long bytes) {
+            wireMetrics.recordInboundWireBytes(bytes);
+        }
+
+        @Override
+        public void inboundUncompressedSize(long bytes) {
+            wireMetrics.recordInboundUncompressedBytes(bytes);
+        }
+
+        @Override
+        public void inboundMessage(int seqNo) {
+            if (seqNo == 0) {
+                timeline.record(CallTimeline.Event.FIRST_BYTE);
+                trace.recordResponse(attempt);
+            }
+        }
+
+        @Override
+        public void streamClosed(Status status) {
+            timeline.record(CallTimeline.Event.CLOSED);
+            trace.recordClose(attempt, status.getCode() == Status.Code.CANCELLED);
+        }
+    }
+}
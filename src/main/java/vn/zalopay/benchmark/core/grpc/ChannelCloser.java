@@ -0,0 +1,148 @@
+package vn.zalopay.benchmark.core.grpc;
+
+import com.google.common.annotations.VisibleForTesting;
+import io.grpc.ManagedChannel;
+import org.apache.jmeter.util.JMeterUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import vn.zalopay.benchmark.core.jfr.ChannelShutdownEvent;
+import vn.zalopay.benchmark.core.jfr.JfrEvents;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Closes channels off the sampler threads, so a thread finishing does not wait for its streams to end.
+ *
+ * <p>A closed channel is shut down gracefully at once. One background thread watches the closing channels
+ * and calls {@code shutdownNow()} on those still open when the timeout passed, set with the JMeter property
+ * {@value #TIMEOUT_PROPERTY} in milliseconds. {@link #awaitClosed()} waits for all of them at once, e.g. when
+ * the test ends, and reports the channels which did not close gracefully.
+ */
+public class ChannelCloser {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ChannelCloser.class);
+    public static final String TIMEOUT_PROPERTY = "grpc.channelShutdown.timeout";
+    public static final long DEFAULT_TIMEOUT_MS = 5000;
+    private static final long POLL_INTERVAL_MS = 20;
+    // How long a channel may take to terminate after shutdownNow(), before it is reported as still open
+    private static final long FORCED_TIMEOUT_MS = 1000;
+    private static final ChannelCloser INSTANCE = new ChannelCloser();
+
+    private final List<Closing> closing = new ArrayList<>();
+    private final List<String> forced = new ArrayList<>();
+    private ScheduledExecutorService watcher;
+    private boolean watching;
+
+    public static ChannelCloser getInstance() {
+        return INSTANCE;
+    }
+
+    @VisibleForTesting
+    ChannelCloser() {
+    }
+
+    /**
+     * Shuts the channel down gracefully and returns at once; it is forced closed when the timeout passes.
+     */
+    public void close(ManagedChannel channel, String endpoint) {
+        close(channel, endpoint, JMeterUtils.getPropDefault(TIMEOUT_PROPERTY, DEFAULT_TIMEOUT_MS));
+    }
+
+    @VisibleForTesting
+    synchronized void close(ManagedChannel channel, String endpoint, long timeoutMs) {
+        Closing channelClosing = new Closing(channel, endpoint, System.nanoTime()
+                + TimeUnit.MILLISECONDS.toNanos(timeoutMs));
+        channel.shutdown();
+        closing.add(channelClosing);
+        if (!watching) {
+            watching = true;
+            getWatcher().schedule(this::watch, POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Waits until every channel closed so far terminated, or could not be forced closed in time, and returns
+     * the endpoints of the channels which were forced closed or are still open. Those are logged as well.
+     */
+    public List<String> awaitClosed() throws InterruptedException {
+        List<String> unclean;
+        synchronized (this) {
+            while (!closing.isEmpty()) {
+                wait(POLL_INTERVAL_MS);
+            }
+            unclean = new ArrayList<>(forced);
+            forced.clear();
+        }
+        if (!unclean.isEmpty()) {
+            LOGGER.warn("{} channels did not close within {} ms and were forced closed: {}", unclean.size(),
+                    JMeterUtils.getPropDefault(TIMEOUT_PROPERTY, DEFAULT_TIMEOUT_MS), unclean);
+        }
+        return unclean;
+    }
+
+    private synchronized void watch() {
+        long now = System.nanoTime();
+        for (Iterator<Closing> iterator = closing.iterator(); iterator.hasNext(); ) {
+            Closing channelClosing = iterator.next();
+            if (channelClosing.channel.isTerminated()) {
+                channelClosing.terminated(true);
+                iterator.remove();
+            } else if (now - channelClosing.deadlineNanos >= 0) {
+                if (!channelClosing.forced) {
+                    channelClosing.forced = true;
+                    channelClosing.deadlineNanos = now + TimeUnit.MILLISECONDS.toNanos(FORCED_TIMEOUT_MS);
+                    forced.add(channelClosing.endpoint);
+                    channelClosing.channel.shutdownNow();
+                } else {
+                    LOGGER.warn("Channel to {} is still open after shutdownNow()", channelClosing.endpoint);
+                    channelClosing.terminated(false);
+                    iterator.remove();
+                }
+            }
+        }
+        if (closing.isEmpty()) {
+            watching = false;
+            notifyAll();
+        } else {
+            watcher.schedule(this::watch, POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // Never shut down, the thread is a daemon and the scheduler idles while no channel is closing
+    private ScheduledExecutorService getWatcher() {
+        if (watcher == null) {
+            watcher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "grpc-channel-closer");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return watcher;
+    }
+
+    private static class Closing {
+        private final ManagedChannel channel;
+        private final String endpoint;
+        private final ChannelShutdownEvent event = JfrEvents.beginChannelShutdown();
+        private long deadlineNanos;
+        private boolean forced;
+
+        private Closing(ManagedChannel channel, String endpoint, long deadlineNanos) {
+            this.channel = channel;
+            this.endpoint = endpoint;
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        private void terminated(boolean terminated) {
+            if (event != null) {
+                event.endpoint = endpoint;
+                event.terminated = terminated;
+                event.commit();
+            }
+        }
+    }
+}
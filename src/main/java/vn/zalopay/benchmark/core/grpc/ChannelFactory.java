@@ -1,6 +1,9 @@
 package vn.zalopay.benchmark.core.grpc;
 
+import com.google.common.base.Strings;
 import com.google.common.net.HostAndPort;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
 import io.grpc.*;
 import io.grpc.netty.GrpcSslContexts;
 import io.grpc.netty.NegotiationType;
@@ -9,9 +12,13 @@ import io.netty.handler.ssl.ApplicationProtocolConfig;
 import io.netty.handler.ssl.ApplicationProtocolNames;
 import io.netty.handler.ssl.SslContext;
 import io.netty.handler.ssl.util.InsecureTrustManagerFactory;
+import vn.zalopay.benchmark.core.jfr.ChannelCreateEvent;
+import vn.zalopay.benchmark.core.jfr.JfrEvents;
+import vn.zalopay.benchmark.core.metrics.GrpcMetrics;
 
 import javax.net.ssl.SSLException;
 import java.util.Map;
+import java.util.concurrent.Executor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -20,19 +27,93 @@ import org.slf4j.LoggerFactory;
  */
 public class ChannelFactory {
     private static final Logger LOGGER = LoggerFactory.getLogger(ChannelFactory.class);
+    private static Executor virtualThreadExecutor;
 
+    private final Executor executor;
+
+    /**
+     * Creates a factory whose channels run their callbacks on virtual threads when
+     * {@link VirtualThreads#isEnabled()}, or on gRPC's default executor otherwise. Calls made on the calling
+     * thread replace the channel's executor with their own, so this only affects asynchronous, client-streaming
+     * and bidi-streaming calls.
+     */
     public static ChannelFactory create() {
-        return new ChannelFactory();
+        return new ChannelFactory(VirtualThreads.isEnabled() ? getVirtualThreadExecutor() : null);
     }
 
-    private ChannelFactory() {
+    private ChannelFactory(Executor executor) {
+        this.executor = executor;
     }
 
     public ManagedChannel createChannel(HostAndPort endpoint, boolean tls, boolean disableTtlVerification,
             Map<String, String> metadataHash) {
+        return createChannel(endpoint, tls, disableTtlVerification, metadataHash, null);
+    }
+
+    /**
+     * @param serviceConfig a default service config, as returned by {@link #parseServiceConfig}, which also
+     *                      enables its retry and hedging policies; {@code null} for none
+     */
+    public ManagedChannel createChannel(HostAndPort endpoint, boolean tls, boolean disableTtlVerification,
+            Map<String, String> metadataHash, Map<String, ?> serviceConfig) {
+        ChannelCreateEvent event = JfrEvents.beginChannelCreate();
         ManagedChannelBuilder managedChannelBuilder = createChannelBuilder(endpoint, tls, disableTtlVerification,
                 metadataHash);
-        return managedChannelBuilder.build();
+        managedChannelBuilder.intercept(CallTimelineInterceptor.getInstance(), MetricsInterceptor.getInstance());
+        if (executor != null) {
+            managedChannelBuilder.executor(executor);
+        }
+        if (serviceConfig != null) {
+            managedChannelBuilder.defaultServiceConfig(serviceConfig).enableRetry();
+        }
+        ManagedChannel channel = managedChannelBuilder.build();
+        GrpcMetrics metrics = GrpcMetrics.getActive();
+        if (metrics != null) {
+            metrics.watchChannel(endpoint.toString(), channel);
+        }
+        if (event != null) {
+            event.endpoint = endpoint.toString();
+            event.tls = tls;
+            event.commit();
+        }
+        return channel;
+    }
+
+    /**
+     * Parses a service config in its JSON form, e.g. with per-method {@code retryPolicy} or
+     * {@code hedgingPolicy} and {@code retryThrottling}. Returns {@code null} for an empty config.
+     */
+    public static Map<String, ?> parseServiceConfig(String serviceConfigJson) {
+        if (Strings.isNullOrEmpty(serviceConfigJson) || serviceConfigJson.trim().isEmpty()) {
+            return null;
+        }
+        try {
+            // Gson reads objects as maps, arrays as lists and numbers as doubles, the types gRPC expects.
+            Map<String, ?> serviceConfig = new Gson().fromJson(serviceConfigJson, Map.class);
+            if (serviceConfig == null) {
+                throw new IllegalArgumentException("Service config must be a JSON object but found: "
+                        + serviceConfigJson);
+            }
+            return serviceConfig;
+        } catch (JsonParseException e) {
+            throw new IllegalArgumentException("Service config must be a JSON object but found: "
+                    + serviceConfigJson, e);
+        }
+    }
+
+    /**
+     * Returns whether the channels of this factory run their callbacks on virtual threads.
+     */
+    public boolean usesVirtualThreads() {
+        return executor != null;
+    }
+
+    // Shared by all channels and never shut down, virtual threads cost nothing while idle.
+    private static synchronized Executor getVirtualThreadExecutor() {
+        if (virtualThreadExecutor == null) {
+            virtualThreadExecutor = VirtualThreads.newThreadPerTaskExecutor("grpc-virtual-");
+        }
+        return virtualThreadExecutor;
     }
 
     private ManagedChannelBuilder createChannelBuilder(HostAndPort endpoint, boolean tls,
@@ -89,7 +170,12 @@ public class ChannelFactory {
         }
     }
 
-    private ClientInterceptor metadataInterceptor(Map<String, String> metadataHash) {
+    /**
+     * Returns an interceptor which adds the current entries of {@code metadataHash} to the headers of every
+     * call, so a caller can change its metadata between calls, or share a channel with callers sending
+     * other metadata.
+     */
+    public static ClientInterceptor metadataInterceptor(Map<String, String> metadataHash) {
         return new ClientInterceptor() {
             @Override
             public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(
@@ -0,0 +1,112 @@
+package vn.zalopay.benchmark.core.grpc;
+
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.DynamicMessage;
+import io.grpc.Drainable;
+import io.grpc.KnownLength;
+import vn.zalopay.benchmark.core.jfr.JfrEvents;
+import vn.zalopay.benchmark.core.jfr.MarshalEvent;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+
+/**
+ * A response {@link io.grpc.MethodDescriptor.Marshaller} which never parses the payload. It only counts
+ * the messages and bytes it sees (and optionally a CRC32 checksum over them) and hands an empty message
+ * to the observers, so the call status is still reported as usual.
+ *
+ * <p>Instances keep per-call state and must not be shared between calls. The counters are written on
+ * the call executor and are safe to read once the call future has completed.
+ */
+public class DiscardMessageMarshaller extends DynamicMessageMarshaller {
+    private static final int SCRATCH_BUFFER_SIZE = 8192;
+
+    private final DynamicMessage emptyMessage;
+    private final CRC32 checksum;
+    private byte[] scratch;
+    private int messageCount;
+    private long byteCount;
+
+    public DiscardMessageMarshaller(Descriptor messageDescriptor, boolean computeChecksum) {
+        super(messageDescriptor);
+        this.emptyMessage = DynamicMessage.getDefaultInstance(messageDescriptor);
+        this.checksum = computeChecksum ? new CRC32() : null;
+    }
+
+    @Override
+    public DynamicMessage parse(InputStream inputStream) {
+        MarshalEvent event = JfrEvents.beginMarshal();
+        try {
+            long drained = drain(inputStream);
+            byteCount += drained;
+            messageCount++;
+            if (event != null) {
+                commit(event, false, drained);
+            }
+            return emptyMessage;
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to drain the supplied input stream", e);
+        }
+    }
+
+    private long drain(InputStream inputStream) throws IOException {
+        // gRPC closes the stream after parsing, so a known length is all we need when nothing reads the bytes.
+        if (checksum == null && inputStream instanceof KnownLength) {
+            return inputStream.available();
+        }
+        if (inputStream instanceof Drainable) {
+            ChecksumSink sink = new ChecksumSink();
+            ((Drainable) inputStream).drainTo(sink);
+            return sink.count;
+        }
+        if (scratch == null) {
+            scratch = new byte[SCRATCH_BUFFER_SIZE];
+        }
+        long total = 0;
+        int read;
+        while ((read = inputStream.read(scratch, 0, scratch.length)) != -1) {
+            if (checksum != null) {
+                checksum.update(scratch, 0, read);
+            }
+            total += read;
+        }
+        return total;
+    }
+
+    public int getMessageCount() {
+        return messageCount;
+    }
+
+    public long getByteCount() {
+        return byteCount;
+    }
+
+    /**
+     * Returns the CRC32 over every byte drained so far, or {@code null} when checksums are disabled.
+     */
+    public Long getChecksum() {
+        return checksum == null ? null : checksum.getValue();
+    }
+
+    private class ChecksumSink extends OutputStream {
+        private long count;
+
+        @Override
+        public void write(int b) {
+            if (checksum != null) {
+                checksum.update(b);
+            }
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            if (checksum != null) {
+                checksum.update(b, off, len);
+            }
+            count += len;
+        }
+    }
+}
@@ -1,28 +1,33 @@
 package vn.zalopay.benchmark.core.grpc;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.protobuf.Descriptors.MethodDescriptor;
 import com.google.protobuf.DynamicMessage;
 import io.grpc.CallOptions;
-import io.grpc.ManagedChannel;
+import io.grpc.Channel;
+import io.grpc.MethodDescriptor.Marshaller;
 import io.grpc.MethodDescriptor.MethodType;
 import io.grpc.stub.ClientCalls;
 import io.grpc.stub.StreamObserver;
 import vn.zalopay.benchmark.core.channel.ComponentObserver;
 import vn.zalopay.benchmark.core.channel.DoneObserver;
+import vn.zalopay.benchmark.core.channel.FlowControlObserver;
+
+import java.util.concurrent.ExecutionException;
 
 public class DynamicGrpcClient {
     private final MethodDescriptor protoMethodDescriptor;
-    private final ManagedChannel channel;
+    private final Channel channel;
 
-    public static DynamicGrpcClient create(MethodDescriptor protoMethod, ManagedChannel channel) {
+    public static DynamicGrpcClient create(MethodDescriptor protoMethod, Channel channel) {
         return new DynamicGrpcClient(protoMethod, channel);
     }
 
     @VisibleForTesting
-    DynamicGrpcClient(MethodDescriptor protoMethodDescriptor, ManagedChannel channel) {
+    DynamicGrpcClient(MethodDescriptor protoMethodDescriptor, Channel channel) {
         this.protoMethodDescriptor = protoMethodDescriptor;
         this.channel = channel;
     }
@@ -31,44 +36,112 @@ public class DynamicGrpcClient {
             ImmutableList<DynamicMessage> requests,
             StreamObserver<DynamicMessage> responseObserver,
             CallOptions callOptions) {
+        return blockingUnaryCall(requests, responseObserver, callOptions, createResponseMarshaller());
+    }
+
+    public ListenableFuture<Void> blockingUnaryCall(
+            ImmutableList<DynamicMessage> requests,
+            StreamObserver<DynamicMessage> responseObserver,
+            CallOptions callOptions,
+            Marshaller<DynamicMessage> responseMarshaller) {
         DoneObserver<DynamicMessage> doneObserver = new DoneObserver<>();
-        ClientCalls.asyncUnaryCall(this.channel.newCall(createGrpcMethodDescriptor(), callOptions), requests.get(0), ComponentObserver.of(responseObserver, doneObserver));
+        ClientCalls.asyncUnaryCall(this.channel.newCall(createGrpcMethodDescriptor(responseMarshaller), callOptions), requests.get(0), ComponentObserver.of(responseObserver, doneObserver));
         return doneObserver.getCompletionFuture();
     }
 
+    /**
+     * Makes a unary or server-streaming call and waits for it, running its callbacks on the calling thread.
+     *
+     * @throws ExecutionException wrapping the {@code StatusRuntimeException} of a failed call
+     */
+    public void callOnCallingThread(ImmutableList<DynamicMessage> requests,
+                                    StreamObserver<DynamicMessage> responseObserver, CallOptions callOptions,
+                                    Marshaller<DynamicMessage> responseMarshaller) throws ExecutionException {
+        MethodType methodType = getMethodType();
+        Preconditions.checkArgument(methodType == MethodType.UNARY || methodType == MethodType.SERVER_STREAMING,
+                "Calls on the calling thread support unary and server-streaming methods only but found: " + methodType);
+        BlockingCall.call(this.channel, createGrpcMethodDescriptor(responseMarshaller), callOptions, requests.get(0),
+                responseObserver);
+    }
+
     public ListenableFuture<Void> callServerStreaming(ImmutableList<DynamicMessage> requests,
                                                       StreamObserver<DynamicMessage> responseObserver, CallOptions callOptions) {
+        return callServerStreaming(requests, responseObserver, callOptions, createResponseMarshaller());
+    }
+
+    public ListenableFuture<Void> callServerStreaming(ImmutableList<DynamicMessage> requests,
+                                                      StreamObserver<DynamicMessage> responseObserver, CallOptions callOptions,
+                                                      Marshaller<DynamicMessage> responseMarshaller) {
         DoneObserver<DynamicMessage> doneObserver = new DoneObserver<>();
-        ClientCalls.asyncServerStreamingCall(this.channel.newCall(createGrpcMethodDescriptor(), callOptions), requests.get(0),
+        ClientCalls.asyncServerStreamingCall(this.channel.newCall(createGrpcMethodDescriptor(responseMarshaller), callOptions), requests.get(0),
                 ComponentObserver.of(responseObserver, doneObserver));
         return doneObserver.getCompletionFuture();
     }
 
     public ListenableFuture<Void> callClientStreaming(ImmutableList<DynamicMessage> requests,
                                                       StreamObserver<DynamicMessage> responseObserver, CallOptions callOptions) {
+        return callClientStreaming(requests, responseObserver, callOptions, createResponseMarshaller());
+    }
+
+    public ListenableFuture<Void> callClientStreaming(ImmutableList<DynamicMessage> requests,
+                                                      StreamObserver<DynamicMessage> responseObserver, CallOptions callOptions,
+                                                      Marshaller<DynamicMessage> responseMarshaller) {
+        return callClientStreaming(requests, responseObserver, callOptions, responseMarshaller, RequestStreamer.sendOnce());
+    }
+
+    /**
+     * Starts the call and sends the request stream on the calling thread, returning once the last message
+     * has been written or the call has finished.
+     */
+    public ListenableFuture<Void> callClientStreaming(ImmutableList<DynamicMessage> requests,
+                                                      StreamObserver<DynamicMessage> responseObserver, CallOptions callOptions,
+                                                      Marshaller<DynamicMessage> responseMarshaller, RequestStreamer requestStreamer) {
         DoneObserver<DynamicMessage> doneObserver = new DoneObserver<>();
-        StreamObserver<DynamicMessage> requestObserver = ClientCalls.asyncClientStreamingCall(
-                this.channel.newCall(createGrpcMethodDescriptor(), callOptions), ComponentObserver.of(responseObserver, doneObserver));
-        requests.forEach(requestObserver::onNext);
-        requestObserver.onCompleted();
+        FlowControlObserver<DynamicMessage, DynamicMessage> flowControlObserver =
+                FlowControlObserver.of(ComponentObserver.of(responseObserver, doneObserver));
+        ClientCalls.asyncClientStreamingCall(
+                this.channel.newCall(createGrpcMethodDescriptor(responseMarshaller), callOptions), flowControlObserver);
+        requestStreamer.stream(requests, flowControlObserver, doneObserver.getCompletionFuture());
         return doneObserver.getCompletionFuture();
     }
 
     public ListenableFuture<Void> callBidiStreaming(ImmutableList<DynamicMessage> requests,
                                                     StreamObserver<DynamicMessage> responseObserver, CallOptions callOptions) {
+        return callBidiStreaming(requests, responseObserver, callOptions, createResponseMarshaller());
+    }
+
+    public ListenableFuture<Void> callBidiStreaming(ImmutableList<DynamicMessage> requests,
+                                                    StreamObserver<DynamicMessage> responseObserver, CallOptions callOptions,
+                                                    Marshaller<DynamicMessage> responseMarshaller) {
+        return callBidiStreaming(requests, responseObserver, callOptions, responseMarshaller, RequestStreamer.sendOnce());
+    }
+
+    /**
+     * Starts the call and sends the request stream on the calling thread, returning once the last message
+     * has been written or the call has finished.
+     */
+    public ListenableFuture<Void> callBidiStreaming(ImmutableList<DynamicMessage> requests,
+                                                    StreamObserver<DynamicMessage> responseObserver, CallOptions callOptions,
+                                                    Marshaller<DynamicMessage> responseMarshaller, RequestStreamer requestStreamer) {
         DoneObserver<DynamicMessage> doneObserver = new DoneObserver<>();
-        StreamObserver<DynamicMessage> requestObserver = ClientCalls.asyncBidiStreamingCall(
-                this.channel.newCall(createGrpcMethodDescriptor(), callOptions), ComponentObserver.of(responseObserver, doneObserver));
-        requests.forEach(requestObserver::onNext);
-        requestObserver.onCompleted();
+        FlowControlObserver<DynamicMessage, DynamicMessage> flowControlObserver =
+                FlowControlObserver.of(ComponentObserver.of(responseObserver, doneObserver));
+        ClientCalls.asyncBidiStreamingCall(
+                this.channel.newCall(createGrpcMethodDescriptor(responseMarshaller), callOptions), flowControlObserver);
+        requestStreamer.stream(requests, flowControlObserver, doneObserver.getCompletionFuture());
         return doneObserver.getCompletionFuture();
     }
 
-    private io.grpc.MethodDescriptor<DynamicMessage, DynamicMessage> createGrpcMethodDescriptor() {
+    private Marshaller<DynamicMessage> createResponseMarshaller() {
+        return new DynamicMessageMarshaller(protoMethodDescriptor.getOutputType());
+    }
+
+    private io.grpc.MethodDescriptor<DynamicMessage, DynamicMessage> createGrpcMethodDescriptor(
+            Marshaller<DynamicMessage> responseMarshaller) {
         return io.grpc.MethodDescriptor.<DynamicMessage, DynamicMessage>newBuilder()
                 .setFullMethodName(getFullMethodName())
                 .setType(getMethodType())
-                .setResponseMarshaller(new DynamicMessageMarshaller(protoMethodDescriptor.getOutputType()))
+                .setResponseMarshaller(responseMarshaller)
                 .setRequestMarshaller(new DynamicMessageMarshaller(protoMethodDescriptor.getInputType())).build();
     }
 
@@ -78,7 +151,7 @@ public class DynamicGrpcClient {
         return io.grpc.MethodDescriptor.generateFullMethodName(serviceName, methodName);
     }
 
-    private MethodType getMethodType() {
+    public MethodType getMethodType() {
         boolean clientStreaming = protoMethodDescriptor.toProto().getClientStreaming();
         boolean serverStreaming = protoMethodDescriptor.toProto().getServerStreaming();
 
@@ -4,6 +4,8 @@ import com.google.protobuf.Descriptors.Descriptor;
 import com.google.protobuf.DynamicMessage;
 import com.google.protobuf.ExtensionRegistryLite;
 import io.grpc.MethodDescriptor.Marshaller;
+import vn.zalopay.benchmark.core.jfr.JfrEvents;
+import vn.zalopay.benchmark.core.jfr.MarshalEvent;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -20,17 +22,33 @@ public class DynamicMessageMarshaller implements Marshaller<DynamicMessage> {
 
     @Override
     public DynamicMessage parse(InputStream inputStream) {
+        MarshalEvent event = JfrEvents.beginMarshal();
         try {
-            return DynamicMessage.newBuilder(messageDescriptor)
+            DynamicMessage message = DynamicMessage.newBuilder(messageDescriptor)
                     .mergeFrom(inputStream, ExtensionRegistryLite.getEmptyRegistry())
                     .build();
+            if (event != null) {
+                commit(event, false, message.getSerializedSize());
+            }
+            return message;
         } catch (IOException e) {
             throw new RuntimeException("Unable to merge from the supplied input stream", e);
         }
     }
 
+    /**
+     * Returns a stream which serializes the message when gRPC drains it into its frame. The marshal event is
+     * committed then.
+     */
     @Override
     public InputStream stream(DynamicMessage abstractMessage) {
-        return abstractMessage.toByteString().newInput();
+        return new MessageInputStream(abstractMessage, this);
+    }
+
+    void commit(MarshalEvent event, boolean serialize, long bytes) {
+        event.messageType = messageDescriptor.getFullName();
+        event.serialize = serialize;
+        event.bytes = bytes;
+        event.commit();
     }
 }
\ No newline at end of file
@@ -0,0 +1,104 @@
+package vn.zalopay.benchmark.core.grpc;
+
+import com.google.protobuf.Message;
+import io.grpc.Drainable;
+import io.grpc.KnownLength;
+import vn.zalopay.benchmark.core.jfr.JfrEvents;
+import vn.zalopay.benchmark.core.jfr.MarshalEvent;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.function.LongConsumer;
+
+/**
+ * A serialized message which gRPC drains straight into its frame buffers, without first serializing the
+ * message into an array of its own. Large {@code bytes} fields, e.g. mapped files, pass in chunks through
+ * the {@code CodedOutputStream} buffer of {@link Message#writeTo} on their way into the frame, but are never
+ * held in one array of the whole message.
+ *
+ * <p>Reading the stream instead serializes the message on the first read. Either way, the serialization is
+ * what the marshal event and the serialize time of the call measure, not the creation of the stream.
+ */
+class MessageInputStream extends InputStream implements Drainable, KnownLength {
+    private final DynamicMessageMarshaller marshaller;
+    private Message message;
+    private ByteArrayInputStream serialized;
+    private LongConsumer serializeNanos;
+
+    MessageInputStream(Message message, DynamicMessageMarshaller marshaller) {
+        this.message = message;
+        this.marshaller = marshaller;
+    }
+
+    /**
+     * Reports how long serializing the message takes, once it is drained or read.
+     */
+    void timeSerialization(LongConsumer serializeNanos) {
+        this.serializeNanos = serializeNanos;
+    }
+
+    @Override
+    public int drainTo(OutputStream target) throws IOException {
+        if (message != null) {
+            long startNanos = System.nanoTime();
+            MarshalEvent event = JfrEvents.beginMarshal();
+            int size = message.getSerializedSize();
+            message.writeTo(target);
+            message = null;
+            serialized(startNanos, event, size);
+            return size;
+        }
+        if (serialized != null) {
+            int size = serialized.available();
+            byte[] remaining = new byte[size];
+            serialized.read(remaining, 0, size);
+            target.write(remaining);
+            serialized = null;
+            return size;
+        }
+        return 0;
+    }
+
+    @Override
+    public int read() throws IOException {
+        InputStream stream = serialized();
+        return stream == null ? -1 : stream.read();
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        InputStream stream = serialized();
+        return stream == null ? -1 : stream.read(buffer, offset, length);
+    }
+
+    @Override
+    public int available() {
+        if (message != null) {
+            return message.getSerializedSize();
+        }
+        return serialized == null ? 0 : serialized.available();
+    }
+
+    private InputStream serialized() {
+        if (message != null) {
+            long startNanos = System.nanoTime();
+            MarshalEvent event = JfrEvents.beginMarshal();
+            byte[] bytes = message.toByteArray();
+            serialized = new ByteArrayInputStream(bytes);
+            message = null;
+            serialized(startNanos, event, bytes.length);
+        }
+        return serialized;
+    }
+
+    private void serialized(long startNanos, MarshalEvent event, int size) {
+        if (event != null) {
+            marshaller.commit(event, true, size);
+        }
+        if (serializeNanos != null) {
+            serializeNanos.accept(System.nanoTime() - startNanos);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package vn.zalopay.benchmark.core.grpc;
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ForwardingClientCall;
+import io.grpc.ForwardingClientCallListener;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import vn.zalopay.benchmark.core.metrics.GrpcMetrics;
+
+/**
+ * Counts every call of the channel into the active {@link GrpcMetrics}: in flight from start to close,
+ * then by its real status code and latency. Calls pass through untouched while metrics are not exported.
+ */
+public final class MetricsInterceptor implements ClientInterceptor {
+    private static final MetricsInterceptor INSTANCE = new MetricsInterceptor();
+
+    public static MetricsInterceptor getInstance() {
+        return INSTANCE;
+    }
+
+    private MetricsInterceptor() {
+    }
+
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(MethodDescriptor<ReqT, RespT> method,
+            CallOptions callOptions, Channel next) {
+        GrpcMetrics metrics = GrpcMetrics.getActive();
+        if (metrics == null) {
+            return next.newCall(method, callOptions);
+        }
+        GrpcMetrics.MethodMetrics methodMetrics = metrics.method(method.getFullMethodName());
+        return new ForwardingClientCall.SimpleForwardingClientCall<ReqT, RespT>(next.newCall(method, callOptions)) {
+            @Override
+            public void start(Listener<RespT> responseListener, Metadata headers) {
+                long startNanos = System.nanoTime();
+                methodMetrics.callStarted();
+                super.start(new ForwardingClientCallListener.SimpleForwardingClientCallListener<RespT>(
+                        responseListener) {
+                    @Override
+                    public void onClose(Status status, Metadata trailers) {
+                        methodMetrics.callClosed(status.getCode(), System.nanoTime() - startNanos);
+                        super.onClose(status, trailers);
+                    }
+                }, headers);
+            }
+        };
+    }
+}
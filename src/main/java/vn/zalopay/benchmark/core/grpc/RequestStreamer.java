@@ -0,0 +1,75 @@
+package vn.zalopay.benchmark.core.grpc;
+
+import com.google.common.collect.ImmutableList;
+import com.google.protobuf.DynamicMessage;
+import io.grpc.stub.ClientCallStreamObserver;
+import vn.zalopay.benchmark.core.channel.FlowControlObserver;
+import vn.zalopay.benchmark.core.specification.SendMetrics;
+
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Sends the request messages of a client or bidi stream on the calling thread. Messages are only written
+ * while the call is ready, optionally paced to a fixed messages/sec, and the send side is recorded into a
+ * {@link SendMetrics}.
+ */
+public final class RequestStreamer {
+    private final int messageCount;
+    private final double messagesPerSecond;
+    private final SendMetrics sendMetrics;
+
+    /**
+     * @param messageCount      how many messages to send, cycling through the requests; 0 sends each request once
+     * @param messagesPerSecond target send rate; 0 sends as fast as flow control allows
+     */
+    public static RequestStreamer create(int messageCount, double messagesPerSecond, SendMetrics sendMetrics) {
+        return new RequestStreamer(messageCount, messagesPerSecond, sendMetrics);
+    }
+
+    public static RequestStreamer sendOnce() {
+        return new RequestStreamer(0, 0, new SendMetrics());
+    }
+
+    private RequestStreamer(int messageCount, double messagesPerSecond, SendMetrics sendMetrics) {
+        this.messageCount = messageCount;
+        this.messagesPerSecond = messagesPerSecond;
+        this.sendMetrics = sendMetrics;
+    }
+
+    public SendMetrics getSendMetrics() {
+        return sendMetrics;
+    }
+
+    void stream(ImmutableList<DynamicMessage> requests, FlowControlObserver<DynamicMessage, DynamicMessage> observer,
+                Future<?> done) {
+        ClientCallStreamObserver<DynamicMessage> requestStream = observer.getRequestStream();
+        int total = messageCount > 0 ? messageCount : requests.size();
+        long intervalNanos = messagesPerSecond > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / messagesPerSecond) : 0;
+        long startNanos = System.nanoTime();
+        for (int i = 0; i < total; i++) {
+            if (intervalNanos > 0) {
+                long sleepNanos = startNanos + i * intervalNanos - System.nanoTime();
+                if (sleepNanos > 0) {
+                    LockSupport.parkNanos(sleepNanos);
+                }
+            }
+            long waitStartNanos = System.nanoTime();
+            // The first message is always written: calls whose method sends a single message only flush
+            // their headers with it, so they cannot report ready before.
+            boolean ready = i == 0 ? !done.isDone() : observer.awaitReady(done);
+            long nowNanos = System.nanoTime();
+            sendMetrics.recordReadyWait(nowNanos - waitStartNanos);
+            if (!ready) {
+                return;
+            }
+            DynamicMessage request = requests.get(i % requests.size());
+            requestStream.onNext(request);
+            sendMetrics.recordMessage(nowNanos, request.getSerializedSize());
+        }
+        if (!done.isDone()) {
+            requestStream.onCompleted();
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package vn.zalopay.benchmark.core.grpc;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * An executor without threads of its own: tasks are queued until the thread which created it drains them.
+ * Used as the call executor of a blocking call, the call's callbacks run on the waiting thread instead of
+ * hopping over from a gRPC executor thread.
+ */
+final class ThreadlessExecutor implements Executor {
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final Thread waiter = Thread.currentThread();
+
+    /**
+     * Parks until at least one task is queued, then runs every queued task on the calling thread.
+     */
+    void waitAndDrain() throws InterruptedException {
+        Runnable task = tasks.poll();
+        while (task == null) {
+            LockSupport.park(this);
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            task = tasks.poll();
+        }
+        do {
+            task.run();
+        } while ((task = tasks.poll()) != null);
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        tasks.add(task);
+        LockSupport.unpark(waiter);
+    }
+}
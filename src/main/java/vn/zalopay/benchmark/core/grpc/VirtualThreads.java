@@ -0,0 +1,93 @@
+package vn.zalopay.benchmark.core.grpc;
+
+import org.apache.jmeter.util.JMeterUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Creates virtual threads on JDK 21 and later. The plugin is built for Java 8, so the JDK API is looked up
+ * reflectively and everything here reports virtual threads as unavailable on older runtimes.
+ *
+ * <p>Virtual threads run the callbacks of channels when the JMeter property {@value #ENABLED_PROPERTY} is set,
+ * see {@link ChannelFactory#create()}.
+ */
+public final class VirtualThreads {
+    public static final String ENABLED_PROPERTY = "grpc.virtualThreads.enabled";
+
+    private static final Logger log = LoggerFactory.getLogger(VirtualThreads.class);
+    private static final Method OF_VIRTUAL = findOfVirtual();
+    private static volatile boolean unavailableLogged;
+
+    private VirtualThreads() {
+    }
+
+    public static boolean isAvailable() {
+        return OF_VIRTUAL != null;
+    }
+
+    /**
+     * Returns whether virtual threads are requested and available. A request on a runtime without virtual
+     * threads is logged once and falls back to platform threads.
+     */
+    public static boolean isEnabled() {
+        if (!JMeterUtils.getPropDefault(ENABLED_PROPERTY, false)) {
+            return false;
+        }
+        if (!isAvailable() && !unavailableLogged) {
+            unavailableLogged = true;
+            log.warn("{} is set but virtual threads need JDK 21 or later, running on {}; using platform threads",
+                    ENABLED_PROPERTY, System.getProperty("java.version"));
+        }
+        return isAvailable();
+    }
+
+    /**
+     * Returns a factory of virtual threads named {@code namePrefix} followed by a counter.
+     *
+     * @throws UnsupportedOperationException when the runtime has no virtual threads
+     */
+    public static ThreadFactory factory(String namePrefix) {
+        if (!isAvailable()) {
+            throw new UnsupportedOperationException("Virtual threads need JDK 21 or later");
+        }
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = OF_VIRTUAL.invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, namePrefix, 0L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Unable to create virtual thread factory", e);
+        }
+    }
+
+    /**
+     * Returns an executor which starts a new virtual thread for every task.
+     *
+     * @throws UnsupportedOperationException when the runtime has no virtual threads
+     */
+    public static ExecutorService newThreadPerTaskExecutor(String namePrefix) {
+        ThreadFactory threadFactory = factory(namePrefix);
+        try {
+            return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+                    .invoke(null, threadFactory);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Unable to create virtual thread executor", e);
+        }
+    }
+
+    private static Method findOfVirtual() {
+        try {
+            Method ofVirtual = Thread.class.getMethod("ofVirtual");
+            // JDK 19 and 20 only have virtual threads as a preview feature, which fails here unless enabled.
+            ofVirtual.invoke(null);
+            return ofVirtual;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+}
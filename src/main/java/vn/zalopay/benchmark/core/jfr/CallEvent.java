@@ -0,0 +1,23 @@
+package vn.zalopay.benchmark.core.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("vn.zalopay.benchmark.Call")
+@Label("Call")
+@Description("One call, from its start to its completion")
+@Category({"JMeter", JfrEvents.CATEGORY})
+@Enabled(false)
+@StackTrace(false)
+public class CallEvent extends Event {
+    @Label("Method")
+    public String method;
+
+    @Label("Status Code")
+    public String statusCode;
+}
@@ -0,0 +1,23 @@
+package vn.zalopay.benchmark.core.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("vn.zalopay.benchmark.ChannelCreate")
+@Label("Channel Create")
+@Description("Builds the channel of a sampler")
+@Category({"JMeter", JfrEvents.CATEGORY})
+@Enabled(false)
+@StackTrace(false)
+public class ChannelCreateEvent extends Event {
+    @Label("Endpoint")
+    public String endpoint;
+
+    @Label("TLS")
+    public boolean tls;
+}
@@ -0,0 +1,23 @@
+package vn.zalopay.benchmark.core.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("vn.zalopay.benchmark.ChannelShutdown")
+@Label("Channel Shutdown")
+@Description("Shuts the channel of a sampler down and waits for it to terminate")
+@Category({"JMeter", JfrEvents.CATEGORY})
+@Enabled(false)
+@StackTrace(false)
+public class ChannelShutdownEvent extends Event {
+    @Label("Endpoint")
+    public String endpoint;
+
+    @Label("Terminated")
+    public boolean terminated;
+}
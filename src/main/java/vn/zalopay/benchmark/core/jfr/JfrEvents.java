@@ -0,0 +1,118 @@
+package vn.zalopay.benchmark.core.jfr;
+
+/**
+ * Begins the plugin's Flight Recorder events. The plugin is built for Java 8, where JFR may be missing, so
+ * the event classes are only ever touched through this class: every {@code begin} method returns
+ * {@code null} on a runtime without JFR or while no recording enables the event. Callers only fill in and
+ * commit events which are not {@code null}, so the work of measuring an event, such as computing a message
+ * size, is skipped along with it.
+ *
+ * <p>The events are disabled unless a recording enables them, e.g. with the bundled
+ * {@code dist/jfr/grpc-sampler.jfc} profile. While they are disabled, beginning one costs an
+ * {@code isEnabled()} check on an event object which the JIT usually removes.
+ */
+public final class JfrEvents {
+    public static final String CATEGORY = "gRPC Sampler";
+
+    private static final boolean AVAILABLE = isJfrPresent();
+
+    private JfrEvents() {
+    }
+
+    public static boolean isAvailable() {
+        return AVAILABLE;
+    }
+
+    public static ProtocEvent beginProtoc() {
+        if (!AVAILABLE) {
+            return null;
+        }
+        ProtocEvent event = new ProtocEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    public static ReadRequestEvent beginReadRequest() {
+        if (!AVAILABLE) {
+            return null;
+        }
+        ReadRequestEvent event = new ReadRequestEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    public static RenderResponseEvent beginRenderResponse() {
+        if (!AVAILABLE) {
+            return null;
+        }
+        RenderResponseEvent event = new RenderResponseEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    public static MarshalEvent beginMarshal() {
+        if (!AVAILABLE) {
+            return null;
+        }
+        MarshalEvent event = new MarshalEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    public static ChannelCreateEvent beginChannelCreate() {
+        if (!AVAILABLE) {
+            return null;
+        }
+        ChannelCreateEvent event = new ChannelCreateEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    public static ChannelShutdownEvent beginChannelShutdown() {
+        if (!AVAILABLE) {
+            return null;
+        }
+        ChannelShutdownEvent event = new ChannelShutdownEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    public static CallEvent beginCall() {
+        if (!AVAILABLE) {
+            return null;
+        }
+        CallEvent event = new CallEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    private static boolean isJfrPresent() {
+        try {
+            Class.forName("jdk.jfr.Event", false, JfrEvents.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+}
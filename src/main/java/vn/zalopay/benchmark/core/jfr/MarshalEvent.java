@@ -0,0 +1,29 @@
+package vn.zalopay.benchmark.core.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("vn.zalopay.benchmark.Marshal")
+@Label("Marshal")
+@Description("Serializes a request message or parses a response message")
+@Category({"JMeter", JfrEvents.CATEGORY})
+@Enabled(false)
+@StackTrace(false)
+public class MarshalEvent extends Event {
+    @Label("Message Type")
+    public String messageType;
+
+    @Label("Serialize")
+    @Description("True when serializing a request, false when parsing a response")
+    public boolean serialize;
+
+    @Label("Bytes")
+    @DataAmount
+    public long bytes;
+}
@@ -0,0 +1,23 @@
+package vn.zalopay.benchmark.core.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("vn.zalopay.benchmark.Protoc")
+@Label("Protoc Compilation")
+@Description("Compiles the proto files of a sampler into descriptors")
+@Category({"JMeter", JfrEvents.CATEGORY})
+@Enabled(false)
+@StackTrace(false)
+public class ProtocEvent extends Event {
+    @Label("Proto Root")
+    public String protoRoot;
+
+    @Label("Proto Files")
+    public int protoFiles;
+}
@@ -0,0 +1,23 @@
+package vn.zalopay.benchmark.core.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("vn.zalopay.benchmark.ReadRequest")
+@Label("Read Request")
+@Description("Parses the JSON request of a sampler into protobuf messages")
+@Category({"JMeter", JfrEvents.CATEGORY})
+@Enabled(false)
+@StackTrace(false)
+public class ReadRequestEvent extends Event {
+    @Label("Message Type")
+    public String messageType;
+
+    @Label("Messages")
+    public int messages;
+}
@@ -0,0 +1,23 @@
+package vn.zalopay.benchmark.core.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("vn.zalopay.benchmark.RenderResponse")
+@Label("Render Response")
+@Description("Prints one response message as JSON")
+@Category({"JMeter", JfrEvents.CATEGORY})
+@Enabled(false)
+@StackTrace(false)
+public class RenderResponseEvent extends Event {
+    @Label("Message Type")
+    public String messageType;
+
+    @Label("Characters")
+    public int characters;
+}
@@ -0,0 +1,93 @@
+package vn.zalopay.benchmark.core.load;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The arrival schedule of an open-model load: a target rate which changes over time following a
+ * {@link Profile}, and the spacing of the arrivals around that rate.
+ */
+public class ArrivalSchedule {
+    private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    public enum Profile {
+        /**
+         * The base rate for the whole test.
+         */
+        CONSTANT,
+        /**
+         * The base rate, increased by the profile rate after every period.
+         */
+        STEP,
+        /**
+         * The base rate, jumping to the profile rate for the spike duration at the start of every period
+         * after the first.
+         */
+        SPIKE
+    }
+
+    public enum Arrivals {
+        /**
+         * Evenly spaced arrivals.
+         */
+        FIXED,
+        /**
+         * Exponentially distributed gaps, as independent users would arrive.
+         */
+        POISSON
+    }
+
+    private final Profile profile;
+    private final Arrivals arrivals;
+    private final double rate;
+    private final double profileRate;
+    private final long periodNanos;
+    private final long spikeNanos;
+    private final Random random;
+
+    /**
+     * @param rate        base rate in calls/sec
+     * @param profileRate step increment or spike rate in calls/sec, unused by {@link Profile#CONSTANT}
+     * @param periodMs    step length or spike period
+     * @param spikeMs     spike duration
+     */
+    public ArrivalSchedule(Profile profile, Arrivals arrivals, double rate, double profileRate, long periodMs,
+                           long spikeMs, Random random) {
+        this.profile = profile;
+        this.arrivals = arrivals;
+        this.rate = rate;
+        this.profileRate = profileRate;
+        this.periodNanos = TimeUnit.MILLISECONDS.toNanos(periodMs);
+        this.spikeNanos = TimeUnit.MILLISECONDS.toNanos(spikeMs);
+        this.random = random;
+    }
+
+    /**
+     * Returns the target rate in calls/sec at the given time since the start of the load.
+     */
+    public double rateAt(long elapsedNanos) {
+        if (periodNanos <= 0) {
+            return rate;
+        }
+        switch (profile) {
+            case STEP:
+                return rate + (elapsedNanos / periodNanos) * profileRate;
+            case SPIKE:
+                boolean inSpike = elapsedNanos >= periodNanos && elapsedNanos % periodNanos < spikeNanos;
+                return inSpike ? profileRate : rate;
+            default:
+                return rate;
+        }
+    }
+
+    /**
+     * Returns the gap to the next arrival at the given rate, which must be positive.
+     */
+    public long nextIntervalNanos(double currentRate) {
+        double meanNanos = NANOS_PER_SECOND / currentRate;
+        if (arrivals == Arrivals.POISSON) {
+            return (long) (-Math.log(1 - random.nextDouble()) * meanNanos);
+        }
+        return (long) meanNanos;
+    }
+}
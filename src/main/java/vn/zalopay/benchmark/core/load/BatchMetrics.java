@@ -0,0 +1,108 @@
+package vn.zalopay.benchmark.core.load;
+
+import vn.zalopay.benchmark.core.specification.GrpcResponse;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Aggregated statistics of a batch of calls: call and error counts, the latency distribution and the
+ * response bytes, as received on the wire when the transport counted them.
+ */
+public class BatchMetrics {
+    private final long[] sortedLatencyNanos;
+    private final int errorCount;
+    private final long totalLatencyNanos;
+    private final long byteCount;
+
+    public static BatchMetrics of(List<CallCompletion> completions) {
+        long[] latencies = new long[completions.size()];
+        int errors = 0;
+        long total = 0;
+        long bytes = 0;
+        for (int i = 0; i < latencies.length; i++) {
+            CallCompletion completion = completions.get(i);
+            latencies[i] = completion.getElapsedNanos();
+            total += latencies[i];
+            if (!completion.isSuccessful()) {
+                errors++;
+                continue;
+            }
+            GrpcResponse response = completion.getResponse();
+            if (response.getWireMetrics() != null) {
+                bytes += response.getWireMetrics().getInboundWireBytes();
+                continue;
+            }
+            bytes += response.getResponseBytes() >= 0
+                    ? response.getResponseBytes()
+                    : response.getGrpcMessageBytes().length;
+        }
+        Arrays.sort(latencies);
+        return new BatchMetrics(latencies, errors, total, bytes);
+    }
+
+    private BatchMetrics(long[] sortedLatencyNanos, int errorCount, long totalLatencyNanos, long byteCount) {
+        this.sortedLatencyNanos = sortedLatencyNanos;
+        this.errorCount = errorCount;
+        this.totalLatencyNanos = totalLatencyNanos;
+        this.byteCount = byteCount;
+    }
+
+    public int getCallCount() {
+        return sortedLatencyNanos.length;
+    }
+
+    public int getErrorCount() {
+        return errorCount;
+    }
+
+    public long getByteCount() {
+        return byteCount;
+    }
+
+    /**
+     * Returns the sum of the call latencies, which listeners divide by the call count.
+     */
+    public long getTotalLatencyNanos() {
+        return totalLatencyNanos;
+    }
+
+    public long getMinNanos() {
+        return sortedLatencyNanos.length == 0 ? 0 : sortedLatencyNanos[0];
+    }
+
+    public long getMaxNanos() {
+        return sortedLatencyNanos.length == 0 ? 0 : sortedLatencyNanos[sortedLatencyNanos.length - 1];
+    }
+
+    public long getMeanNanos() {
+        return sortedLatencyNanos.length == 0 ? 0 : totalLatencyNanos / sortedLatencyNanos.length;
+    }
+
+    /**
+     * Returns the nearest-rank percentile of the call latencies.
+     */
+    public long getPercentileNanos(double percentile) {
+        if (sortedLatencyNanos.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(percentile / 100 * sortedLatencyNanos.length);
+        return sortedLatencyNanos[Math.min(Math.max(rank, 1), sortedLatencyNanos.length) - 1];
+    }
+
+    /**
+     * Renders the metrics as "name: value" lines, in the same shape as request headers.
+     */
+    public String toHeaderString() {
+        return "grpc-batch-calls: " + getCallCount() + '\n'
+                + "grpc-batch-errors: " + errorCount + '\n'
+                + "grpc-batch-bytes: " + byteCount + '\n'
+                + "grpc-batch-min-us: " + TimeUnit.NANOSECONDS.toMicros(getMinNanos()) + '\n'
+                + "grpc-batch-mean-us: " + TimeUnit.NANOSECONDS.toMicros(getMeanNanos()) + '\n'
+                + "grpc-batch-p50-us: " + TimeUnit.NANOSECONDS.toMicros(getPercentileNanos(50)) + '\n'
+                + "grpc-batch-p90-us: " + TimeUnit.NANOSECONDS.toMicros(getPercentileNanos(90)) + '\n'
+                + "grpc-batch-p99-us: " + TimeUnit.NANOSECONDS.toMicros(getPercentileNanos(99)) + '\n'
+                + "grpc-batch-max-us: " + TimeUnit.NANOSECONDS.toMicros(getMaxNanos());
+    }
+}
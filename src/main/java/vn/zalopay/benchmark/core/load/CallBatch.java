@@ -0,0 +1,97 @@
+package vn.zalopay.benchmark.core.load;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import vn.zalopay.benchmark.core.ClientCaller;
+import vn.zalopay.benchmark.core.specification.GrpcResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Sends a fixed number of asynchronous calls with the caller's current request, keeping up to a given
+ * number of them in flight, and collects every completion. A concurrency of 1 sends the calls back to
+ * back.
+ */
+public class CallBatch {
+    private final ClientCaller clientCaller;
+    private final int size;
+    private final int concurrency;
+    private final BlockingQueue<CallCompletion> completions = new LinkedBlockingQueue<>();
+    private TokenBucket rateLimiter;
+    private long rateLimitWaitNanos;
+
+    public CallBatch(ClientCaller clientCaller, int size, int concurrency) {
+        this.clientCaller = clientCaller;
+        this.size = size;
+        this.concurrency = Math.max(1, Math.min(concurrency, size));
+    }
+
+    /**
+     * Makes every call wait for a permit of the given bucket before it is sent, {@code null} sends freely.
+     * The wait is not part of the call latencies.
+     */
+    public void setRateLimiter(TokenBucket rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    /**
+     * Returns how long the batch waited for the rate limiter in total.
+     */
+    public long getRateLimitWaitNanos() {
+        return rateLimitWaitNanos;
+    }
+
+    /**
+     * Runs the batch and returns the completions in the order the calls completed. Like the pipeline, the
+     * latencies are recorded from the calling thread.
+     */
+    public List<CallCompletion> run(long deadlineMs) throws InterruptedException {
+        List<CallCompletion> results = new ArrayList<>(size);
+        int issued = 0;
+        while (issued < concurrency) {
+            issue(deadlineMs);
+            issued++;
+        }
+        while (results.size() < size) {
+            CallCompletion completion = completions.take();
+            clientCaller.recordCallLatency(completion.getElapsedNanos(), completion.getStatusCode());
+            results.add(completion);
+            if (issued < size) {
+                issue(deadlineMs);
+                issued++;
+            }
+        }
+        return results;
+    }
+
+    private void issue(long deadlineMs) throws InterruptedException {
+        if (rateLimiter != null) {
+            rateLimitWaitNanos += rateLimiter.acquire();
+        }
+        long startMillis = System.currentTimeMillis();
+        long startNanos = System.nanoTime();
+        ListenableFuture<GrpcResponse> future;
+        try {
+            future = clientCaller.callAsync(deadlineMs);
+        } catch (RuntimeException e) {
+            completions.offer(CallCompletion.failed(startMillis, System.nanoTime() - startNanos, e));
+            return;
+        }
+        Futures.addCallback(future, new FutureCallback<GrpcResponse>() {
+            @Override
+            public void onSuccess(GrpcResponse response) {
+                completions.offer(CallCompletion.succeeded(startMillis, System.nanoTime() - startNanos, response));
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                completions.offer(CallCompletion.failed(startMillis, System.nanoTime() - startNanos, t));
+            }
+        }, MoreExecutors.directExecutor());
+    }
+}
@@ -0,0 +1,109 @@
+package vn.zalopay.benchmark.core.load;
+
+import io.grpc.Status;
+import vn.zalopay.benchmark.core.specification.GrpcResponse;
+
+/**
+ * The outcome of one asynchronous call, as reported by {@link OpenModelEngine}, {@link CallPipeline} and
+ * {@link CallBatch}. Times are measured from the start of the call. For the open model that is the moment
+ * the schedule intended to send the call, so a late send still counts against the latency. For the
+ * pipeline and batches it is when the call was actually sent, after any wait for the rate limiter.
+ */
+public class CallCompletion {
+    private final long startMillis;
+    private final long elapsedNanos;
+    private final GrpcResponse response;
+    private final Throwable error;
+    private final int callCount;
+    private final String samplerData;
+    private final String requestHeaders;
+
+    public static CallCompletion succeeded(long startMillis, long elapsedNanos, GrpcResponse response) {
+        return new CallCompletion(startMillis, elapsedNanos, response, null, 1);
+    }
+
+    public static CallCompletion failed(long startMillis, long elapsedNanos, Throwable error) {
+        return new CallCompletion(startMillis, elapsedNanos, null, error, 1);
+    }
+
+    /**
+     * Returns one completion for several calls which failed the same way without being sent, starting with
+     * the first of them.
+     */
+    public static CallCompletion failedUnsent(long startMillis, int callCount, Throwable error) {
+        return new CallCompletion(startMillis, 0, null, error, callCount);
+    }
+
+    private CallCompletion(long startMillis, long elapsedNanos, GrpcResponse response, Throwable error,
+                           int callCount) {
+        this(startMillis, elapsedNanos, response, error, callCount, null, null);
+    }
+
+    private CallCompletion(long startMillis, long elapsedNanos, GrpcResponse response, Throwable error,
+                           int callCount, String samplerData, String requestHeaders) {
+        this.startMillis = startMillis;
+        this.elapsedNanos = elapsedNanos;
+        this.response = response;
+        this.error = error;
+        this.callCount = callCount;
+        this.samplerData = samplerData;
+        this.requestHeaders = requestHeaders;
+    }
+
+    /**
+     * Returns this completion with the request and metadata the call was sent with, for a completion which
+     * may be reported by a later sample than the one which sent it.
+     */
+    public CallCompletion withRequest(String samplerData, String requestHeaders) {
+        return new CallCompletion(startMillis, elapsedNanos, response, error, callCount, samplerData,
+                requestHeaders);
+    }
+
+    /**
+     * Returns when the call started, see the class description.
+     */
+    public long getStartMillis() {
+        return startMillis;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public boolean isSuccessful() {
+        return error == null;
+    }
+
+    public GrpcResponse getResponse() {
+        return response;
+    }
+
+    public Throwable getError() {
+        return error;
+    }
+
+    /**
+     * Returns how many calls this completion stands for, 1 unless failed calls were aggregated.
+     */
+    public int getCallCount() {
+        return callCount;
+    }
+
+    /**
+     * Returns the request the call was sent with, {@code null} unless it was given by {@link #withRequest}.
+     */
+    public String getSamplerData() {
+        return samplerData;
+    }
+
+    /**
+     * Returns the metadata the call was sent with, {@code null} unless it was given by {@link #withRequest}.
+     */
+    public String getRequestHeaders() {
+        return requestHeaders;
+    }
+
+    public Status.Code getStatusCode() {
+        return error == null ? Status.Code.OK : Status.fromThrowable(error).getCode();
+    }
+}
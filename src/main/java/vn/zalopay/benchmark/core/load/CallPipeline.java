@@ -0,0 +1,120 @@
+package vn.zalopay.benchmark.core.load;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import vn.zalopay.benchmark.core.ClientCaller;
+import vn.zalopay.benchmark.core.specification.GrpcResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps several asynchronous calls of one sampler thread in flight on the same channel. Each
+ * {@link #next} tops the pipeline up to its depth and returns the first call to complete.
+ *
+ * <p>A pipeline belongs to a single thread; only the completion callbacks run elsewhere.
+ */
+public class CallPipeline {
+    private final ClientCaller clientCaller;
+    private final int depth;
+    private final BlockingQueue<CallCompletion> completions = new LinkedBlockingQueue<>();
+    private int inFlight;
+    private TokenBucket rateLimiter;
+    private long rateLimitWaitNanos;
+
+    public CallPipeline(ClientCaller clientCaller, int depth) {
+        this.clientCaller = clientCaller;
+        this.depth = depth;
+    }
+
+    /**
+     * Sends calls with the caller's current request until {@code depth} are in flight, then waits for the
+     * next completion. The completion carries the sampler data and request headers of the sample which sent
+     * it, which is an earlier sample unless the pipeline was empty.
+     */
+    public CallCompletion next(long deadlineMs, String samplerData, String requestHeaders)
+            throws InterruptedException {
+        rateLimitWaitNanos = 0;
+        while (inFlight < depth) {
+            issue(deadlineMs, samplerData, requestHeaders);
+        }
+        CallCompletion completion = completions.take();
+        inFlight--;
+        clientCaller.recordCallLatency(completion.getElapsedNanos(), completion.getStatusCode());
+        return completion;
+    }
+
+    public int getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * Makes every call wait for a permit of the given bucket before it is sent, {@code null} sends freely.
+     */
+    public void setRateLimiter(TokenBucket rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    /**
+     * Returns how long the last {@link #next} waited for the rate limiter before sending calls.
+     */
+    public long getRateLimitWaitNanos() {
+        return rateLimitWaitNanos;
+    }
+
+    private void issue(long deadlineMs, String samplerData, String requestHeaders) throws InterruptedException {
+        if (rateLimiter != null) {
+            rateLimitWaitNanos += rateLimiter.acquire();
+        }
+        long startMillis = System.currentTimeMillis();
+        long startNanos = System.nanoTime();
+        ListenableFuture<GrpcResponse> future;
+        inFlight++;
+        try {
+            future = clientCaller.callAsync(deadlineMs);
+        } catch (RuntimeException e) {
+            completions.offer(CallCompletion.failed(startMillis, System.nanoTime() - startNanos, e)
+                    .withRequest(samplerData, requestHeaders));
+            return;
+        }
+        Futures.addCallback(future, new FutureCallback<GrpcResponse>() {
+            @Override
+            public void onSuccess(GrpcResponse response) {
+                completions.offer(CallCompletion.succeeded(startMillis, System.nanoTime() - startNanos, response)
+                        .withRequest(samplerData, requestHeaders));
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                completions.offer(CallCompletion.failed(startMillis, System.nanoTime() - startNanos, t)
+                        .withRequest(samplerData, requestHeaders));
+            }
+        }, MoreExecutors.directExecutor());
+    }
+
+    /**
+     * Waits up to the timeout for the calls still in flight and returns those which completed, recording their
+     * latencies like {@link #next}. Calls still in flight after the timeout are left to the closing channel and
+     * counted by {@link #getInFlight}.
+     */
+    public List<CallCompletion> drain(long timeoutMs) throws InterruptedException {
+        List<CallCompletion> drained = new ArrayList<>(inFlight);
+        long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        while (inFlight > 0) {
+            long remaining = deadlineNanos - System.nanoTime();
+            CallCompletion completion = remaining > 0 ? completions.poll(remaining, TimeUnit.NANOSECONDS) : null;
+            if (completion == null) {
+                break;
+            }
+            inFlight--;
+            clientCaller.recordCallLatency(completion.getElapsedNanos(), completion.getStatusCode());
+            drained.add(completion);
+        }
+        return drained;
+    }
+}
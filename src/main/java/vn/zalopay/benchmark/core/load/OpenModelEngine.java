@@ -0,0 +1,191 @@
+package vn.zalopay.benchmark.core.load;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import io.grpc.Status;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import vn.zalopay.benchmark.core.ClientCaller;
+import vn.zalopay.benchmark.core.specification.GrpcResponse;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Issues asynchronous calls on an {@link ArrivalSchedule}, independently of how long the calls take.
+ *
+ * <p>A single scheduler thread sends the calls over one channel; completions are queued and handed out to
+ * however many sampler threads poll them. A call is outstanding until its completion is polled, so the cap
+ * on outstanding calls bounds the queue too, whether the server or the reporting threads fall behind. When
+ * the cap is reached, new arrivals are rejected instead of being delayed, so an overloaded server cannot
+ * slow the schedule down. Rejected arrivals are only counted, and the next poll reports all of them as one
+ * failed completion.
+ */
+public class OpenModelEngine {
+    private static final Logger log = LoggerFactory.getLogger(OpenModelEngine.class);
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long STOP_TIMEOUT_MS = 5000;
+    /** Queued once for any number of rejected arrivals, which {@link #rejectedArrivals} counts */
+    private static final CallCompletion REJECTED = CallCompletion.failedUnsent(0, 0, null);
+
+    private final String name;
+    private final ClientCaller clientCaller;
+    private final ArrivalSchedule schedule;
+    private final long deadlineMs;
+    private final int maxOutstanding;
+    private final Semaphore outstanding;
+    private final BlockingQueue<CallCompletion> completions;
+    private final AtomicInteger rejectedArrivals = new AtomicInteger();
+    private volatile long firstRejectedMillis;
+    private volatile boolean running;
+    private Thread scheduler;
+    private long startNanos;
+    private long startMillis;
+
+    /**
+     * @param clientCaller a caller whose request is already built, the engine owns its channel from now on
+     */
+    public OpenModelEngine(String name, ClientCaller clientCaller, ArrivalSchedule schedule, long deadlineMs,
+                           int maxOutstanding) {
+        this.name = name;
+        this.clientCaller = clientCaller;
+        this.schedule = schedule;
+        this.deadlineMs = deadlineMs;
+        this.maxOutstanding = maxOutstanding;
+        this.outstanding = new Semaphore(maxOutstanding);
+        // Every outstanding call and the marker of rejected arrivals
+        this.completions = new LinkedBlockingQueue<>(maxOutstanding + 1);
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        startMillis = System.currentTimeMillis();
+        startNanos = System.nanoTime();
+        running = true;
+        scheduler = new Thread(this::schedule, "grpc-open-model-" + name);
+        scheduler.setDaemon(true);
+        scheduler.start();
+    }
+
+    /**
+     * Stops issuing calls, waits a little for the calls in flight and shuts the channel down. Completions
+     * which were not polled yet are dropped.
+     */
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(scheduler);
+        try {
+            scheduler.join(STOP_TIMEOUT_MS);
+            long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(STOP_TIMEOUT_MS);
+            while (outstanding.availablePermits() < maxOutstanding) {
+                long remaining = deadlineNanos - System.nanoTime();
+                if (remaining <= 0) {
+                    log.warn("{} calls of {} still outstanding at stop",
+                            maxOutstanding - outstanding.availablePermits(), name);
+                    break;
+                }
+                release(completions.poll(remaining, TimeUnit.NANOSECONDS));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        completions.clear();
+        rejectedArrivals.set(0);
+        clientCaller.shutdownNettyChannel();
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Returns the next completed call, or {@code null} when none completed within the timeout.
+     */
+    public CallCompletion pollCompletion(long timeoutMs) throws InterruptedException {
+        CallCompletion completion = completions.poll(timeoutMs, TimeUnit.MILLISECONDS);
+        if (completion == REJECTED) {
+            // Read before the count is reset, after which the scheduler may start the next run of rejections
+            long startMillis = firstRejectedMillis;
+            return CallCompletion.failedUnsent(startMillis, rejectedArrivals.getAndSet(0),
+                    Status.RESOURCE_EXHAUSTED
+                            .withDescription("More than " + maxOutstanding + " calls outstanding")
+                            .asRuntimeException());
+        }
+        release(completion);
+        return completion;
+    }
+
+    private void release(CallCompletion completion) {
+        if (completion != null && completion != REJECTED) {
+            outstanding.release();
+        }
+    }
+
+    private void schedule() {
+        long elapsedNanos = 0;
+        while (running) {
+            double rate = schedule.rateAt(elapsedNanos);
+            if (rate <= 0) {
+                elapsedNanos += IDLE_PARK_NANOS;
+                parkUntil(startNanos + elapsedNanos);
+                continue;
+            }
+            elapsedNanos += schedule.nextIntervalNanos(rate);
+            // A late wake-up sends the missed calls back to back; their latency still starts on schedule.
+            parkUntil(startNanos + elapsedNanos);
+            if (running) {
+                issue(startNanos + elapsedNanos);
+            }
+        }
+    }
+
+    private void parkUntil(long deadlineNanos) {
+        long remaining;
+        while (running && (remaining = deadlineNanos - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(this, remaining);
+        }
+    }
+
+    private void issue(long intendedNanos) {
+        long intendedStartMillis = startMillis + TimeUnit.NANOSECONDS.toMillis(intendedNanos - startNanos);
+        if (!outstanding.tryAcquire()) {
+            if (rejectedArrivals.getAndIncrement() == 0) {
+                firstRejectedMillis = intendedStartMillis;
+                completions.offer(REJECTED);
+            }
+            return;
+        }
+        // The permit is released when the completion is polled
+        ListenableFuture<GrpcResponse> future;
+        try {
+            future = clientCaller.callAsync(deadlineMs);
+        } catch (RuntimeException e) {
+            completions.offer(CallCompletion.failed(intendedStartMillis, System.nanoTime() - intendedNanos, e));
+            return;
+        }
+        Futures.addCallback(future, new FutureCallback<GrpcResponse>() {
+            @Override
+            public void onSuccess(GrpcResponse response) {
+                long elapsed = System.nanoTime() - intendedNanos;
+                completions.offer(CallCompletion.succeeded(intendedStartMillis, elapsed, response));
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                long elapsed = System.nanoTime() - intendedNanos;
+                completions.offer(CallCompletion.failed(intendedStartMillis, elapsed, t));
+            }
+        }, MoreExecutors.directExecutor());
+    }
+}
@@ -0,0 +1,94 @@
+package vn.zalopay.benchmark.core.load;
+
+import com.google.common.base.Preconditions;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A lock-free rate limiter which hands out evenly spaced permits to any number of threads.
+ *
+ * <p>The bucket keeps the time of the next free slot in a single atomic. A caller reserves a slot with one
+ * compare-and-set and then waits for it on its own, parking until shortly before the slot and spinning for
+ * the rest, so contention stays on the reservation and the permits keep sub-millisecond spacing. An idle
+ * bucket does not save up permits, so there are no bursts after a pause.
+ *
+ * <p>Buckets shared between threads and samplers are looked up by scope with {@link #shared}.
+ */
+public class TokenBucket {
+    private static final long SPIN_NANOS = TimeUnit.MICROSECONDS.toNanos(20);
+    private static final ConcurrentMap<String, TokenBucket> SHARED = new ConcurrentHashMap<>();
+
+    private final double permitsPerSecond;
+    private final long intervalNanos;
+    private final AtomicLong nextSlotNanos;
+
+    public TokenBucket(double permitsPerSecond) {
+        Preconditions.checkArgument(permitsPerSecond > 0,
+                "Rate limit must be positive but found: " + permitsPerSecond);
+        this.permitsPerSecond = permitsPerSecond;
+        this.intervalNanos = Math.max(1, Math.round(TimeUnit.SECONDS.toNanos(1) / permitsPerSecond));
+        this.nextSlotNanos = new AtomicLong(System.nanoTime());
+    }
+
+    /**
+     * Returns the bucket shared by everything limited under the same scope and rate, creating it on first
+     * use.
+     */
+    public static TokenBucket shared(String scope, double permitsPerSecond) {
+        return SHARED.computeIfAbsent(scope + '|' + permitsPerSecond, key -> new TokenBucket(permitsPerSecond));
+    }
+
+    /**
+     * Drops the shared buckets, so the next test starts with fresh ones.
+     */
+    public static void clearShared() {
+        SHARED.clear();
+    }
+
+    public double getPermitsPerSecond() {
+        return permitsPerSecond;
+    }
+
+    /**
+     * Takes the next permit, waiting for its slot, and returns how long the caller waited.
+     */
+    public long acquire() throws InterruptedException {
+        long now = System.nanoTime();
+        long slot = reserve(now);
+        if (slot - now <= 0) {
+            return 0;
+        }
+        waitUntil(slot);
+        return System.nanoTime() - now;
+    }
+
+    /**
+     * Reserves the next free slot at or after {@code nowNanos} and returns it.
+     */
+    long reserve(long nowNanos) {
+        while (true) {
+            long next = nextSlotNanos.get();
+            long slot = next - nowNanos > 0 ? next : nowNanos;
+            if (nextSlotNanos.compareAndSet(next, slot + intervalNanos)) {
+                return slot;
+            }
+        }
+    }
+
+    private void waitUntil(long slotNanos) throws InterruptedException {
+        long remaining;
+        while ((remaining = slotNanos - System.nanoTime()) > SPIN_NANOS) {
+            LockSupport.parkNanos(this, remaining - SPIN_NANOS);
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+        while (slotNanos - System.nanoTime() > 0) {
+            Thread.yield();
+        }
+    }
+}
@@ -0,0 +1,525 @@
+package vn.zalopay.benchmark.core.message;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.Message;
+import vn.zalopay.benchmark.core.specification.RenderedMessage;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Prints messages of one type exactly as {@code JsonFormat.printer().preservingProtoFieldNames()
+ * .includingDefaultValueFields()} does, byte for byte, but as UTF-8 written straight into a per-thread
+ * buffer. The fields to print, their order, their quoted names and the printers of nested types are worked
+ * out once per type instead of for every message.
+ *
+ * <p>Types which {@code JsonFormat} prints in their own way, the well-known types such as {@code Any} or
+ * {@code Timestamp}, and extendable types have no compiled printer and are left to {@code JsonFormat}.
+ */
+public class CompiledJsonPrinter {
+    private static final ConcurrentMap<Descriptors.Descriptor, CompiledJsonPrinter> COMPILED =
+            new ConcurrentHashMap<>();
+    private static final CompiledJsonPrinter UNSUPPORTED = new CompiledJsonPrinter(null);
+    private static final ThreadLocal<JsonOutput> OUTPUT = ThreadLocal.withInitial(JsonOutput::new);
+    private static final String WELL_KNOWN_TYPES_PACKAGE = "google.protobuf";
+
+    private final MessageLayout layout;
+
+    private CompiledJsonPrinter(MessageLayout layout) {
+        this.layout = layout;
+    }
+
+    /**
+     * Returns the printer of the type, compiling it on first use, or null when the type has to be printed
+     * by {@code JsonFormat}.
+     */
+    public static CompiledJsonPrinter forType(Descriptors.Descriptor type) {
+        CompiledJsonPrinter printer = COMPILED.computeIfAbsent(type, CompiledJsonPrinter::compile);
+        return printer == UNSUPPORTED ? null : printer;
+    }
+
+    /**
+     * Drops the compiled printers, whose descriptors belong to the protos of the test that ended.
+     */
+    public static void clear() {
+        COMPILED.clear();
+    }
+
+    /**
+     * Prints a message of the type this printer was compiled for.
+     */
+    public RenderedMessage print(Message message) {
+        JsonOutput output = OUTPUT.get();
+        try {
+            writeMessage(output, layout, message, 0);
+            return output.toRenderedMessage();
+        } finally {
+            output.reset();
+        }
+    }
+
+    private static CompiledJsonPrinter compile(Descriptors.Descriptor type) {
+        MessageLayout layout = layoutOf(type, new HashMap<>());
+        return layout == null ? UNSUPPORTED : new CompiledJsonPrinter(layout);
+    }
+
+    /**
+     * Returns the layout of the type, or null when the type or a type it contains cannot be compiled.
+     * Layouts are registered before their fields are laid out, so recursive types refer to themselves.
+     */
+    private static MessageLayout layoutOf(Descriptors.Descriptor type,
+                                          Map<Descriptors.Descriptor, MessageLayout> layouts) {
+        MessageLayout layout = layouts.get(type);
+        if (layout != null) {
+            return layout;
+        }
+        if (type.isExtendable() || isWellKnown(type.getFile())) {
+            return null;
+        }
+        layout = new MessageLayout();
+        layouts.put(type, layout);
+        // JsonFormat prints the fields in the order of their numbers
+        List<Descriptors.FieldDescriptor> fields = new ArrayList<>(type.getFields());
+        fields.sort(Comparator.comparingInt(Descriptors.FieldDescriptor::getNumber));
+        layout.fields = new FieldLayout[fields.size()];
+        for (int i = 0; i < fields.size(); i++) {
+            layout.fields[i] = fieldLayoutOf(fields.get(i), layouts);
+            if (layout.fields[i] == null) {
+                return null;
+            }
+        }
+        return layout;
+    }
+
+    private static FieldLayout fieldLayoutOf(Descriptors.FieldDescriptor field,
+                                             Map<Descriptors.Descriptor, MessageLayout> layouts) {
+        FieldLayout layout = new FieldLayout();
+        layout.field = field;
+        layout.name = ("\"" + field.getName() + "\": ").getBytes(StandardCharsets.UTF_8);
+        // Unset message fields would recurse forever, and only the field of a oneof that is set is printed
+        layout.printedOnlyWhenSet = field.isOptional()
+                && (field.getJavaType() == Descriptors.FieldDescriptor.JavaType.MESSAGE
+                || field.getContainingOneof() != null);
+        if (field.isMapField()) {
+            Descriptors.Descriptor entry = field.getMessageType();
+            layout.mapKey = entry.findFieldByName("key");
+            layout.mapValue = entry.findFieldByName("value");
+            layout.type = layout.mapValue.getType();
+            return resolveValueType(layout, layout.mapValue, layouts);
+        }
+        layout.type = field.getType();
+        return resolveValueType(layout, field, layouts);
+    }
+
+    private static FieldLayout resolveValueType(FieldLayout layout, Descriptors.FieldDescriptor valueField,
+                                                Map<Descriptors.Descriptor, MessageLayout> layouts) {
+        switch (valueField.getJavaType()) {
+            case MESSAGE:
+                layout.message = layoutOf(valueField.getMessageType(), layouts);
+                return layout.message == null ? null : layout;
+            case ENUM:
+                // JsonFormat prints google.protobuf.NullValue as null
+                return isWellKnown(valueField.getEnumType().getFile()) ? null : layout;
+            default:
+                return layout;
+        }
+    }
+
+    private static boolean isWellKnown(Descriptors.FileDescriptor file) {
+        return WELL_KNOWN_TYPES_PACKAGE.equals(file.getPackage());
+    }
+
+    /**
+     * Writes the message as JsonFormat's pretty printer does: every field on a line of its own, indented by
+     * two spaces per level, and the closing brace at the level of the message.
+     */
+    private static void writeMessage(JsonOutput output, MessageLayout layout, Message message, int level) {
+        output.write('{');
+        output.write('\n');
+        boolean printedField = false;
+        for (FieldLayout field : layout.fields) {
+            if (field.printedOnlyWhenSet && !message.hasField(field.field)) {
+                continue;
+            }
+            if (printedField) {
+                output.write(',');
+                output.write('\n');
+            } else {
+                printedField = true;
+            }
+            output.indent(level + 1);
+            output.write(field.name);
+            if (field.mapKey != null) {
+                writeMap(output, field, message, level + 1);
+            } else if (field.field.isRepeated()) {
+                writeRepeated(output, field, message, level + 1);
+            } else {
+                writeValue(output, field.type, field.message, message.getField(field.field), level + 1, false);
+            }
+        }
+        if (printedField) {
+            output.write('\n');
+        }
+        output.indent(level);
+        output.write('}');
+    }
+
+    private static void writeRepeated(JsonOutput output, FieldLayout field, Message message, int level) {
+        output.write('[');
+        int count = message.getRepeatedFieldCount(field.field);
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                output.write(',');
+                output.write(' ');
+            }
+            writeValue(output, field.type, field.message, message.getRepeatedField(field.field, i), level, false);
+        }
+        output.write(']');
+    }
+
+    private static void writeMap(JsonOutput output, FieldLayout field, Message message, int level) {
+        output.write('{');
+        output.write('\n');
+        int count = message.getRepeatedFieldCount(field.field);
+        for (int i = 0; i < count; i++) {
+            Message entry = (Message) message.getRepeatedField(field.field, i);
+            if (i > 0) {
+                output.write(',');
+                output.write('\n');
+            }
+            output.indent(level + 1);
+            // Map keys are always quoted
+            writeValue(output, field.mapKey.getType(), null, entry.getField(field.mapKey), level + 1, true);
+            output.write(':');
+            output.write(' ');
+            writeValue(output, field.type, field.message, entry.getField(field.mapValue), level + 1, false);
+        }
+        if (count > 0) {
+            output.write('\n');
+        }
+        output.indent(level);
+        output.write('}');
+    }
+
+    private static void writeValue(JsonOutput output, Descriptors.FieldDescriptor.Type type, MessageLayout message,
+                                   Object value, int level, boolean quoted) {
+        switch (type) {
+            case INT32:
+            case SINT32:
+            case SFIXED32:
+                output.writeNumber((Integer) value, quoted);
+                break;
+            case UINT32:
+            case FIXED32:
+                output.writeNumber(Integer.toUnsignedLong((Integer) value), quoted);
+                break;
+            case INT64:
+            case SINT64:
+            case SFIXED64:
+                output.writeNumber((Long) value, true);
+                break;
+            case UINT64:
+            case FIXED64:
+                output.writeAscii(Long.toUnsignedString((Long) value), true);
+                break;
+            case BOOL:
+                output.writeAscii((Boolean) value ? "true" : "false", quoted);
+                break;
+            case FLOAT:
+                float floatValue = (Float) value;
+                if (Float.isNaN(floatValue) || Float.isInfinite(floatValue)) {
+                    output.writeAscii(nonFinite(floatValue), true);
+                } else {
+                    output.writeAscii(Float.toString(floatValue), quoted);
+                }
+                break;
+            case DOUBLE:
+                double doubleValue = (Double) value;
+                if (Double.isNaN(doubleValue) || Double.isInfinite(doubleValue)) {
+                    output.writeAscii(nonFinite(doubleValue), true);
+                } else {
+                    output.writeAscii(Double.toString(doubleValue), quoted);
+                }
+                break;
+            case STRING:
+                output.writeString((String) value);
+                break;
+            case BYTES:
+                output.writeBase64((ByteString) value);
+                break;
+            case ENUM:
+                Descriptors.EnumValueDescriptor enumValue = (Descriptors.EnumValueDescriptor) value;
+                // Values unknown to the descriptor only have a number
+                if (enumValue.getIndex() == -1) {
+                    output.writeNumber(enumValue.getNumber(), false);
+                } else {
+                    output.writeUnescaped(enumValue.getName(), true);
+                }
+                break;
+            case MESSAGE:
+            case GROUP:
+                writeMessage(output, message, (Message) value, level);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown field type: " + type);
+        }
+    }
+
+    private static String nonFinite(double value) {
+        if (Double.isNaN(value)) {
+            return "NaN";
+        }
+        return value < 0 ? "-Infinity" : "Infinity";
+    }
+
+    private static class MessageLayout {
+        private FieldLayout[] fields;
+    }
+
+    private static class FieldLayout {
+        private Descriptors.FieldDescriptor field;
+        private byte[] name;
+        private boolean printedOnlyWhenSet;
+        /** The type of the value, or of the map value for map fields */
+        private Descriptors.FieldDescriptor.Type type;
+        private MessageLayout message;
+        private Descriptors.FieldDescriptor mapKey;
+        private Descriptors.FieldDescriptor mapValue;
+    }
+
+    /**
+     * A growing UTF-8 buffer, reused by the messages a thread prints. It escapes strings as the Gson behind
+     * JsonFormat does, and encodes unpaired surrogates as {@code ?} like {@link String#getBytes} would.
+     */
+    private static class JsonOutput {
+        private static final int INITIAL_CAPACITY = 4 * 1024;
+        /**
+         * A thread keeps a buffer up to this size; larger ones are dropped after the message, as the output is
+         * copied out anyway and thousands of threads would each hold on to their largest response
+         */
+        private static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+        private static final byte[][] ESCAPES = new byte[128][];
+        private static final byte[] LINE_SEPARATOR = "\\u2028".getBytes(StandardCharsets.US_ASCII);
+        private static final byte[] PARAGRAPH_SEPARATOR = "\\u2029".getBytes(StandardCharsets.US_ASCII);
+        private static final byte[] BASE64 =
+                "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".getBytes(StandardCharsets.US_ASCII);
+
+        static {
+            for (int c = 0; c < 0x20; c++) {
+                ESCAPES[c] = String.format("\\u%04x", c).getBytes(StandardCharsets.US_ASCII);
+            }
+            escape('"', "\\\"");
+            escape('\\', "\\\\");
+            escape('\t', "\\t");
+            escape('\b', "\\b");
+            escape('\n', "\\n");
+            escape('\r', "\\r");
+            escape('\f', "\\f");
+            // Gson is HTML-safe by default
+            escape('<', "\\u003c");
+            escape('>', "\\u003e");
+            escape('&', "\\u0026");
+            escape('=', "\\u003d");
+            escape('\'', "\\u0027");
+        }
+
+        private byte[] buffer = new byte[INITIAL_CAPACITY];
+        private int size;
+        /** Bytes beyond one per char, to tell the length of the JSON as a string */
+        private int multiByteExtra;
+
+        private static void escape(char c, String escaped) {
+            ESCAPES[c] = escaped.getBytes(StandardCharsets.US_ASCII);
+        }
+
+        RenderedMessage toRenderedMessage() {
+            return new RenderedMessage(Arrays.copyOf(buffer, size), size - multiByteExtra);
+        }
+
+        void reset() {
+            size = 0;
+            multiByteExtra = 0;
+            if (buffer.length > MAX_RETAINED_CAPACITY) {
+                buffer = new byte[INITIAL_CAPACITY];
+            }
+        }
+
+        void write(char c) {
+            ensureCapacity(1);
+            buffer[size++] = (byte) c;
+        }
+
+        void write(byte[] bytes) {
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, buffer, size, bytes.length);
+            size += bytes.length;
+        }
+
+        void indent(int level) {
+            int spaces = 2 * level;
+            ensureCapacity(spaces);
+            Arrays.fill(buffer, size, size + spaces, (byte) ' ');
+            size += spaces;
+        }
+
+        void writeAscii(String value, boolean quoted) {
+            ensureCapacity(value.length() + 2);
+            if (quoted) {
+                buffer[size++] = '"';
+            }
+            for (int i = 0; i < value.length(); i++) {
+                buffer[size++] = (byte) value.charAt(i);
+            }
+            if (quoted) {
+                buffer[size++] = '"';
+            }
+        }
+
+        void writeNumber(long value, boolean quoted) {
+            if (value == Long.MIN_VALUE) {
+                writeAscii(Long.toString(value), quoted);
+                return;
+            }
+            // Sign, 19 digits and quotes
+            ensureCapacity(22);
+            if (quoted) {
+                buffer[size++] = '"';
+            }
+            if (value < 0) {
+                buffer[size++] = '-';
+                value = -value;
+            }
+            int digits = 1;
+            for (long rest = value / 10; rest > 0; rest /= 10) {
+                digits++;
+            }
+            for (int i = size + digits - 1; i >= size; i--) {
+                buffer[i] = (byte) ('0' + value % 10);
+                value /= 10;
+            }
+            size += digits;
+            if (quoted) {
+                buffer[size++] = '"';
+            }
+        }
+
+        void writeString(String value) {
+            // The longest escape takes 6 bytes for a char
+            ensureCapacity(6 * value.length() + 2);
+            buffer[size++] = '"';
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c < 0x80) {
+                    byte[] escaped = ESCAPES[c];
+                    if (escaped == null) {
+                        buffer[size++] = (byte) c;
+                    } else {
+                        System.arraycopy(escaped, 0, buffer, size, escaped.length);
+                        size += escaped.length;
+                    }
+                } else if (c == '\u2028') {
+                    System.arraycopy(LINE_SEPARATOR, 0, buffer, size, LINE_SEPARATOR.length);
+                    size += LINE_SEPARATOR.length;
+                } else if (c == '\u2029') {
+                    System.arraycopy(PARAGRAPH_SEPARATOR, 0, buffer, size, PARAGRAPH_SEPARATOR.length);
+                    size += PARAGRAPH_SEPARATOR.length;
+                } else {
+                    i = writeUtf8(value, i);
+                }
+            }
+            buffer[size++] = '"';
+        }
+
+        void writeUnescaped(String value, boolean quoted) {
+            ensureCapacity(3 * value.length() + 2);
+            if (quoted) {
+                buffer[size++] = '"';
+            }
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c < 0x80) {
+                    buffer[size++] = (byte) c;
+                } else {
+                    i = writeUtf8(value, i);
+                }
+            }
+            if (quoted) {
+                buffer[size++] = '"';
+            }
+        }
+
+        /**
+         * Writes the non-ASCII char at the index, which needs at most 3 bytes of capacity per char, and
+         * returns the index of the last char it consumed.
+         */
+        private int writeUtf8(String value, int index) {
+            char c = value.charAt(index);
+            if (c < 0x800) {
+                buffer[size++] = (byte) (0xC0 | (c >> 6));
+                buffer[size++] = (byte) (0x80 | (c & 0x3F));
+                multiByteExtra += 1;
+                return index;
+            }
+            if (!Character.isSurrogate(c)) {
+                buffer[size++] = (byte) (0xE0 | (c >> 12));
+                buffer[size++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buffer[size++] = (byte) (0x80 | (c & 0x3F));
+                multiByteExtra += 2;
+                return index;
+            }
+            if (Character.isHighSurrogate(c) && index + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(index + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(index + 1));
+                buffer[size++] = (byte) (0xF0 | (codePoint >> 18));
+                buffer[size++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                buffer[size++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                buffer[size++] = (byte) (0x80 | (codePoint & 0x3F));
+                // Two chars in four bytes
+                multiByteExtra += 2;
+                return index + 1;
+            }
+            buffer[size++] = '?';
+            return index;
+        }
+
+        void writeBase64(ByteString value) {
+            ByteBuffer bytes = value.asReadOnlyByteBuffer();
+            ensureCapacity((bytes.remaining() + 2) / 3 * 4 + 2);
+            buffer[size++] = '"';
+            while (bytes.remaining() >= 3) {
+                int chunk = (bytes.get() & 0xFF) << 16 | (bytes.get() & 0xFF) << 8 | (bytes.get() & 0xFF);
+                buffer[size++] = BASE64[chunk >>> 18];
+                buffer[size++] = BASE64[(chunk >>> 12) & 0x3F];
+                buffer[size++] = BASE64[(chunk >>> 6) & 0x3F];
+                buffer[size++] = BASE64[chunk & 0x3F];
+            }
+            if (bytes.remaining() > 0) {
+                int chunk = (bytes.get() & 0xFF) << 16;
+                boolean two = bytes.remaining() > 0;
+                if (two) {
+                    chunk |= (bytes.get() & 0xFF) << 8;
+                }
+                buffer[size++] = BASE64[chunk >>> 18];
+                buffer[size++] = BASE64[(chunk >>> 12) & 0x3F];
+                buffer[size++] = two ? BASE64[(chunk >>> 6) & 0x3F] : (byte) '=';
+                buffer[size++] = '=';
+            }
+            buffer[size++] = '"';
+        }
+
+        private void ensureCapacity(int bytes) {
+            if (size + bytes > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(2 * buffer.length, size + bytes));
+            }
+        }
+    }
+}
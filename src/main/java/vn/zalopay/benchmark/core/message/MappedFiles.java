@@ -0,0 +1,69 @@
+package vn.zalopay.benchmark.core.message;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
+import org.apache.jmeter.services.FileServer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Files mapped into memory as read-only {@link ByteString}s for {@code bytes} fields, so a multi-MB payload is
+ * neither decoded nor loaded onto the heap per sample. Each file is mapped once and shared by all threads; the page cache
+ * backs it instead of the heap.
+ *
+ * <p>The files must not change while the test runs, as the mapped bytes would change with them.
+ */
+public class MappedFiles {
+    private static final ConcurrentMap<Path, ByteString> MAPPED = new ConcurrentHashMap<>();
+
+    private MappedFiles() {
+    }
+
+    /**
+     * Returns the content of the file, relative paths being resolved against the test plan's directory.
+     *
+     * @throws IllegalArgumentException when the file cannot be read or is 2 GB or larger
+     */
+    public static ByteString get(String file) {
+        Path path = Paths.get(file);
+        if (!path.isAbsolute()) {
+            path = Paths.get(FileServer.getFileServer().getBaseDir(), file);
+        }
+        try {
+            return MAPPED.computeIfAbsent(path.toAbsolutePath().normalize(), MappedFiles::map);
+        } catch (UncheckedIOException e) {
+            throw new IllegalArgumentException("Unable to map file: " + path, e.getCause());
+        }
+    }
+
+    /**
+     * Drops the mappings, so the next test maps the files as they are then. A mapping is released once the
+     * messages using it are collected.
+     */
+    public static void clear() {
+        MAPPED.clear();
+    }
+
+    private static ByteString map(Path path) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Files of 2 GB or more cannot be a bytes field but found: "
+                        + path + " of " + size + " bytes");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            // Nothing writes to a read-only mapping, which is what makes wrapping it without a copy safe.
+            return UnsafeByteOperations.unsafeWrap(buffer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
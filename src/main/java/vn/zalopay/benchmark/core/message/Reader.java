@@ -2,15 +2,35 @@ package vn.zalopay.benchmark.core.message;
 
 
 import com.google.common.collect.ImmutableList;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import com.google.protobuf.ByteString;
 import com.google.protobuf.Descriptors;
 import com.google.protobuf.DynamicMessage;
+import com.google.protobuf.Message;
 import com.google.protobuf.util.JsonFormat;
+import vn.zalopay.benchmark.core.jfr.JfrEvents;
+import vn.zalopay.benchmark.core.jfr.ReadRequestEvent;
 import vn.zalopay.benchmark.exception.GrpcPluginException;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
 public class Reader {
+    /**
+     * Binds a {@code bytes} field to the content of a file, e.g. {@code "data": "@file:images/large.png"},
+     * which is mapped into memory instead of being decoded from base64, see {@link MappedFiles}.
+     */
+    public static final String FILE_BINDING_PREFIX = "@file:";
+
     private final JsonFormat.Parser jsonParser;
     private final Descriptors.Descriptor descriptor;
     private String payload;
+    private boolean fileBindings;
 
     Reader(JsonFormat.Parser jsonParser, Descriptors.Descriptor descriptor, String payload) {
         this.jsonParser = jsonParser;
@@ -23,16 +43,147 @@ public class Reader {
         return new Reader(JsonFormat.parser().usingTypeRegistry(registry).ignoringUnknownFields(), descriptor, payloadData);
     }
 
+    /**
+     * Reads a single message, or one message per element when the payload is a JSON array.
+     */
     public ImmutableList<DynamicMessage> read() {
+        ReadRequestEvent event = JfrEvents.beginReadRequest();
         ImmutableList.Builder<DynamicMessage> resultBuilder = ImmutableList.builder();
         try {
-            DynamicMessage.Builder nextMessage = DynamicMessage.newBuilder(descriptor);
-            jsonParser.merge(payload, nextMessage);
-            // Clean up and prepare for next message.
-            resultBuilder.add(nextMessage.build());
-            return resultBuilder.build();
+            if (payload.trim().startsWith("[")) {
+                for (JsonElement element : new JsonParser().parse(payload).getAsJsonArray()) {
+                    resultBuilder.add(readMessage(element.toString()));
+                }
+            } else {
+                resultBuilder.add(readMessage(payload));
+            }
+            ImmutableList<DynamicMessage> result = resultBuilder.build();
+            if (result.isEmpty()) {
+                throw new IllegalArgumentException("Message array is empty");
+            }
+            if (event != null) {
+                event.messageType = descriptor.getFullName();
+                event.messages = result.size();
+                event.commit();
+            }
+            return result;
         } catch (Exception e) {
             throw new GrpcPluginException("Unable to read messages from: " + payload, e);
         }
     }
+
+    /**
+     * Returns whether the messages read so far bind a bytes field to a file.
+     */
+    public boolean hasFileBindings() {
+        return fileBindings;
+    }
+
+    private DynamicMessage readMessage(String json) throws Exception {
+        DynamicMessage.Builder nextMessage = DynamicMessage.newBuilder(descriptor);
+        if (!json.contains(FILE_BINDING_PREFIX)) {
+            jsonParser.merge(json, nextMessage);
+            return nextMessage.build();
+        }
+        // The bound fields are merged empty and set to the mapped files afterwards
+        JsonObject message = new JsonParser().parse(json).getAsJsonObject();
+        List<FileBinding> bindings = new ArrayList<>();
+        collectFileBindings(descriptor, message, new ArrayList<>(), bindings);
+        jsonParser.merge(message.toString(), nextMessage);
+        for (FileBinding binding : bindings) {
+            binding.apply(nextMessage, 0);
+        }
+        fileBindings |= !bindings.isEmpty();
+        return nextMessage.build();
+    }
+
+    private static void collectFileBindings(Descriptors.Descriptor type, JsonObject message, List<Step> path,
+            List<FileBinding> bindings) {
+        for (Map.Entry<String, JsonElement> entry : message.entrySet()) {
+            Descriptors.FieldDescriptor field = findField(type, entry.getKey());
+            if (field == null || field.isMapField()) {
+                continue;
+            }
+            if (field.isRepeated() && entry.getValue().isJsonArray()) {
+                JsonArray elements = entry.getValue().getAsJsonArray();
+                for (int i = 0; i < elements.size(); i++) {
+                    if (bind(field, i, elements.get(i), path, bindings)) {
+                        elements.set(i, new JsonPrimitive(""));
+                    }
+                }
+            } else if (!field.isRepeated() && bind(field, -1, entry.getValue(), path, bindings)) {
+                entry.setValue(new JsonPrimitive(""));
+            }
+        }
+    }
+
+    /**
+     * Collects the file bindings of a field value and returns whether the value itself is one.
+     */
+    private static boolean bind(Descriptors.FieldDescriptor field, int index, JsonElement value, List<Step> path,
+            List<FileBinding> bindings) {
+        List<Step> fieldPath = new ArrayList<>(path);
+        fieldPath.add(new Step(field, index));
+        if (field.getType() == Descriptors.FieldDescriptor.Type.BYTES && value.isJsonPrimitive()
+                && value.getAsString().startsWith(FILE_BINDING_PREFIX)) {
+            bindings.add(new FileBinding(fieldPath,
+                    MappedFiles.get(value.getAsString().substring(FILE_BINDING_PREFIX.length()))));
+            return true;
+        }
+        if (field.getJavaType() == Descriptors.FieldDescriptor.JavaType.MESSAGE && value.isJsonObject()) {
+            collectFileBindings(field.getMessageType(), value.getAsJsonObject(), fieldPath, bindings);
+        }
+        return false;
+    }
+
+    private static Descriptors.FieldDescriptor findField(Descriptors.Descriptor type, String name) {
+        for (Descriptors.FieldDescriptor field : type.getFields()) {
+            if (field.getJsonName().equals(name) || field.getName().equals(name)) {
+                return field;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * A field of a message, and the element of a repeated field, or -1.
+     */
+    private static class Step {
+        private final Descriptors.FieldDescriptor field;
+        private final int index;
+
+        private Step(Descriptors.FieldDescriptor field, int index) {
+            this.field = field;
+            this.index = index;
+        }
+    }
+
+    private static class FileBinding {
+        private final List<Step> path;
+        private final ByteString content;
+
+        private FileBinding(List<Step> path, ByteString content) {
+            this.path = path;
+            this.content = content;
+        }
+
+        /**
+         * Sets the bound field below {@code builder}, rebuilding the messages on the path to it.
+         */
+        private void apply(Message.Builder builder, int depth) {
+            Step step = path.get(depth);
+            Object value = content;
+            if (depth < path.size() - 1) {
+                Message.Builder child = ((Message) (step.index < 0 ? builder.getField(step.field)
+                        : builder.getRepeatedField(step.field, step.index))).toBuilder();
+                apply(child, depth + 1);
+                value = child.build();
+            }
+            if (step.index < 0) {
+                builder.setField(step.field, value);
+            } else {
+                builder.setRepeatedField(step.field, step.index, value);
+            }
+        }
+    }
 }
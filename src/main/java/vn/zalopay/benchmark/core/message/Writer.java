@@ -7,25 +7,48 @@ import io.grpc.stub.StreamObserver;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import vn.zalopay.benchmark.core.jfr.JfrEvents;
+import vn.zalopay.benchmark.core.jfr.RenderResponseEvent;
 import vn.zalopay.benchmark.core.specification.GrpcResponse;
+import vn.zalopay.benchmark.core.specification.RenderedMessage;
 
 public class Writer<T extends Message> implements StreamObserver<T> {
     private static final Logger LOGGER = LoggerFactory.getLogger(Writer.class);
 
     private final JsonFormat.Printer jsonPrinter;
     private final GrpcResponse output;
+    private final boolean discardMessages;
+    private final boolean compiledPrinting;
 
     /**
      * Creates a new Writer which writes the messages it sees to the supplied
-     * Output.
+     * Output. Messages are printed by their type's {@link CompiledJsonPrinter} when it has one.
      */
     public static <T extends Message> Writer<T> create(GrpcResponse output, JsonFormat.TypeRegistry registry) {
-        return new Writer<>(JsonFormat.printer().usingTypeRegistry(registry), output);
+        return new Writer<>(JsonFormat.printer().usingTypeRegistry(registry), output, false, true);
+    }
+
+    /**
+     * Creates a new Writer which only records errors to the supplied Output and ignores the messages.
+     */
+    public static <T extends Message> Writer<T> createDiscarding(GrpcResponse output) {
+        return new Writer<>(JsonFormat.printer(), output, true);
     }
 
     Writer(JsonFormat.Printer jsonPrinter, GrpcResponse output) {
+        this(jsonPrinter, output, false);
+    }
+
+    Writer(JsonFormat.Printer jsonPrinter, GrpcResponse output, boolean discardMessages) {
+        this(jsonPrinter, output, discardMessages, false);
+    }
+
+    private Writer(JsonFormat.Printer jsonPrinter, GrpcResponse output, boolean discardMessages,
+                   boolean compiledPrinting) {
         this.jsonPrinter = jsonPrinter.preservingProtoFieldNames().includingDefaultValueFields();
         this.output = output;
+        this.discardMessages = discardMessages;
+        this.compiledPrinting = compiledPrinting;
     }
 
     @Override
@@ -43,8 +66,32 @@ public class Writer<T extends Message> implements StreamObserver<T> {
 
     @Override
     public void onNext(T message) {
+        if (discardMessages) {
+            return;
+        }
+        if (!output.acceptsMoreMessages()) {
+            output.skipGrpcMessage();
+            return;
+        }
+        RenderResponseEvent event = JfrEvents.beginRenderResponse();
         try {
-            output.storeGrpcMessage(jsonPrinter.print(message));
+            CompiledJsonPrinter compiled = compiledPrinting
+                    ? CompiledJsonPrinter.forType(message.getDescriptorForType()) : null;
+            int characters;
+            if (compiled != null) {
+                RenderedMessage rendered = compiled.print(message);
+                output.storeGrpcMessage(rendered);
+                characters = rendered.length();
+            } else {
+                String json = jsonPrinter.print(message);
+                output.storeGrpcMessage(json);
+                characters = json.length();
+            }
+            if (event != null) {
+                event.messageType = message.getDescriptorForType().getFullName();
+                event.characters = characters;
+                event.commit();
+            }
         } catch (InvalidProtocolBufferException e) {
             LOGGER.warn(e.getMessage());
         }
@@ -0,0 +1,373 @@
+package vn.zalopay.benchmark.core.metrics;
+
+import com.google.common.base.Strings;
+import com.sun.net.httpserver.HttpServer;
+import io.grpc.ConnectivityState;
+import io.grpc.ManagedChannel;
+import io.grpc.Status;
+import org.apache.jmeter.util.JMeterUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live client metrics in the Prometheus text format: calls by method and status code, call latency
+ * histograms and in-flight calls per method, and channel states and reconnects per endpoint.
+ *
+ * <p>Calls are counted by {@link vn.zalopay.benchmark.core.grpc.MetricsInterceptor} into
+ * {@link LongAdder}s, which stripe under contention, so sampler threads never wait on each other. The
+ * metrics are rendered on demand, when scraped from {@code http://<host>:<port>/metrics} and every interval
+ * into a text file, e.g. for node_exporter's textfile collector.
+ *
+ * <p>The exporter is enabled with the JMeter property {@value #ENABLED_PROPERTY}.
+ */
+public class GrpcMetrics {
+    public static final String ENABLED_PROPERTY = "grpc.metrics.enabled";
+    public static final String HOST_PROPERTY = "grpc.metrics.host";
+    public static final String PORT_PROPERTY = "grpc.metrics.port";
+    public static final String FILE_PROPERTY = "grpc.metrics.file";
+    public static final String INTERVAL_PROPERTY = "grpc.metrics.interval";
+    public static final String DEFAULT_HOST = "localhost";
+    public static final int DEFAULT_PORT = 9464;
+    public static final long DEFAULT_INTERVAL_MS = 10000;
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private static final Logger log = LoggerFactory.getLogger(GrpcMetrics.class);
+    private static final Status.Code[] STATUS_CODES = Status.Code.values();
+    private static final double[] BUCKET_SECONDS = {
+            0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10};
+    private static final long[] BUCKET_MICROS = new long[BUCKET_SECONDS.length];
+
+    static {
+        for (int i = 0; i < BUCKET_SECONDS.length; i++) {
+            BUCKET_MICROS[i] = Math.round(BUCKET_SECONDS[i] * 1_000_000);
+        }
+    }
+
+    private static volatile GrpcMetrics active;
+
+    private final ConcurrentMap<String, MethodMetrics> methods = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, EndpointMetrics> endpoints = new ConcurrentHashMap<>();
+    private final HttpServer server;
+    private final ExecutorService serverExecutor;
+    private final File file;
+    private final ScheduledExecutorService writer;
+
+    /**
+     * Starts exporting when {@value #ENABLED_PROPERTY} is set, configured from the other JMeter properties.
+     */
+    public static synchronized void startFromProperties() {
+        if (active != null || !JMeterUtils.getPropDefault(ENABLED_PROPERTY, false)) {
+            return;
+        }
+        String fileName = JMeterUtils.getPropDefault(FILE_PROPERTY, "");
+        try {
+            start(JMeterUtils.getPropDefault(HOST_PROPERTY, DEFAULT_HOST),
+                    JMeterUtils.getPropDefault(PORT_PROPERTY, DEFAULT_PORT),
+                    Strings.isNullOrEmpty(fileName) ? null : new File(fileName),
+                    JMeterUtils.getPropDefault(INTERVAL_PROPERTY, DEFAULT_INTERVAL_MS));
+        } catch (IOException e) {
+            log.error("Unable to start the gRPC metrics endpoint, metrics are not exported", e);
+        }
+    }
+
+    /**
+     * Starts exporting, unless it is already active.
+     *
+     * @param port the port to serve {@code /metrics} on, 0 for any free port, negative for no endpoint
+     * @param file the file to write the metrics to every interval, {@code null} for none
+     */
+    public static synchronized GrpcMetrics start(String host, int port, File file, long intervalMs)
+            throws IOException {
+        if (active == null) {
+            active = new GrpcMetrics(host, port, file, intervalMs);
+        }
+        return active;
+    }
+
+    /**
+     * Writes the file one last time and stops exporting.
+     */
+    public static synchronized void stop() {
+        if (active != null) {
+            active.close();
+            active = null;
+        }
+    }
+
+    /**
+     * Returns the active exporter, or {@code null} when metrics are not exported.
+     */
+    public static GrpcMetrics getActive() {
+        return active;
+    }
+
+    private GrpcMetrics(String host, int port, File file, long intervalMs) throws IOException {
+        this.file = file;
+        if (port < 0) {
+            this.serverExecutor = null;
+            this.server = null;
+        } else {
+            this.serverExecutor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "grpc-metrics-server");
+                thread.setDaemon(true);
+                return thread;
+            });
+            try {
+                this.server = startServer(host, port, serverExecutor);
+            } catch (IOException | RuntimeException e) {
+                serverExecutor.shutdown();
+                throw e;
+            }
+        }
+        if (file == null) {
+            this.writer = null;
+            return;
+        }
+        this.writer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "grpc-metrics-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        writer.scheduleAtFixedRate(this::writeFile, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    private HttpServer startServer(String host, int port, ExecutorService executor) throws IOException {
+        HttpServer httpServer = HttpServer.create(new InetSocketAddress(host, port), 0);
+        httpServer.createContext("/metrics", exchange -> {
+            byte[] body = scrape().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        httpServer.setExecutor(executor);
+        httpServer.start();
+        log.info("Serving gRPC metrics on http://{}:{}/metrics", host, httpServer.getAddress().getPort());
+        return httpServer;
+    }
+
+    /**
+     * Returns the port the metrics are served on, or -1 when there is no endpoint.
+     */
+    public int getPort() {
+        return server == null ? -1 : server.getAddress().getPort();
+    }
+
+    private void close() {
+        if (server != null) {
+            server.stop(0);
+            serverExecutor.shutdown();
+        }
+        if (writer != null) {
+            writer.shutdown();
+            try {
+                writer.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            writeFile();
+        }
+    }
+
+    // Written next to the target and moved over it, so readers never see a partial file.
+    private void writeFile() {
+        File tmp = new File(file.getPath() + ".tmp");
+        try {
+            Files.write(tmp.toPath(), scrape().getBytes(StandardCharsets.UTF_8));
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            log.error("Unable to write gRPC metrics to {}", file, e);
+        }
+    }
+
+    public MethodMetrics method(String fullMethod) {
+        MethodMetrics metrics = methods.get(fullMethod);
+        return metrics != null ? metrics : methods.computeIfAbsent(fullMethod, name -> new MethodMetrics());
+    }
+
+    /**
+     * Follows the state of a channel until it shuts down, counting its reconnects under the endpoint.
+     */
+    public void watchChannel(String endpoint, ManagedChannel channel) {
+        endpoints.computeIfAbsent(endpoint, name -> new EndpointMetrics()).watch(channel);
+    }
+
+    /**
+     * Renders every metric in the Prometheus text exposition format.
+     */
+    public String scrape() {
+        Map<String, MethodMetrics> sortedMethods = new TreeMap<>(methods);
+        Map<String, EndpointMetrics> sortedEndpoints = new TreeMap<>(endpoints);
+        StringBuilder out = new StringBuilder();
+
+        header(out, "grpc_client_calls_total", "counter", "Completed calls by method and status code.");
+        for (Map.Entry<String, MethodMetrics> method : sortedMethods.entrySet()) {
+            for (Status.Code code : STATUS_CODES) {
+                long count = method.getValue().calls[code.ordinal()].sum();
+                if (count > 0) {
+                    sample(out, "grpc_client_calls_total", "method", method.getKey(), "code", code.name(), count);
+                }
+            }
+        }
+
+        header(out, "grpc_client_calls_in_flight", "gauge", "Calls started and not yet closed by method.");
+        for (Map.Entry<String, MethodMetrics> method : sortedMethods.entrySet()) {
+            sample(out, "grpc_client_calls_in_flight", "method", method.getKey(), null, null,
+                    method.getValue().inFlight.sum());
+        }
+
+        header(out, "grpc_client_call_duration_seconds", "histogram", "Call latency by method.");
+        for (Map.Entry<String, MethodMetrics> method : sortedMethods.entrySet()) {
+            method.getValue().appendHistogram(out, method.getKey());
+        }
+
+        header(out, "grpc_client_channels", "gauge", "Open channels by endpoint and connectivity state.");
+        for (Map.Entry<String, EndpointMetrics> endpoint : sortedEndpoints.entrySet()) {
+            for (Map.Entry<ConnectivityState, Integer> state : endpoint.getValue().countStates().entrySet()) {
+                sample(out, "grpc_client_channels", "endpoint", endpoint.getKey(), "state", state.getKey().name(),
+                        state.getValue());
+            }
+        }
+
+        header(out, "grpc_client_channel_reconnects_total", "counter",
+                "Connection attempts after a channel had been connected, by endpoint.");
+        for (Map.Entry<String, EndpointMetrics> endpoint : sortedEndpoints.entrySet()) {
+            sample(out, "grpc_client_channel_reconnects_total", "endpoint", endpoint.getKey(), null, null,
+                    endpoint.getValue().reconnects.sum());
+        }
+        return out.toString();
+    }
+
+    private static void header(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder out, String name, String label, String value, String label2,
+                               String value2, Object sample) {
+        out.append(name).append('{').append(label).append("=\"").append(escape(value)).append('"');
+        if (label2 != null) {
+            out.append(',').append(label2).append("=\"").append(escape(value2)).append('"');
+        }
+        out.append("} ").append(sample).append('\n');
+    }
+
+    private static String escape(String labelValue) {
+        return labelValue.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    /**
+     * The counters of one method, written by every thread calling it.
+     */
+    public static final class MethodMetrics {
+        private final LongAdder[] calls = newAdders(STATUS_CODES.length);
+        private final LongAdder inFlight = new LongAdder();
+        private final LongAdder[] buckets = newAdders(BUCKET_MICROS.length + 1);
+        private final LongAdder latencySumMicros = new LongAdder();
+
+        private MethodMetrics() {
+        }
+
+        public void callStarted() {
+            inFlight.increment();
+        }
+
+        public void callClosed(Status.Code code, long latencyNanos) {
+            inFlight.decrement();
+            calls[code.ordinal()].increment();
+            long latencyMicros = Math.max(TimeUnit.NANOSECONDS.toMicros(latencyNanos), 0);
+            latencySumMicros.add(latencyMicros);
+            int bucket = 0;
+            while (bucket < BUCKET_MICROS.length && latencyMicros > BUCKET_MICROS[bucket]) {
+                bucket++;
+            }
+            buckets[bucket].increment();
+        }
+
+        public long getCalls(Status.Code code) {
+            return calls[code.ordinal()].sum();
+        }
+
+        public long getInFlight() {
+            return inFlight.sum();
+        }
+
+        private void appendHistogram(StringBuilder out, String method) {
+            String name = "grpc_client_call_duration_seconds";
+            long cumulative = 0;
+            for (int i = 0; i < BUCKET_SECONDS.length; i++) {
+                cumulative += buckets[i].sum();
+                sample(out, name + "_bucket", "method", method, "le", Double.toString(BUCKET_SECONDS[i]),
+                        cumulative);
+            }
+            cumulative += buckets[BUCKET_SECONDS.length].sum();
+            sample(out, name + "_bucket", "method", method, "le", "+Inf", cumulative);
+            sample(out, name + "_sum", "method", method, null, null, latencySumMicros.sum() / 1_000_000.0);
+            sample(out, name + "_count", "method", method, null, null, cumulative);
+        }
+
+        private static LongAdder[] newAdders(int count) {
+            LongAdder[] adders = new LongAdder[count];
+            for (int i = 0; i < count; i++) {
+                adders[i] = new LongAdder();
+            }
+            return adders;
+        }
+    }
+
+    private static final class EndpointMetrics {
+        private final Set<ManagedChannel> channels = ConcurrentHashMap.newKeySet();
+        private final LongAdder reconnects = new LongAdder();
+
+        private void watch(ManagedChannel channel) {
+            channels.add(channel);
+            watch(channel, channel.getState(false), false);
+        }
+
+        private void watch(ManagedChannel channel, ConnectivityState state, boolean connectedBefore) {
+            if (state == ConnectivityState.SHUTDOWN) {
+                channels.remove(channel);
+                return;
+            }
+            channel.notifyWhenStateChanged(state, () -> {
+                ConnectivityState next = channel.getState(false);
+                boolean connected = connectedBefore || state == ConnectivityState.READY;
+                if (connected && next == ConnectivityState.CONNECTING) {
+                    reconnects.increment();
+                }
+                watch(channel, next, connected);
+            });
+        }
+
+        private Map<ConnectivityState, Integer> countStates() {
+            Map<ConnectivityState, Integer> states = new EnumMap<>(ConnectivityState.class);
+            for (ManagedChannel channel : channels) {
+                ConnectivityState state = channel.getState(false);
+                if (state != ConnectivityState.SHUTDOWN) {
+                    states.merge(state, 1, Integer::sum);
+                }
+            }
+            return states;
+        }
+    }
+}
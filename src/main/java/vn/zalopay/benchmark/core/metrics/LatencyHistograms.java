@@ -0,0 +1,265 @@
+package vn.zalopay.benchmark.core.metrics;
+
+import io.grpc.Status;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogWriter;
+import org.HdrHistogram.SingleWriterRecorder;
+import org.apache.jmeter.util.JMeterUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Records call latencies in microseconds into one HdrHistogram per method and status code, independently
+ * of the millisecond sample results JMeter listeners see.
+ *
+ * <p>Every calling thread writes into its own {@link ThreadRecorder}, so recording never takes a lock. A
+ * reporter thread merges the recorders periodically and appends the interval histograms, tagged
+ * {@code method|status}, to an HdrHistogram log. When an expected interval is set, every value is
+ * corrected for coordinated omission with {@code recordValueWithExpectedInterval}, except those of open-model
+ * calls, which are timed from their intended start. Stopping writes a
+ * percentile summary next to the log.
+ *
+ * <p>Recording is enabled with the JMeter property {@value #ENABLED_PROPERTY}.
+ */
+public class LatencyHistograms {
+    public static final String ENABLED_PROPERTY = "grpc.latency.histogram.enabled";
+    public static final String LOG_PROPERTY = "grpc.latency.histogram.log";
+    public static final String INTERVAL_PROPERTY = "grpc.latency.histogram.interval";
+    public static final String EXPECTED_INTERVAL_PROPERTY = "grpc.latency.histogram.expectedIntervalUs";
+    public static final String DEFAULT_LOG = "grpc-latency.hlog";
+    public static final long DEFAULT_INTERVAL_MS = 10000;
+
+    private static final Logger log = LoggerFactory.getLogger(LatencyHistograms.class);
+    private static final int SIGNIFICANT_DIGITS = 3;
+    private static final double MICROS_PER_MILLI = 1000.0;
+    private static final int STATUS_CODES = Status.Code.values().length;
+
+    private static volatile LatencyHistograms active;
+
+    private final File logFile;
+    private final long expectedIntervalUs;
+    private final long startMillis;
+    private final HistogramLogWriter logWriter;
+    private final ScheduledExecutorService reporter;
+    private final Queue<ThreadRecorder> threadRecorders = new ConcurrentLinkedQueue<>();
+    private final Map<String, Histogram> totals = new TreeMap<>();
+    private long lastReportMillis;
+
+    /**
+     * Starts recording when {@value #ENABLED_PROPERTY} is set, configured from the other JMeter properties.
+     */
+    public static synchronized void startFromProperties() {
+        if (active != null || !JMeterUtils.getPropDefault(ENABLED_PROPERTY, false)) {
+            return;
+        }
+        File logFile = new File(JMeterUtils.getPropDefault(LOG_PROPERTY, DEFAULT_LOG));
+        try {
+            start(logFile, JMeterUtils.getPropDefault(INTERVAL_PROPERTY, DEFAULT_INTERVAL_MS),
+                    JMeterUtils.getPropDefault(EXPECTED_INTERVAL_PROPERTY, 0L));
+        } catch (FileNotFoundException e) {
+            log.error("Unable to open latency histogram log {}, latencies are not recorded", logFile, e);
+        }
+    }
+
+    /**
+     * Starts recording, unless recording is already active.
+     *
+     * @param expectedIntervalUs the interval each thread is expected to call at, 0 disables the correction
+     */
+    public static synchronized LatencyHistograms start(File logFile, long reportIntervalMs, long expectedIntervalUs)
+            throws FileNotFoundException {
+        if (active == null) {
+            active = new LatencyHistograms(logFile, reportIntervalMs, expectedIntervalUs);
+        }
+        return active;
+    }
+
+    /**
+     * Merges what is left, writes the summary and stops recording.
+     */
+    public static synchronized void stop() {
+        if (active != null) {
+            active.close();
+            active = null;
+        }
+    }
+
+    /**
+     * Returns the active recording, or {@code null} when latencies are not recorded.
+     */
+    public static LatencyHistograms getActive() {
+        return active;
+    }
+
+    private LatencyHistograms(File logFile, long reportIntervalMs, long expectedIntervalUs)
+            throws FileNotFoundException {
+        this.logFile = logFile;
+        this.expectedIntervalUs = expectedIntervalUs;
+        this.startMillis = System.currentTimeMillis();
+        this.lastReportMillis = startMillis;
+        this.logWriter = new HistogramLogWriter(logFile);
+        logWriter.outputLogFormatVersion();
+        logWriter.outputStartTime(startMillis);
+        logWriter.setBaseTime(startMillis);
+        logWriter.outputComment("Latencies in microseconds, tagged method|status");
+        logWriter.outputLegend();
+        this.reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "grpc-latency-histogram-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reporter.scheduleAtFixedRate(this::report, reportIntervalMs, reportIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    public ThreadRecorder newThreadRecorder() {
+        ThreadRecorder threadRecorder = new ThreadRecorder();
+        threadRecorders.add(threadRecorder);
+        return threadRecorder;
+    }
+
+    /**
+     * Returns a copy of the latencies merged so far for a method and status, or {@code null} when none
+     * were recorded.
+     */
+    public synchronized Histogram getTotal(String fullMethod, Status.Code code) {
+        Histogram total = totals.get(tagOf(fullMethod, code));
+        return total == null ? null : total.copy();
+    }
+
+    /**
+     * Merges the thread recorders and logs the interval histograms.
+     */
+    public synchronized void report() {
+        Map<String, Histogram> intervals = new TreeMap<>();
+        for (ThreadRecorder threadRecorder : threadRecorders) {
+            threadRecorder.drainInto(intervals);
+        }
+        long nowMillis = System.currentTimeMillis();
+        for (Map.Entry<String, Histogram> interval : intervals.entrySet()) {
+            Histogram histogram = interval.getValue();
+            histogram.setTag(interval.getKey());
+            logWriter.outputIntervalHistogram((lastReportMillis - startMillis) / 1000.0,
+                    (nowMillis - startMillis) / 1000.0, histogram, MICROS_PER_MILLI);
+            totals.computeIfAbsent(interval.getKey(), tag -> new Histogram(SIGNIFICANT_DIGITS)).add(histogram);
+        }
+        lastReportMillis = nowMillis;
+    }
+
+    private void close() {
+        reporter.shutdown();
+        try {
+            reporter.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        report();
+        logWriter.close();
+        writeSummary();
+    }
+
+    private synchronized void writeSummary() {
+        File summaryFile = new File(logFile.getPath() + ".summary.txt");
+        try (PrintStream summary = new PrintStream(new FileOutputStream(summaryFile), false,
+                StandardCharsets.UTF_8.name())) {
+            for (Map.Entry<String, Histogram> total : totals.entrySet()) {
+                Histogram histogram = total.getValue();
+                log.info("{}: count={}, p50={}us, p90={}us, p99={}us, p99.9={}us, max={}us", total.getKey(),
+                        histogram.getTotalCount(), histogram.getValueAtPercentile(50),
+                        histogram.getValueAtPercentile(90), histogram.getValueAtPercentile(99),
+                        histogram.getValueAtPercentile(99.9), histogram.getMaxValue());
+                summary.println(total.getKey());
+                histogram.outputPercentileDistribution(summary, 5, MICROS_PER_MILLI);
+                summary.println();
+            }
+        } catch (IOException e) {
+            log.error("Unable to write latency summary {}", summaryFile, e);
+        }
+    }
+
+    private static String tagOf(String fullMethod, Status.Code code) {
+        return fullMethod + '|' + code;
+    }
+
+    /**
+     * The recorders of one calling thread. {@link #record} must only be called from that thread.
+     */
+    public final class ThreadRecorder {
+        private final Map<String, AtomicReferenceArray<SingleWriterRecorder>> recorders = new ConcurrentHashMap<>();
+        private final Map<SingleWriterRecorder, Histogram> recycled = new HashMap<>();
+
+        private ThreadRecorder() {
+        }
+
+        public boolean belongsTo(LatencyHistograms histograms) {
+            return LatencyHistograms.this == histograms;
+        }
+
+        public void record(String fullMethod, Status.Code code, long latencyNanos) {
+            SingleWriterRecorder recorder = recorderOf(fullMethod, code);
+            long latencyUs = Math.max(TimeUnit.NANOSECONDS.toMicros(latencyNanos), 0);
+            if (expectedIntervalUs > 0) {
+                recorder.recordValueWithExpectedInterval(latencyUs, expectedIntervalUs);
+            } else {
+                recorder.recordValue(latencyUs);
+            }
+        }
+
+        /**
+         * Records calls timed from when a schedule intended to send them rather than from when they were sent.
+         * Such latencies already include any stall, so they are never corrected with the expected interval.
+         */
+        public void recordFromIntendedStart(String fullMethod, Status.Code code, long latencyNanos, int count) {
+            long latencyUs = Math.max(TimeUnit.NANOSECONDS.toMicros(latencyNanos), 0);
+            recorderOf(fullMethod, code).recordValueWithCount(latencyUs, count);
+        }
+
+        private SingleWriterRecorder recorderOf(String fullMethod, Status.Code code) {
+            AtomicReferenceArray<SingleWriterRecorder> byCode = recorders.get(fullMethod);
+            if (byCode == null) {
+                byCode = new AtomicReferenceArray<>(STATUS_CODES);
+                recorders.put(fullMethod, byCode);
+            }
+            SingleWriterRecorder recorder = byCode.get(code.ordinal());
+            if (recorder == null) {
+                recorder = new SingleWriterRecorder(SIGNIFICANT_DIGITS);
+                byCode.set(code.ordinal(), recorder);
+            }
+            return recorder;
+        }
+
+        private void drainInto(Map<String, Histogram> intervals) {
+            for (Map.Entry<String, AtomicReferenceArray<SingleWriterRecorder>> method : recorders.entrySet()) {
+                AtomicReferenceArray<SingleWriterRecorder> byCode = method.getValue();
+                for (int i = 0; i < STATUS_CODES; i++) {
+                    SingleWriterRecorder recorder = byCode.get(i);
+                    if (recorder == null) {
+                        continue;
+                    }
+                    Histogram interval = recorder.getIntervalHistogram(recycled.get(recorder));
+                    recycled.put(recorder, interval);
+                    if (interval.getTotalCount() > 0) {
+                        intervals.computeIfAbsent(tagOf(method.getKey(), Status.Code.values()[i]),
+                                tag -> new Histogram(SIGNIFICANT_DIGITS)).add(interval);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -8,6 +8,8 @@ import com.google.protobuf.DescriptorProtos.FileDescriptorSet;
 import org.apache.jmeter.services.FileServer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import vn.zalopay.benchmark.core.jfr.JfrEvents;
+import vn.zalopay.benchmark.core.jfr.ProtocEvent;
 
 import java.io.*;
 import java.nio.file.*;
@@ -70,6 +72,39 @@ public class ProtocInvoker {
      * {@link FileDescriptorSet} which describes all the protos.
      */
     public FileDescriptorSet invoke() throws ProtocInvocationException {
+        ProtocEvent event = JfrEvents.beginProtoc();
+        try {
+            return compile(event);
+        } finally {
+            if (event != null) {
+                event.protoRoot = discoveryRoot.toString();
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * Returns a fingerprint of the path, size and modification time of every .proto file under the
+     * discovery root and the include paths. It changes whenever a proto file is added, removed or
+     * modified, without reading the files.
+     */
+    public long fingerprint() throws ProtocInvocationException {
+        long fingerprint = 1;
+        for (Path root : ImmutableList.<Path>builder().add(discoveryRoot).addAll(protocIncludePaths).build()) {
+            try (Stream<Path> paths = Files.walk(root)) {
+                for (Path path : (Iterable<Path>) paths.filter(PROTO_MATCHER::matches).sorted()::iterator) {
+                    fingerprint = 31 * fingerprint + path.toAbsolutePath().toString().hashCode();
+                    fingerprint = 31 * fingerprint + Files.size(path);
+                    fingerprint = 31 * fingerprint + Files.getLastModifiedTime(path).toMillis();
+                }
+            } catch (IOException | UncheckedIOException e) {
+                throw new ProtocInvocationException("Unable to scan proto tree for files", e);
+            }
+        }
+        return fingerprint;
+    }
+
+    private FileDescriptorSet compile(ProtocEvent event) throws ProtocInvocationException {
         Path wellKnownTypesInclude;
         Path googleTypesInclude;
         try {
@@ -87,6 +122,9 @@ public class ProtocInvoker {
 
         // Large folder processing, solve CreateProcess error=206
         final ImmutableSet<String> protoFilePaths = scanProtoFiles(discoveryRoot);
+        if (event != null) {
+            event.protoFiles = protoFilePaths.size();
+        }
         ImmutableList<String> protocArgs = null;
 
         if (protoFilePaths.size() > largeFolderLimit) {
@@ -124,20 +162,14 @@ public class ProtocInvoker {
         int status;
         String[] protocLogLines;
 
-        // The "protoc" library unconditionally writes to stdout. So, we replace stdout right before
-        // calling into the library in order to gather its output.
-        PrintStream stdoutBackup = System.out;
+        // Protoc's output is gathered per invocation instead of replacing stdout, so several protos can be
+        // compiled at once.
         try {
-            ByteArrayOutputStream protocStdout = new ByteArrayOutputStream();
-            System.setOut(new PrintStream(protocStdout));
-
-            status = Protoc.runProtoc(protocArgs.toArray(new String[0]));
-            protocLogLines = protocStdout.toString().split("\n");
+            ByteArrayOutputStream protocOutput = new ByteArrayOutputStream();
+            status = Protoc.runProtoc(protocArgs.toArray(new String[0]), protocOutput, protocOutput);
+            protocLogLines = protocOutput.toString().split("\n");
         } catch (IOException | InterruptedException e) {
             throw new ProtocInvocationException("Unable to execute protoc binary", e);
-        } finally {
-            // Restore stdout.
-            System.setOut(stdoutBackup);
         }
         if (status != 0) {
             // If protoc failed, we dump its output as a warning.
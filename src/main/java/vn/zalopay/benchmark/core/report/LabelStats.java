@@ -0,0 +1,141 @@
+package vn.zalopay.benchmark.core.report;
+
+import io.grpc.Status;
+import org.HdrHistogram.Histogram;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * The aggregated samples of one label: counts, an elapsed time histogram in milliseconds, samples and
+ * errors per interval, and errors by cause. Its size depends on the run's duration and number of distinct
+ * errors, never on the number of samples.
+ */
+public class LabelStats {
+    private static final int SIGNIFICANT_DIGITS = 3;
+    private static final String STATUS_EXCEPTION = "StatusRuntimeException: ";
+    private static final int MAX_CAUSE_LENGTH = 80;
+
+    private final long intervalMs;
+    private final Histogram elapsed = new Histogram(SIGNIFICANT_DIGITS);
+    private final SortedMap<Long, long[]> intervals = new TreeMap<>();
+    private final SortedMap<String, Long> errorCauses = new TreeMap<>();
+    private long samples;
+    private long errors;
+    private long firstStartMs = Long.MAX_VALUE;
+    private long lastEndMs = Long.MIN_VALUE;
+
+    public LabelStats(long intervalMs) {
+        this.intervalMs = intervalMs;
+    }
+
+    /**
+     * @param responseMessage only read for failed samples
+     */
+    public void add(long timeStampMs, long elapsedMs, boolean success, String responseCode, String responseMessage) {
+        samples++;
+        elapsed.recordValue(Math.max(0, elapsedMs));
+        firstStartMs = Math.min(firstStartMs, timeStampMs);
+        lastEndMs = Math.max(lastEndMs, timeStampMs + elapsedMs);
+        long[] interval = intervals.computeIfAbsent(timeStampMs / intervalMs, ignored -> new long[2]);
+        interval[0]++;
+        if (!success) {
+            errors++;
+            interval[1]++;
+            errorCauses.merge(causeOf(responseCode, responseMessage), 1L, Long::sum);
+        }
+    }
+
+    public void merge(LabelStats other) {
+        samples += other.samples;
+        errors += other.errors;
+        elapsed.add(other.elapsed);
+        firstStartMs = Math.min(firstStartMs, other.firstStartMs);
+        lastEndMs = Math.max(lastEndMs, other.lastEndMs);
+        for (Map.Entry<Long, long[]> interval : other.intervals.entrySet()) {
+            long[] counts = intervals.computeIfAbsent(interval.getKey(), ignored -> new long[2]);
+            counts[0] += interval.getValue()[0];
+            counts[1] += interval.getValue()[1];
+        }
+        other.errorCauses.forEach((cause, count) -> errorCauses.merge(cause, count, Long::sum));
+    }
+
+    public long getSamples() {
+        return samples;
+    }
+
+    public long getErrors() {
+        return errors;
+    }
+
+    public double getErrorRate() {
+        return samples == 0 ? 0 : (double) errors / samples;
+    }
+
+    /**
+     * Returns the samples per second between the start of the first and the end of the last sample.
+     */
+    public double getThroughput() {
+        long durationMs = lastEndMs - firstStartMs;
+        return durationMs <= 0 ? samples : samples * 1000.0 / durationMs;
+    }
+
+    public long getFirstStartMs() {
+        return firstStartMs;
+    }
+
+    /**
+     * Returns the elapsed time in milliseconds at a percentile between 0 and 100.
+     */
+    public long getElapsedAtPercentile(double percentile) {
+        return elapsed.getValueAtPercentile(percentile);
+    }
+
+    public double getMeanElapsed() {
+        return elapsed.getMean();
+    }
+
+    public long getMaxElapsed() {
+        return elapsed.getMaxValue();
+    }
+
+    public long getIntervalMs() {
+        return intervalMs;
+    }
+
+    /**
+     * Returns the samples and errors started in each interval, keyed by the interval's start in milliseconds.
+     */
+    public SortedMap<Long, long[]> getIntervals() {
+        SortedMap<Long, long[]> byStart = new TreeMap<>();
+        intervals.forEach((interval, counts) -> byStart.put(interval * intervalMs, counts.clone()));
+        return byStart;
+    }
+
+    public SortedMap<String, Long> getErrorCauses() {
+        return Collections.unmodifiableSortedMap(errorCauses);
+    }
+
+    /**
+     * Failed calls are reported by the sampler as {@code Exception: ...StatusRuntimeException: CODE: ...}, so
+     * they are grouped by their gRPC status code. Other failures are grouped by response code and message.
+     */
+    static String causeOf(String responseCode, String responseMessage) {
+        String message = responseMessage == null ? "" : responseMessage;
+        int status = message.indexOf(STATUS_EXCEPTION);
+        if (status >= 0) {
+            int start = status + STATUS_EXCEPTION.length();
+            int end = message.indexOf(':', start);
+            String code = message.substring(start, end < 0 ? message.length() : end).trim();
+            try {
+                return Status.Code.valueOf(code).name();
+            } catch (IllegalArgumentException ignored) {
+                // Not a status code, grouped by the message below.
+            }
+        }
+        String cause = responseCode + " " + message.trim();
+        return cause.length() > MAX_CAUSE_LENGTH ? cause.substring(0, MAX_CAUSE_LENGTH) : cause;
+    }
+}
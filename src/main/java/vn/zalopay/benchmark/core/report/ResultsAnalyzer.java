@@ -0,0 +1,560 @@
+package vn.zalopay.benchmark.core.report;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reads the CSV results JMeter saves for gRPC samples (a JTL file in CSV format) and summarizes them per
+ * label. The file is split into chunks at record boundaries, every chunk is memory-mapped and parsed by one
+ * of several threads into per-label {@link LabelStats}, and the statistics of the threads are merged at the
+ * end, so memory does not grow with the size of the file.
+ *
+ * <p>The columns are read from the header line when the file has one, otherwise they are expected in
+ * JMeter's default order. Only {@code timeStamp}, {@code elapsed}, {@code label}, {@code responseCode},
+ * {@code responseMessage} and {@code success} are read, and time stamps must be saved in milliseconds.
+ *
+ * <p>Run it from the plugin jar:
+ * <pre>
+ * java -cp jmeter-grpc-request.jar vn.zalopay.benchmark.core.report.ResultsAnalyzer results.csv
+ * </pre>
+ */
+public class ResultsAnalyzer {
+    public static final long DEFAULT_INTERVAL_MS = 1000;
+    public static final int DEFAULT_CHUNK_BYTES = 64 * 1024 * 1024;
+
+    /** The columns of {@code jmeter.save.saveservice.*} defaults, as written without a header line. */
+    public static final List<String> DEFAULT_COLUMNS = Arrays.asList("timeStamp", "elapsed", "label",
+            "responseCode", "responseMessage", "threadName", "dataType", "success", "failureMessage", "bytes",
+            "sentBytes", "grpThreads", "allThreads", "URL", "Latency", "IdleTime", "Connect");
+
+    private static final byte DELIMITER = ',';
+    private static final byte QUOTE = '"';
+    private static final int BOUNDARY_READ_BYTES = 64 * 1024;
+
+    private final long intervalMs;
+    private final int threads;
+    private final int chunkBytes;
+
+    public ResultsAnalyzer() {
+        this(DEFAULT_INTERVAL_MS, Runtime.getRuntime().availableProcessors(), DEFAULT_CHUNK_BYTES);
+    }
+
+    /**
+     * @param intervalMs the width of the intervals throughput over time is counted in
+     * @param threads    the number of chunks parsed at the same time
+     * @param chunkBytes the size a chunk is cut at, before it is extended to the end of its last record
+     */
+    public ResultsAnalyzer(long intervalMs, int threads, int chunkBytes) {
+        if (intervalMs <= 0 || threads <= 0 || chunkBytes <= 0) {
+            throw new IllegalArgumentException("Interval, threads and chunk size must be positive");
+        }
+        this.intervalMs = intervalMs;
+        this.threads = threads;
+        this.chunkBytes = chunkBytes;
+    }
+
+    public ResultsSummary analyze(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            String firstLine = readFirstLine(channel);
+            boolean hasHeader = !firstLine.isEmpty() && !Character.isDigit(firstLine.charAt(0));
+            Columns columns = new Columns(hasHeader ? Arrays.asList(firstLine.split(",", -1)) : DEFAULT_COLUMNS);
+            long dataStart = hasHeader ? Math.min(size, nextLineStart(channel, 0)) : 0;
+            List<long[]> chunks = split(channel, dataStart, size);
+
+            int workers = Math.max(1, Math.min(threads, chunks.size()));
+            ExecutorService executor = Executors.newFixedThreadPool(workers, runnable -> {
+                Thread thread = new Thread(runnable, "results-analyzer");
+                thread.setDaemon(true);
+                return thread;
+            });
+            try {
+                AtomicInteger nextChunk = new AtomicInteger();
+                List<Future<Map<LabelKey, LabelStats>>> results = new ArrayList<>();
+                for (int i = 0; i < workers; i++) {
+                    results.add(executor.submit(() -> {
+                        ChunkParser parser = new ChunkParser(columns);
+                        for (int chunk = nextChunk.getAndIncrement(); chunk < chunks.size();
+                             chunk = nextChunk.getAndIncrement()) {
+                            long[] range = chunks.get(chunk);
+                            parser.parse(channel.map(FileChannel.MapMode.READ_ONLY, range[0], range[1] - range[0]),
+                                    range[0]);
+                        }
+                        return parser.labels;
+                    }));
+                }
+                SortedMap<String, LabelStats> labels = new TreeMap<>();
+                for (Future<Map<LabelKey, LabelStats>> result : results) {
+                    for (Map.Entry<LabelKey, LabelStats> label : result.get().entrySet()) {
+                        labels.merge(label.getKey().toString(), label.getValue(), (merged, stats) -> {
+                            merged.merge(stats);
+                            return merged;
+                        });
+                    }
+                }
+                return new ResultsSummary(intervalMs, labels);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while reading " + file, e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new IOException("Unable to read " + file, e.getCause());
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Cuts the data into chunks of about {@code chunkBytes}, each ending where a record starts. A record
+     * starts after a line break with digits followed by a delimiter, so that a line break inside a quoted
+     * response message does not end a chunk.
+     */
+    private List<long[]> split(FileChannel channel, long dataStart, long size) throws IOException {
+        List<long[]> chunks = new ArrayList<>();
+        long start = dataStart;
+        while (start < size) {
+            long end = size - start <= chunkBytes ? size : nextRecordStart(channel, start + chunkBytes, size);
+            chunks.add(new long[] {start, end});
+            start = end;
+        }
+        return chunks;
+    }
+
+    private static long nextRecordStart(FileChannel channel, long position, long size) throws IOException {
+        long lineStart = nextLineStart(channel, position);
+        while (lineStart < size && !isRecordStart(channel, lineStart)) {
+            lineStart = nextLineStart(channel, lineStart);
+        }
+        return Math.min(lineStart, size);
+    }
+
+    private static boolean isRecordStart(FileChannel channel, long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(32);
+        channel.read(buffer, position);
+        buffer.flip();
+        int digits = 0;
+        while (buffer.hasRemaining()) {
+            byte b = buffer.get();
+            if (b == DELIMITER) {
+                return digits > 0;
+            }
+            if (b < '0' || b > '9') {
+                return false;
+            }
+            digits++;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the position after the first line break at or after {@code position}, or the size of the file.
+     */
+    private static long nextLineStart(FileChannel channel, long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(BOUNDARY_READ_BYTES);
+        long offset = position;
+        while (true) {
+            buffer.clear();
+            int read = channel.read(buffer, offset);
+            if (read <= 0) {
+                return channel.size();
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return offset + i + 1;
+                }
+            }
+            offset += read;
+        }
+    }
+
+    private static String readFirstLine(FileChannel channel) throws IOException {
+        long end = Math.min(nextLineStart(channel, 0), channel.size());
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(end, Integer.MAX_VALUE));
+        channel.read(buffer, 0);
+        String line = new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8);
+        if (line.startsWith("\uFEFF")) {
+            line = line.substring(1);
+        }
+        return line.trim();
+    }
+
+    /**
+     * Parses the records of the chunks given to one thread into statistics per label. Labels are looked up
+     * by their bytes, so only labels seen for the first time and the messages of failed samples are decoded.
+     */
+    private class ChunkParser {
+        private final Columns columns;
+        private final int[] fieldStarts;
+        private final int[] fieldEnds;
+        private final Map<LabelKey, LabelStats> labels = new HashMap<>();
+        private final LabelKey probe = new LabelKey();
+        private byte[] scratch = new byte[256];
+
+        private ChunkParser(Columns columns) {
+            this.columns = columns;
+            this.fieldStarts = new int[columns.lastRead + 1];
+            this.fieldEnds = new int[columns.lastRead + 1];
+        }
+
+        private void parse(MappedByteBuffer buffer, long chunkStart) {
+            int position = 0;
+            int limit = buffer.limit();
+            while (position < limit) {
+                int recordStart = position;
+                int field = 0;
+                while (true) {
+                    int fieldStart = position;
+                    position = skipField(buffer, position, limit);
+                    if (field < fieldStarts.length) {
+                        fieldStarts[field] = fieldStart;
+                        fieldEnds[field] = position;
+                    }
+                    field++;
+                    if (position >= limit || buffer.get(position) == '\n') {
+                        position++;
+                        break;
+                    }
+                    position++;
+                }
+                if (field == 1 && isBlank(buffer, fieldStarts[0], fieldEnds[0])) {
+                    continue;
+                }
+                if (field < fieldStarts.length) {
+                    throw new IllegalArgumentException(String.format(
+                            "Record at byte %d has %d fields, expected at least %d", chunkStart + recordStart, field,
+                            fieldStarts.length));
+                }
+                add(buffer, chunkStart + recordStart);
+            }
+        }
+
+        private void add(MappedByteBuffer buffer, long recordOffset) {
+            long timeStamp = parseLong(buffer, columns.timeStamp, recordOffset);
+            long elapsed = parseLong(buffer, columns.elapsed, recordOffset);
+            int successStart = fieldStarts[columns.success];
+            boolean success = fieldEnds[columns.success] > successStart
+                    && (buffer.get(successStart) == 't' || buffer.get(successStart) == 'T');
+
+            int labelLength = copyField(buffer, columns.label);
+            probe.set(scratch, labelLength);
+            LabelStats stats = labels.get(probe);
+            if (stats == null) {
+                stats = new LabelStats(intervalMs);
+                labels.put(probe.copy(), stats);
+            }
+            if (success) {
+                stats.add(timeStamp, elapsed, true, null, null);
+            } else {
+                String responseMessage = columns.responseMessage < 0 ? "" : decodeField(buffer, columns.responseMessage);
+                stats.add(timeStamp, elapsed, false, decodeField(buffer, columns.responseCode), responseMessage);
+            }
+        }
+
+        private long parseLong(MappedByteBuffer buffer, int column, long recordOffset) {
+            int start = fieldStarts[column];
+            int end = trimEnd(buffer, start, fieldEnds[column]);
+            if (start == end) {
+                throw new IllegalArgumentException(String.format("Empty %s in record at byte %d",
+                        columns.names.get(column), recordOffset));
+            }
+            long value = 0;
+            for (int i = start; i < end; i++) {
+                byte b = buffer.get(i);
+                if (b < '0' || b > '9') {
+                    throw new IllegalArgumentException(String.format(
+                            "%s in record at byte %d is not a number of milliseconds", columns.names.get(column),
+                            recordOffset));
+                }
+                value = value * 10 + (b - '0');
+            }
+            return value;
+        }
+
+        private String decodeField(MappedByteBuffer buffer, int column) {
+            return new String(scratch, 0, copyField(buffer, column), StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Copies the content of a field to {@link #scratch}, removing the quotes around it and unescaping
+         * doubled quotes, and returns its length.
+         */
+        private int copyField(MappedByteBuffer buffer, int column) {
+            int start = fieldStarts[column];
+            int end = trimEnd(buffer, start, fieldEnds[column]);
+            if (scratch.length < end - start) {
+                scratch = new byte[Math.max(end - start, scratch.length * 2)];
+            }
+            int length = 0;
+            if (end > start && buffer.get(start) == QUOTE) {
+                for (int i = start + 1; i < end - 1; i++) {
+                    byte b = buffer.get(i);
+                    scratch[length++] = b;
+                    if (b == QUOTE) {
+                        i++;
+                    }
+                }
+            } else {
+                for (int i = start; i < end; i++) {
+                    scratch[length++] = buffer.get(i);
+                }
+            }
+            return length;
+        }
+    }
+
+    /**
+     * Returns the position of the delimiter or line break ending the field at {@code position}.
+     */
+    private static int skipField(MappedByteBuffer buffer, int position, int limit) {
+        if (position < limit && buffer.get(position) == QUOTE) {
+            position++;
+            while (position < limit) {
+                if (buffer.get(position++) == QUOTE) {
+                    if (position < limit && buffer.get(position) == QUOTE) {
+                        position++;
+                    } else {
+                        break;
+                    }
+                }
+            }
+        }
+        while (position < limit) {
+            byte b = buffer.get(position);
+            if (b == DELIMITER || b == '\n') {
+                return position;
+            }
+            position++;
+        }
+        return limit;
+    }
+
+    private static int trimEnd(MappedByteBuffer buffer, int start, int end) {
+        while (end > start && buffer.get(end - 1) == '\r') {
+            end--;
+        }
+        return end;
+    }
+
+    private static boolean isBlank(MappedByteBuffer buffer, int start, int end) {
+        for (int i = start; i < end; i++) {
+            byte b = buffer.get(i);
+            if (b != '\r' && b != ' ' && b != '\t') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The positions of the columns read, from the header line or {@link #DEFAULT_COLUMNS}.
+     */
+    private static class Columns {
+        private final List<String> names;
+        private final int timeStamp;
+        private final int elapsed;
+        private final int label;
+        private final int responseCode;
+        private final int responseMessage;
+        private final int success;
+        private final int lastRead;
+
+        private Columns(List<String> names) {
+            this.names = names;
+            this.timeStamp = required("timeStamp");
+            this.elapsed = required("elapsed");
+            this.label = required("label");
+            this.responseCode = required("responseCode");
+            this.responseMessage = names.indexOf("responseMessage");
+            this.success = required("success");
+            this.lastRead = Math.max(Math.max(Math.max(timeStamp, elapsed), Math.max(label, responseCode)),
+                    Math.max(responseMessage, success));
+        }
+
+        private int required(String name) {
+            int index = names.indexOf(name);
+            if (index < 0) {
+                throw new IllegalArgumentException("Results have no " + name + " column, columns are: " + names);
+            }
+            return index;
+        }
+    }
+
+    /**
+     * The bytes of a label. The parser probes its map with a reused key over its scratch buffer and copies
+     * the key only for a new label.
+     */
+    private static final class LabelKey {
+        private byte[] bytes;
+        private int length;
+        private int hash;
+
+        private void set(byte[] bytes, int length) {
+            this.bytes = bytes;
+            this.length = length;
+            int h = 1;
+            for (int i = 0; i < length; i++) {
+                h = 31 * h + bytes[i];
+            }
+            this.hash = h;
+        }
+
+        private LabelKey copy() {
+            LabelKey key = new LabelKey();
+            key.set(Arrays.copyOf(bytes, length), length);
+            return key;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof LabelKey)) {
+                return false;
+            }
+            LabelKey other = (LabelKey) o;
+            if (other.length != length || other.hash != hash) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (bytes[i] != other.bytes[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return new String(bytes, 0, length, StandardCharsets.UTF_8);
+        }
+    }
+
+    public static void main(String[] args) {
+        PrintStream out = System.out;
+        try {
+            System.exit(run(args, out));
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("Unable to read results: " + e.getMessage());
+            System.exit(2);
+        }
+    }
+
+    static final String USAGE = "Usage: ResultsAnalyzer [options] <results.csv>\n"
+            + "  --interval=<ms>                      interval of throughput over time, default 1000\n"
+            + "  --threads=<n>                        threads parsing the file, default the number of CPUs\n"
+            + "  --timeline=<file>                    write throughput over time per label as CSV to a file\n"
+            + "  --baseline=<results.csv>             compare with the results of an earlier run\n"
+            + "  --max-latency-increase=<percent>     p50, p95 or p99 increase counted as a regression, default "
+            + RunComparison.DEFAULT_MAX_LATENCY_INCREASE_PERCENT + "\n"
+            + "  --max-throughput-decrease=<percent>  throughput decrease counted as a regression, default "
+            + RunComparison.DEFAULT_MAX_THROUGHPUT_DECREASE_PERCENT + "\n"
+            + "  --max-error-rate-increase=<points>   error percentage increase counted as a regression, default "
+            + RunComparison.DEFAULT_MAX_ERROR_RATE_INCREASE_POINTS;
+
+    /**
+     * Runs the analyzer from command line arguments and returns its exit code: 0, or 1 when compared to a
+     * baseline with a regression.
+     */
+    static int run(String[] args, PrintStream out) throws IOException {
+        long intervalMs = DEFAULT_INTERVAL_MS;
+        int threads = Runtime.getRuntime().availableProcessors();
+        File timeline = null;
+        File baseline = null;
+        double maxLatencyIncrease = RunComparison.DEFAULT_MAX_LATENCY_INCREASE_PERCENT;
+        double maxThroughputDecrease = RunComparison.DEFAULT_MAX_THROUGHPUT_DECREASE_PERCENT;
+        double maxErrorRateIncrease = RunComparison.DEFAULT_MAX_ERROR_RATE_INCREASE_POINTS;
+        File results = null;
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                if (results != null) {
+                    throw new IllegalArgumentException("Only one results file can be analyzed, got " + arg);
+                }
+                results = new File(arg);
+                continue;
+            }
+            int equals = arg.indexOf('=');
+            if (equals < 0) {
+                throw new IllegalArgumentException("Option has no value: " + arg);
+            }
+            String name = arg.substring(2, equals);
+            String value = arg.substring(equals + 1);
+            switch (name) {
+                case "interval":
+                    intervalMs = Long.parseLong(value);
+                    break;
+                case "threads":
+                    threads = Integer.parseInt(value);
+                    break;
+                case "timeline":
+                    timeline = new File(value);
+                    break;
+                case "baseline":
+                    baseline = new File(value);
+                    break;
+                case "max-latency-increase":
+                    maxLatencyIncrease = Double.parseDouble(value);
+                    break;
+                case "max-throughput-decrease":
+                    maxThroughputDecrease = Double.parseDouble(value);
+                    break;
+                case "max-error-rate-increase":
+                    maxErrorRateIncrease = Double.parseDouble(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+        }
+        if (results == null) {
+            throw new IllegalArgumentException("No results file given");
+        }
+
+        ResultsAnalyzer analyzer = new ResultsAnalyzer(intervalMs, threads, DEFAULT_CHUNK_BYTES);
+        ResultsSummary summary = analyzer.analyze(results);
+        summary.print(out);
+        if (timeline != null) {
+            try (PrintStream timelineOut = new PrintStream(timeline, StandardCharsets.UTF_8.name())) {
+                summary.printTimeline(timelineOut);
+            }
+        }
+        if (baseline == null) {
+            return 0;
+        }
+        RunComparison comparison = RunComparison.compare(analyzer.analyze(baseline), summary, maxLatencyIncrease,
+                maxThroughputDecrease, maxErrorRateIncrease);
+        out.println();
+        comparison.print(out);
+        return comparison.hasRegression() ? 1 : 0;
+    }
+}
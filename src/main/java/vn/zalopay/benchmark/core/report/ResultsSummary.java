@@ -0,0 +1,104 @@
+package vn.zalopay.benchmark.core.report;
+
+import java.io.PrintStream;
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * The statistics of one results file, per label and over all labels.
+ */
+public class ResultsSummary {
+    public static final String TOTAL = "TOTAL";
+    private static final double[] PERCENTILES = {50, 90, 95, 99, 99.9};
+
+    private final long intervalMs;
+    private final SortedMap<String, LabelStats> labels;
+    private final LabelStats total;
+
+    ResultsSummary(long intervalMs, SortedMap<String, LabelStats> labels) {
+        this.intervalMs = intervalMs;
+        this.labels = labels;
+        this.total = new LabelStats(intervalMs);
+        for (LabelStats stats : labels.values()) {
+            total.merge(stats);
+        }
+    }
+
+    public SortedMap<String, LabelStats> getLabels() {
+        return Collections.unmodifiableSortedMap(labels);
+    }
+
+    public LabelStats getLabel(String label) {
+        return TOTAL.equals(label) ? total : labels.get(label);
+    }
+
+    public LabelStats getTotal() {
+        return total;
+    }
+
+    public long getIntervalMs() {
+        return intervalMs;
+    }
+
+    /**
+     * Prints one line per label with its counts, throughput and elapsed time percentiles in milliseconds,
+     * followed by the errors of every label by cause.
+     */
+    public void print(PrintStream out) {
+        out.printf("%-40s %10s %8s %7s %10s %8s", "label", "samples", "errors", "error%", "samples/s", "mean");
+        for (double percentile : PERCENTILES) {
+            out.printf(" %7s", "p" + formatPercentile(percentile));
+        }
+        out.printf(" %7s%n", "max");
+        for (Map.Entry<String, LabelStats> label : labels.entrySet()) {
+            printLabel(out, label.getKey(), label.getValue());
+        }
+        printLabel(out, TOTAL, total);
+
+        if (total.getErrors() > 0) {
+            out.println();
+            out.printf("%-40s %-60s %10s%n", "label", "error", "count");
+            for (Map.Entry<String, LabelStats> label : labels.entrySet()) {
+                for (Map.Entry<String, Long> cause : label.getValue().getErrorCauses().entrySet()) {
+                    out.printf("%-40s %-60s %10d%n", label.getKey(), cause.getKey(), cause.getValue());
+                }
+            }
+        }
+    }
+
+    /**
+     * Prints, as CSV, the samples per second and errors of every label in every interval, the interval
+     * being given as seconds since the first sample of the run.
+     */
+    public void printTimeline(PrintStream out) {
+        out.println("offset_s,label,samples_per_s,errors");
+        long runStartMs = total.getFirstStartMs() / intervalMs * intervalMs;
+        SortedMap<Long, SortedMap<String, long[]>> byInterval = new TreeMap<>();
+        for (Map.Entry<String, LabelStats> label : labels.entrySet()) {
+            label.getValue().getIntervals().forEach((startMs, counts) ->
+                    byInterval.computeIfAbsent(startMs, ignored -> new TreeMap<>()).put(label.getKey(), counts));
+        }
+        for (Map.Entry<Long, SortedMap<String, long[]>> interval : byInterval.entrySet()) {
+            double offsetSeconds = (interval.getKey() - runStartMs) / 1000.0;
+            for (Map.Entry<String, long[]> label : interval.getValue().entrySet()) {
+                out.printf("%.3f,%s,%.2f,%d%n", offsetSeconds, label.getKey(),
+                        label.getValue()[0] * 1000.0 / intervalMs, label.getValue()[1]);
+            }
+        }
+    }
+
+    private static void printLabel(PrintStream out, String name, LabelStats stats) {
+        out.printf("%-40s %10d %8d %7.2f %10.1f %8.1f", name, stats.getSamples(), stats.getErrors(),
+                stats.getErrorRate() * 100, stats.getThroughput(), stats.getMeanElapsed());
+        for (double percentile : PERCENTILES) {
+            out.printf(" %7d", stats.getElapsedAtPercentile(percentile));
+        }
+        out.printf(" %7d%n", stats.getMaxElapsed());
+    }
+
+    static String formatPercentile(double percentile) {
+        return percentile == Math.rint(percentile) ? Long.toString((long) percentile) : Double.toString(percentile);
+    }
+}
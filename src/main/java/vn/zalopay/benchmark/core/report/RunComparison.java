@@ -0,0 +1,144 @@
+package vn.zalopay.benchmark.core.report;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Compares every label of a run with the same label of a baseline run. A label regresses when its p50,
+ * p95 or p99 elapsed time grows by more than a percentage, its throughput drops by more than a percentage,
+ * its error rate grows by more than a number of percentage points, or it has no samples in the run.
+ */
+public class RunComparison {
+    public static final double DEFAULT_MAX_LATENCY_INCREASE_PERCENT = 10;
+    public static final double DEFAULT_MAX_THROUGHPUT_DECREASE_PERCENT = 10;
+    public static final double DEFAULT_MAX_ERROR_RATE_INCREASE_POINTS = 1;
+    private static final double[] PERCENTILES = {50, 95, 99};
+
+    private final List<Difference> differences;
+
+    private RunComparison(List<Difference> differences) {
+        this.differences = differences;
+    }
+
+    public static RunComparison compare(ResultsSummary baseline, ResultsSummary current) {
+        return compare(baseline, current, DEFAULT_MAX_LATENCY_INCREASE_PERCENT,
+                DEFAULT_MAX_THROUGHPUT_DECREASE_PERCENT, DEFAULT_MAX_ERROR_RATE_INCREASE_POINTS);
+    }
+
+    public static RunComparison compare(ResultsSummary baseline, ResultsSummary current,
+            double maxLatencyIncreasePercent, double maxThroughputDecreasePercent,
+            double maxErrorRateIncreasePoints) {
+        Set<String> labels = new TreeSet<>(baseline.getLabels().keySet());
+        labels.addAll(current.getLabels().keySet());
+        labels.add(ResultsSummary.TOTAL);
+
+        List<Difference> differences = new ArrayList<>();
+        for (String label : labels) {
+            LabelStats before = baseline.getLabel(label);
+            LabelStats after = current.getLabel(label);
+            if (before == null) {
+                continue;
+            }
+            if (after == null) {
+                differences.add(new Difference(label, "samples", before.getSamples(), 0, -100, true));
+                continue;
+            }
+            for (double percentile : PERCENTILES) {
+                long beforeMs = before.getElapsedAtPercentile(percentile);
+                long afterMs = after.getElapsedAtPercentile(percentile);
+                double change = percentChange(beforeMs, afterMs);
+                differences.add(new Difference(label, "p" + ResultsSummary.formatPercentile(percentile) + " ms",
+                        beforeMs, afterMs, change, change > maxLatencyIncreasePercent));
+            }
+            double throughputChange = percentChange(before.getThroughput(), after.getThroughput());
+            differences.add(new Difference(label, "samples/s", before.getThroughput(), after.getThroughput(),
+                    throughputChange, -throughputChange > maxThroughputDecreasePercent));
+            double beforeErrors = before.getErrorRate() * 100;
+            double afterErrors = after.getErrorRate() * 100;
+            differences.add(new Difference(label, "error%", beforeErrors, afterErrors, afterErrors - beforeErrors,
+                    afterErrors - beforeErrors > maxErrorRateIncreasePoints));
+        }
+        return new RunComparison(differences);
+    }
+
+    public List<Difference> getDifferences() {
+        return Collections.unmodifiableList(differences);
+    }
+
+    public boolean hasRegression() {
+        for (Difference difference : differences) {
+            if (difference.isRegression()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public void print(PrintStream out) {
+        out.printf("%-40s %-10s %12s %12s %10s%n", "label", "metric", "baseline", "current", "change");
+        for (Difference difference : differences) {
+            out.printf("%-40s %-10s %12.1f %12.1f %+9.1f%s%s%n", difference.getLabel(), difference.getMetric(),
+                    difference.getBaseline(), difference.getCurrent(), difference.getChange(),
+                    difference.getMetric().equals("error%") ? "pt" : "%",
+                    difference.isRegression() ? "  REGRESSION" : "");
+        }
+    }
+
+    private static double percentChange(double before, double after) {
+        if (before == 0) {
+            return after == 0 ? 0 : 100;
+        }
+        return (after - before) * 100 / before;
+    }
+
+    /**
+     * One metric of one label in both runs. The change is in percent, or in percentage points for the
+     * error rate.
+     */
+    public static class Difference {
+        private final String label;
+        private final String metric;
+        private final double baseline;
+        private final double current;
+        private final double change;
+        private final boolean regression;
+
+        Difference(String label, String metric, double baseline, double current, double change,
+                boolean regression) {
+            this.label = label;
+            this.metric = metric;
+            this.baseline = baseline;
+            this.current = current;
+            this.change = change;
+            this.regression = regression;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        public String getMetric() {
+            return metric;
+        }
+
+        public double getBaseline() {
+            return baseline;
+        }
+
+        public double getCurrent() {
+            return current;
+        }
+
+        public double getChange() {
+            return change;
+        }
+
+        public boolean isRegression() {
+            return regression;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package vn.zalopay.benchmark.core.specification;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The phases of one call, from the client starting it to the last response message rendered as JSON.
+ * Events are recorded from the calling thread, the call executor and transport threads; only the first
+ * occurrence of each event counts, so with retries or hedging they belong to whichever attempt got there
+ * first. Serialization, deserialization and rendering are totals over every message of the call.
+ */
+public class CallTimeline {
+    public enum Event {
+        /** The client started the call. */
+        STARTED("started"),
+        /** A stream was created on a ready transport, ending the wait for a connection. */
+        STREAM_CREATED("transport-ready"),
+        /** The request headers were written to the transport. */
+        HEADERS_SENT("headers-sent"),
+        /** The first request message was handed to the transport. */
+        MESSAGE_SENT("message-sent"),
+        /** The response headers arrived. */
+        HEADERS_RECEIVED("headers-received"),
+        /** The first response message arrived, before it is parsed. */
+        FIRST_BYTE("first-byte"),
+        /** The call closed with its status. */
+        CLOSED("closed");
+
+        private final String headerName;
+
+        Event(String headerName) {
+            this.headerName = headerName;
+        }
+    }
+
+    private final AtomicLongArray eventNanos = new AtomicLongArray(Event.values().length);
+    private final AtomicLong serializeNanos = new AtomicLong();
+    private final AtomicLong deserializeNanos = new AtomicLong();
+    private final AtomicLong renderNanos = new AtomicLong();
+
+    public void record(Event event) {
+        long nanoTime = System.nanoTime();
+        // 0 marks a missing event, nanoTime() can only return it by coincidence.
+        eventNanos.compareAndSet(event.ordinal(), 0, nanoTime == 0 ? 1 : nanoTime);
+    }
+
+    public void addSerializeNanos(long nanos) {
+        serializeNanos.addAndGet(nanos);
+    }
+
+    public void addDeserializeNanos(long nanos) {
+        deserializeNanos.addAndGet(nanos);
+    }
+
+    public void addRenderNanos(long nanos) {
+        renderNanos.addAndGet(nanos);
+    }
+
+    /**
+     * Returns how long after the start of the call the event happened, or -1 when it did not happen.
+     */
+    public long getOffsetNanos(Event event) {
+        long started = eventNanos.get(Event.STARTED.ordinal());
+        long happened = eventNanos.get(event.ordinal());
+        if (started == 0 || happened == 0) {
+            return -1;
+        }
+        return Math.max(0, happened - started);
+    }
+
+    /**
+     * Returns the time spent waiting for a ready transport, including connecting when there was none, the
+     * part of the call JMeter reports as connect time, or -1 when no stream was created.
+     */
+    public long getConnectNanos() {
+        return getOffsetNanos(Event.STREAM_CREATED);
+    }
+
+    /**
+     * Returns the time to the first byte of the response, the headers or else the first message, or -1 when
+     * nothing was received.
+     */
+    public long getFirstByteNanos() {
+        long headers = getOffsetNanos(Event.HEADERS_RECEIVED);
+        return headers >= 0 ? headers : getOffsetNanos(Event.FIRST_BYTE);
+    }
+
+    public long getSerializeNanos() {
+        return serializeNanos.get();
+    }
+
+    public long getDeserializeNanos() {
+        return deserializeNanos.get();
+    }
+
+    public long getRenderNanos() {
+        return renderNanos.get();
+    }
+
+    /**
+     * Renders the event offsets and the totals as "name: value" lines in microseconds, in the same shape as
+     * request headers. Events which did not happen are left out.
+     */
+    public String toHeaderString() {
+        StringBuilder headers = new StringBuilder();
+        appendHeader(headers, "serialize", serializeNanos.get());
+        for (Event event : Event.values()) {
+            long offset = getOffsetNanos(event);
+            if (event != Event.STARTED && offset >= 0) {
+                appendHeader(headers, event.headerName, offset);
+            }
+        }
+        appendHeader(headers, "deserialize", deserializeNanos.get());
+        appendHeader(headers, "render", renderNanos.get());
+        return headers.toString();
+    }
+
+    private static void appendHeader(StringBuilder headers, String name, long nanos) {
+        if (headers.length() > 0) {
+            headers.append('\n');
+        }
+        headers.append("grpc-timing-").append(name).append("-us: ").append(TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+}
@@ -0,0 +1,70 @@
+package vn.zalopay.benchmark.core.specification;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The attempts of one call. Retries and hedged attempts configured by the channel's service config each
+ * run on their own stream, so a call can take several attempts, of which the first to receive a response
+ * wins. Attempts are recorded from transport threads.
+ */
+public class CallTrace {
+    private final AtomicInteger attempts = new AtomicInteger();
+    private final AtomicInteger cancelledAttempts = new AtomicInteger();
+    private final AtomicInteger respondedAttempt = new AtomicInteger();
+    private final AtomicInteger lastClosedAttempt = new AtomicInteger();
+
+    /**
+     * Starts an attempt and returns its number, counting from 1.
+     */
+    public int startAttempt() {
+        return attempts.incrementAndGet();
+    }
+
+    public void recordResponse(int attempt) {
+        respondedAttempt.compareAndSet(0, attempt);
+    }
+
+    public void recordClose(int attempt, boolean cancelled) {
+        if (cancelled) {
+            cancelledAttempts.incrementAndGet();
+        }
+        lastClosedAttempt.set(attempt);
+    }
+
+    public int getAttempts() {
+        return attempts.get();
+    }
+
+    /**
+     * Returns the attempts beyond the first, the extra load retries and hedging put on the server.
+     */
+    public int getExtraAttempts() {
+        return Math.max(0, attempts.get() - 1);
+    }
+
+    /**
+     * Returns the attempts cancelled by the client, typically hedged attempts which lost.
+     */
+    public int getCancelledAttempts() {
+        return cancelledAttempts.get();
+    }
+
+    /**
+     * Returns the attempt which received the response, or the last attempt to close when none did, or 0
+     * when no attempt finished.
+     */
+    public int getWinningAttempt() {
+        int responded = respondedAttempt.get();
+        return responded > 0 ? responded : lastClosedAttempt.get();
+    }
+
+    /**
+     * Renders the trace as "name: value" lines, in the same shape as request headers.
+     */
+    public String toHeaderString() {
+        return "grpc-attempts: " + getAttempts() + '\n'
+                + "grpc-winning-attempt: " + getWinningAttempt() + '\n'
+                + "grpc-extra-attempts: " + getExtraAttempts() + '\n'
+                + "grpc-cancelled-attempts: " + getCancelledAttempts();
+    }
+}
@@ -1,23 +1,154 @@
 package vn.zalopay.benchmark.core.specification;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 
 public class GrpcResponse {
     private final List<Object> output;
+    private final int maxStoredMessages;
+    private int skippedMessages;
+    private long responseBytes = -1;
+    private StreamMetrics streamMetrics;
+    private SendMetrics sendMetrics;
+    private CallTrace callTrace;
+    private CallTimeline callTimeline;
+    private WireMetrics wireMetrics;
 
     public GrpcResponse() {
-        output = new ArrayList<>();
+        this(0);
+    }
+
+    /**
+     * @param maxStoredMessages how many response messages to keep, 0 keeps all of them
+     */
+    public GrpcResponse(int maxStoredMessages) {
+        this.output = new ArrayList<>();
+        this.maxStoredMessages = maxStoredMessages;
     }
 
     public void storeGrpcMessage(Object message) {
         output.add(message);
     }
 
+    /**
+     * Returns whether another response message should be rendered and stored.
+     */
+    public boolean acceptsMoreMessages() {
+        return maxStoredMessages <= 0 || output.size() < maxStoredMessages;
+    }
+
+    /**
+     * Counts a response message which was received but not stored.
+     */
+    public void skipGrpcMessage() {
+        skippedMessages++;
+    }
+
+    /**
+     * Stores a summary of a response whose messages were drained without being parsed.
+     */
+    public void storeDiscardedResponse(int messageCount, long byteCount, Long checksum) {
+        responseBytes = byteCount;
+        if (checksum == null) {
+            output.add(String.format("{\"messages\": %d, \"bytes\": %d}", messageCount, byteCount));
+        } else {
+            output.add(String.format("{\"messages\": %d, \"bytes\": %d, \"crc32\": \"%08x\"}",
+                    messageCount, byteCount, checksum));
+        }
+    }
+
+    /**
+     * Returns the number of response payload bytes when they were counted, or -1 otherwise.
+     */
+    public long getResponseBytes() {
+        return responseBytes;
+    }
+
+    public StreamMetrics getStreamMetrics() {
+        return streamMetrics;
+    }
+
+    public void setStreamMetrics(StreamMetrics streamMetrics) {
+        this.streamMetrics = streamMetrics;
+    }
+
+    public SendMetrics getSendMetrics() {
+        return sendMetrics;
+    }
+
+    public void setSendMetrics(SendMetrics sendMetrics) {
+        this.sendMetrics = sendMetrics;
+    }
+
+    public CallTrace getCallTrace() {
+        return callTrace;
+    }
+
+    public void setCallTrace(CallTrace callTrace) {
+        this.callTrace = callTrace;
+    }
+
+    public CallTimeline getCallTimeline() {
+        return callTimeline;
+    }
+
+    public void setCallTimeline(CallTimeline callTimeline) {
+        this.callTimeline = callTimeline;
+    }
+
+    public WireMetrics getWireMetrics() {
+        return wireMetrics;
+    }
+
+    public void setWireMetrics(WireMetrics wireMetrics) {
+        this.wireMetrics = wireMetrics;
+    }
+
     public String getGrpcMessageString() {
+        if (skippedMessages > 0) {
+            List<Object> stored = new ArrayList<>(output);
+            stored.add(String.format("... %d more message(s) not stored", skippedMessages));
+            return stored.toString();
+        }
         if (output.size() == 1)
             return output.get(0).toString();
         return output.toString();
     }
 
+    /**
+     * Returns {@link #getGrpcMessageString()} as UTF-8. A single rendered message is returned as it was
+     * rendered, without decoding and encoding it again, so the array must not be modified.
+     */
+    public byte[] getGrpcMessageBytes() {
+        if (skippedMessages == 0 && output.size() == 1) {
+            return utf8(output.get(0));
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bytes.write('[');
+        for (int i = 0; i < output.size(); i++) {
+            if (i > 0) {
+                bytes.write(',');
+                bytes.write(' ');
+            }
+            byte[] message = utf8(output.get(i));
+            bytes.write(message, 0, message.length);
+        }
+        if (skippedMessages > 0) {
+            byte[] skipped = String.format("%s... %d more message(s) not stored", output.isEmpty() ? "" : ", ",
+                    skippedMessages).getBytes(StandardCharsets.UTF_8);
+            bytes.write(skipped, 0, skipped.length);
+        }
+        bytes.write(']');
+        return bytes.toByteArray();
+    }
+
+    private static byte[] utf8(Object message) {
+        if (message instanceof RenderedMessage) {
+            return ((RenderedMessage) message).getBytes();
+        }
+        return message.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
 }
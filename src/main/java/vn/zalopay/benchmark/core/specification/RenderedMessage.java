@@ -0,0 +1,40 @@
+package vn.zalopay.benchmark.core.specification;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A response message rendered as UTF-8 JSON, stored as the bytes the sample result takes. It is decoded only
+ * when the response is read as a string.
+ */
+public class RenderedMessage {
+    private final byte[] utf8;
+    private final int characters;
+
+    /**
+     * @param utf8       the JSON, which is not copied and must not change afterwards
+     * @param characters the length of the JSON as a string
+     */
+    public RenderedMessage(byte[] utf8, int characters) {
+        this.utf8 = utf8;
+        this.characters = characters;
+    }
+
+    /**
+     * Returns the JSON as UTF-8, which is not a copy and must not be modified.
+     */
+    public byte[] getBytes() {
+        return utf8;
+    }
+
+    /**
+     * Returns the length of the JSON as a string, i.e. in UTF-16 chars.
+     */
+    public int length() {
+        return characters;
+    }
+
+    @Override
+    public String toString() {
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,64 @@
+package vn.zalopay.benchmark.core.specification;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Send-side statistics of a request stream: messages and bytes sent, time spent waiting for flow control
+ * and the achieved messages/sec.
+ */
+public class SendMetrics {
+    private long firstSendNanos;
+    private long lastSendNanos;
+    private long readyWaitNanos;
+    private int messageCount;
+    private long byteCount;
+
+    public void recordMessage(long nowNanos, long bytes) {
+        if (messageCount == 0) {
+            firstSendNanos = nowNanos;
+        }
+        lastSendNanos = nowNanos;
+        messageCount++;
+        byteCount += bytes;
+    }
+
+    public void recordReadyWait(long waitNanos) {
+        readyWaitNanos += waitNanos;
+    }
+
+    public int getMessageCount() {
+        return messageCount;
+    }
+
+    public long getByteCount() {
+        return byteCount;
+    }
+
+    public long getReadyWaitNanos() {
+        return readyWaitNanos;
+    }
+
+    public long getSendDurationNanos() {
+        return messageCount == 0 ? 0 : lastSendNanos - firstSendNanos;
+    }
+
+    public double getMessagesPerSecond() {
+        long duration = getSendDurationNanos();
+        if (duration <= 0) {
+            return 0;
+        }
+        // n messages span n - 1 intervals.
+        return (messageCount - 1) * (double) TimeUnit.SECONDS.toNanos(1) / duration;
+    }
+
+    /**
+     * Renders the metrics as "name: value" lines, in the same shape as request headers.
+     */
+    public String toHeaderString() {
+        return "grpc-send-messages: " + messageCount + '\n'
+                + "grpc-send-bytes: " + byteCount + '\n'
+                + "grpc-send-duration-us: " + TimeUnit.NANOSECONDS.toMicros(getSendDurationNanos()) + '\n'
+                + "grpc-send-ready-wait-us: " + TimeUnit.NANOSECONDS.toMicros(readyWaitNanos) + '\n'
+                + "grpc-send-messages-per-sec: " + String.format("%.2f", getMessagesPerSecond());
+    }
+}
@@ -0,0 +1,141 @@
+package vn.zalopay.benchmark.core.specification;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Constant-memory statistics of a response stream: time to first message, message and byte counts and a
+ * log2 histogram of the gaps between consecutive messages.
+ *
+ * <p>Messages are recorded by the call executor one at a time; the values are safe to read once the call
+ * has completed.
+ */
+public class StreamMetrics {
+    /**
+     * Bucket 0 holds gaps below 1us, bucket i holds gaps in [2^(i-1), 2^i) microseconds.
+     */
+    private static final int GAP_BUCKETS = 32;
+
+    private final long[] gapHistogram = new long[GAP_BUCKETS];
+    private long startNanos;
+    private long endNanos;
+    private long firstMessageNanos;
+    private long lastMessageNanos;
+    private int messageCount;
+    private long byteCount;
+    private long minGapNanos = Long.MAX_VALUE;
+    private long maxGapNanos;
+
+    public void start(long nowNanos) {
+        startNanos = nowNanos;
+    }
+
+    public void finish(long nowNanos) {
+        endNanos = nowNanos;
+    }
+
+    public void recordMessage(long nowNanos, long bytes) {
+        if (messageCount == 0) {
+            firstMessageNanos = nowNanos;
+        } else {
+            long gap = nowNanos - lastMessageNanos;
+            minGapNanos = Math.min(minGapNanos, gap);
+            maxGapNanos = Math.max(maxGapNanos, gap);
+            gapHistogram[bucketOf(gap)]++;
+        }
+        lastMessageNanos = nowNanos;
+        messageCount++;
+        byteCount += bytes;
+    }
+
+    public void setByteCount(long byteCount) {
+        this.byteCount = byteCount;
+    }
+
+    public int getMessageCount() {
+        return messageCount;
+    }
+
+    public long getByteCount() {
+        return byteCount;
+    }
+
+    /**
+     * Returns the time from the start of the call to the first message, or -1 when no message arrived.
+     */
+    public long getTimeToFirstMessageNanos() {
+        return messageCount == 0 ? -1 : firstMessageNanos - startNanos;
+    }
+
+    /**
+     * Returns the time between the first and the last message.
+     */
+    public long getStreamDurationNanos() {
+        return messageCount == 0 ? 0 : lastMessageNanos - firstMessageNanos;
+    }
+
+    public long getTotalDurationNanos() {
+        return endNanos - startNanos;
+    }
+
+    public double getMessagesPerSecond() {
+        long duration = getTotalDurationNanos();
+        return duration <= 0 ? 0 : messageCount * (double) TimeUnit.SECONDS.toNanos(1) / duration;
+    }
+
+    /**
+     * Returns the upper bound, in microseconds, of the histogram bucket holding the given gap percentile.
+     */
+    public long getGapPercentileUpperBoundMicros(double percentile) {
+        long gaps = messageCount - 1L;
+        if (gaps <= 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(gaps * percentile / 100.0);
+        long seen = 0;
+        for (int bucket = 0; bucket < GAP_BUCKETS; bucket++) {
+            seen += gapHistogram[bucket];
+            if (seen >= rank) {
+                return 1L << bucket;
+            }
+        }
+        return 1L << (GAP_BUCKETS - 1);
+    }
+
+    /**
+     * Renders the metrics as "name: value" lines, in the same shape as request headers.
+     */
+    public String toHeaderString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("grpc-stream-messages: ").append(messageCount).append('\n');
+        builder.append("grpc-stream-bytes: ").append(byteCount).append('\n');
+        builder.append("grpc-stream-ttfm-us: ").append(toMicros(getTimeToFirstMessageNanos())).append('\n');
+        builder.append("grpc-stream-duration-us: ").append(toMicros(getTotalDurationNanos())).append('\n');
+        builder.append("grpc-stream-messages-per-sec: ").append(String.format("%.2f", getMessagesPerSecond()));
+        if (messageCount > 1) {
+            builder.append('\n').append("grpc-stream-gap-us: min=").append(toMicros(minGapNanos))
+                    .append(", p50<=").append(getGapPercentileUpperBoundMicros(50))
+                    .append(", p90<=").append(getGapPercentileUpperBoundMicros(90))
+                    .append(", p99<=").append(getGapPercentileUpperBoundMicros(99))
+                    .append(", max=").append(toMicros(maxGapNanos));
+            builder.append('\n').append("grpc-stream-gap-histogram-us: ");
+            String separator = "";
+            for (int bucket = 0; bucket < GAP_BUCKETS; bucket++) {
+                if (gapHistogram[bucket] > 0) {
+                    builder.append(separator).append('<').append(1L << bucket).append('=').append(gapHistogram[bucket]);
+                    separator = ", ";
+                }
+            }
+        }
+        return builder.toString();
+    }
+
+    private static long toMicros(long nanos) {
+        return nanos < 0 ? nanos : TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+    private static int bucketOf(long gapNanos) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(gapNanos);
+        int bucket = 64 - Long.numberOfLeadingZeros(micros);
+        return Math.min(bucket, GAP_BUCKETS - 1);
+    }
+}
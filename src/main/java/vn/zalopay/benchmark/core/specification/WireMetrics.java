@@ -0,0 +1,108 @@
+package vn.zalopay.benchmark.core.specification;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * What one call put on and took off the wire, as the transport saw it: message counts, message bytes
+ * before and after compression, and header bytes. Every attempt of a retried or hedged call counts, since
+ * each one was sent. Sizes are recorded from transport threads.
+ *
+ * <p>Header bytes are counted as HTTP/2 does for its header list size (RFC 7541, section 4.1): name and
+ * value length plus 32 per entry. Outbound headers are the metadata of the call, inbound headers include
+ * the trailers.
+ */
+public class WireMetrics {
+    private static final int HEADER_ENTRY_OVERHEAD = 32;
+
+    private final AtomicInteger outboundMessages = new AtomicInteger();
+    private final AtomicLong outboundWireBytes = new AtomicLong();
+    private final AtomicLong outboundUncompressedBytes = new AtomicLong();
+    private final AtomicLong outboundHeaderBytes = new AtomicLong();
+    private final AtomicInteger inboundMessages = new AtomicInteger();
+    private final AtomicLong inboundWireBytes = new AtomicLong();
+    private final AtomicLong inboundUncompressedBytes = new AtomicLong();
+    private final AtomicLong inboundHeaderBytes = new AtomicLong();
+
+    public static long headerEntrySize(int nameLength, int valueLength) {
+        return nameLength + valueLength + HEADER_ENTRY_OVERHEAD;
+    }
+
+    public void recordOutboundMessage() {
+        outboundMessages.incrementAndGet();
+    }
+
+    public void recordOutboundWireBytes(long bytes) {
+        outboundWireBytes.addAndGet(bytes);
+    }
+
+    public void recordOutboundUncompressedBytes(long bytes) {
+        outboundUncompressedBytes.addAndGet(bytes);
+    }
+
+    public void recordOutboundHeaderBytes(long bytes) {
+        outboundHeaderBytes.addAndGet(bytes);
+    }
+
+    public void recordInboundMessage() {
+        inboundMessages.incrementAndGet();
+    }
+
+    public void recordInboundWireBytes(long bytes) {
+        inboundWireBytes.addAndGet(bytes);
+    }
+
+    public void recordInboundUncompressedBytes(long bytes) {
+        inboundUncompressedBytes.addAndGet(bytes);
+    }
+
+    public void recordInboundHeaderBytes(long bytes) {
+        inboundHeaderBytes.addAndGet(bytes);
+    }
+
+    public int getOutboundMessages() {
+        return outboundMessages.get();
+    }
+
+    public long getOutboundWireBytes() {
+        return outboundWireBytes.get();
+    }
+
+    public long getOutboundUncompressedBytes() {
+        return outboundUncompressedBytes.get();
+    }
+
+    public long getOutboundHeaderBytes() {
+        return outboundHeaderBytes.get();
+    }
+
+    public int getInboundMessages() {
+        return inboundMessages.get();
+    }
+
+    public long getInboundWireBytes() {
+        return inboundWireBytes.get();
+    }
+
+    public long getInboundUncompressedBytes() {
+        return inboundUncompressedBytes.get();
+    }
+
+    public long getInboundHeaderBytes() {
+        return inboundHeaderBytes.get();
+    }
+
+    /**
+     * Renders the metrics as "name: value" lines, in the same shape as request headers.
+     */
+    public String toHeaderString() {
+        return "grpc-wire-sent-messages: " + getOutboundMessages() + '\n'
+                + "grpc-wire-sent-bytes: " + getOutboundWireBytes() + '\n'
+                + "grpc-wire-sent-uncompressed-bytes: " + getOutboundUncompressedBytes() + '\n'
+                + "grpc-wire-sent-header-bytes: " + getOutboundHeaderBytes() + '\n'
+                + "grpc-wire-received-messages: " + getInboundMessages() + '\n'
+                + "grpc-wire-received-bytes: " + getInboundWireBytes() + '\n'
+                + "grpc-wire-received-uncompressed-bytes: " + getInboundUncompressedBytes() + '\n'
+                + "grpc-wire-received-header-bytes: " + getInboundHeaderBytes();
+    }
+}
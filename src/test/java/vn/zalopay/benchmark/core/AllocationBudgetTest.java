@@ -0,0 +1,131 @@
+package vn.zalopay.benchmark.core;
+
+import com.google.protobuf.DynamicMessage;
+import com.google.protobuf.util.JsonFormat;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import org.testng.Assert;
+import org.testng.SkipException;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import vn.zalopay.benchmark.core.grpc.CallTimelineInterceptor;
+import vn.zalopay.benchmark.core.grpc.MetricsInterceptor;
+import vn.zalopay.benchmark.core.message.Reader;
+import vn.zalopay.benchmark.core.message.Writer;
+import vn.zalopay.benchmark.core.protobuf.ProtoMethodName;
+import vn.zalopay.benchmark.core.protobuf.ProtocInvoker;
+import vn.zalopay.benchmark.core.protobuf.ServiceResolver;
+import vn.zalopay.benchmark.core.specification.GrpcResponse;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Fails when the bytes allocated per call on the unary path grow beyond their budget. Each path runs
+ * against an in-process Bookstore server until it is compiled, then the bytes the test thread allocates
+ * are averaged over many iterations. The in-process server runs on the calling thread, so its small and
+ * constant share of a call is part of the call budget.
+ * <p>
+ * The budgets leave about half again over what the paths allocate today on JDK 17, room enough for the
+ * wider strings of JDK 8. When a change has to allocate more, raise the budget in the same change and
+ * say why.
+ */
+public class AllocationBudgetTest extends BaseTest {
+    private static final String SERVER_NAME = "allocation-budget";
+    private static final int WARMUP_ITERATIONS = 20000;
+    private static final int MEASURED_ITERATIONS = 5000;
+
+    private static final long BUILD_REQUEST_BUDGET_BYTES = 12 * 1024;
+    private static final long CALL_BUDGET_BYTES = 28 * 1024;
+    private static final long WRITE_RESPONSE_BUDGET_BYTES = 4 * 1024;
+
+    private BookstoreTestServer server;
+
+    @BeforeClass
+    public void startServer() throws Exception {
+        if (!allocatedBytesSupported()) {
+            throw new SkipException("Per-thread allocation counting is not supported by this JVM");
+        }
+        server = BookstoreTestServer.startInProcess(PROTO_WITH_EXTERNAL_IMPORT_FOLDER.toString(),
+                LIB_FOLDER.toString(), SERVER_NAME);
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void stopServer() throws Exception {
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    @Test
+    public void testBuildRequestAndMetadataStaysWithinBudget() {
+        clientCaller = inProcessClientCaller();
+        long bytes = allocatedBytesPerIteration(() -> clientCaller.buildRequestAndMetadata(REQUEST_JSON, METADATA));
+        assertWithinBudget("buildRequestAndMetadata", bytes, BUILD_REQUEST_BUDGET_BYTES);
+    }
+
+    @Test
+    public void testUnaryCallStaysWithinBudget() {
+        clientCaller = inProcessClientCaller();
+        clientCaller.buildRequestAndMetadata(REQUEST_JSON, METADATA);
+        long bytes = allocatedBytesPerIteration(() -> {
+            GrpcResponse response = clientCaller.call("10000");
+            Assert.assertNotNull(response.getGrpcMessageString());
+        });
+        assertWithinBudget("call", bytes, CALL_BUDGET_BYTES);
+    }
+
+    @Test
+    public void testWriteResponseStaysWithinBudget() throws Exception {
+        ServiceResolver serviceResolver = ServiceResolver.fromFileDescriptorSet(ProtocInvoker.forConfig(
+                PROTO_WITH_EXTERNAL_IMPORT_FOLDER.toString(), LIB_FOLDER.toString()).invoke());
+        JsonFormat.TypeRegistry registry = JsonFormat.TypeRegistry.newBuilder()
+                .add(serviceResolver.listMessageTypes())
+                .build();
+        DynamicMessage request = Reader.create(serviceResolver.resolveServiceMethod(
+                ProtoMethodName.parseFullGrpcMethodName(FULL_METHOD)).getInputType(), REQUEST_JSON, registry)
+                .read().get(0);
+        long bytes = allocatedBytesPerIteration(() -> {
+            GrpcResponse response = new GrpcResponse();
+            Writer.<DynamicMessage>create(response, registry).onNext(request);
+            Assert.assertNotNull(response.getGrpcMessageString());
+        });
+        assertWithinBudget("Writer.onNext", bytes, WRITE_RESPONSE_BUDGET_BYTES);
+    }
+
+    private ClientCaller inProcessClientCaller() {
+        ClientCaller caller = new ClientCaller(HOST_PORT, PROTO_WITH_EXTERNAL_IMPORT_FOLDER.toString(),
+                LIB_FOLDER.toString(), FULL_METHOD, false, false);
+        caller.useChannel(InProcessChannelBuilder.forName(SERVER_NAME)
+                .directExecutor()
+                .intercept(CallTimelineInterceptor.getInstance(), MetricsInterceptor.getInstance())
+                .build());
+        return caller;
+    }
+
+    private static void assertWithinBudget(String path, long bytes, long budget) {
+        Assert.assertTrue(bytes <= budget, String.format(
+                "%s allocates %d bytes per call, over its budget of %d bytes", path, bytes, budget));
+    }
+
+    private static long allocatedBytesPerIteration(Runnable iteration) {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            iteration.run();
+        }
+        long threadId = Thread.currentThread().getId();
+        long before = threadMXBean().getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            iteration.run();
+        }
+        return (threadMXBean().getThreadAllocatedBytes(threadId) - before) / MEASURED_ITERATIONS;
+    }
+
+    private static boolean allocatedBytesSupported() {
+        return ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean
+                && threadMXBean().isThreadAllocatedMemorySupported()
+                && threadMXBean().isThreadAllocatedMemoryEnabled();
+    }
+
+    private static com.sun.management.ThreadMXBean threadMXBean() {
+        return (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    }
+}
@@ -7,14 +7,10 @@ import org.testng.annotations.AfterSuite;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.BeforeSuite;
 
-import java.io.File;
-import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 
 public class BaseTest  {
-    private static final String GRPC_DUMMY_SERVER_JAR = "gprc-server-1.0-SNAPSHOT.jar";
-    private static final Path GRPC_DUMMY_SERVER_FOLDER = Paths.get(System.getProperty("user.dir"), "/dist/benchmark/grpc-server/dist");
     protected static final Path TEMP_JMETER_HOME = Paths.get(System.getProperty("user.dir"), "src", "test", "resources");
     protected static final Path JMETER_PROPERTIES_FILE = Paths.get(System.getProperty("user.dir"), "src", "test", "resources", "jmeter.properties");
     protected static final Path PROTO_WITH_EXTERNAL_IMPORT_FOLDER =
@@ -36,17 +32,13 @@ public class BaseTest  {
     protected static String METADATA_REQUEST_JSON = "{\"name\": \"User\"}";
     protected static String EXPECTED_RESPONSE_DATA = "{\n  \"message\": \"Hello User : Metadata : Value1\"\n}";
     protected ClientCaller clientCaller;
-    private static Process bookStoreServer;
-    private static Process helloWorldServer;
-    private static Process bookStoreTlsServer;
-    private static Process helloWorldTlsServer;
-    private static File dummyLog;
+    private static DummyGrpcServers dummyGrpcServers;
 
     @BeforeSuite
-    public void setupDependencies() throws IOException {
+    public void setupDependencies() throws Exception {
         System.setProperty("javax.net.ssl.trustStore", Paths.get(System.getProperty("user.dir"), "dist", "cert", "cacert").toString());
         System.setProperty("javax.net.ssl.trustStorePassword", "changeit");
-        startDummyGrpcServer();
+        dummyGrpcServers = DummyGrpcServers.start();
         TestJMeterUtils.createJmeterEnv();
     }
 
@@ -65,36 +57,6 @@ public class BaseTest  {
 
     @AfterSuite
     public void shutdownDummyServer() throws InterruptedException {
-        bookStoreServer.destroy();
-        if (bookStoreServer.isAlive())
-            bookStoreServer.destroyForcibly();
-        helloWorldServer.destroy();
-        if (helloWorldServer.isAlive())
-            helloWorldServer.destroyForcibly();
-        bookStoreTlsServer.destroy();
-        if (bookStoreTlsServer.isAlive())
-            bookStoreTlsServer.destroyForcibly();
-        helloWorldTlsServer.destroy();
-        if (helloWorldTlsServer.isAlive())
-            helloWorldTlsServer.destroyForcibly();
-    }
-
-    private void startDummyGrpcServer() throws IOException {
-        File javaHome = new File(System.getProperty("java.home"), "bin");
-        String javaPath = javaHome + File.separator + "java";
-        String startClassPathCommand = String.format("%s", Paths.get(GRPC_DUMMY_SERVER_FOLDER.toString(), GRPC_DUMMY_SERVER_JAR.toString()).toString());
-        ProcessBuilder startBookStoreGRPCServerProcessBuilder = new ProcessBuilder(new String[]{javaPath, "-cp", startClassPathCommand, "server.BookStoreServer"});
-        ProcessBuilder startHelloWorldGRPCServerProcessBuilder = new ProcessBuilder(new String[]{javaPath, "-cp", startClassPathCommand, "server.HelloWorldServer"});
-        ProcessBuilder startBookStoreTlsGRPCServerProcessBuilder = new ProcessBuilder(new String[]{javaPath, "-cp", startClassPathCommand, "server.BookStoreServerTls"});
-        ProcessBuilder startHelloWorldTlsGRPCServerProcessBuilder = new ProcessBuilder(new String[]{javaPath, "-cp", startClassPathCommand, "server.HelloWorldServerTls"});
-        dummyLog = new File("grpc-dummy-server.log");
-        startBookStoreGRPCServerProcessBuilder.redirectError(ProcessBuilder.Redirect.appendTo(dummyLog));
-        startHelloWorldGRPCServerProcessBuilder.redirectError(ProcessBuilder.Redirect.appendTo(dummyLog));
-        startBookStoreTlsGRPCServerProcessBuilder.redirectError(ProcessBuilder.Redirect.appendTo(dummyLog));
-        startHelloWorldTlsGRPCServerProcessBuilder.redirectError(ProcessBuilder.Redirect.appendTo(dummyLog));
-        bookStoreServer = startBookStoreGRPCServerProcessBuilder.start();
-        helloWorldServer = startHelloWorldGRPCServerProcessBuilder.start();
-        bookStoreTlsServer = startBookStoreTlsGRPCServerProcessBuilder.start();
-        helloWorldTlsServer = startHelloWorldTlsGRPCServerProcessBuilder.start();
+        dummyGrpcServers.close();
     }
 }
@@ -0,0 +1,177 @@
+package vn.zalopay.benchmark.core;
+
+import com.google.protobuf.DescriptorProtos;
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.DynamicMessage;
+import io.grpc.MethodDescriptor;
+import io.grpc.Server;
+import io.grpc.ServerBuilder;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.netty.NettyServerBuilder;
+import io.grpc.stub.ServerCalls;
+import io.grpc.stub.StreamObserver;
+import vn.zalopay.benchmark.core.grpc.DynamicMessageMarshaller;
+import vn.zalopay.benchmark.core.protobuf.ProtocInvoker;
+import vn.zalopay.benchmark.core.protobuf.ServiceResolver;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An in-JVM Bookstore server built from the benchmark protos, so streaming methods can be tested without
+ * the dummy server jar. Shelves are echoed back: the server stream repeats the request shelf
+ * {@code streamMessages} times, the client stream collects the shelves into a {@code ListShelvesResponse}
+ * and the bidi stream echoes every shelf it receives.
+ */
+public class BookstoreTestServer implements AutoCloseable {
+    public static final String SERVICE_NAME = "bookstore.Bookstore";
+
+    private final Server server;
+    private final int streamMessages;
+    private final long messageDelayMs;
+
+    public static BookstoreTestServer start(String protoFolder, String libFolder, int streamMessages,
+                                            long messageDelayMs) throws Exception {
+        return new BookstoreTestServer(NettyServerBuilder.forAddress(new InetSocketAddress("localhost", 0)),
+                resolveService(protoFolder, libFolder), streamMessages, messageDelayMs);
+    }
+
+    /**
+     * Starts the server in process under {@code serverName}, reached with an {@code InProcessChannelBuilder}.
+     * Calls are served on the calling thread, so no transport or thread hop is measured.
+     */
+    public static BookstoreTestServer startInProcess(String protoFolder, String libFolder, String serverName)
+            throws Exception {
+        return new BookstoreTestServer(InProcessServerBuilder.forName(serverName).directExecutor(),
+                resolveService(protoFolder, libFolder), 1, 0);
+    }
+
+    private static Descriptors.ServiceDescriptor resolveService(String protoFolder, String libFolder)
+            throws Exception {
+        DescriptorProtos.FileDescriptorSet fileDescriptorSet = ProtocInvoker.forConfig(protoFolder, libFolder).invoke();
+        ServiceResolver serviceResolver = ServiceResolver.fromFileDescriptorSet(fileDescriptorSet);
+        Descriptors.ServiceDescriptor service = null;
+        for (Descriptors.ServiceDescriptor descriptor : serviceResolver.listServices()) {
+            if (SERVICE_NAME.equals(descriptor.getFullName())) {
+                service = descriptor;
+            }
+        }
+        if (service == null) {
+            throw new IllegalArgumentException("Unable to find service with name: " + SERVICE_NAME);
+        }
+        return service;
+    }
+
+    private BookstoreTestServer(ServerBuilder<?> serverBuilder, Descriptors.ServiceDescriptor service,
+                                int streamMessages, long messageDelayMs) throws IOException {
+        this.streamMessages = streamMessages;
+        this.messageDelayMs = messageDelayMs;
+        this.server = serverBuilder
+                .addService(createServiceDefinition(service))
+                .build()
+                .start();
+    }
+
+    public String getHostPort() {
+        return "localhost:" + server.getPort();
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        server.shutdownNow();
+        server.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    private ServerServiceDefinition createServiceDefinition(Descriptors.ServiceDescriptor service) {
+        ServerServiceDefinition.Builder builder = ServerServiceDefinition.builder(service.getFullName());
+        Descriptors.MethodDescriptor createShelf = service.findMethodByName("CreateShelf");
+        Descriptors.MethodDescriptor streamServer = service.findMethodByName("GetShelfStreamServer");
+        Descriptors.MethodDescriptor streamClient = service.findMethodByName("GetShelfStreamClient");
+        Descriptors.MethodDescriptor streamBidi = service.findMethodByName("GetShelfStreamBidi");
+
+        builder.addMethod(grpcMethod(createShelf, MethodDescriptor.MethodType.UNARY),
+                ServerCalls.asyncUnaryCall((request, responseObserver) -> {
+                    sleep();
+                    responseObserver.onNext(shelfOf(request));
+                    responseObserver.onCompleted();
+                }));
+        builder.addMethod(grpcMethod(streamServer, MethodDescriptor.MethodType.SERVER_STREAMING),
+                ServerCalls.asyncServerStreamingCall((request, responseObserver) -> {
+                    for (int i = 0; i < streamMessages; i++) {
+                        sleep();
+                        responseObserver.onNext(shelfOf(request));
+                    }
+                    responseObserver.onCompleted();
+                }));
+        builder.addMethod(grpcMethod(streamClient, MethodDescriptor.MethodType.CLIENT_STREAMING),
+                ServerCalls.asyncClientStreamingCall(responseObserver -> new StreamObserver<DynamicMessage>() {
+                    private final List<DynamicMessage> shelves = new ArrayList<>();
+
+                    @Override
+                    public void onNext(DynamicMessage request) {
+                        shelves.add(shelfOf(request));
+                    }
+
+                    @Override
+                    public void onError(Throwable t) {
+                    }
+
+                    @Override
+                    public void onCompleted() {
+                        Descriptors.Descriptor responseType = streamClient.getOutputType();
+                        DynamicMessage.Builder response = DynamicMessage.newBuilder(responseType);
+                        Descriptors.FieldDescriptor shelvesField = responseType.findFieldByName("shelves");
+                        shelves.forEach(shelf -> response.addRepeatedField(shelvesField, shelf));
+                        responseObserver.onNext(response.build());
+                        responseObserver.onCompleted();
+                    }
+                }));
+        builder.addMethod(grpcMethod(streamBidi, MethodDescriptor.MethodType.BIDI_STREAMING),
+                ServerCalls.asyncBidiStreamingCall(responseObserver -> new StreamObserver<DynamicMessage>() {
+                    @Override
+                    public void onNext(DynamicMessage request) {
+                        responseObserver.onNext(shelfOf(request));
+                    }
+
+                    @Override
+                    public void onError(Throwable t) {
+                    }
+
+                    @Override
+                    public void onCompleted() {
+                        responseObserver.onCompleted();
+                    }
+                }));
+        return builder.build();
+    }
+
+    private void sleep() {
+        if (messageDelayMs > 0) {
+            try {
+                Thread.sleep(messageDelayMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static DynamicMessage shelfOf(DynamicMessage request) {
+        Descriptors.FieldDescriptor shelfField = request.getDescriptorForType().findFieldByName("shelf");
+        return (DynamicMessage) request.getField(shelfField);
+    }
+
+    static MethodDescriptor<DynamicMessage, DynamicMessage> grpcMethod(
+            Descriptors.MethodDescriptor method, MethodDescriptor.MethodType type) {
+        return MethodDescriptor.<DynamicMessage, DynamicMessage>newBuilder()
+                .setFullMethodName(MethodDescriptor.generateFullMethodName(
+                        method.getService().getFullName(), method.getName()))
+                .setType(type)
+                .setRequestMarshaller(new DynamicMessageMarshaller(method.getInputType()))
+                .setResponseMarshaller(new DynamicMessageMarshaller(method.getOutputType()))
+                .build();
+    }
+}
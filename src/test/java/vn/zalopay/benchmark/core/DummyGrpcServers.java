@@ -0,0 +1,195 @@
+package vn.zalopay.benchmark.core;
+
+import com.google.protobuf.DescriptorProtos;
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.DynamicMessage;
+import io.grpc.Context;
+import io.grpc.Contexts;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor.MethodType;
+import io.grpc.Server;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.ServerInterceptors;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.netty.NettyServerBuilder;
+import io.grpc.stub.ServerCalls;
+import io.grpc.stub.StreamObserver;
+import vn.zalopay.benchmark.core.protobuf.ProtocInvoker;
+import vn.zalopay.benchmark.core.protobuf.ServiceResolver;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The dummy servers of {@code dist/benchmark/grpc-server} started in this JVM from the benchmark protos, on
+ * the ports the tests expect: Bookstore and Segment on 8005, with TLS on 8006, and Greeter on 50051, with
+ * TLS on 50052. Like the original servers, {@code CreateShelf} appends a random number and
+ * {@code _SERVER} to the theme, {@code ListShelves} returns 8 shelves, {@code SayHelloWithJsonMetadata}
+ * echoes the {@code key1} header and {@code checkSeg} echoes the request.
+ */
+public class DummyGrpcServers implements AutoCloseable {
+    public static final int BOOKSTORE_PORT = 8005;
+    public static final int BOOKSTORE_TLS_PORT = 8006;
+    public static final int GREETER_PORT = 50051;
+    public static final int GREETER_TLS_PORT = 50052;
+
+    private static final Path RESOURCES = Paths.get(System.getProperty("user.dir"),
+            "dist/benchmark/grpc-server/src/main/resources");
+    private static final File CERT_FILE = RESOURCES.resolve("cert/localhost.crt").toFile();
+    private static final File KEY_FILE = RESOURCES.resolve("cert/localhost.key").toFile();
+    private static final Context.Key<String> KEY1 = Context.key("key1");
+    private static final Metadata.Key<String> KEY1_HEADER = Metadata.Key.of("key1", Metadata.ASCII_STRING_MARSHALLER);
+
+    private final List<Server> servers = new ArrayList<>();
+
+    public static DummyGrpcServers start() throws Exception {
+        ServiceResolver bookstoreProtos = resolve(RESOURCES.resolve("protos-v2"), RESOURCES.resolve("libs"));
+        ServiceResolver protos = resolve(RESOURCES.resolve("protos"), RESOURCES.resolve("libs"));
+        ServerServiceDefinition bookstore = bookstore(service(bookstoreProtos, "bookstore.Bookstore"));
+        ServerServiceDefinition segment = segment(service(protos, "data_services_seg.SegmentServices"));
+        ServerServiceDefinition greeter = ServerInterceptors.intercept(greeter(service(protos, "helloworld.Greeter")),
+                new Key1Interceptor());
+
+        DummyGrpcServers dummyServers = new DummyGrpcServers();
+        try {
+            dummyServers.add(BOOKSTORE_PORT, false, bookstore, segment);
+            dummyServers.add(BOOKSTORE_TLS_PORT, true, bookstore, segment);
+            dummyServers.add(GREETER_PORT, false, greeter);
+            dummyServers.add(GREETER_TLS_PORT, true, greeter);
+        } catch (IOException e) {
+            dummyServers.close();
+            throw e;
+        }
+        return dummyServers;
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        for (Server server : servers) {
+            server.shutdownNow();
+        }
+        for (Server server : servers) {
+            server.awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+
+    private void add(int port, boolean tls, ServerServiceDefinition... services) throws IOException {
+        NettyServerBuilder serverBuilder = NettyServerBuilder.forPort(port);
+        if (tls) {
+            serverBuilder.useTransportSecurity(CERT_FILE, KEY_FILE);
+        }
+        for (ServerServiceDefinition service : services) {
+            serverBuilder.addService(service);
+        }
+        servers.add(serverBuilder.build().start());
+    }
+
+    private static ServerServiceDefinition bookstore(Descriptors.ServiceDescriptor service) {
+        Descriptors.MethodDescriptor createShelf = service.findMethodByName("CreateShelf");
+        Descriptors.MethodDescriptor listShelves = service.findMethodByName("ListShelves");
+        Descriptors.Descriptor shelfType = createShelf.getOutputType();
+        return ServerServiceDefinition.builder(service.getFullName())
+                .addMethod(BookstoreTestServer.grpcMethod(createShelf, MethodType.UNARY),
+                        ServerCalls.asyncUnaryCall((request, responseObserver) -> {
+                            DynamicMessage shelf = (DynamicMessage) request.getField(
+                                    request.getDescriptorForType().findFieldByName("shelf"));
+                            String theme = (String) shelf.getField(shelfType.findFieldByName("theme"));
+                            reply(responseObserver, DynamicMessage.newBuilder(shelf)
+                                    .setField(shelfType.findFieldByName("theme"), theme + "_" + randomSuffix())
+                                    .build());
+                        }))
+                .addMethod(BookstoreTestServer.grpcMethod(listShelves, MethodType.UNARY),
+                        ServerCalls.asyncUnaryCall((request, responseObserver) -> {
+                            Descriptors.Descriptor responseType = listShelves.getOutputType();
+                            DynamicMessage.Builder response = DynamicMessage.newBuilder(responseType);
+                            for (long id = 0; id <= 7; id++) {
+                                response.addRepeatedField(responseType.findFieldByName("shelves"),
+                                        DynamicMessage.newBuilder(shelfType)
+                                                .setField(shelfType.findFieldByName("id"), id)
+                                                .setField(shelfType.findFieldByName("theme"), "THEME_" + randomSuffix())
+                                                .build());
+                            }
+                            reply(responseObserver, response.build());
+                        }))
+                .build();
+    }
+
+    private static ServerServiceDefinition greeter(Descriptors.ServiceDescriptor service) {
+        Descriptors.MethodDescriptor sayHello = service.findMethodByName("SayHello");
+        Descriptors.MethodDescriptor sayHelloWithJsonMetadata = service.findMethodByName("SayHelloWithJsonMetadata");
+        return ServerServiceDefinition.builder(service.getFullName())
+                .addMethod(BookstoreTestServer.grpcMethod(sayHello, MethodType.UNARY),
+                        ServerCalls.asyncUnaryCall((request, responseObserver) ->
+                                reply(responseObserver, helloReply(sayHello, "Hello " + nameOf(request)))))
+                .addMethod(BookstoreTestServer.grpcMethod(sayHelloWithJsonMetadata, MethodType.UNARY),
+                        ServerCalls.asyncUnaryCall((request, responseObserver) ->
+                                reply(responseObserver, helloReply(sayHelloWithJsonMetadata,
+                                        "Hello " + nameOf(request) + " : Metadata : " + KEY1.get()))))
+                .build();
+    }
+
+    private static ServerServiceDefinition segment(Descriptors.ServiceDescriptor service) {
+        Descriptors.MethodDescriptor checkSeg = service.findMethodByName("checkSeg");
+        Descriptors.Descriptor responseType = checkSeg.getOutputType();
+        return ServerServiceDefinition.builder(service.getFullName())
+                .addMethod(BookstoreTestServer.grpcMethod(checkSeg, MethodType.UNARY),
+                        ServerCalls.asyncUnaryCall((request, responseObserver) ->
+                                reply(responseObserver, DynamicMessage.newBuilder(responseType)
+                                        .setField(responseType.findFieldByName("result"),
+                                                "okay-" + System.currentTimeMillis() + " " + request)
+                                        .build())))
+                .build();
+    }
+
+    private static DynamicMessage helloReply(Descriptors.MethodDescriptor method, String message) {
+        Descriptors.Descriptor replyType = method.getOutputType();
+        return DynamicMessage.newBuilder(replyType)
+                .setField(replyType.findFieldByName("message"), message)
+                .build();
+    }
+
+    private static String nameOf(DynamicMessage request) {
+        return (String) request.getField(request.getDescriptorForType().findFieldByName("name"));
+    }
+
+    private static String randomSuffix() {
+        return ThreadLocalRandom.current().nextInt(10000) + "_SERVER";
+    }
+
+    private static void reply(StreamObserver<DynamicMessage> responseObserver, DynamicMessage response) {
+        responseObserver.onNext(response);
+        responseObserver.onCompleted();
+    }
+
+    private static ServiceResolver resolve(Path protoFolder, Path libFolder) throws Exception {
+        DescriptorProtos.FileDescriptorSet fileDescriptorSet =
+                ProtocInvoker.forConfig(protoFolder.toString(), libFolder.toString()).invoke();
+        return ServiceResolver.fromFileDescriptorSet(fileDescriptorSet);
+    }
+
+    private static Descriptors.ServiceDescriptor service(ServiceResolver serviceResolver, String fullName) {
+        for (Descriptors.ServiceDescriptor service : serviceResolver.listServices()) {
+            if (fullName.equals(service.getFullName())) {
+                return service;
+            }
+        }
+        throw new IllegalArgumentException("Unable to find service with name: " + fullName);
+    }
+
+    private static class Key1Interceptor implements ServerInterceptor {
+        @Override
+        public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call,
+                Metadata headers, ServerCallHandler<ReqT, RespT> next) {
+            return Contexts.interceptCall(Context.current().withValue(KEY1, headers.get(KEY1_HEADER)), call, headers,
+                    next);
+        }
+    }
+}
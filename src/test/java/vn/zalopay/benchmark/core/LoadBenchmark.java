@@ -0,0 +1,211 @@
+package vn.zalopay.benchmark.core;
+
+import com.google.common.base.Strings;
+import io.grpc.Status;
+import org.HdrHistogram.Histogram;
+import org.apache.jmeter.config.Arguments;
+import org.apache.jmeter.config.gui.ArgumentsPanel;
+import org.apache.jmeter.control.LoopController;
+import org.apache.jmeter.control.gui.LoopControlPanel;
+import org.apache.jmeter.control.gui.TestPlanGui;
+import org.apache.jmeter.engine.StandardJMeterEngine;
+import org.apache.jmeter.engine.util.NoThreadClone;
+import org.apache.jmeter.samplers.SampleEvent;
+import org.apache.jmeter.samplers.SampleListener;
+import org.apache.jmeter.testelement.AbstractTestElement;
+import org.apache.jmeter.testelement.TestElement;
+import org.apache.jmeter.testelement.TestPlan;
+import org.apache.jmeter.threads.ThreadGroup;
+import org.apache.jmeter.threads.gui.ThreadGroupGui;
+import org.apache.jmeter.util.JMeterUtils;
+import org.apache.jorphan.collections.HashTree;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import vn.zalopay.benchmark.GRPCSampler;
+import vn.zalopay.benchmark.core.metrics.LatencyHistograms;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drives {@link GRPCSampler} through JMeter's engine against servers in this JVM, so the standard load
+ * scenarios run offline on one machine: small unary calls to the Segment service, large unary calls to the
+ * Bookstore service, server streaming, calls with many metadata entries to the Greeter service, and unary
+ * calls over TLS. Excluded from the default build, run it with
+ * {@code mvn test -Pbenchmark -Dtest=LoadBenchmark}.
+ *
+ * <p>Every scenario runs a warm-up pass, then a measured pass whose call latencies are recorded by
+ * {@link LatencyHistograms} in microseconds. Throughput counts the samples completed between the first and
+ * the last sample of the measured pass. One line per scenario is written to
+ * {@code target/load-benchmark/summary.csv}, next to the latency histogram log of every scenario, so
+ * runs on different commits can be compared. The system properties {@code load.threads},
+ * {@code load.warmupLoops} and {@code load.loops} size the passes.
+ */
+public class LoadBenchmark extends BaseTest {
+    private static final Logger log = LoggerFactory.getLogger(LoadBenchmark.class);
+    private static final int THREADS = Integer.getInteger("load.threads", 8);
+    private static final int WARMUP_LOOPS = Integer.getInteger("load.warmupLoops", 1000);
+    private static final int LOOPS = Integer.getInteger("load.loops", 2500);
+    private static final File REPORT_FOLDER = new File("target/load-benchmark");
+    private static final String SEGMENT_METHOD = "data_services_seg.SegmentServices/checkSeg";
+    private static final String SEGMENT_REQUEST =
+            "{\"id\":\"user-1\",\"segment\":7,\"mac\":\"00:1B:44:11:3A:B7\",\"client\":1,\"reqdate\":1599156420811}";
+    private static final String STREAM_METHOD = "bookstore.Bookstore/GetShelfStreamServer";
+    private static final int STREAM_MESSAGES = 100;
+    private static final int METADATA_ENTRIES = 32;
+    private static final int LARGE_THEME_LENGTH = 64 * 1024;
+
+    @Test(groups = "benchmark")
+    public void runScenarios() throws Exception {
+        JMeterUtils.setJMeterHome(TEMP_JMETER_HOME.toString());
+        JMeterUtils.loadJMeterProperties(JMETER_PROPERTIES_FILE.toString());
+        JMeterUtils.initLocale();
+        JMeterUtils.setProperty("jmeterengine.force.system.exit", "false");
+        Assert.assertTrue(REPORT_FOLDER.isDirectory() || REPORT_FOLDER.mkdirs(), "Unable to create " + REPORT_FOLDER);
+
+        try (PrintStream summary = new PrintStream(new File(REPORT_FOLDER, "summary.csv"),
+                StandardCharsets.UTF_8.name());
+             BookstoreTestServer streamingServer = BookstoreTestServer.start(
+                     PROTO_WITH_EXTERNAL_IMPORT_FOLDER.toString(), LIB_FOLDER.toString(), STREAM_MESSAGES, 0)) {
+            summary.println("scenario,threads,samples,errors,throughput_per_s,p50_us,p90_us,p99_us,p99_9_us,max_us");
+
+            GRPCSampler unarySmall = sampler(DummyGrpcServers.BOOKSTORE_PORT, PROTO_FOLDER.toString(),
+                    SEGMENT_METHOD, SEGMENT_REQUEST);
+            run(summary, "unary-small", unarySmall);
+
+            GRPCSampler unaryLarge = sampler(DummyGrpcServers.BOOKSTORE_PORT,
+                    PROTO_WITH_EXTERNAL_IMPORT_FOLDER.toString(), FULL_METHOD,
+                    "{\"shelf\":{\"id\":1599156420811,\"theme\":\"" + Strings.repeat("t", LARGE_THEME_LENGTH) + "\"}}");
+            run(summary, "unary-large", unaryLarge);
+
+            GRPCSampler serverStreaming = sampler(Integer.parseInt(streamingServer.getHostPort().split(":")[1]),
+                    PROTO_WITH_EXTERNAL_IMPORT_FOLDER.toString(), STREAM_METHOD, REQUEST_JSON);
+            run(summary, "server-streaming", serverStreaming);
+
+            StringBuilder metadata = new StringBuilder("key1:Value1");
+            for (int i = 2; i <= METADATA_ENTRIES; i++) {
+                metadata.append(",key").append(i).append(":Value").append(i);
+            }
+            GRPCSampler metadataHeavy = sampler(DummyGrpcServers.GREETER_PORT, PROTO_FOLDER.toString(),
+                    FULL_METHOD_WITH_METADATA, METADATA_REQUEST_JSON);
+            metadataHeavy.setMetadata(metadata.toString());
+            run(summary, "metadata-heavy", metadataHeavy);
+
+            GRPCSampler tls = sampler(DummyGrpcServers.BOOKSTORE_TLS_PORT,
+                    PROTO_WITH_EXTERNAL_IMPORT_FOLDER.toString(), FULL_METHOD, REQUEST_JSON);
+            tls.setTls(true);
+            run(summary, "tls", tls);
+        }
+    }
+
+    private static void run(PrintStream summary, String scenario, GRPCSampler sampler) throws Exception {
+        runPass(sampler, WARMUP_LOOPS);
+
+        LatencyHistograms histograms = LatencyHistograms.start(new File(REPORT_FOLDER, scenario + ".hlog"),
+                TimeUnit.SECONDS.toMillis(1), 0);
+        Throughput throughput = runPass(sampler, LOOPS);
+        // The sampler stops the histograms at the end of the test, which merges every call.
+        Histogram latencies = histograms.getTotal(sampler.getFullMethod(), Status.Code.OK);
+        Assert.assertNotNull(latencies, scenario + " completed no call");
+
+        double perSecond = throughput.perSecond();
+        summary.printf("%s,%d,%d,%d,%.1f,%d,%d,%d,%d,%d%n", scenario, THREADS, throughput.samples.get(),
+                throughput.errors.get(), perSecond, latencies.getValueAtPercentile(50),
+                latencies.getValueAtPercentile(90), latencies.getValueAtPercentile(99),
+                latencies.getValueAtPercentile(99.9), latencies.getMaxValue());
+        log.info("{}: {} samples, {} errors, {} samples/s, p50={}us, p99={}us, p99.9={}us", scenario,
+                throughput.samples.get(), throughput.errors.get(), String.format("%.1f", perSecond),
+                latencies.getValueAtPercentile(50), latencies.getValueAtPercentile(99),
+                latencies.getValueAtPercentile(99.9));
+        Assert.assertEquals(throughput.errors.get(), 0, scenario + " failed samples");
+    }
+
+    private static Throughput runPass(GRPCSampler sampler, int loops) {
+        LoopController loopController = new LoopController();
+        loopController.setLoops(loops);
+        loopController.setFirst(true);
+        loopController.setProperty(TestElement.TEST_CLASS, LoopController.class.getName());
+        loopController.setProperty(TestElement.GUI_CLASS, LoopControlPanel.class.getName());
+        loopController.initialize();
+
+        ThreadGroup threadGroup = new ThreadGroup();
+        threadGroup.setName("Load Benchmark");
+        threadGroup.setNumThreads(THREADS);
+        threadGroup.setRampUp(0);
+        threadGroup.setSamplerController(loopController);
+        threadGroup.setProperty(TestElement.TEST_CLASS, ThreadGroup.class.getName());
+        threadGroup.setProperty(TestElement.GUI_CLASS, ThreadGroupGui.class.getName());
+
+        TestPlan testPlan = new TestPlan("Load Benchmark");
+        testPlan.setProperty(TestElement.TEST_CLASS, TestPlan.class.getName());
+        testPlan.setProperty(TestElement.GUI_CLASS, TestPlanGui.class.getName());
+        testPlan.setUserDefinedVariables((Arguments) new ArgumentsPanel().createTestElement());
+
+        Throughput throughput = new Throughput();
+        HashTree testPlanTree = new HashTree();
+        testPlanTree.add(testPlan);
+        HashTree threadGroupTree = testPlanTree.add(testPlan, threadGroup);
+        threadGroupTree.add((GRPCSampler) sampler.clone());
+        testPlanTree.add(testPlan, throughput);
+
+        StandardJMeterEngine engine = new StandardJMeterEngine();
+        engine.configure(testPlanTree);
+        engine.run();
+        return throughput;
+    }
+
+    private static GRPCSampler sampler(int port, String protoFolder, String fullMethod, String requestJson) {
+        GRPCSampler sampler = new GRPCSampler();
+        sampler.setProtoFolder(protoFolder);
+        sampler.setLibFolder(LIB_FOLDER.toString());
+        sampler.setMetadata(METADATA);
+        sampler.setHost("localhost");
+        sampler.setPort(Integer.toString(port));
+        sampler.setFullMethod(fullMethod);
+        sampler.setDeadline("10000");
+        sampler.setTls(false);
+        sampler.setTlsDisableVerification(false);
+        sampler.setRequestJson(requestJson);
+        return sampler;
+    }
+
+    /**
+     * Counts the samples of a pass and times them from the first to the last one.
+     */
+    private static class Throughput extends AbstractTestElement implements SampleListener, NoThreadClone {
+        private final AtomicLong samples = new AtomicLong();
+        private final AtomicLong errors = new AtomicLong();
+        private final AtomicLong firstNanos = new AtomicLong();
+        private final AtomicLong lastNanos = new AtomicLong();
+
+        @Override
+        public void sampleOccurred(SampleEvent sampleEvent) {
+            long nowNanos = System.nanoTime();
+            if (samples.getAndIncrement() == 0) {
+                firstNanos.set(nowNanos);
+            }
+            lastNanos.accumulateAndGet(nowNanos, Math::max);
+            if (!sampleEvent.getResult().isSuccessful()) {
+                errors.incrementAndGet();
+            }
+        }
+
+        @Override
+        public void sampleStarted(SampleEvent sampleEvent) {
+        }
+
+        @Override
+        public void sampleStopped(SampleEvent sampleEvent) {
+        }
+
+        private double perSecond() {
+            long elapsedNanos = lastNanos.get() - firstNanos.get();
+            return elapsedNanos <= 0 ? 0 : (samples.get() - 1) * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+        }
+    }
+}
@@ -1,22 +1,30 @@
 package vn.zalopay.benchmark.core.client;
 
+import com.google.common.net.HostAndPort;
 import com.google.protobuf.InvalidProtocolBufferException;
 import com.google.protobuf.util.JsonFormat;
+import io.grpc.Status;
 import io.grpc.netty.GrpcSslContexts;
 import io.netty.handler.ssl.ApplicationProtocolConfig;
 import io.netty.handler.ssl.ApplicationProtocolNames;
 import io.netty.handler.ssl.SslContextBuilder;
+import org.HdrHistogram.Histogram;
+import org.apache.jmeter.samplers.SampleResult;
 import org.mockito.MockedConstruction;
 import org.mockito.MockedStatic;
 import org.mockito.Mockito;
 import org.testng.Assert;
 import org.testng.annotations.Test;
+import vn.zalopay.benchmark.GRPCOpenModelSampler;
 import vn.zalopay.benchmark.core.BaseTest;
 import vn.zalopay.benchmark.core.ClientCaller;
+import vn.zalopay.benchmark.core.grpc.ChannelCloser;
+import vn.zalopay.benchmark.core.metrics.LatencyHistograms;
 import vn.zalopay.benchmark.core.protobuf.ProtocInvoker;
 import vn.zalopay.benchmark.core.specification.GrpcResponse;
 
 import javax.net.ssl.SSLException;
+import java.io.File;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
@@ -40,6 +48,70 @@ public class ClientCallerTest extends BaseTest {
         Assert.assertTrue(resp.getGrpcMessageString().contains("\"theme\": \"Hello server"));
     }
 
+    @Test
+    public void testCanSendGrpcUnaryRequestAndDiscardResponse() {
+        clientCaller = new ClientCaller(HOST_PORT, PROTO_WITH_EXTERNAL_IMPORT_FOLDER.toString(), LIB_FOLDER.toString(),
+                FULL_METHOD, false, false);
+        clientCaller.setDiscardResponse(true, true);
+        clientCaller.buildRequestAndMetadata(REQUEST_JSON, METADATA);
+        GrpcResponse resp = clientCaller.call("5000");
+        clientCaller.shutdownNettyChannel();
+        Assert.assertTrue(resp.getResponseBytes() > 0);
+        Assert.assertTrue(resp.getGrpcMessageString().startsWith("{\"messages\": 1, \"bytes\": " + resp.getResponseBytes()));
+        Assert.assertTrue(resp.getGrpcMessageString().contains("\"crc32\""));
+    }
+
+    @Test
+    public void testCanRecordLatencyHistogram() throws Exception {
+        LatencyHistograms histograms = LatencyHistograms.start(File.createTempFile("grpc-latency", ".hlog"), 60_000, 0);
+        try {
+            clientCaller = new ClientCaller(HOST_PORT, PROTO_WITH_EXTERNAL_IMPORT_FOLDER.toString(), LIB_FOLDER.toString(),
+                    FULL_METHOD, false, false);
+            clientCaller.buildRequestAndMetadata(REQUEST_JSON, METADATA);
+            clientCaller.call("5000");
+            clientCaller.shutdownNettyChannel();
+            histograms.report();
+            Assert.assertEquals(histograms.getTotal(FULL_METHOD, Status.Code.OK).getTotalCount(), 1);
+        } finally {
+            LatencyHistograms.stop();
+        }
+    }
+
+    @Test
+    public void testCanRecordOpenModelLatencyHistogram() throws Exception {
+        // Open-model latencies are timed from the intended start, so the expected interval must not add values
+        LatencyHistograms histograms = LatencyHistograms.start(File.createTempFile("grpc-latency", ".hlog"), 60_000, 1);
+        GRPCOpenModelSampler grpcSampler = new GRPCOpenModelSampler();
+        try {
+            HostAndPort hostAndPort = HostAndPort.fromString(HOST_PORT);
+            grpcSampler.setName("open model");
+            grpcSampler.setProtoFolder(PROTO_WITH_EXTERNAL_IMPORT_FOLDER.toString());
+            grpcSampler.setLibFolder(LIB_FOLDER.toString());
+            grpcSampler.setMetadata(METADATA);
+            grpcSampler.setHost(hostAndPort.getHost());
+            grpcSampler.setPort(Integer.toString(hostAndPort.getPort()));
+            grpcSampler.setFullMethod(FULL_METHOD);
+            grpcSampler.setDeadline("5000");
+            grpcSampler.setRequestJson(REQUEST_JSON);
+            grpcSampler.setRate("50");
+            int reported = 0;
+            while (reported < 10) {
+                SampleResult sampleResult = grpcSampler.sample(null);
+                if (sampleResult != null) {
+                    Assert.assertEquals(sampleResult.getResponseCode(), "200");
+                    reported++;
+                }
+            }
+            histograms.report();
+            Histogram total = histograms.getTotal(FULL_METHOD, Status.Code.OK);
+            Assert.assertEquals(total.getTotalCount(), 10);
+            Assert.assertTrue(total.getMinValue() > 1);
+        } finally {
+            grpcSampler.threadFinished();
+            grpcSampler.testEnded();
+        }
+    }
+
     @Test
     public void testCanGetShutDownBoolean() {
         clientCaller = new ClientCaller(HOST_PORT, PROTO_WITH_EXTERNAL_IMPORT_FOLDER.toString(), LIB_FOLDER.toString(),
@@ -50,12 +122,13 @@ public class ClientCallerTest extends BaseTest {
     }
 
     @Test
-    public void testCanGetShutDownBooleanAfterShutdown() {
+    public void testCanGetShutDownBooleanAfterShutdown() throws InterruptedException {
         clientCaller = new ClientCaller(HOST_PORT, PROTO_WITH_EXTERNAL_IMPORT_FOLDER.toString(), LIB_FOLDER.toString(),
                 FULL_METHOD, false, false);
         clientCaller.buildRequestAndMetadata(REQUEST_JSON, "key1:1,key2:2");
         clientCaller.shutdownNettyChannel();
         Assert.assertEquals(clientCaller.isShutdown(), true);
+        ChannelCloser.getInstance().awaitClosed();
         Assert.assertEquals(clientCaller.isTerminated(), true);
     }
 
@@ -1,17 +1,23 @@
 package vn.zalopay.benchmark.core.client;
 
 import com.google.protobuf.InvalidProtocolBufferException;
+import org.apache.commons.io.FileUtils;
+import org.apache.jmeter.util.JMeterUtils;
 import org.mockito.MockedStatic;
 import org.mockito.Mockito;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 import vn.zalopay.benchmark.core.BaseTest;
 import vn.zalopay.benchmark.core.ClientList;
+import vn.zalopay.benchmark.core.protobuf.ServiceResolver;
 
+import java.io.File;
 import java.io.IOException;
 import java.nio.file.CopyOption;
 import java.nio.file.FileSystems;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -76,6 +82,34 @@ public class ClientListTest extends BaseTest {
         Assert.assertEquals(list, methods);
     }
 
+    @Test
+    public void testReusesResolverUntilProtoFileChanges() throws IOException {
+        File protoFolder = copyOf(PROTO_FOLDER);
+        ServiceResolver resolver = ClientList.getServiceResolver(protoFolder.toString(), LIB_FOLDER.toString());
+        Assert.assertSame(ClientList.getServiceResolver(protoFolder.toString(), LIB_FOLDER.toString()), resolver);
+
+        File protoFile = FileUtils.listFiles(protoFolder, new String[] {"proto"}, true).iterator().next();
+        Files.setLastModifiedTime(protoFile.toPath(),
+                FileTime.fromMillis(protoFile.lastModified() + 60_000));
+        ServiceResolver reloaded = ClientList.getServiceResolver(protoFolder.toString(), LIB_FOLDER.toString());
+        Assert.assertNotSame(reloaded, resolver);
+        Assert.assertSame(ClientList.getServiceResolver(protoFolder.toString(), LIB_FOLDER.toString()), reloaded);
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsedResolver() throws IOException {
+        JMeterUtils.setProperty(ClientList.CACHE_SIZE_PROPERTY, "1");
+        try {
+            File first = copyOf(PROTO_FOLDER);
+            File second = copyOf(PROTO_FOLDER);
+            ServiceResolver resolver = ClientList.getServiceResolver(first.toString(), LIB_FOLDER.toString());
+            ClientList.getServiceResolver(second.toString(), LIB_FOLDER.toString());
+            Assert.assertNotSame(ClientList.getServiceResolver(first.toString(), LIB_FOLDER.toString()), resolver);
+        } finally {
+            JMeterUtils.setProperty(ClientList.CACHE_SIZE_PROPERTY, Integer.toString(ClientList.DEFAULT_CACHE_SIZE));
+        }
+    }
+
     @Test(expectedExceptions = RuntimeException.class, expectedExceptionsMessageRegExp = "Unable to resolve service by invoking protoc")
     public void testThrowExceptionWhenInvokeInvalidProtocPath() {
         ClientList.listServices("", LIB_FOLDER.toString());
@@ -88,28 +122,38 @@ public class ClientListTest extends BaseTest {
 
     @Test(expectedExceptions = RuntimeException.class, expectedExceptionsMessageRegExp = "Unable to resolve service by invoking protoc")
     public void testThrowExceptionWhenCantCreateTempFileForFileDescriptorSet() {
-        MockedStatic<com.google.protobuf.DescriptorProtos.FileDescriptorSet> fileDescriptorSet = Mockito.mockStatic(com.google.protobuf.DescriptorProtos.FileDescriptorSet.class);
-        fileDescriptorSet.when(() -> com.google.protobuf.DescriptorProtos.FileDescriptorSet.parseFrom(any(byte[].class))).thenThrow(InvalidProtocolBufferException.class);
-        ClientList.listServices(PROTO_FOLDER.toString(), LIB_FOLDER.toString());
+        try (MockedStatic<com.google.protobuf.DescriptorProtos.FileDescriptorSet> fileDescriptorSet = Mockito.mockStatic(com.google.protobuf.DescriptorProtos.FileDescriptorSet.class)) {
+            fileDescriptorSet.when(() -> com.google.protobuf.DescriptorProtos.FileDescriptorSet.parseFrom(any(byte[].class))).thenThrow(InvalidProtocolBufferException.class);
+            ClientList.listServices(PROTO_FOLDER.toString(), LIB_FOLDER.toString());
+        }
     }
 
     @Test(expectedExceptions = RuntimeException.class, expectedExceptionsMessageRegExp = "Unable to resolve service by invoking protoc")
     public void testThrowExceptionWhenCantInvokeProtocBinary() {
-        MockedStatic<com.github.os72.protocjar.Protoc> fileDescriptorSet = Mockito.mockStatic(com.github.os72.protocjar.Protoc.class);
-        fileDescriptorSet.when(() -> com.github.os72.protocjar.Protoc.runProtoc(any(String[].class))).thenThrow(InterruptedException.class);
-        ClientList.listServices(PROTO_FOLDER.toString(), LIB_FOLDER.toString());
+        try (MockedStatic<com.github.os72.protocjar.Protoc> fileDescriptorSet = Mockito.mockStatic(com.github.os72.protocjar.Protoc.class)) {
+            fileDescriptorSet.when(() -> com.github.os72.protocjar.Protoc.runProtoc(any(String[].class), any(java.io.OutputStream.class), any(java.io.OutputStream.class))).thenThrow(InterruptedException.class);
+            ClientList.listServices(PROTO_FOLDER.toString(), LIB_FOLDER.toString());
+        }
     }
 
     @Test(expectedExceptions = RuntimeException.class, expectedExceptionsMessageRegExp = "Unable to resolve service by invoking protoc")
     public void testThrowExceptionWhenCantCreateTempFileForDescriptorPath() {
-        MockedStatic<org.slf4j.LoggerFactory> logger = Mockito.mockStatic(org.slf4j.LoggerFactory.class);
-        MockedStatic<java.nio.file.Files> files = Mockito.mockStatic(java.nio.file.Files.class);
-        logger.when(() -> org.slf4j.LoggerFactory.getLogger(any(String.class))).thenReturn(null);
-        files.when(() -> java.nio.file.Files.exists(any(Path.class))).thenReturn(true);
-        files.when(() -> java.nio.file.Files.createTempDirectory(Mockito.anyString())).thenReturn(FileSystems.getDefault().getPath("/tmp/stub"));
-        files.when(() -> java.nio.file.Files.createDirectories(FileSystems.getDefault().getPath("/tmp/stub/google/protobuf"))).thenReturn(FileSystems.getDefault().getPath("/tmp/stub/google/protobuf"));
-        files.when(() -> java.nio.file.Files.createTempFile("descriptor", ".pb.bin")).thenThrow(IOException.class);
-        files.when(() -> java.nio.file.Files.copy(any(java.io.InputStream.class), any(java.nio.file.Path.class), any(CopyOption[].class))).thenReturn(10000L);
-        ClientList.listServices(PROTO_FOLDER.toString(), LIB_FOLDER.toString());
+        // The mocks are closed so that later tests see the real Files and LoggerFactory
+        try (MockedStatic<org.slf4j.LoggerFactory> logger = Mockito.mockStatic(org.slf4j.LoggerFactory.class);
+             MockedStatic<java.nio.file.Files> files = Mockito.mockStatic(java.nio.file.Files.class)) {
+            logger.when(() -> org.slf4j.LoggerFactory.getLogger(any(String.class))).thenReturn(null);
+            files.when(() -> java.nio.file.Files.exists(any(Path.class))).thenReturn(true);
+            files.when(() -> java.nio.file.Files.createTempDirectory(Mockito.anyString())).thenReturn(FileSystems.getDefault().getPath("/tmp/stub"));
+            files.when(() -> java.nio.file.Files.createDirectories(FileSystems.getDefault().getPath("/tmp/stub/google/protobuf"))).thenReturn(FileSystems.getDefault().getPath("/tmp/stub/google/protobuf"));
+            files.when(() -> java.nio.file.Files.createTempFile("descriptor", ".pb.bin")).thenThrow(IOException.class);
+            files.when(() -> java.nio.file.Files.copy(any(java.io.InputStream.class), any(java.nio.file.Path.class), any(CopyOption[].class))).thenReturn(10000L);
+            ClientList.listServices(PROTO_FOLDER.toString(), LIB_FOLDER.toString());
+        }
+    }
+
+    private static File copyOf(Path protoFolder) throws IOException {
+        File copy = Files.createTempDirectory("protos").toFile();
+        FileUtils.copyDirectory(protoFolder.toFile(), copy);
+        return copy;
     }
 }
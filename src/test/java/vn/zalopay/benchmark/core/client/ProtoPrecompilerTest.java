@@ -0,0 +1,62 @@
+package vn.zalopay.benchmark.core.client;
+
+import com.github.os72.protocjar.Protoc;
+import com.google.common.net.HostAndPort;
+import org.mockito.MockedStatic;
+import org.mockito.Mockito;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import vn.zalopay.benchmark.GRPCSampler;
+import vn.zalopay.benchmark.core.BaseTest;
+import vn.zalopay.benchmark.core.ProtoPrecompiler;
+
+import java.io.OutputStream;
+
+import static org.mockito.Mockito.any;
+
+public class ProtoPrecompilerTest extends BaseTest {
+
+    @Test
+    public void testThreadsUseTheProtosCompiledWhenTheTestStarted() throws Exception {
+        GRPCSampler grpcSampler = sampler();
+        grpcSampler.testStarted();
+        try {
+            Assert.assertNotNull(ProtoPrecompiler.get(PROTO_WITH_EXTERNAL_IMPORT_FOLDER.toString(),
+                    LIB_FOLDER.toString()));
+
+            try (MockedStatic<Protoc> protoc = Mockito.mockStatic(Protoc.class)) {
+                protoc.when(() -> Protoc.runProtoc(any(String[].class), any(OutputStream.class),
+                        any(OutputStream.class))).thenThrow(InterruptedException.class);
+                Assert.assertEquals(grpcSampler.sample(null).getResponseCode(), "200");
+            }
+        } finally {
+            grpcSampler.threadFinished();
+            grpcSampler.testEnded();
+        }
+        Assert.assertNull(ProtoPrecompiler.get(PROTO_WITH_EXTERNAL_IMPORT_FOLDER.toString(), LIB_FOLDER.toString()));
+    }
+
+    @Test(expectedExceptions = RuntimeException.class, expectedExceptionsMessageRegExp = "Unable to resolve service by invoking protoc")
+    public void testReportsProtosWhichDoNotCompile() {
+        ProtoPrecompiler.precompile(PROTO_PATH_WITH_INVALID_FILE_PATH.toString(), LIB_FOLDER.toString(), FULL_METHOD);
+        try {
+            ProtoPrecompiler.get(PROTO_PATH_WITH_INVALID_FILE_PATH.toString(), LIB_FOLDER.toString());
+        } finally {
+            ProtoPrecompiler.clear();
+        }
+    }
+
+    private static GRPCSampler sampler() {
+        HostAndPort hostAndPort = HostAndPort.fromString(HOST_PORT);
+        GRPCSampler grpcSampler = new GRPCSampler();
+        grpcSampler.setProtoFolder(PROTO_WITH_EXTERNAL_IMPORT_FOLDER.toString());
+        grpcSampler.setLibFolder(LIB_FOLDER.toString());
+        grpcSampler.setMetadata(METADATA);
+        grpcSampler.setHost(hostAndPort.getHost());
+        grpcSampler.setPort(Integer.toString(hostAndPort.getPort()));
+        grpcSampler.setFullMethod(FULL_METHOD);
+        grpcSampler.setDeadline("2000");
+        grpcSampler.setRequestJson(REQUEST_JSON);
+        return grpcSampler;
+    }
+}
@@ -0,0 +1,110 @@
+package vn.zalopay.benchmark.core.grpc;
+
+import com.google.common.collect.ImmutableList;
+import com.google.protobuf.DynamicMessage;
+import io.grpc.CallOptions;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.stub.StreamObserver;
+import org.HdrHistogram.Histogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.Test;
+import vn.zalopay.benchmark.core.BaseTest;
+import vn.zalopay.benchmark.core.BookstoreTestServer;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the latency and the process CPU time per unary call of the future-based path with the path
+ * which runs the callbacks on the calling thread. Excluded from the default build, run it with
+ * {@code mvn test -Pbenchmark -Dtest=BlockingCallBenchmark}.
+ */
+public class BlockingCallBenchmark extends BaseTest {
+    private static final Logger log = LoggerFactory.getLogger(BlockingCallBenchmark.class);
+    private static final int WARMUP_CALLS = 5000;
+    private static final int MEASURED_CALLS = 20000;
+    private static final String METHOD = "CreateShelf";
+
+    @Test(groups = "benchmark")
+    public void compareBlockingCallPaths() throws Exception {
+        try (BookstoreTestServer server = BookstoreTestServer.start(PROTO_WITH_EXTERNAL_IMPORT_FOLDER.toString(),
+                LIB_FOLDER.toString(), 1, 0)) {
+            ManagedChannel channel = ManagedChannelBuilder.forTarget(server.getHostPort()).usePlaintext().build();
+            try {
+                DynamicGrpcClient client = DynamicGrpcClientTest.client(channel, METHOD);
+                ImmutableList<DynamicMessage> requests = DynamicGrpcClientTest.requests(METHOD);
+                DynamicMessageMarshaller marshaller = DynamicGrpcClientTest.marshaller(METHOD);
+                StreamObserver<DynamicMessage> observer = new NoopObserver();
+                Call future = () -> client.blockingUnaryCall(requests, observer, CallOptions.DEFAULT, marshaller).get();
+                Call callingThread = () -> client.callOnCallingThread(requests, observer, CallOptions.DEFAULT, marshaller);
+
+                run(future, WARMUP_CALLS);
+                run(callingThread, WARMUP_CALLS);
+                for (int round = 0; round < 2; round++) {
+                    report("future", run(future, MEASURED_CALLS));
+                    report("calling thread", run(callingThread, MEASURED_CALLS));
+                }
+            } finally {
+                channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+            }
+        }
+    }
+
+    private static Result run(Call call, int calls) throws Exception {
+        Histogram latencies = new Histogram(3);
+        long cpuStart = processCpuNanos();
+        long start = System.nanoTime();
+        for (int i = 0; i < calls; i++) {
+            long callStart = System.nanoTime();
+            call.run();
+            latencies.recordValue(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - callStart));
+        }
+        return new Result(latencies, System.nanoTime() - start, processCpuNanos() - cpuStart, calls);
+    }
+
+    private static void report(String name, Result result) {
+        log.info("{}: {} calls/s, p50={}us, p99={}us, cpu={}us/call", name,
+                result.calls * TimeUnit.SECONDS.toNanos(1) / result.wallNanos,
+                result.latencies.getValueAtPercentile(50), result.latencies.getValueAtPercentile(99),
+                TimeUnit.NANOSECONDS.toMicros(result.cpuNanos) / (double) result.calls);
+    }
+
+    private static long processCpuNanos() {
+        return ((com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean())
+                .getProcessCpuTime();
+    }
+
+    private interface Call {
+        void run() throws Exception;
+    }
+
+    private static class Result {
+        private final Histogram latencies;
+        private final long wallNanos;
+        private final long cpuNanos;
+        private final int calls;
+
+        private Result(Histogram latencies, long wallNanos, long cpuNanos, int calls) {
+            this.latencies = latencies;
+            this.wallNanos = wallNanos;
+            this.cpuNanos = cpuNanos;
+            this.calls = calls;
+        }
+    }
+
+    private static class NoopObserver implements StreamObserver<DynamicMessage> {
+        @Override
+        public void onNext(DynamicMessage value) {
+        }
+
+        @Override
+        public void onError(Throwable t) {
+        }
+
+        @Override
+        public void onCompleted() {
+        }
+    }
+}
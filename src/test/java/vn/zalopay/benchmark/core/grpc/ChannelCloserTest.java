@@ -0,0 +1,64 @@
+package vn.zalopay.benchmark.core.grpc;
+
+import io.grpc.ManagedChannel;
+import org.mockito.Mockito;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class ChannelCloserTest {
+
+    @Test
+    public void testClosesGracefullyWithoutWaiting() throws Exception {
+        ChannelCloser closer = new ChannelCloser();
+        AtomicBoolean terminated = new AtomicBoolean();
+        ManagedChannel channel = channel(terminated, false);
+
+        long startNanos = System.nanoTime();
+        closer.close(channel, "graceful:1", 5000);
+        Assert.assertTrue(System.nanoTime() - startNanos < TimeUnit.SECONDS.toNanos(1));
+        Mockito.verify(channel).shutdown();
+
+        terminated.set(true);
+        Assert.assertEquals(closer.awaitClosed(), Collections.emptyList());
+        Mockito.verify(channel, Mockito.never()).shutdownNow();
+    }
+
+    @Test
+    public void testForcesAndReportsChannelsOpenAfterTheTimeout() throws Exception {
+        ChannelCloser closer = new ChannelCloser();
+        ManagedChannel graceful = channel(new AtomicBoolean(true), false);
+        ManagedChannel hung = channel(new AtomicBoolean(), true);
+        ManagedChannel stuck = channel(new AtomicBoolean(), false);
+
+        closer.close(graceful, "graceful:1", 50);
+        closer.close(hung, "hung:1", 50);
+        closer.close(stuck, "stuck:1", 50);
+
+        Assert.assertEquals(closer.awaitClosed(), Arrays.asList("hung:1", "stuck:1"));
+        Mockito.verify(graceful, Mockito.never()).shutdownNow();
+        Mockito.verify(hung).shutdownNow();
+        Mockito.verify(stuck).shutdownNow();
+        Assert.assertEquals(closer.awaitClosed(), Collections.emptyList());
+    }
+
+    /**
+     * Mocks a channel which terminates once {@code terminated} is set, or when it is shut down now if
+     * {@code terminatesWhenForced}.
+     */
+    private static ManagedChannel channel(AtomicBoolean terminated, boolean terminatesWhenForced) {
+        ManagedChannel channel = Mockito.mock(ManagedChannel.class);
+        Mockito.when(channel.isTerminated()).thenAnswer(invocation -> terminated.get());
+        Mockito.when(channel.shutdownNow()).thenAnswer(invocation -> {
+            if (terminatesWhenForced) {
+                terminated.set(true);
+            }
+            return channel;
+        });
+        return channel;
+    }
+}
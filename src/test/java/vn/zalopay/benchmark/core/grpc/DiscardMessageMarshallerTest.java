@@ -0,0 +1,72 @@
+package vn.zalopay.benchmark.core.grpc;
+
+import com.google.protobuf.DescriptorProtos;
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.DynamicMessage;
+import com.google.protobuf.util.JsonFormat;
+import io.grpc.KnownLength;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import vn.zalopay.benchmark.core.BaseTest;
+import vn.zalopay.benchmark.core.protobuf.ProtoMethodName;
+import vn.zalopay.benchmark.core.protobuf.ProtocInvoker;
+import vn.zalopay.benchmark.core.protobuf.ServiceResolver;
+
+import java.io.ByteArrayInputStream;
+import java.util.zip.CRC32;
+
+public class DiscardMessageMarshallerTest extends BaseTest {
+
+    @Test
+    public void testCanCountBytesAndChecksumWithoutParsing() throws Exception {
+        Descriptors.Descriptor outputType = resolveOutputType();
+        byte[] payload = createShelf(outputType).toByteArray();
+        CRC32 expectedChecksum = new CRC32();
+        expectedChecksum.update(payload, 0, payload.length);
+
+        DiscardMessageMarshaller marshaller = new DiscardMessageMarshaller(outputType, true);
+        DynamicMessage first = marshaller.parse(new ByteArrayInputStream(payload));
+        marshaller.parse(new ByteArrayInputStream(payload));
+
+        Assert.assertEquals(first, DynamicMessage.getDefaultInstance(outputType));
+        Assert.assertEquals(marshaller.getMessageCount(), 2);
+        Assert.assertEquals(marshaller.getByteCount(), payload.length * 2L);
+        CRC32 twice = new CRC32();
+        twice.update(payload, 0, payload.length);
+        twice.update(payload, 0, payload.length);
+        Assert.assertEquals(marshaller.getChecksum(), Long.valueOf(twice.getValue()));
+    }
+
+    @Test
+    public void testCanUseKnownLengthWithoutReading() throws Exception {
+        Descriptors.Descriptor outputType = resolveOutputType();
+        byte[] payload = createShelf(outputType).toByteArray();
+        KnownLengthInputStream input = new KnownLengthInputStream(payload);
+
+        DiscardMessageMarshaller marshaller = new DiscardMessageMarshaller(outputType, false);
+        marshaller.parse(input);
+
+        Assert.assertEquals(marshaller.getByteCount(), payload.length);
+        Assert.assertNull(marshaller.getChecksum());
+        Assert.assertEquals(input.available(), payload.length);
+    }
+
+    private Descriptors.Descriptor resolveOutputType() throws ProtocInvoker.ProtocInvocationException {
+        DescriptorProtos.FileDescriptorSet fileDescriptorSet =
+                ProtocInvoker.forConfig(PROTO_WITH_EXTERNAL_IMPORT_FOLDER.toString(), LIB_FOLDER.toString()).invoke();
+        ServiceResolver serviceResolver = ServiceResolver.fromFileDescriptorSet(fileDescriptorSet);
+        return serviceResolver.resolveServiceMethod(ProtoMethodName.parseFullGrpcMethodName(FULL_METHOD)).getOutputType();
+    }
+
+    private DynamicMessage createShelf(Descriptors.Descriptor shelfType) throws Exception {
+        DynamicMessage.Builder builder = DynamicMessage.newBuilder(shelfType);
+        JsonFormat.parser().merge("{\"id\":1599156420811,\"theme\":\"Hello server!!\"}", builder);
+        return builder.build();
+    }
+
+    private static class KnownLengthInputStream extends ByteArrayInputStream implements KnownLength {
+        KnownLengthInputStream(byte[] buf) {
+            super(buf);
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package vn.zalopay.benchmark.core.grpc;
+
+import com.google.common.collect.ImmutableList;
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.DynamicMessage;
+import com.google.protobuf.util.JsonFormat;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ForwardingClientCall;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import vn.zalopay.benchmark.core.BaseTest;
+import vn.zalopay.benchmark.core.BookstoreTestServer;
+import vn.zalopay.benchmark.core.message.Reader;
+import vn.zalopay.benchmark.core.protobuf.ProtoMethodName;
+import vn.zalopay.benchmark.core.protobuf.ProtocInvoker;
+import vn.zalopay.benchmark.core.protobuf.ServiceResolver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+public class DynamicGrpcClientTest extends BaseTest {
+
+    @Test
+    public void testCanRunCallbacksOnCallingThread() throws Exception {
+        try (BookstoreTestServer server = BookstoreTestServer.start(PROTO_WITH_EXTERNAL_IMPORT_FOLDER.toString(),
+                LIB_FOLDER.toString(), 3, 0)) {
+            ManagedChannel channel = ManagedChannelBuilder.forTarget(server.getHostPort()).usePlaintext().build();
+            try {
+                RecordingObserver observer = new RecordingObserver();
+                client(channel, "GetShelfStreamServer").callOnCallingThread(requests("GetShelfStreamServer"),
+                        observer, CallOptions.DEFAULT, marshaller("GetShelfStreamServer"));
+
+                Assert.assertEquals(observer.messages, 3);
+                Assert.assertTrue(observer.completed);
+                Assert.assertEquals(observer.threads.size(), 4);
+                observer.threads.forEach(thread -> Assert.assertSame(thread, Thread.currentThread()));
+            } finally {
+                channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+            }
+        }
+    }
+
+    @Test
+    public void testCanReportFailureOnCallingThread() throws Exception {
+        try (BookstoreTestServer server = BookstoreTestServer.start(PROTO_WITH_EXTERNAL_IMPORT_FOLDER.toString(),
+                LIB_FOLDER.toString(), 1, 2000)) {
+            ManagedChannel channel = ManagedChannelBuilder.forTarget(server.getHostPort()).usePlaintext().build();
+            try {
+                RecordingObserver observer = new RecordingObserver();
+                ExecutionException e = Assert.expectThrows(ExecutionException.class, () ->
+                        client(channel, "CreateShelf").callOnCallingThread(requests("CreateShelf"), observer,
+                                CallOptions.DEFAULT.withDeadlineAfter(200, TimeUnit.MILLISECONDS), marshaller("CreateShelf")));
+
+                Assert.assertEquals(Status.fromThrowable(e.getCause()).getCode(), Status.Code.DEADLINE_EXCEEDED);
+                Assert.assertNotNull(observer.error);
+                Assert.assertSame(observer.threads.get(0), Thread.currentThread());
+            } finally {
+                channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+            }
+        }
+    }
+
+    @Test
+    public void testCancelsCallWhenObserverThrowsOnCallingThread() throws Exception {
+        try (BookstoreTestServer server = BookstoreTestServer.start(PROTO_WITH_EXTERNAL_IMPORT_FOLDER.toString(),
+                LIB_FOLDER.toString(), 3, 0)) {
+            List<Throwable> cancellations = new ArrayList<>();
+            ManagedChannel channel = ManagedChannelBuilder.forTarget(server.getHostPort()).usePlaintext()
+                    .intercept(new ClientInterceptor() {
+                        @Override
+                        public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(
+                                MethodDescriptor<ReqT, RespT> method, CallOptions callOptions, Channel next) {
+                            return new ForwardingClientCall.SimpleForwardingClientCall<ReqT, RespT>(
+                                    next.newCall(method, callOptions)) {
+                                @Override
+                                public void cancel(String message, Throwable cause) {
+                                    cancellations.add(cause);
+                                    super.cancel(message, cause);
+                                }
+                            };
+                        }
+                    })
+                    .build();
+            try {
+                AssertionError thrown = new AssertionError("Observer failed");
+                RecordingObserver observer = new RecordingObserver() {
+                    @Override
+                    public void onCompleted() {
+                        throw thrown;
+                    }
+                };
+                AssertionError e = Assert.expectThrows(AssertionError.class, () ->
+                        client(channel, "GetShelfStreamServer").callOnCallingThread(requests("GetShelfStreamServer"),
+                                observer, CallOptions.DEFAULT, marshaller("GetShelfStreamServer")));
+
+                Assert.assertSame(e, thrown);
+                Assert.assertEquals(cancellations.size(), 1);
+                Assert.assertSame(cancellations.get(0), thrown);
+            } finally {
+                channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+            }
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testCannotRunClientStreamingOnCallingThread() throws Exception {
+        ManagedChannel channel = ManagedChannelBuilder.forTarget(HOST_PORT).usePlaintext().build();
+        try {
+            client(channel, "GetShelfStreamClient").callOnCallingThread(requests("GetShelfStreamClient"),
+                    new RecordingObserver(), CallOptions.DEFAULT, marshaller("GetShelfStreamClient"));
+        } finally {
+            channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+
+    static Descriptors.MethodDescriptor resolveMethod(String method) throws Exception {
+        ServiceResolver serviceResolver = ServiceResolver.fromFileDescriptorSet(
+                ProtocInvoker.forConfig(PROTO_WITH_EXTERNAL_IMPORT_FOLDER.toString(), LIB_FOLDER.toString()).invoke());
+        return serviceResolver.resolveServiceMethod(
+                ProtoMethodName.parseFullGrpcMethodName(BookstoreTestServer.SERVICE_NAME + "/" + method));
+    }
+
+    static ImmutableList<DynamicMessage> requests(String method) throws Exception {
+        return Reader.create(resolveMethod(method).getInputType(), REQUEST_JSON,
+                JsonFormat.TypeRegistry.getEmptyTypeRegistry()).read();
+    }
+
+    static DynamicMessageMarshaller marshaller(String method) throws Exception {
+        return new DynamicMessageMarshaller(resolveMethod(method).getOutputType());
+    }
+
+    static DynamicGrpcClient client(ManagedChannel channel, String method) throws Exception {
+        return DynamicGrpcClient.create(resolveMethod(method), channel);
+    }
+
+    private static class RecordingObserver implements StreamObserver<DynamicMessage> {
+        private final List<Thread> threads = new ArrayList<>();
+        private int messages;
+        private boolean completed;
+        private Throwable error;
+
+        @Override
+        public void onNext(DynamicMessage value) {
+            threads.add(Thread.currentThread());
+            messages++;
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            threads.add(Thread.currentThread());
+            error = t;
+        }
+
+        @Override
+        public void onCompleted() {
+            threads.add(Thread.currentThread());
+            completed = true;
+        }
+    }
+}
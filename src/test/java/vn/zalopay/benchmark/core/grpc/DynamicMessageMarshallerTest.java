@@ -1,16 +1,33 @@
 package vn.zalopay.benchmark.core.grpc;
 
+import com.google.common.io.ByteStreams;
 import com.google.protobuf.DescriptorProtos;
 import com.google.protobuf.Descriptors;
+import com.google.protobuf.DynamicMessage;
+import com.google.protobuf.util.JsonFormat;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptors;
+import io.grpc.Drainable;
+import io.grpc.KnownLength;
+import io.grpc.MethodDescriptor;
+import org.mockito.Mockito;
+import org.testng.Assert;
 import org.testng.annotations.Test;
 import vn.zalopay.benchmark.core.BaseTest;
+import vn.zalopay.benchmark.core.message.Reader;
 import vn.zalopay.benchmark.core.protobuf.ProtoMethodName;
 import vn.zalopay.benchmark.core.protobuf.ProtocInvoker;
 import vn.zalopay.benchmark.core.protobuf.ServiceResolver;
+import vn.zalopay.benchmark.core.specification.CallTimeline;
 
+import java.io.ByteArrayOutputStream;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.InputStream;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class DynamicMessageMarshallerTest extends BaseTest {
 
@@ -25,4 +42,74 @@ public class DynamicMessageMarshallerTest extends BaseTest {
         DynamicMessageMarshaller dynamicMessageMarshaller = new DynamicMessageMarshaller(methodDescriptor.getOutputType());
         dynamicMessageMarshaller.parse(input);
     }
+
+    @Test
+    public void testStreamsMessagesWithoutSerializingThemFirst() throws Exception {
+        ProtoMethodName grpcMethodName = ProtoMethodName.parseFullGrpcMethodName(FULL_METHOD);
+        DescriptorProtos.FileDescriptorSet
+                fileDescriptorSet = ProtocInvoker.forConfig(PROTO_WITH_EXTERNAL_IMPORT_FOLDER.toString(), LIB_FOLDER.toString()).invoke();
+        ServiceResolver serviceResolver = ServiceResolver.fromFileDescriptorSet(fileDescriptorSet);
+        Descriptors.MethodDescriptor methodDescriptor = serviceResolver.resolveServiceMethod(grpcMethodName);
+        DynamicMessage message = Reader.create(methodDescriptor.getInputType(), REQUEST_JSON,
+                JsonFormat.TypeRegistry.getEmptyTypeRegistry()).read().get(0);
+        DynamicMessageMarshaller marshaller = new DynamicMessageMarshaller(methodDescriptor.getInputType());
+
+        InputStream drained = marshaller.stream(message);
+        Assert.assertTrue(drained instanceof Drainable && drained instanceof KnownLength);
+        Assert.assertEquals(drained.available(), message.getSerializedSize());
+        ByteArrayOutputStream target = new ByteArrayOutputStream();
+        Assert.assertEquals(((Drainable) drained).drainTo(target), message.getSerializedSize());
+        Assert.assertEquals(target.toByteArray(), message.toByteArray());
+        Assert.assertEquals(drained.available(), 0);
+
+        Assert.assertEquals(ByteStreams.toByteArray(marshaller.stream(message)), message.toByteArray());
+        Assert.assertEquals(marshaller.parse(marshaller.stream(message)), message);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testTimesSerializationWhenTheStreamIsDrained() throws Exception {
+        ProtoMethodName grpcMethodName = ProtoMethodName.parseFullGrpcMethodName(FULL_METHOD);
+        DescriptorProtos.FileDescriptorSet
+                fileDescriptorSet = ProtocInvoker.forConfig(PROTO_WITH_EXTERNAL_IMPORT_FOLDER.toString(), LIB_FOLDER.toString()).invoke();
+        ServiceResolver serviceResolver = ServiceResolver.fromFileDescriptorSet(fileDescriptorSet);
+        Descriptors.MethodDescriptor methodDescriptor = serviceResolver.resolveServiceMethod(grpcMethodName);
+        char[] theme = new char[4 * 1024 * 1024];
+        Arrays.fill(theme, 'x');
+        String requestJson = "{\"shelf\":{\"id\":1,\"theme\":\"" + new String(theme) + "\"}}";
+        DynamicMessage message = Reader.create(methodDescriptor.getInputType(), requestJson,
+                JsonFormat.TypeRegistry.getEmptyTypeRegistry()).read().get(0);
+        DynamicMessageMarshaller marshaller = new DynamicMessageMarshaller(methodDescriptor.getInputType());
+        MethodDescriptor<DynamicMessage, DynamicMessage> method = MethodDescriptor.newBuilder(marshaller, marshaller)
+                .setType(MethodDescriptor.MethodType.UNARY)
+                .setFullMethodName(FULL_METHOD)
+                .build();
+        AtomicReference<MethodDescriptor<DynamicMessage, DynamicMessage>> timedMethod = new AtomicReference<>();
+        Channel transport = new Channel() {
+            @Override
+            public <ReqT, RespT> ClientCall<ReqT, RespT> newCall(MethodDescriptor<ReqT, RespT> calledMethod,
+                                                                 CallOptions callOptions) {
+                timedMethod.set((MethodDescriptor<DynamicMessage, DynamicMessage>) calledMethod);
+                return Mockito.mock(ClientCall.class);
+            }
+
+            @Override
+            public String authority() {
+                return "localhost";
+            }
+        };
+        CallTimeline timeline = new CallTimeline();
+        ClientInterceptors.intercept(transport, CallTimelineInterceptor.getInstance())
+                .newCall(method, CallOptions.DEFAULT.withOption(CallTimelineInterceptor.TIMELINE, timeline));
+
+        InputStream stream = timedMethod.get().streamRequest(message);
+        long streamNanos = timeline.getSerializeNanos();
+        ByteArrayOutputStream target = new ByteArrayOutputStream();
+        ((Drainable) stream).drainTo(target);
+
+        Assert.assertEquals(target.size(), message.getSerializedSize());
+        // Serializing 4 MB takes far longer than creating the stream
+        Assert.assertTrue(timeline.getSerializeNanos() - streamNanos > streamNanos,
+                "serialize took " + timeline.getSerializeNanos() + " ns, of which stream() " + streamNanos + " ns");
+    }
 }
@@ -0,0 +1,147 @@
+package vn.zalopay.benchmark.core.grpc;
+
+import org.apache.jmeter.util.JMeterUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.SkipException;
+import org.testng.annotations.Test;
+import vn.zalopay.benchmark.core.BaseTest;
+import vn.zalopay.benchmark.core.BookstoreTestServer;
+import vn.zalopay.benchmark.core.ClientCaller;
+import vn.zalopay.benchmark.core.CompiledProtos;
+import vn.zalopay.benchmark.core.load.CallCompletion;
+import vn.zalopay.benchmark.core.load.CallPipeline;
+import vn.zalopay.benchmark.core.protobuf.ProtocInvoker;
+import vn.zalopay.benchmark.core.protobuf.ServiceResolver;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the same load through {@link ClientCaller} with {@value VirtualThreads#ENABLED_PROPERTY} on and off,
+ * and compares the call throughput, the peak resident memory and the platform threads started besides the
+ * callers. Each caller stands for a JMeter thread and keeps calls in flight through a {@link CallPipeline},
+ * whose callbacks run on the executor {@link ChannelFactory} gives the channel. A round of blocking calls,
+ * whose callbacks run on the calling thread, shows the sampler's plain unary path is the same in both modes.
+ *
+ * <p>Needs JDK 21 for the virtual threads and Linux for the resident memory. Excluded from the default build,
+ * run it with {@code mvn test -Pbenchmark -Dtest=VirtualThreadsBenchmark}; {@code -Dbenchmark.callers}
+ * (default 200) and {@code -Dbenchmark.depth} (default 50) set the callers and the calls each keeps in flight.
+ */
+public class VirtualThreadsBenchmark extends BaseTest {
+    private static final Logger log = LoggerFactory.getLogger(VirtualThreadsBenchmark.class);
+    private static final int CALLERS = Integer.getInteger("benchmark.callers", 200);
+    private static final int DEPTH = Integer.getInteger("benchmark.depth", 50);
+    private static final int PIPELINED_CALLS_PER_CALLER = 250;
+    private static final int BLOCKING_CALLS_PER_CALLER = 25;
+    private static final long DEADLINE_MS = 30000;
+
+    @Test(groups = "benchmark")
+    public void comparePlatformAndVirtualThreads() throws Exception {
+        if (!VirtualThreads.isAvailable()) {
+            throw new SkipException("Virtual threads need JDK 21 or later");
+        }
+        CompiledProtos protos = new CompiledProtos(ServiceResolver.fromFileDescriptorSet(ProtocInvoker.forConfig(
+                PROTO_WITH_EXTERNAL_IMPORT_FOLDER.toString(), LIB_FOLDER.toString()).invoke()));
+        try (BookstoreTestServer server = BookstoreTestServer.start(PROTO_WITH_EXTERNAL_IMPORT_FOLDER.toString(),
+                LIB_FOLDER.toString(), 1, 0)) {
+            // Virtual threads first, as the threads gRPC's default executor starts outlive the round. The second
+            // round runs with a warm JIT and heap, but reuses those threads.
+            run("warm-up", server, protos, true, 10, true);
+            for (int round = 0; round < 2; round++) {
+                run("pipelined", server, protos, true, CALLERS, true);
+                run("pipelined", server, protos, false, CALLERS, true);
+            }
+            run("blocking", server, protos, true, CALLERS, false);
+            run("blocking", server, protos, false, CALLERS, false);
+        } finally {
+            JMeterUtils.setProperty(VirtualThreads.ENABLED_PROPERTY, "false");
+        }
+    }
+
+    private static void run(String name, BookstoreTestServer server, CompiledProtos protos, boolean virtualThreads,
+                            int callerCount, boolean pipelined) throws Exception {
+        JMeterUtils.setProperty(VirtualThreads.ENABLED_PROPERTY, Boolean.toString(virtualThreads));
+        List<ClientCaller> clientCallers = new ArrayList<>(callerCount);
+        for (int i = 0; i < callerCount; i++) {
+            ClientCaller clientCaller = new ClientCaller(server.getHostPort(), protos, FULL_METHOD, false, false);
+            clientCaller.buildRequestAndMetadata(REQUEST_JSON, METADATA);
+            clientCallers.add(clientCaller);
+        }
+        int callsPerCaller = pipelined ? PIPELINED_CALLS_PER_CALLER : BLOCKING_CALLS_PER_CALLER;
+        System.gc();
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        // Only counts platform threads
+        long baseStartedThreads = threadMXBean.getTotalStartedThreadCount() + callerCount;
+        long baseRssKb = residentKb();
+        AtomicLong peakRssKb = new AtomicLong(baseRssKb);
+        AtomicInteger failures = new AtomicInteger();
+        CountDownLatch go = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(callerCount);
+        List<Thread> threads = new ArrayList<>(callerCount);
+        for (ClientCaller clientCaller : clientCallers) {
+            // JMeter's thread groups start platform threads, whatever the property
+            Thread thread = new Thread(() -> {
+                try {
+                    go.await();
+                    if (pipelined) {
+                        CallPipeline callPipeline = new CallPipeline(clientCaller, DEPTH);
+                        for (int c = 0; c < callsPerCaller; c++) {
+                            CallCompletion completion = callPipeline.next(DEADLINE_MS, REQUEST_JSON, METADATA);
+                            if (!completion.isSuccessful()) {
+                                failures.incrementAndGet();
+                            }
+                        }
+                        callPipeline.drain(DEADLINE_MS);
+                    } else {
+                        for (int c = 0; c < callsPerCaller; c++) {
+                            clientCaller.call(Long.toString(DEADLINE_MS));
+                        }
+                    }
+                } catch (Exception e) {
+                    failures.incrementAndGet();
+                } finally {
+                    done.countDown();
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        long start = System.nanoTime();
+        go.countDown();
+        while (!done.await(50, TimeUnit.MILLISECONDS)) {
+            peakRssKb.accumulateAndGet(residentKb(), Math::max);
+        }
+        long wallNanos = System.nanoTime() - start;
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        log.info("{} calls, virtual threads {}: {} callers, {} calls/s, {} failed, peak RSS +{} MB, "
+                        + "{} other platform threads started", name, virtualThreads, callerCount,
+                (long) callerCount * callsPerCaller * TimeUnit.SECONDS.toNanos(1) / wallNanos, failures.get(),
+                (peakRssKb.get() - baseRssKb) / 1024, threadMXBean.getTotalStartedThreadCount() - baseStartedThreads);
+        clientCallers.forEach(ClientCaller::shutdownNettyChannel);
+        ChannelCloser.getInstance().awaitClosed();
+    }
+
+    private static long residentKb() {
+        try {
+            for (String line : Files.readAllLines(Paths.get("/proc/self/status"))) {
+                if (line.startsWith("VmRSS:")) {
+                    return Long.parseLong(line.replaceAll("[^0-9]", ""));
+                }
+            }
+        } catch (IOException ignored) {
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,46 @@
+package vn.zalopay.benchmark.core.grpc;
+
+import org.apache.jmeter.util.JMeterUtils;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import vn.zalopay.benchmark.core.BaseTest;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+public class VirtualThreadsTest extends BaseTest {
+
+    @Test
+    public void testDetectsVirtualThreadsFromRuntime() {
+        String specificationVersion = System.getProperty("java.specification.version");
+        boolean jdk21 = !specificationVersion.startsWith("1.") && Integer.parseInt(specificationVersion) >= 21;
+        Assert.assertEquals(VirtualThreads.isAvailable(), jdk21);
+    }
+
+    @Test
+    public void testCanRunTasksOnVirtualThreads() throws Exception {
+        if (!VirtualThreads.isAvailable()) {
+            Assert.expectThrows(UnsupportedOperationException.class, () -> VirtualThreads.factory("test-"));
+            return;
+        }
+        ExecutorService executor = VirtualThreads.newThreadPerTaskExecutor("test-");
+        try {
+            Thread thread = executor.submit(Thread::currentThread).get(5, TimeUnit.SECONDS);
+            Assert.assertTrue((Boolean) Thread.class.getMethod("isVirtual").invoke(thread));
+            Assert.assertTrue(thread.getName().startsWith("test-"));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testCanFallBackToPlatformThreads() {
+        JMeterUtils.setProperty(VirtualThreads.ENABLED_PROPERTY, "true");
+        try {
+            Assert.assertEquals(ChannelFactory.create().usesVirtualThreads(), VirtualThreads.isAvailable());
+        } finally {
+            JMeterUtils.setProperty(VirtualThreads.ENABLED_PROPERTY, "false");
+        }
+        Assert.assertFalse(ChannelFactory.create().usesVirtualThreads());
+    }
+}
@@ -0,0 +1,89 @@
+package vn.zalopay.benchmark.core.jfr;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.testng.Assert;
+import org.testng.SkipException;
+import org.testng.annotations.Test;
+import vn.zalopay.benchmark.core.BaseTest;
+import vn.zalopay.benchmark.core.ClientCaller;
+import vn.zalopay.benchmark.core.grpc.ChannelCloser;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Set;
+import java.util.TreeSet;
+
+public class JfrEventsTest extends BaseTest {
+    private static final Path PROFILE = Paths.get(System.getProperty("user.dir"), "dist", "jfr", "grpc-sampler.jfc");
+
+    @Test
+    public void testBundledProfileRecordsEveryStage() throws Exception {
+        Set<String> recorded = recordSampler(new Recording(Configuration.create(PROFILE)));
+
+        for (String stage : new String[]{"Protoc", "ReadRequest", "Marshal", "Call", "RenderResponse",
+                "ChannelCreate", "ChannelShutdown"}) {
+            Assert.assertTrue(recorded.contains("vn.zalopay.benchmark." + stage), stage + " missing in " + recorded);
+        }
+    }
+
+    @Test
+    public void testEventsAreDisabledByDefault() throws Exception {
+        Set<String> recorded = recordSampler(new Recording());
+
+        Assert.assertTrue(recorded.stream().noneMatch(name -> name.startsWith("vn.zalopay.benchmark.")),
+                recorded.toString());
+    }
+
+    @Test
+    public void testBeginsNoEventUnlessARecordingEnablesIt() throws Exception {
+        if (!JfrEvents.isAvailable()) {
+            throw new SkipException("Flight Recorder is not available");
+        }
+        try (Recording disabled = new Recording()) {
+            disabled.start();
+            Assert.assertNull(JfrEvents.beginProtoc());
+            Assert.assertNull(JfrEvents.beginReadRequest());
+            Assert.assertNull(JfrEvents.beginRenderResponse());
+            Assert.assertNull(JfrEvents.beginMarshal());
+            Assert.assertNull(JfrEvents.beginChannelCreate());
+            Assert.assertNull(JfrEvents.beginChannelShutdown());
+            Assert.assertNull(JfrEvents.beginCall());
+        }
+        try (Recording enabled = new Recording()) {
+            enabled.enable(MarshalEvent.class);
+            enabled.start();
+            Assert.assertNotNull(JfrEvents.beginMarshal());
+        }
+    }
+
+    private Set<String> recordSampler(Recording recording) throws Exception {
+        if (!JfrEvents.isAvailable()) {
+            throw new SkipException("Flight Recorder is not available");
+        }
+        Path dump = Files.createTempFile("grpc-sampler", ".jfr");
+        try {
+            recording.start();
+            ClientCaller clientCaller = new ClientCaller(HOST_PORT, PROTO_WITH_EXTERNAL_IMPORT_FOLDER.toString(),
+                    LIB_FOLDER.toString(), FULL_METHOD, false, false);
+            clientCaller.buildRequestAndMetadata(REQUEST_JSON, METADATA);
+            clientCaller.call("10000");
+            clientCaller.shutdownNettyChannel();
+            ChannelCloser.getInstance().awaitClosed();
+            recording.stop();
+            recording.dump(dump);
+
+            Set<String> recorded = new TreeSet<>();
+            for (RecordedEvent event : RecordingFile.readAllEvents(dump)) {
+                recorded.add(event.getEventType().getName());
+            }
+            return recorded;
+        } finally {
+            recording.close();
+            Files.deleteIfExists(dump);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package vn.zalopay.benchmark.core.load;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+public class ArrivalScheduleTest {
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    public void testFixedArrivalsAreEvenlySpaced() {
+        ArrivalSchedule schedule = new ArrivalSchedule(ArrivalSchedule.Profile.CONSTANT,
+                ArrivalSchedule.Arrivals.FIXED, 1000, 0, 0, 0, new Random(1));
+        Assert.assertEquals(schedule.rateAt(10 * SECOND), 1000.0);
+        Assert.assertEquals(schedule.nextIntervalNanos(1000), TimeUnit.MILLISECONDS.toNanos(1));
+    }
+
+    @Test
+    public void testPoissonArrivalsKeepTheMeanRate() {
+        ArrivalSchedule schedule = new ArrivalSchedule(ArrivalSchedule.Profile.CONSTANT,
+                ArrivalSchedule.Arrivals.POISSON, 1000, 0, 0, 0, new Random(1));
+        long total = 0;
+        int arrivals = 100_000;
+        for (int i = 0; i < arrivals; i++) {
+            total += schedule.nextIntervalNanos(1000);
+        }
+        Assert.assertEquals(total / (double) arrivals, TimeUnit.MILLISECONDS.toNanos(1), 20_000);
+    }
+
+    @Test
+    public void testStepProfileIncreasesRateEveryPeriod() {
+        ArrivalSchedule schedule = new ArrivalSchedule(ArrivalSchedule.Profile.STEP,
+                ArrivalSchedule.Arrivals.FIXED, 100, 50, 1000, 0, new Random(1));
+        Assert.assertEquals(schedule.rateAt(0), 100.0);
+        Assert.assertEquals(schedule.rateAt(SECOND - 1), 100.0);
+        Assert.assertEquals(schedule.rateAt(SECOND), 150.0);
+        Assert.assertEquals(schedule.rateAt(3 * SECOND + 1), 250.0);
+    }
+
+    @Test
+    public void testSpikeProfileSpikesAtTheStartOfEveryLaterPeriod() {
+        ArrivalSchedule schedule = new ArrivalSchedule(ArrivalSchedule.Profile.SPIKE,
+                ArrivalSchedule.Arrivals.FIXED, 100, 1000, 1000, 200, new Random(1));
+        Assert.assertEquals(schedule.rateAt(SECOND / 10), 100.0);
+        Assert.assertEquals(schedule.rateAt(SECOND + SECOND / 10), 1000.0);
+        Assert.assertEquals(schedule.rateAt(SECOND + SECOND / 2), 100.0);
+        Assert.assertEquals(schedule.rateAt(2 * SECOND + SECOND / 10), 1000.0);
+    }
+}
@@ -0,0 +1,46 @@
+package vn.zalopay.benchmark.core.load;
+
+import io.grpc.Status;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import vn.zalopay.benchmark.core.specification.GrpcResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class BatchMetricsTest {
+
+    @Test
+    public void testAggregatesLatenciesErrorsAndBytes() {
+        List<CallCompletion> completions = new ArrayList<>();
+        for (int i = 100; i >= 1; i--) {
+            GrpcResponse response = new GrpcResponse();
+            response.storeDiscardedResponse(1, 10, null);
+            completions.add(CallCompletion.succeeded(0, TimeUnit.MILLISECONDS.toNanos(i), response));
+        }
+        completions.add(CallCompletion.failed(0, TimeUnit.MILLISECONDS.toNanos(500),
+                Status.UNAVAILABLE.asRuntimeException()));
+
+        BatchMetrics metrics = BatchMetrics.of(completions);
+
+        Assert.assertEquals(metrics.getCallCount(), 101);
+        Assert.assertEquals(metrics.getErrorCount(), 1);
+        Assert.assertEquals(metrics.getByteCount(), 1000);
+        Assert.assertEquals(metrics.getMinNanos(), TimeUnit.MILLISECONDS.toNanos(1));
+        Assert.assertEquals(metrics.getMaxNanos(), TimeUnit.MILLISECONDS.toNanos(500));
+        Assert.assertEquals(metrics.getPercentileNanos(50), TimeUnit.MILLISECONDS.toNanos(51));
+        Assert.assertEquals(metrics.getPercentileNanos(99), TimeUnit.MILLISECONDS.toNanos(100));
+        Assert.assertEquals(metrics.getTotalLatencyNanos(), TimeUnit.MILLISECONDS.toNanos(5050 + 500));
+        Assert.assertTrue(metrics.toHeaderString().contains("grpc-batch-p50-us: 51000"));
+    }
+
+    @Test
+    public void testReportsEmptyBatch() {
+        BatchMetrics metrics = BatchMetrics.of(new ArrayList<>());
+
+        Assert.assertEquals(metrics.getCallCount(), 0);
+        Assert.assertEquals(metrics.getPercentileNanos(99), 0);
+        Assert.assertEquals(metrics.getMeanNanos(), 0);
+    }
+}
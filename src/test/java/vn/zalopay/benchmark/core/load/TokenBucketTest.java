@@ -0,0 +1,72 @@
+package vn.zalopay.benchmark.core.load;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class TokenBucketTest {
+
+    @Test
+    public void testSpacesSlotsEvenlyAtHighRates() {
+        TokenBucket bucket = new TokenBucket(200_000);
+        long now = System.nanoTime();
+        for (int i = 0; i < 1000; i++) {
+            Assert.assertEquals(bucket.reserve(now) - now, i * 5000L);
+        }
+    }
+
+    @Test
+    public void testIdleBucketDoesNotBurst() {
+        TokenBucket bucket = new TokenBucket(1000);
+        long now = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        Assert.assertEquals(bucket.reserve(now), now);
+        Assert.assertEquals(bucket.reserve(now), now + TimeUnit.MILLISECONDS.toNanos(1));
+    }
+
+    @Test
+    public void testLimitsRateAcrossThreads() throws Exception {
+        TokenBucket bucket = new TokenBucket(2000);
+        List<Thread> threads = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int i = 0; i < 4; i++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    for (int j = 0; j < 100; j++) {
+                        bucket.acquire();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // 400 permits at 2000/s take 199.5 ms after the first one.
+        Assert.assertTrue(elapsedMs >= 199, "took " + elapsedMs + " ms");
+        Assert.assertTrue(elapsedMs < 1000, "took " + elapsedMs + " ms");
+    }
+
+    @Test
+    public void testSharesBucketsByScopeAndRate() {
+        try {
+            Assert.assertSame(TokenBucket.shared("a", 10), TokenBucket.shared("a", 10));
+            Assert.assertNotSame(TokenBucket.shared("a", 10), TokenBucket.shared("b", 10));
+            Assert.assertNotSame(TokenBucket.shared("a", 10), TokenBucket.shared("a", 20));
+        } finally {
+            TokenBucket.clearShared();
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testRejectsNonPositiveRate() {
+        new TokenBucket(0);
+    }
+}
@@ -0,0 +1,240 @@
+package vn.zalopay.benchmark.core.message;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.DescriptorProtos.DescriptorProto;
+import com.google.protobuf.DescriptorProtos.EnumDescriptorProto;
+import com.google.protobuf.DescriptorProtos.EnumValueDescriptorProto;
+import com.google.protobuf.DescriptorProtos.FieldDescriptorProto;
+import com.google.protobuf.DescriptorProtos.FileDescriptorProto;
+import com.google.protobuf.DescriptorProtos.MessageOptions;
+import com.google.protobuf.DescriptorProtos.OneofDescriptorProto;
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.DynamicMessage;
+import com.google.protobuf.Message;
+import com.google.protobuf.Timestamp;
+import com.google.protobuf.util.JsonFormat;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+import vn.zalopay.benchmark.core.specification.RenderedMessage;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+public class CompiledJsonPrinterTest {
+    private static final String[] TRICKY_TEXT = {
+            "", "plain", "\"quoted\" \\ back", "<a href='x'>&amp;=</a>", "\t\b\n\r\f\u0000\u001f\u007f",
+            "caf\u00e9 \u0100\u07ff\u0800", "\u4e2d\u6587 \uffff", "\ud83d\ude00 emoji", "\u2028\u2029",
+            "lone \ud800 high", "lone \udc00 low", "trailing \ud83d"
+    };
+    private static final Types TYPES = new Types();
+
+    @AfterMethod
+    public void clearPrinters() {
+        CompiledJsonPrinter.clear();
+    }
+
+    @Test
+    public void testPrintsRandomMessagesLikeJsonFormat() throws Exception {
+        Random random = new Random(42);
+        for (int i = 0; i < 500; i++) {
+            assertPrintsLikeJsonFormat(randomMessage(TYPES.everything, random, 3));
+        }
+    }
+
+    @Test
+    public void testPrintsEdgeCasesLikeJsonFormat() throws Exception {
+        Descriptors.Descriptor type = TYPES.everything;
+        assertPrintsLikeJsonFormat(DynamicMessage.getDefaultInstance(type));
+        assertPrintsLikeJsonFormat(DynamicMessage.getDefaultInstance(TYPES.empty));
+        DynamicMessage.Builder extremes = DynamicMessage.newBuilder(type)
+                .setField(type.findFieldByName("f_int32"), Integer.MIN_VALUE)
+                .setField(type.findFieldByName("f_int64"), Long.MIN_VALUE)
+                .setField(type.findFieldByName("f_uint32"), -1)
+                .setField(type.findFieldByName("f_uint64"), -1L)
+                .setField(type.findFieldByName("f_fixed64"), Long.MIN_VALUE)
+                .setField(type.findFieldByName("f_float"), Float.NaN)
+                .setField(type.findFieldByName("f_double"), Double.NEGATIVE_INFINITY)
+                .setField(type.findFieldByName("f_kind"), TYPES.kind.findValueByNumberCreatingIfUnknown(99))
+                .setField(type.findFieldByName("choice_message"), DynamicMessage.getDefaultInstance(type))
+                .setField(type.findFieldByName("f_bytes"), ByteString.copyFrom(new byte[]{-1, 0, 127}));
+        for (float value : new float[]{Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY, -0.0f, 1e-10f, 3.4e38f}) {
+            extremes.addRepeatedField(type.findFieldByName("r_float"), value);
+        }
+        assertPrintsLikeJsonFormat(extremes.build());
+        assertPrintsLikeJsonFormat(randomMessage(TYPES.legacy, new Random(7), 2));
+        assertPrintsLikeJsonFormat(DynamicMessage.getDefaultInstance(TYPES.legacy));
+    }
+
+    @Test
+    public void testLeavesWellKnownAndExtendableTypesToJsonFormat() {
+        Assert.assertNull(CompiledJsonPrinter.forType(TYPES.withTimestamp));
+        Assert.assertNull(CompiledJsonPrinter.forType(TYPES.extendable));
+        Assert.assertNull(CompiledJsonPrinter.forType(Timestamp.getDescriptor()));
+        Assert.assertSame(CompiledJsonPrinter.forType(TYPES.everything),
+                CompiledJsonPrinter.forType(TYPES.everything));
+    }
+
+    private static void assertPrintsLikeJsonFormat(Message message) throws Exception {
+        String expected = JsonFormat.printer().preservingProtoFieldNames().includingDefaultValueFields()
+                .print(message);
+        RenderedMessage rendered = CompiledJsonPrinter.forType(message.getDescriptorForType()).print(message);
+        Assert.assertEquals(rendered.getBytes(), expected.getBytes(StandardCharsets.UTF_8), expected);
+        Assert.assertEquals(rendered.length(), expected.length());
+    }
+
+    private static DynamicMessage randomMessage(Descriptors.Descriptor type, Random random, int depth) {
+        DynamicMessage.Builder builder = DynamicMessage.newBuilder(type);
+        for (Descriptors.FieldDescriptor field : type.getFields()) {
+            boolean message = field.getJavaType() == Descriptors.FieldDescriptor.JavaType.MESSAGE;
+            if (random.nextInt(4) == 0 || (message && !field.isMapField() && depth == 0)) {
+                continue;
+            }
+            if (field.isRepeated()) {
+                int count = random.nextInt(4);
+                for (int i = 0; i < count; i++) {
+                    builder.addRepeatedField(field, randomValue(field, random, depth - 1));
+                }
+            } else {
+                builder.setField(field, randomValue(field, random, depth - 1));
+            }
+        }
+        return builder.buildPartial();
+    }
+
+    private static Object randomValue(Descriptors.FieldDescriptor field, Random random, int depth) {
+        switch (field.getJavaType()) {
+            case INT:
+                return random.nextBoolean() ? random.nextInt(100) : random.nextInt();
+            case LONG:
+                return random.nextBoolean() ? (long) random.nextInt(100) : random.nextLong();
+            case FLOAT:
+                return random.nextBoolean() ? (float) random.nextInt(10) : random.nextFloat() * random.nextInt();
+            case DOUBLE:
+                return random.nextBoolean() ? random.nextGaussian() : random.nextDouble() * random.nextLong();
+            case BOOLEAN:
+                return random.nextBoolean();
+            case STRING:
+                return TRICKY_TEXT[random.nextInt(TRICKY_TEXT.length)] + TRICKY_TEXT[random.nextInt(TRICKY_TEXT.length)];
+            case BYTE_STRING:
+                byte[] bytes = new byte[random.nextInt(8)];
+                random.nextBytes(bytes);
+                return ByteString.copyFrom(bytes);
+            case ENUM:
+                return field.getEnumType().findValueByNumberCreatingIfUnknown(random.nextInt(4));
+            default:
+                return randomMessage(field.getMessageType(), random, Math.max(depth, 0));
+        }
+    }
+
+    private static class Types {
+        private final Descriptors.Descriptor everything;
+        private final Descriptors.Descriptor empty;
+        private final Descriptors.Descriptor withTimestamp;
+        private final Descriptors.EnumDescriptor kind;
+        private final Descriptors.Descriptor legacy;
+        private final Descriptors.Descriptor extendable;
+
+        Types() {
+            DescriptorProto.Builder everything = DescriptorProto.newBuilder().setName("Everything");
+            int number = 1;
+            for (FieldDescriptorProto.Type type : FieldDescriptorProto.Type.values()) {
+                if (type == FieldDescriptorProto.Type.TYPE_GROUP || type == FieldDescriptorProto.Type.TYPE_MESSAGE
+                        || type == FieldDescriptorProto.Type.TYPE_ENUM) {
+                    continue;
+                }
+                String name = type.name().substring("TYPE_".length()).toLowerCase();
+                everything.addField(field("f_" + name, number++, type));
+                everything.addField(field("r_" + name, number++, type).setLabel(FieldDescriptorProto.Label.LABEL_REPEATED));
+            }
+            everything.addField(field("f_kind", 40, FieldDescriptorProto.Type.TYPE_ENUM).setTypeName(".printing.Kind"))
+                    .addField(field("r_kind", 41, FieldDescriptorProto.Type.TYPE_ENUM).setTypeName(".printing.Kind")
+                            .setLabel(FieldDescriptorProto.Label.LABEL_REPEATED))
+                    // Out of declaration order, printed by number
+                    .addField(field("child", 31, FieldDescriptorProto.Type.TYPE_MESSAGE).setTypeName(".printing.Everything"))
+                    .addField(field("children", 42, FieldDescriptorProto.Type.TYPE_MESSAGE)
+                            .setTypeName(".printing.Everything").setLabel(FieldDescriptorProto.Label.LABEL_REPEATED))
+                    .addField(field("nothing", 43, FieldDescriptorProto.Type.TYPE_MESSAGE).setTypeName(".printing.Empty"))
+                    .addField(field("choice_text", 44, FieldDescriptorProto.Type.TYPE_STRING).setOneofIndex(0))
+                    .addField(field("choice_message", 45, FieldDescriptorProto.Type.TYPE_MESSAGE)
+                            .setTypeName(".printing.Everything").setOneofIndex(0))
+                    .addOneofDecl(OneofDescriptorProto.newBuilder().setName("choice"));
+            addMap(everything, "by_name", 50, FieldDescriptorProto.Type.TYPE_STRING, FieldDescriptorProto.Type.TYPE_MESSAGE,
+                    ".printing.Everything");
+            addMap(everything, "labels", 51, FieldDescriptorProto.Type.TYPE_INT32, FieldDescriptorProto.Type.TYPE_STRING, null);
+            addMap(everything, "flags", 52, FieldDescriptorProto.Type.TYPE_BOOL, FieldDescriptorProto.Type.TYPE_ENUM,
+                    ".printing.Kind");
+            addMap(everything, "blobs", 53, FieldDescriptorProto.Type.TYPE_SINT64, FieldDescriptorProto.Type.TYPE_BYTES, null);
+            addMap(everything, "weights", 54, FieldDescriptorProto.Type.TYPE_FIXED32, FieldDescriptorProto.Type.TYPE_DOUBLE, null);
+
+            FileDescriptorProto printing = FileDescriptorProto.newBuilder()
+                    .setName("printing.proto")
+                    .setPackage("printing")
+                    .setSyntax("proto3")
+                    .addDependency("google/protobuf/timestamp.proto")
+                    .addEnumType(EnumDescriptorProto.newBuilder().setName("Kind")
+                            .addValue(EnumValueDescriptorProto.newBuilder().setName("KIND_UNSPECIFIED").setNumber(0))
+                            .addValue(EnumValueDescriptorProto.newBuilder().setName("KIND_ONE").setNumber(1))
+                            .addValue(EnumValueDescriptorProto.newBuilder().setName("KIND_TWO").setNumber(2)))
+                    .addMessageType(everything)
+                    .addMessageType(DescriptorProto.newBuilder().setName("Empty"))
+                    .addMessageType(DescriptorProto.newBuilder().setName("WithTimestamp")
+                            .addField(field("at", 1, FieldDescriptorProto.Type.TYPE_MESSAGE)
+                                    .setTypeName(".google.protobuf.Timestamp")))
+                    .build();
+            FileDescriptorProto legacy = FileDescriptorProto.newBuilder()
+                    .setName("legacy.proto")
+                    .setPackage("legacy")
+                    .setSyntax("proto2")
+                    .addMessageType(DescriptorProto.newBuilder().setName("Legacy")
+                            .addField(field("id", 1, FieldDescriptorProto.Type.TYPE_INT64)
+                                    .setLabel(FieldDescriptorProto.Label.LABEL_REQUIRED))
+                            .addField(field("name", 2, FieldDescriptorProto.Type.TYPE_STRING).setDefaultValue("unnamed"))
+                            .addField(field("parent", 3, FieldDescriptorProto.Type.TYPE_MESSAGE).setTypeName(".legacy.Legacy")))
+                    .addMessageType(DescriptorProto.newBuilder().setName("Extendable")
+                            .addExtensionRange(DescriptorProto.ExtensionRange.newBuilder().setStart(100).setEnd(200))
+                            .setOptions(MessageOptions.getDefaultInstance()))
+                    .build();
+            try {
+                Descriptors.FileDescriptor printingFile = Descriptors.FileDescriptor.buildFrom(printing,
+                        new Descriptors.FileDescriptor[]{Timestamp.getDescriptor().getFile()});
+                Descriptors.FileDescriptor legacyFile = Descriptors.FileDescriptor.buildFrom(legacy,
+                        new Descriptors.FileDescriptor[0]);
+                this.everything = printingFile.findMessageTypeByName("Everything");
+                this.empty = printingFile.findMessageTypeByName("Empty");
+                this.withTimestamp = printingFile.findMessageTypeByName("WithTimestamp");
+                this.kind = printingFile.findEnumTypeByName("Kind");
+                this.legacy = legacyFile.findMessageTypeByName("Legacy");
+                this.extendable = legacyFile.findMessageTypeByName("Extendable");
+            } catch (Descriptors.DescriptorValidationException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private static void addMap(DescriptorProto.Builder message, String name, int number,
+                                   FieldDescriptorProto.Type keyType, FieldDescriptorProto.Type valueType,
+                                   String valueTypeName) {
+            String entryName = Character.toUpperCase(name.charAt(0)) + name.substring(1).replace("_n", "N") + "Entry";
+            FieldDescriptorProto.Builder value = field("value", 2, valueType);
+            if (valueTypeName != null) {
+                value.setTypeName(valueTypeName);
+            }
+            message.addNestedType(DescriptorProto.newBuilder()
+                    .setName(entryName)
+                    .addField(field("key", 1, keyType))
+                    .addField(value)
+                    .setOptions(MessageOptions.newBuilder().setMapEntry(true)));
+            message.addField(field(name, number, FieldDescriptorProto.Type.TYPE_MESSAGE)
+                    .setTypeName(".printing.Everything." + entryName)
+                    .setLabel(FieldDescriptorProto.Label.LABEL_REPEATED));
+        }
+
+        private static FieldDescriptorProto.Builder field(String name, int number, FieldDescriptorProto.Type type) {
+            return FieldDescriptorProto.newBuilder()
+                    .setName(name)
+                    .setNumber(number)
+                    .setType(type)
+                    .setLabel(FieldDescriptorProto.Label.LABEL_OPTIONAL);
+        }
+    }
+}
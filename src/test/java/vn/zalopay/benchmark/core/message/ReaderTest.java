@@ -0,0 +1,104 @@
+package vn.zalopay.benchmark.core.message;
+
+import com.google.common.collect.ImmutableList;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.DescriptorProtos.DescriptorProto;
+import com.google.protobuf.DescriptorProtos.FieldDescriptorProto;
+import com.google.protobuf.DescriptorProtos.FileDescriptorProto;
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.DynamicMessage;
+import com.google.protobuf.util.JsonFormat;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+
+public class ReaderTest {
+
+    @AfterMethod
+    public void clearMappedFiles() {
+        MappedFiles.clear();
+    }
+
+    @Test
+    public void testBindsBytesFieldsToMappedFiles() throws Exception {
+        Descriptors.Descriptor document = documentType();
+        Path file = Files.createTempFile("document", ".bin");
+        byte[] content = "a large document".getBytes(StandardCharsets.UTF_8);
+        Files.write(file, content);
+        String payload = "{\"name\": \"doc\", \"data\": \"@file:" + file + "\","
+                + " \"parts\": [\"" + Base64.getEncoder().encodeToString(new byte[]{1, 2}) + "\", \"@file:" + file + "\"],"
+                + " \"attachment\": {\"name\": \"inner\", \"data\": \"@file:" + file + "\"}}";
+
+        Reader reader = Reader.create(document, payload, JsonFormat.TypeRegistry.getEmptyTypeRegistry());
+        DynamicMessage message = reader.read().get(0);
+
+        Assert.assertTrue(reader.hasFileBindings());
+        Descriptors.FieldDescriptor data = document.findFieldByName("data");
+        Descriptors.FieldDescriptor parts = document.findFieldByName("parts");
+        DynamicMessage attachment = (DynamicMessage) message.getField(document.findFieldByName("attachment"));
+        Assert.assertEquals(message.getField(document.findFieldByName("name")), "doc");
+        Assert.assertEquals(((ByteString) message.getField(data)).toByteArray(), content);
+        Assert.assertEquals(message.getRepeatedField(parts, 0), ByteString.copyFrom(new byte[]{1, 2}));
+        Assert.assertEquals(((ByteString) message.getRepeatedField(parts, 1)).toByteArray(), content);
+        Assert.assertEquals(attachment.getField(data), ByteString.copyFrom(content));
+        Assert.assertEquals(attachment.getField(document.findFieldByName("name")), "inner");
+
+        // Every message shares the mapped file instead of a copy
+        DynamicMessage next = Reader.create(document, payload, JsonFormat.TypeRegistry.getEmptyTypeRegistry())
+                .read().get(0);
+        Assert.assertSame(next.getField(data), message.getField(data));
+        Assert.assertEquals(DynamicMessage.parseFrom(document, message.toByteArray()), message);
+    }
+
+    @Test
+    public void testReadsPayloadsWithoutBindingsAsBefore() {
+        Descriptors.Descriptor document = documentType();
+        String payload = "[{\"name\": \"@file:is only a binding in bytes fields\"}, {\"data\": \"AQI=\"}]";
+
+        Reader reader = Reader.create(document, payload, JsonFormat.TypeRegistry.getEmptyTypeRegistry());
+        ImmutableList<DynamicMessage> messages = reader.read();
+
+        Assert.assertFalse(reader.hasFileBindings());
+        Assert.assertEquals(messages.get(0).getField(document.findFieldByName("name")),
+                "@file:is only a binding in bytes fields");
+        Assert.assertEquals(messages.get(1).getField(document.findFieldByName("data")),
+                ByteString.copyFrom(new byte[]{1, 2}));
+    }
+
+    private static Descriptors.Descriptor documentType() {
+        DescriptorProto documentProto = DescriptorProto.newBuilder()
+                .setName("Document")
+                .addField(field("name", 1, FieldDescriptorProto.Type.TYPE_STRING))
+                .addField(field("data", 2, FieldDescriptorProto.Type.TYPE_BYTES))
+                .addField(field("parts", 3, FieldDescriptorProto.Type.TYPE_BYTES)
+                        .setLabel(FieldDescriptorProto.Label.LABEL_REPEATED))
+                .addField(field("attachment", 4, FieldDescriptorProto.Type.TYPE_MESSAGE)
+                        .setTypeName(".documents.Document"))
+                .build();
+        FileDescriptorProto fileProto = FileDescriptorProto.newBuilder()
+                .setName("documents.proto")
+                .setPackage("documents")
+                .setSyntax("proto3")
+                .addMessageType(documentProto)
+                .build();
+        try {
+            return Descriptors.FileDescriptor.buildFrom(fileProto, new Descriptors.FileDescriptor[0])
+                    .findMessageTypeByName("Document");
+        } catch (Descriptors.DescriptorValidationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static FieldDescriptorProto.Builder field(String name, int number, FieldDescriptorProto.Type type) {
+        return FieldDescriptorProto.newBuilder()
+                .setName(name)
+                .setNumber(number)
+                .setType(type)
+                .setLabel(FieldDescriptorProto.Label.LABEL_OPTIONAL);
+    }
+}
@@ -0,0 +1,90 @@
+package vn.zalopay.benchmark.core.metrics;
+
+import com.google.common.io.ByteStreams;
+import io.grpc.Status;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+public class GrpcMetricsTest {
+    private static final String METHOD = "bookstore.Bookstore/CreateShelf";
+
+    @AfterMethod
+    public void stopExporting() {
+        GrpcMetrics.stop();
+    }
+
+    @Test
+    public void testCountsCallsByStatusAndLatency() throws Exception {
+        GrpcMetrics metrics = GrpcMetrics.start(GrpcMetrics.DEFAULT_HOST, -1, null, 60_000);
+        GrpcMetrics.MethodMetrics method = metrics.method(METHOD);
+        method.callStarted();
+        method.callStarted();
+        method.callStarted();
+        method.callClosed(Status.Code.OK, TimeUnit.MICROSECONDS.toNanos(800));
+        method.callClosed(Status.Code.UNAVAILABLE, TimeUnit.MILLISECONDS.toNanos(30));
+
+        Assert.assertEquals(method.getCalls(Status.Code.OK), 1);
+        Assert.assertEquals(method.getInFlight(), 1);
+        String scrape = metrics.scrape();
+        Assert.assertTrue(scrape.contains("# TYPE grpc_client_calls_total counter\n"));
+        Assert.assertTrue(scrape.contains("grpc_client_calls_total{method=\"" + METHOD + "\",code=\"OK\"} 1\n"));
+        Assert.assertTrue(scrape.contains(
+                "grpc_client_calls_total{method=\"" + METHOD + "\",code=\"UNAVAILABLE\"} 1\n"));
+        Assert.assertTrue(scrape.contains("grpc_client_calls_in_flight{method=\"" + METHOD + "\"} 1\n"));
+        Assert.assertTrue(scrape.contains(
+                "grpc_client_call_duration_seconds_bucket{method=\"" + METHOD + "\",le=\"5.0E-4\"} 0\n"));
+        Assert.assertTrue(scrape.contains(
+                "grpc_client_call_duration_seconds_bucket{method=\"" + METHOD + "\",le=\"0.001\"} 1\n"));
+        Assert.assertTrue(scrape.contains(
+                "grpc_client_call_duration_seconds_bucket{method=\"" + METHOD + "\",le=\"0.05\"} 2\n"));
+        Assert.assertTrue(scrape.contains(
+                "grpc_client_call_duration_seconds_bucket{method=\"" + METHOD + "\",le=\"+Inf\"} 2\n"));
+        Assert.assertTrue(scrape.contains("grpc_client_call_duration_seconds_count{method=\"" + METHOD + "\"} 2\n"));
+    }
+
+    @Test
+    public void testWritesFileOnStop() throws Exception {
+        File file = File.createTempFile("grpc-metrics", ".prom");
+        GrpcMetrics.start(GrpcMetrics.DEFAULT_HOST, -1, file, 60_000).method(METHOD).callStarted();
+        GrpcMetrics.stop();
+        Assert.assertNull(GrpcMetrics.getActive());
+
+        String written = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+        Assert.assertTrue(written.contains("grpc_client_calls_in_flight{method=\"" + METHOD + "\"} 1\n"));
+    }
+
+    @Test
+    public void testServesMetricsUntilStopped() throws Exception {
+        GrpcMetrics metrics = GrpcMetrics.start(GrpcMetrics.DEFAULT_HOST, 0, null, 60_000);
+        metrics.method(METHOD).callStarted();
+        URL url = new URL("http://" + GrpcMetrics.DEFAULT_HOST + ":" + metrics.getPort() + "/metrics");
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        try (InputStream in = connection.getInputStream()) {
+            String scraped = new String(ByteStreams.toByteArray(in), StandardCharsets.UTF_8);
+            Assert.assertTrue(scraped.contains("grpc_client_calls_in_flight{method=\"" + METHOD + "\"} 1\n"));
+        } finally {
+            connection.disconnect();
+        }
+        GrpcMetrics.stop();
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (serverThreadAlive() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertFalse(serverThreadAlive());
+    }
+
+    private static boolean serverThreadAlive() {
+        return Thread.getAllStackTraces().keySet().stream()
+                .anyMatch(thread -> thread.getName().equals("grpc-metrics-server") && thread.isAlive());
+    }
+}
@@ -0,0 +1,66 @@
+package vn.zalopay.benchmark.core.metrics;
+
+import io.grpc.Status;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogReader;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+public class LatencyHistogramsTest {
+    private static final String METHOD = "bookstore.Bookstore/CreateShelf";
+
+    @AfterMethod
+    public void stopRecording() {
+        LatencyHistograms.stop();
+    }
+
+    @Test
+    public void testRecordsPerMethodAndStatus() throws Exception {
+        File logFile = File.createTempFile("grpc-latency", ".hlog");
+        LatencyHistograms histograms = LatencyHistograms.start(logFile, 60_000, 0);
+        LatencyHistograms.ThreadRecorder recorder = histograms.newThreadRecorder();
+        recorder.record(METHOD, Status.Code.OK, TimeUnit.MICROSECONDS.toNanos(1500));
+        recorder.record(METHOD, Status.Code.OK, TimeUnit.MICROSECONDS.toNanos(2500));
+        recorder.record(METHOD, Status.Code.DEADLINE_EXCEEDED, TimeUnit.SECONDS.toNanos(1));
+        histograms.report();
+
+        Histogram ok = histograms.getTotal(METHOD, Status.Code.OK);
+        Assert.assertEquals(ok.getTotalCount(), 2);
+        Assert.assertEquals(ok.getMaxValue(), 2500, 5);
+        Assert.assertEquals(histograms.getTotal(METHOD, Status.Code.DEADLINE_EXCEEDED).getTotalCount(), 1);
+        Assert.assertNull(histograms.getTotal(METHOD, Status.Code.UNAVAILABLE));
+    }
+
+    @Test
+    public void testCorrectsForCoordinatedOmission() throws Exception {
+        File logFile = File.createTempFile("grpc-latency", ".hlog");
+        LatencyHistograms histograms = LatencyHistograms.start(logFile, 60_000, 100_000);
+        // A 1s stall while calls are expected every 100ms hides nine more calls.
+        histograms.newThreadRecorder().record(METHOD, Status.Code.OK, TimeUnit.SECONDS.toNanos(1));
+        histograms.report();
+
+        Assert.assertEquals(histograms.getTotal(METHOD, Status.Code.OK).getTotalCount(), 10);
+    }
+
+    @Test
+    public void testWritesIntervalLogAndSummaryOnStop() throws Exception {
+        File logFile = File.createTempFile("grpc-latency", ".hlog");
+        LatencyHistograms histograms = LatencyHistograms.start(logFile, 60_000, 0);
+        histograms.newThreadRecorder().record(METHOD, Status.Code.OK, TimeUnit.MILLISECONDS.toNanos(3));
+        LatencyHistograms.stop();
+        Assert.assertNull(LatencyHistograms.getActive());
+
+        HistogramLogReader reader = new HistogramLogReader(logFile);
+        Histogram interval = (Histogram) reader.nextIntervalHistogram();
+        Assert.assertEquals(interval.getTag(), METHOD + "|OK");
+        Assert.assertEquals(interval.getTotalCount(), 1);
+        String summary = new String(Files.readAllBytes(new File(logFile.getPath() + ".summary.txt").toPath()));
+        Assert.assertTrue(summary.startsWith(METHOD + "|OK"));
+        Assert.assertTrue(summary.contains("#[Max"));
+    }
+}
@@ -0,0 +1,112 @@
+package vn.zalopay.benchmark.core.report;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+public class ResultsAnalyzerTest {
+    private static final String HEADER = "timeStamp,elapsed,label,responseCode,responseMessage,threadName,"
+            + "dataType,success,failureMessage,bytes,sentBytes,grpThreads,allThreads,URL,Latency,IdleTime,Connect\n";
+    private static final long START_MS = 1622735663000L;
+
+    @Test
+    public void testSummarizesLabelsWithHeader() throws Exception {
+        File results = write(HEADER
+                + record(START_MS, 10, "CreateShelf", true, "200", "Success")
+                + record(START_MS + 400, 20, "CreateShelf", true, "200", "Success")
+                + record(START_MS + 1200, 30, "CreateShelf", false, "500",
+                "\"Exception: io.grpc.StatusRuntimeException: DEADLINE_EXCEEDED: deadline exceeded after 9s\"")
+                + record(START_MS + 1500, 40, "ListShelves", true, "200", "Success"));
+
+        ResultsSummary summary = new ResultsAnalyzer().analyze(results);
+
+        Assert.assertEquals(summary.getLabels().keySet().toString(), "[CreateShelf, ListShelves]");
+        LabelStats createShelf = summary.getLabel("CreateShelf");
+        Assert.assertEquals(createShelf.getSamples(), 3);
+        Assert.assertEquals(createShelf.getErrors(), 1);
+        Assert.assertEquals(createShelf.getMaxElapsed(), 30);
+        Assert.assertEquals(createShelf.getElapsedAtPercentile(50), 20);
+        Assert.assertEquals(createShelf.getErrorCauses().toString(), "{DEADLINE_EXCEEDED=1}");
+        Assert.assertEquals(createShelf.getIntervals().get(START_MS)[0], 2);
+        Assert.assertEquals(createShelf.getIntervals().get(START_MS + 1000)[1], 1);
+        Assert.assertEquals(summary.getTotal().getSamples(), 4);
+    }
+
+    @Test
+    public void testReadsHeaderlessResultsInDefaultColumns() throws Exception {
+        File results = write(record(START_MS, 188, "", true, "200", "Success")
+                + record(START_MS + 5, 36, "", false, "500", "\"Exception: refused, \"\"localhost\"\"\"")
+                + "\r\n");
+
+        ResultsSummary summary = new ResultsAnalyzer().analyze(results);
+
+        LabelStats stats = summary.getLabel("");
+        Assert.assertEquals(stats.getSamples(), 2);
+        Assert.assertEquals(stats.getErrorCauses().toString(), "{500 Exception: refused, \"localhost\"=1}");
+    }
+
+    @Test
+    public void testChunkedParseMatchesSingleChunk() throws Exception {
+        StringBuilder content = new StringBuilder(HEADER);
+        for (int i = 0; i < 5000; i++) {
+            boolean success = i % 7 != 0;
+            content.append(record(START_MS + i * 3L, i % 250, "method-" + i % 5, success, success ? "200" : "500",
+                    success ? "Success" : "\"Exception: multi\nline, message\""));
+        }
+        File results = write(content.toString());
+
+        ResultsSummary single = new ResultsAnalyzer(1000, 1, Integer.MAX_VALUE).analyze(results);
+        ResultsSummary chunked = new ResultsAnalyzer(1000, 4, 1024).analyze(results);
+
+        Assert.assertEquals(chunked.getLabels().keySet(), single.getLabels().keySet());
+        for (String label : single.getLabels().keySet()) {
+            LabelStats expected = single.getLabel(label);
+            LabelStats actual = chunked.getLabel(label);
+            Assert.assertEquals(actual.getSamples(), expected.getSamples(), label);
+            Assert.assertEquals(actual.getErrors(), expected.getErrors(), label);
+            Assert.assertEquals(actual.getElapsedAtPercentile(99), expected.getElapsedAtPercentile(99), label);
+            Assert.assertEquals(actual.getThroughput(), expected.getThroughput(), 1e-9, label);
+            Assert.assertEquals(actual.getErrorCauses(), expected.getErrorCauses(), label);
+        }
+        Assert.assertEquals(chunked.getTotal().getSamples(), 5000);
+    }
+
+    @Test
+    public void testRunExitsWithRegressionAgainstBaseline() throws Exception {
+        StringBuilder baseline = new StringBuilder(HEADER);
+        StringBuilder current = new StringBuilder(HEADER);
+        for (int i = 0; i < 100; i++) {
+            baseline.append(record(START_MS + i * 10L, 10, "CreateShelf", true, "200", "Success"));
+            current.append(record(START_MS + i * 10L, i < 90 ? 10 : 50, "CreateShelf", true, "200", "Success"));
+        }
+        File baselineFile = write(baseline.toString());
+        File currentFile = write(current.toString());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int exitCode = ResultsAnalyzer.run(new String[] {"--baseline=" + baselineFile, currentFile.toString()},
+                new PrintStream(out, true, StandardCharsets.UTF_8.name()));
+
+        Assert.assertEquals(exitCode, 1);
+        Assert.assertTrue(out.toString(StandardCharsets.UTF_8.name()).contains("REGRESSION"));
+        Assert.assertEquals(ResultsAnalyzer.run(new String[] {"--baseline=" + baselineFile, baselineFile.toString()},
+                new PrintStream(new ByteArrayOutputStream(), true, StandardCharsets.UTF_8.name())), 0);
+    }
+
+    private static String record(long timeStamp, long elapsed, String label, boolean success, String responseCode,
+            String responseMessage) {
+        return timeStamp + "," + elapsed + "," + label + "," + responseCode + "," + responseMessage
+                + ",Thread Group 1-1,text," + success + ",,68,42,1,1,null," + elapsed + ",0,3\n";
+    }
+
+    private static File write(String content) throws Exception {
+        File file = File.createTempFile("results", ".csv");
+        file.deleteOnExit();
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+}
@@ -0,0 +1,47 @@
+package vn.zalopay.benchmark.core.report;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+public class RunComparisonTest {
+    private static final long START_MS = 1622735663000L;
+
+    @Test
+    public void testFlagsLatencyThroughputAndErrorRegressions() {
+        ResultsSummary baseline = summary("CreateShelf", 1000, 10, 0);
+        ResultsSummary slower = summary("CreateShelf", 1000, 12, 0);
+        ResultsSummary failing = summary("CreateShelf", 1000, 10, 50);
+
+        Assert.assertFalse(RunComparison.compare(baseline, baseline).hasRegression());
+        Assert.assertTrue(RunComparison.compare(baseline, slower).hasRegression());
+        Assert.assertFalse(RunComparison.compare(baseline, slower, 25, 25, 1).hasRegression());
+        Assert.assertTrue(RunComparison.compare(baseline, failing).hasRegression());
+    }
+
+    @Test
+    public void testFlagsMissingLabel() {
+        ResultsSummary baseline = summary("CreateShelf", 100, 10, 0);
+        ResultsSummary current = summary("ListShelves", 100, 10, 0);
+
+        RunComparison comparison = RunComparison.compare(baseline, current);
+
+        Assert.assertTrue(comparison.hasRegression());
+        RunComparison.Difference missing = comparison.getDifferences().get(0);
+        Assert.assertEquals(missing.getLabel(), "CreateShelf");
+        Assert.assertEquals(missing.getMetric(), "samples");
+        Assert.assertTrue(missing.isRegression());
+    }
+
+    private static ResultsSummary summary(String label, int samples, long elapsedMs, int errors) {
+        LabelStats stats = new LabelStats(1000);
+        for (int i = 0; i < samples; i++) {
+            stats.add(START_MS + i, elapsedMs, i >= errors, "200", "Success");
+        }
+        SortedMap<String, LabelStats> labels = new TreeMap<>();
+        labels.put(label, stats);
+        return new ResultsSummary(1000, labels);
+    }
+}
@@ -152,6 +152,10 @@ public class GRPCSamplerGuiTest extends BaseTest {
         grpcSampler.setRequestJson("dummyRequest");
         grpRequestPluginGUI.configure(grpcSampler);
         fullMethodButton.doClick();
+        // The methods are listed in the background
+        for (int i = 0; i < 300 && fullMethodComboBox.getItemCount() == 0; i++) {
+            Thread.sleep(100);
+        }
         Assert.assertEquals(fullMethodComboBox.getSelectedItem(), "bookstore.Bookstore/ListShelves");
         Assert.assertNotNull(grpcSampler);
         Assert.assertNotNull(grpRequestPluginGUI);
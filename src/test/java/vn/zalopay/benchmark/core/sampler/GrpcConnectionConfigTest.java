@@ -0,0 +1,94 @@
+package vn.zalopay.benchmark.core.sampler;
+
+import com.google.common.net.HostAndPort;
+import org.apache.jmeter.samplers.SampleResult;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import vn.zalopay.benchmark.GRPCConnectionConfig;
+import vn.zalopay.benchmark.GRPCSampler;
+import vn.zalopay.benchmark.core.BaseTest;
+import vn.zalopay.benchmark.core.GrpcConnection;
+
+public class GrpcConnectionConfigTest extends BaseTest {
+
+    @Test
+    public void testSamplersShareTheConnectionOfTheirConfig() {
+        GRPCConnectionConfig config = connectionConfig(HOST_PORT, PROTO_WITH_EXTERNAL_IMPORT_FOLDER.toString());
+        GRPCSampler first = sampler(config, FULL_METHOD, METADATA, REQUEST_JSON);
+        GRPCSampler second = sampler(config, FULL_METHOD, METADATA, REQUEST_JSON);
+
+        SampleResult firstResult = first.sample(null);
+        GrpcConnection connection = config.getConnection();
+        SampleResult secondResult = second.sample(null);
+        first.threadFinished();
+        second.threadFinished();
+
+        Assert.assertEquals(firstResult.getResponseCode(), "200");
+        Assert.assertEquals(secondResult.getResponseCode(), "200");
+        Assert.assertTrue(new String(secondResult.getResponseData()).contains("\"theme\": \"Hello server"));
+        Assert.assertSame(config.getConnection(), connection);
+        Assert.assertFalse(connection.isShutdown());
+
+        config.testEnded();
+        Assert.assertTrue(connection.isShutdown());
+    }
+
+    @Test
+    public void testSamplersSendTheirOwnMetadataOverASharedChannel() {
+        GRPCConnectionConfig config = connectionConfig("localhost:50051", PROTO_FOLDER.toString());
+        GRPCSampler first = sampler(config, FULL_METHOD_WITH_METADATA, METADATA_JSON, METADATA_REQUEST_JSON);
+        GRPCSampler second = sampler(config, FULL_METHOD_WITH_METADATA, "key1:Value2", METADATA_REQUEST_JSON);
+
+        try {
+            Assert.assertEquals(new String(first.sample(null).getResponseData()), EXPECTED_RESPONSE_DATA);
+            Assert.assertEquals(new String(second.sample(null).getResponseData()),
+                    EXPECTED_RESPONSE_DATA.replace("Value1", "Value2"));
+            Assert.assertEquals(new String(first.sample(null).getResponseData()), EXPECTED_RESPONSE_DATA);
+        } finally {
+            first.threadFinished();
+            second.threadFinished();
+            config.testEnded();
+        }
+    }
+
+    @Test
+    public void testSamplerWithItsOwnHostIgnoresTheConfig() {
+        GRPCConnectionConfig config = connectionConfig("localhost:1", PROTO_FOLDER.toString());
+        GRPCSampler sampler = sampler(config, FULL_METHOD, METADATA, REQUEST_JSON);
+        HostAndPort hostAndPort = HostAndPort.fromString(HOST_PORT);
+        sampler.setHost(hostAndPort.getHost());
+        sampler.setPort(Integer.toString(hostAndPort.getPort()));
+        sampler.setProtoFolder(PROTO_WITH_EXTERNAL_IMPORT_FOLDER.toString());
+        sampler.setLibFolder(LIB_FOLDER.toString());
+
+        try {
+            Assert.assertEquals(sampler.sample(null).getResponseCode(), "200");
+        } finally {
+            sampler.threadFinished();
+            config.testEnded();
+        }
+    }
+
+    private static GRPCConnectionConfig connectionConfig(String hostPort, String protoFolder) {
+        HostAndPort hostAndPort = HostAndPort.fromString(hostPort);
+        GRPCConnectionConfig config = new GRPCConnectionConfig();
+        config.setHost(hostAndPort.getHost());
+        config.setPort(Integer.toString(hostAndPort.getPort()));
+        config.setProtoFolder(protoFolder);
+        config.setLibFolder(LIB_FOLDER.toString());
+        config.testStarted();
+        return config;
+    }
+
+    private static GRPCSampler sampler(GRPCConnectionConfig config, String fullMethod, String metadata,
+            String requestJson) {
+        GRPCSampler sampler = new GRPCSampler();
+        sampler.setFullMethod(fullMethod);
+        sampler.setMetadata(metadata);
+        sampler.setRequestJson(requestJson);
+        sampler.setDeadline("2000");
+        // As JMeter does when it applies the config elements in scope to a sampler
+        sampler.addTestElement(config);
+        return sampler;
+    }
+}
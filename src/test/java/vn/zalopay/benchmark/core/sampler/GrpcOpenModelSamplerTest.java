@@ -0,0 +1,126 @@
+package vn.zalopay.benchmark.core.sampler;
+
+import com.google.common.net.HostAndPort;
+import org.apache.jmeter.samplers.SampleResult;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import vn.zalopay.benchmark.GRPCOpenModelSampler;
+import vn.zalopay.benchmark.core.BaseTest;
+import vn.zalopay.benchmark.core.BookstoreTestServer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class GrpcOpenModelSamplerTest extends BaseTest {
+    private static final long SERVER_DELAY_MS = 200;
+    private BookstoreTestServer server;
+
+    @BeforeClass
+    public void startServer() throws Exception {
+        server = BookstoreTestServer.start(PROTO_WITH_EXTERNAL_IMPORT_FOLDER.toString(), LIB_FOLDER.toString(),
+                1, SERVER_DELAY_MS);
+    }
+
+    @AfterClass
+    public void stopServer() throws InterruptedException {
+        server.close();
+    }
+
+    @Test
+    public void testRateDoesNotDependOnLatency() {
+        GRPCOpenModelSampler grpcSampler = createGrpcSampler();
+        grpcSampler.setRate("50");
+        List<SampleResult> sampleResults = new ArrayList<>();
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (sampleResults.size() < 20 && System.currentTimeMillis() < deadline) {
+            SampleResult sampleResult = grpcSampler.sample(null);
+            if (sampleResult != null) {
+                Assert.assertEquals(sampleResult.getResponseCode(), "200");
+                Assert.assertTrue(sampleResult.getTime() >= SERVER_DELAY_MS);
+                sampleResults.add(sampleResult);
+            }
+        }
+        grpcSampler.threadFinished();
+        grpcSampler.testEnded();
+
+        Assert.assertEquals(sampleResults.size(), 20);
+        // A single blocking thread would need 20 x 200ms; the schedule sends 20 calls in 400ms.
+        long first = sampleResults.stream().mapToLong(SampleResult::getStartTime).min().getAsLong();
+        long last = sampleResults.stream().mapToLong(SampleResult::getStartTime).max().getAsLong();
+        Assert.assertTrue(last - first < 20 * SERVER_DELAY_MS / 2, "calls sent over " + (last - first) + "ms");
+    }
+
+    @Test
+    public void testReportsCallsOverTheOutstandingCap() {
+        GRPCOpenModelSampler grpcSampler = createGrpcSampler();
+        grpcSampler.setRate("100");
+        grpcSampler.setMaxOutstanding("1");
+        int rejected = 0;
+        for (int i = 0; i < 20; i++) {
+            SampleResult sampleResult = grpcSampler.sample(null);
+            if (sampleResult != null && !sampleResult.isSuccessful()) {
+                Assert.assertTrue(sampleResult.getResponseMessage().contains("RESOURCE_EXHAUSTED"));
+                rejected++;
+            }
+        }
+        grpcSampler.threadFinished();
+        grpcSampler.testEnded();
+        Assert.assertTrue(rejected > 0);
+    }
+
+    @Test
+    public void testCountsRejectedArrivalsInOneResultWhileReportingFallsBehind() throws Exception {
+        GRPCOpenModelSampler grpcSampler = createGrpcSampler();
+        grpcSampler.setRate("500");
+        grpcSampler.setMaxOutstanding("5");
+        grpcSampler.sample(null);
+        // Nothing is reported for a while, so arrivals past the five outstanding calls are rejected
+        Thread.sleep(1000);
+        int reportedCalls = 0;
+        int largestResult = 0;
+        for (int i = 0; i < 10; i++) {
+            SampleResult sampleResult = grpcSampler.sample(null);
+            if (sampleResult != null) {
+                reportedCalls += sampleResult.getSampleCount();
+                if (!sampleResult.isSuccessful()) {
+                    Assert.assertTrue(sampleResult.getResponseMessage().contains("RESOURCE_EXHAUSTED"));
+                    Assert.assertEquals(sampleResult.getErrorCount(), sampleResult.getSampleCount());
+                    largestResult = Math.max(largestResult, sampleResult.getSampleCount());
+                }
+            }
+        }
+        grpcSampler.threadFinished();
+        grpcSampler.testEnded();
+        Assert.assertTrue(largestResult > 100, "largest rejected result counted " + largestResult + " calls");
+        Assert.assertTrue(reportedCalls > 100);
+    }
+
+    @Test
+    public void testRejectsClientStreamingMethods() {
+        GRPCOpenModelSampler grpcSampler = createGrpcSampler();
+        grpcSampler.setFullMethod("bookstore.Bookstore/GetShelfStreamClient");
+        SampleResult sampleResult = grpcSampler.sample(null);
+        grpcSampler.threadFinished();
+        Assert.assertEquals(sampleResult.getResponseCode(), "UNKNOWN");
+        Assert.assertTrue(sampleResult.getResponseMessage().contains("unary and server-streaming methods only"));
+    }
+
+    private GRPCOpenModelSampler createGrpcSampler() {
+        HostAndPort hostAndPort = HostAndPort.fromString(server.getHostPort());
+        GRPCOpenModelSampler grpcSampler = new GRPCOpenModelSampler();
+        grpcSampler.setName("open model");
+        grpcSampler.setProtoFolder(PROTO_WITH_EXTERNAL_IMPORT_FOLDER.toString());
+        grpcSampler.setLibFolder(LIB_FOLDER.toString());
+        grpcSampler.setMetadata(METADATA);
+        grpcSampler.setHost(hostAndPort.getHost());
+        grpcSampler.setPort(Integer.toString(hostAndPort.getPort()));
+        grpcSampler.setFullMethod("bookstore.Bookstore/CreateShelf");
+        grpcSampler.setDeadline("5000");
+        grpcSampler.setTls(false);
+        grpcSampler.setTlsDisableVerification(false);
+        grpcSampler.setRequestJson(REQUEST_JSON);
+        return grpcSampler;
+    }
+}
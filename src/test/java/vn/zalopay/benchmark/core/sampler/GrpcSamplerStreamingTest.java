@@ -0,0 +1,124 @@
+package vn.zalopay.benchmark.core.sampler;
+
+import com.google.common.net.HostAndPort;
+import org.apache.jmeter.samplers.SampleResult;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import vn.zalopay.benchmark.GRPCSampler;
+import vn.zalopay.benchmark.core.BaseTest;
+import vn.zalopay.benchmark.core.BookstoreTestServer;
+
+public class GrpcSamplerStreamingTest extends BaseTest {
+    private static final int STREAM_MESSAGES = 5;
+    private static final long MESSAGE_DELAY_MS = 20;
+    private BookstoreTestServer server;
+
+    @BeforeClass
+    public void startServer() throws Exception {
+        server = BookstoreTestServer.start(PROTO_WITH_EXTERNAL_IMPORT_FOLDER.toString(), LIB_FOLDER.toString(),
+                STREAM_MESSAGES, MESSAGE_DELAY_MS);
+    }
+
+    @AfterClass
+    public void stopServer() throws InterruptedException {
+        server.close();
+    }
+
+    @Test
+    public void testCanRecordServerStreamingMetrics() {
+        GRPCSampler grpcSampler = createGrpcSampler("bookstore.Bookstore/GetShelfStreamServer");
+        grpcSampler.setStreamMessageLimit("2");
+        grpcSampler.setStreamSubResults(true);
+        SampleResult sampleResult = grpcSampler.sample(null);
+        grpcSampler.threadFinished();
+
+        Assert.assertEquals(sampleResult.getResponseCode(), "200");
+        Assert.assertTrue(sampleResult.getResponseHeaders().contains("grpc-stream-messages: " + STREAM_MESSAGES));
+        Assert.assertTrue(sampleResult.getResponseHeaders().contains("grpc-stream-gap-histogram-us: "));
+        Assert.assertTrue(new String(sampleResult.getResponseData()).contains("3 more message(s) not stored"));
+        Assert.assertTrue(sampleResult.getLatency() >= MESSAGE_DELAY_MS);
+        Assert.assertTrue(sampleResult.getLatency() <= sampleResult.getTime());
+        Assert.assertEquals(sampleResult.getSubResults().length, 2);
+        Assert.assertEquals(sampleResult.getSubResults()[1].getSampleCount(), STREAM_MESSAGES - 1);
+    }
+
+    @Test
+    public void testCanDiscardServerStreamingMessages() {
+        GRPCSampler grpcSampler = createGrpcSampler("bookstore.Bookstore/GetShelfStreamServer");
+        grpcSampler.setDiscardResponse(true);
+        SampleResult sampleResult = grpcSampler.sample(null);
+        grpcSampler.threadFinished();
+
+        Assert.assertEquals(sampleResult.getResponseCode(), "200");
+        Assert.assertTrue(new String(sampleResult.getResponseData()).startsWith("{\"messages\": " + STREAM_MESSAGES));
+        Assert.assertTrue(sampleResult.getBodySizeAsLong() > 0);
+        Assert.assertTrue(sampleResult.getResponseHeaders().contains(
+                "grpc-stream-bytes: " + sampleResult.getBodySizeAsLong()));
+    }
+
+    @Test
+    public void testCanSendClientStreamFromJsonArray() {
+        GRPCSampler grpcSampler = createGrpcSampler("bookstore.Bookstore/GetShelfStreamClient");
+        grpcSampler.setRequestJson("[{\"shelf\":{\"id\":1,\"theme\":\"first\"}}, {\"shelf\":{\"id\":2,\"theme\":\"second\"}}]");
+        SampleResult sampleResult = grpcSampler.sample(null);
+        grpcSampler.threadFinished();
+
+        String responseData = new String(sampleResult.getResponseData());
+        Assert.assertEquals(sampleResult.getResponseCode(), "200");
+        Assert.assertTrue(responseData.contains("\"first\""));
+        Assert.assertTrue(responseData.contains("\"second\""));
+        Assert.assertTrue(sampleResult.getResponseHeaders().contains("grpc-send-messages: 2"));
+        Assert.assertTrue(sampleResult.getSentBytes() > 0);
+    }
+
+    @Test
+    public void testFailsPipelinedClientStreamWithoutThrowing() {
+        GRPCSampler grpcSampler = createGrpcSampler("bookstore.Bookstore/GetShelfStreamClient");
+        grpcSampler.setPipelineDepth("2");
+        SampleResult first = grpcSampler.sample(null);
+        SampleResult second = grpcSampler.sample(null);
+        grpcSampler.threadFinished();
+
+        for (SampleResult sampleResult : new SampleResult[]{first, second}) {
+            Assert.assertFalse(sampleResult.isSuccessful());
+            Assert.assertTrue(sampleResult.getResponseMessage().contains(
+                    "Asynchronous calls support unary and server-streaming methods only"),
+                    sampleResult.getResponseMessage());
+        }
+    }
+
+    @Test
+    public void testCanPaceBidiStream() {
+        GRPCSampler grpcSampler = createGrpcSampler("bookstore.Bookstore/GetShelfStreamBidi");
+        grpcSampler.setStreamMessageCount("6");
+        grpcSampler.setStreamMessagesPerSecond("100");
+        grpcSampler.setStreamMessageLimit("0");
+        SampleResult sampleResult = grpcSampler.sample(null);
+        grpcSampler.threadFinished();
+
+        Assert.assertEquals(sampleResult.getResponseCode(), "200");
+        Assert.assertTrue(sampleResult.getResponseHeaders().contains("grpc-send-messages: 6"));
+        Assert.assertTrue(sampleResult.getResponseHeaders().contains("grpc-stream-messages: 6"));
+        // Six messages at 100/sec span five 10ms intervals.
+        Assert.assertTrue(sampleResult.getTime() >= 50);
+    }
+
+    private GRPCSampler createGrpcSampler(String fullMethod) {
+        HostAndPort hostAndPort = HostAndPort.fromString(server.getHostPort());
+        GRPCSampler grpcSampler = new GRPCSampler();
+        grpcSampler.setName("streaming");
+        grpcSampler.setProtoFolder(PROTO_WITH_EXTERNAL_IMPORT_FOLDER.toString());
+        grpcSampler.setLibFolder(LIB_FOLDER.toString());
+        grpcSampler.setMetadata(METADATA);
+        grpcSampler.setHost(hostAndPort.getHost());
+        grpcSampler.setPort(Integer.toString(hostAndPort.getPort()));
+        grpcSampler.setFullMethod(fullMethod);
+        grpcSampler.setDeadline("5000");
+        grpcSampler.setTls(false);
+        grpcSampler.setTlsDisableVerification(false);
+        grpcSampler.setRequestJson(REQUEST_JSON);
+        return grpcSampler;
+    }
+}
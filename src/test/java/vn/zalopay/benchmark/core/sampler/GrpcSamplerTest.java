@@ -1,18 +1,40 @@
 package vn.zalopay.benchmark.core.sampler;
 
+import com.google.common.io.ByteStreams;
 import com.google.common.net.HostAndPort;
 import com.google.protobuf.util.JsonFormat;
+import org.apache.jmeter.control.GenericController;
+import org.apache.jmeter.samplers.SampleEvent;
+import org.apache.jmeter.samplers.SampleListener;
 import org.apache.jmeter.samplers.SampleResult;
+import org.apache.jmeter.testelement.AbstractTestElement;
+import org.apache.jmeter.threads.JMeterContext;
+import org.apache.jmeter.threads.JMeterContextService;
+import org.apache.jmeter.threads.JMeterThread;
+import org.apache.jmeter.threads.JMeterVariables;
+import org.apache.jmeter.threads.ListenerNotifier;
+import org.apache.jmeter.threads.SamplePackage;
+import org.apache.jorphan.collections.ListedHashTree;
 import org.mockito.MockedStatic;
 import org.mockito.Mockito;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 import vn.zalopay.benchmark.GRPCSampler;
 import vn.zalopay.benchmark.core.BaseTest;
+import vn.zalopay.benchmark.core.BookstoreTestServer;
 import vn.zalopay.benchmark.core.ClientCaller;
 import vn.zalopay.benchmark.core.message.Writer;
+import vn.zalopay.benchmark.core.metrics.GrpcMetrics;
 import vn.zalopay.benchmark.core.specification.GrpcResponse;
 
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
 public class GrpcSamplerTest extends BaseTest {
 
     @Test
@@ -35,6 +57,354 @@ public class GrpcSamplerTest extends BaseTest {
         Assert.assertTrue(new String(sampleResult.getResponseData()).contains("\"theme\": \"Hello server"));
     }
 
+    @Test
+    public void testCanKeepSeveralCallsInFlightPerThread() throws Exception {
+        try (BookstoreTestServer server = BookstoreTestServer.start(PROTO_WITH_EXTERNAL_IMPORT_FOLDER.toString(),
+                LIB_FOLDER.toString(), 1, 100)) {
+            HostAndPort hostAndPort = HostAndPort.fromString(server.getHostPort());
+            GRPCSampler grpcSampler = new GRPCSampler();
+            grpcSampler.setName("pipelined");
+            grpcSampler.setProtoFolder(PROTO_WITH_EXTERNAL_IMPORT_FOLDER.toString());
+            grpcSampler.setLibFolder(LIB_FOLDER.toString());
+            grpcSampler.setMetadata(METADATA);
+            grpcSampler.setHost(hostAndPort.getHost());
+            grpcSampler.setPort(Integer.toString(hostAndPort.getPort()));
+            grpcSampler.setFullMethod(FULL_METHOD);
+            grpcSampler.setDeadline("5000");
+            grpcSampler.setRequestJson(REQUEST_JSON);
+            grpcSampler.setPipelineDepth("4");
+            List<SampleResult> sampleResults = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                sampleResults.add(grpcSampler.sample(null));
+            }
+            grpcSampler.threadFinished();
+
+            for (SampleResult sampleResult : sampleResults) {
+                Assert.assertEquals(sampleResult.getResponseCode(), "200");
+                Assert.assertTrue(new String(sampleResult.getResponseData()).contains("\"theme\": \"Hello server"));
+                Assert.assertTrue(sampleResult.getTime() >= 100);
+            }
+            // The first four calls were sent together, so each overlaps the one reported before it.
+            Assert.assertTrue(sampleResults.get(1).getStartTime() < sampleResults.get(0).getEndTime());
+            Assert.assertTrue(sampleResults.get(3).getStartTime() < sampleResults.get(0).getEndTime());
+        }
+    }
+
+    @Test
+    public void testReportsPipelinedCallWithTheRequestItWasSentWith() throws Exception {
+        try (BookstoreTestServer server = BookstoreTestServer.start(PROTO_WITH_EXTERNAL_IMPORT_FOLDER.toString(),
+                LIB_FOLDER.toString(), 1, 50)) {
+            HostAndPort hostAndPort = HostAndPort.fromString(server.getHostPort());
+            GRPCSampler grpcSampler = new GRPCSampler();
+            grpcSampler.setProtoFolder(PROTO_WITH_EXTERNAL_IMPORT_FOLDER.toString());
+            grpcSampler.setLibFolder(LIB_FOLDER.toString());
+            grpcSampler.setMetadata(METADATA);
+            grpcSampler.setHost(hostAndPort.getHost());
+            grpcSampler.setPort(Integer.toString(hostAndPort.getPort()));
+            grpcSampler.setFullMethod(FULL_METHOD);
+            grpcSampler.setDeadline("5000");
+            grpcSampler.setPipelineDepth("3");
+            List<SampleResult> sampleResults = new ArrayList<>();
+            for (int i = 0; i < 6; i++) {
+                grpcSampler.setRequestJson("{\"shelf\":{\"id\":" + i + ",\"theme\":\"Request " + i + "\"}}");
+                sampleResults.add(grpcSampler.sample(null));
+            }
+            grpcSampler.threadFinished();
+
+            // The first sample sent three calls with its request, so the next two report them
+            for (int i = 0; i < 3; i++) {
+                Assert.assertTrue(sampleResults.get(i).getSamplerData().contains("Request 0"),
+                        sampleResults.get(i).getSamplerData());
+            }
+            for (SampleResult sampleResult : sampleResults) {
+                String theme = sampleResult.getSamplerData().replaceAll("(?s).*\"theme\": ?\"([^\"]+)\".*", "$1");
+                Assert.assertTrue(new String(sampleResult.getResponseData()).contains(theme),
+                        new String(sampleResult.getResponseData()));
+            }
+        }
+    }
+
+    @Test
+    public void testReportsPipelinedCallsStillInFlightWhenThreadFinishes() throws Exception {
+        try (BookstoreTestServer server = BookstoreTestServer.start(PROTO_WITH_EXTERNAL_IMPORT_FOLDER.toString(),
+                LIB_FOLDER.toString(), 1, 200)) {
+            RecordingListener listener = new RecordingListener();
+            List<SampleResult> reported = listener.results;
+            JMeterContext context = JMeterContextService.getContext();
+            JMeterVariables variables = new JMeterVariables();
+            variables.putObject(JMeterThread.PACKAGE_OBJECT, new SamplePackage(new ArrayList<>(),
+                    Collections.singletonList(listener), new ArrayList<>(), new ArrayList<>(), new ArrayList<>(),
+                    new ArrayList<>(), new ArrayList<>()));
+            context.setVariables(variables);
+            context.setThread(new JMeterThread(new ListedHashTree(new GenericController()), null,
+                    new ListenerNotifier()));
+            try {
+                HostAndPort hostAndPort = HostAndPort.fromString(server.getHostPort());
+                GRPCSampler grpcSampler = new GRPCSampler();
+                grpcSampler.setName("pipelined");
+                grpcSampler.setProtoFolder(PROTO_WITH_EXTERNAL_IMPORT_FOLDER.toString());
+                grpcSampler.setLibFolder(LIB_FOLDER.toString());
+                grpcSampler.setMetadata(METADATA);
+                grpcSampler.setHost(hostAndPort.getHost());
+                grpcSampler.setPort(Integer.toString(hostAndPort.getPort()));
+                grpcSampler.setFullMethod(FULL_METHOD);
+                grpcSampler.setDeadline("5000");
+                grpcSampler.setRequestJson(REQUEST_JSON);
+                grpcSampler.setPipelineDepth("4");
+                grpcSampler.sample(null);
+                grpcSampler.sample(null);
+                // JMeter clears the context before the sampler's threadFinished
+                context.clear();
+                grpcSampler.threadFinished();
+
+                Assert.assertEquals(reported.size(), 3);
+                for (SampleResult sampleResult : reported) {
+                    Assert.assertEquals(sampleResult.getResponseCode(), "200");
+                    Assert.assertEquals(sampleResult.getSampleLabel(), "pipelined");
+                    Assert.assertTrue(sampleResult.getSamplerData().contains("Hello server"));
+                }
+            } finally {
+                context.clear();
+            }
+        }
+    }
+
+    @Test
+    public void testCanHedgeCallsWithServiceConfig() throws Exception {
+        try (BookstoreTestServer server = BookstoreTestServer.start(PROTO_WITH_EXTERNAL_IMPORT_FOLDER.toString(),
+                LIB_FOLDER.toString(), 1, 500)) {
+            HostAndPort hostAndPort = HostAndPort.fromString(server.getHostPort());
+            GRPCSampler grpcSampler = new GRPCSampler();
+            grpcSampler.setProtoFolder(PROTO_WITH_EXTERNAL_IMPORT_FOLDER.toString());
+            grpcSampler.setLibFolder(LIB_FOLDER.toString());
+            grpcSampler.setMetadata(METADATA);
+            grpcSampler.setHost(hostAndPort.getHost());
+            grpcSampler.setPort(Integer.toString(hostAndPort.getPort()));
+            grpcSampler.setFullMethod(FULL_METHOD);
+            grpcSampler.setDeadline("5000");
+            grpcSampler.setRequestJson(REQUEST_JSON);
+            grpcSampler.setServiceConfig("{\"methodConfig\": [{\"name\": [{\"service\": \"bookstore.Bookstore\"}], "
+                    + "\"hedgingPolicy\": {\"maxAttempts\": 3, \"hedgingDelay\": \"0.1s\"}}]}");
+            SampleResult sampleResult = grpcSampler.sample(null);
+            grpcSampler.threadFinished();
+
+            Assert.assertEquals(sampleResult.getResponseCode(), "200");
+            Assert.assertTrue(sampleResult.getResponseHeaders().contains("grpc-attempts: 3"));
+            Assert.assertTrue(sampleResult.getResponseHeaders().contains("grpc-extra-attempts: 2"));
+            Assert.assertFalse(sampleResult.getResponseHeaders().contains("grpc-winning-attempt: 0"));
+        }
+    }
+
+    @Test
+    public void testCanReportSingleAttemptWithoutServiceConfig() {
+        GRPCSampler grpcSampler = new GRPCSampler();
+        grpcSampler.setProtoFolder(PROTO_WITH_EXTERNAL_IMPORT_FOLDER.toString());
+        grpcSampler.setLibFolder(LIB_FOLDER.toString());
+        grpcSampler.setMetadata(METADATA);
+        grpcSampler.setHost("localhost");
+        grpcSampler.setPort("8005");
+        grpcSampler.setFullMethod(FULL_METHOD);
+        grpcSampler.setDeadline("5000");
+        grpcSampler.setRequestJson(REQUEST_JSON);
+        SampleResult sampleResult = grpcSampler.sample(null);
+        grpcSampler.threadFinished();
+
+        Assert.assertEquals(sampleResult.getResponseCode(), "200");
+        Assert.assertTrue(sampleResult.getResponseHeaders().contains("grpc-attempts: 1\ngrpc-winning-attempt: 1"));
+    }
+
+    @Test
+    public void testCanReportCallTimeline() {
+        GRPCSampler grpcSampler = new GRPCSampler();
+        grpcSampler.setProtoFolder(PROTO_WITH_EXTERNAL_IMPORT_FOLDER.toString());
+        grpcSampler.setLibFolder(LIB_FOLDER.toString());
+        grpcSampler.setMetadata(METADATA);
+        grpcSampler.setHost("localhost");
+        grpcSampler.setPort("8005");
+        grpcSampler.setFullMethod(FULL_METHOD);
+        grpcSampler.setDeadline("5000");
+        grpcSampler.setRequestJson(REQUEST_JSON);
+        SampleResult sampleResult = grpcSampler.sample(null);
+        grpcSampler.threadFinished();
+
+        Assert.assertEquals(sampleResult.getResponseCode(), "200");
+        String headers = sampleResult.getResponseHeaders();
+        for (String phase : new String[]{"serialize", "transport-ready", "headers-sent", "message-sent",
+                "headers-received", "first-byte", "closed", "deserialize", "render"}) {
+            Assert.assertTrue(headers.contains("grpc-timing-" + phase + "-us: "), phase + " missing in " + headers);
+        }
+        Assert.assertTrue(sampleResult.getConnectTime() <= sampleResult.getLatency());
+        Assert.assertTrue(sampleResult.getLatency() <= sampleResult.getTime());
+    }
+
+    @Test
+    public void testCanScrapeCallMetrics() throws Exception {
+        int port = GrpcMetrics.start("localhost", 0, null, 60_000).getPort();
+        try {
+            GRPCSampler grpcSampler = new GRPCSampler();
+            grpcSampler.setProtoFolder(PROTO_WITH_EXTERNAL_IMPORT_FOLDER.toString());
+            grpcSampler.setLibFolder(LIB_FOLDER.toString());
+            grpcSampler.setMetadata(METADATA);
+            grpcSampler.setHost("localhost");
+            grpcSampler.setPort("8005");
+            grpcSampler.setFullMethod(FULL_METHOD);
+            grpcSampler.setDeadline("5000");
+            grpcSampler.setRequestJson(REQUEST_JSON);
+            SampleResult sampleResult = grpcSampler.sample(null);
+            Assert.assertEquals(sampleResult.getResponseCode(), "200");
+
+            String scrape;
+            try (InputStream in = new URL("http://localhost:" + port + "/metrics").openStream()) {
+                scrape = new String(ByteStreams.toByteArray(in), StandardCharsets.UTF_8);
+            }
+            grpcSampler.threadFinished();
+
+            Assert.assertTrue(scrape.contains("grpc_client_calls_total{method=\"" + FULL_METHOD + "\",code=\"OK\"} 1\n"),
+                    scrape);
+            Assert.assertTrue(scrape.contains("grpc_client_calls_in_flight{method=\"" + FULL_METHOD + "\"} 0\n"));
+            Assert.assertTrue(scrape.contains("grpc_client_channels{endpoint=\"localhost:8005\",state=\"READY\"} 1\n"),
+                    scrape);
+        } finally {
+            GrpcMetrics.stop();
+        }
+    }
+
+    @Test
+    public void testCanReportWireBytes() {
+        GRPCSampler grpcSampler = new GRPCSampler();
+        grpcSampler.setProtoFolder(PROTO_WITH_EXTERNAL_IMPORT_FOLDER.toString());
+        grpcSampler.setLibFolder(LIB_FOLDER.toString());
+        grpcSampler.setMetadata(METADATA);
+        grpcSampler.setHost("localhost");
+        grpcSampler.setPort("8005");
+        grpcSampler.setFullMethod(FULL_METHOD);
+        grpcSampler.setDeadline("5000");
+        grpcSampler.setRequestJson(REQUEST_JSON);
+        SampleResult sampleResult = grpcSampler.sample(null);
+        grpcSampler.threadFinished();
+
+        Assert.assertEquals(sampleResult.getResponseCode(), "200");
+        String headers = sampleResult.getResponseHeaders();
+        Assert.assertTrue(headers.contains("grpc-wire-sent-messages: 1"), headers);
+        Assert.assertTrue(headers.contains("grpc-wire-received-messages: 1"), headers);
+        Assert.assertTrue(headers.contains("grpc-wire-received-bytes: " + sampleResult.getBodySizeAsLong()), headers);
+        Assert.assertTrue(sampleResult.getSentBytes() > 0);
+        Assert.assertTrue(sampleResult.getHeadersSize() > 0);
+        // The rendered JSON is larger than the protobuf encoding.
+        Assert.assertTrue(sampleResult.getBodySizeAsLong() < sampleResult.getResponseData().length);
+    }
+
+    @Test
+    public void testCannotApplyInvalidServiceConfig() {
+        GRPCSampler grpcSampler = new GRPCSampler();
+        grpcSampler.setProtoFolder(PROTO_WITH_EXTERNAL_IMPORT_FOLDER.toString());
+        grpcSampler.setLibFolder(LIB_FOLDER.toString());
+        grpcSampler.setHost("localhost");
+        grpcSampler.setPort("8005");
+        grpcSampler.setFullMethod(FULL_METHOD);
+        grpcSampler.setDeadline("5000");
+        grpcSampler.setRequestJson(REQUEST_JSON);
+        grpcSampler.setServiceConfig("[1, 2]");
+        SampleResult sampleResult = grpcSampler.sample(null);
+        grpcSampler.threadFinished();
+
+        Assert.assertEquals(sampleResult.getResponseCode(), "UNKNOWN");
+        Assert.assertTrue(sampleResult.getResponseMessage().contains("Service config must be a JSON object"));
+    }
+
+    @Test
+    public void testCanReportBatchOfCallsAsOneSample() {
+        GRPCSampler grpcSampler = new GRPCSampler();
+        grpcSampler.setName("batch");
+        grpcSampler.setProtoFolder(PROTO_WITH_EXTERNAL_IMPORT_FOLDER.toString());
+        grpcSampler.setLibFolder(LIB_FOLDER.toString());
+        grpcSampler.setMetadata(METADATA);
+        grpcSampler.setHost("localhost");
+        grpcSampler.setPort("8005");
+        grpcSampler.setFullMethod(FULL_METHOD);
+        grpcSampler.setDeadline("5000");
+        grpcSampler.setRequestJson(REQUEST_JSON);
+        grpcSampler.setBatchSize("6");
+        grpcSampler.setBatchConcurrency("3");
+        grpcSampler.setBatchSubResults(true);
+        SampleResult sampleResult = grpcSampler.sample(null);
+        grpcSampler.threadFinished();
+
+        Assert.assertEquals(sampleResult.getResponseCode(), "200");
+        Assert.assertEquals(sampleResult.getSampleCount(), 6);
+        Assert.assertEquals(sampleResult.getErrorCount(), 0);
+        Assert.assertTrue(sampleResult.getResponseHeaders().contains("grpc-batch-calls: 6"));
+        Assert.assertTrue(sampleResult.getResponseHeaders().contains("grpc-batch-p99-us: "));
+        Assert.assertTrue(sampleResult.getBodySizeAsLong() > 0);
+        Assert.assertEquals(sampleResult.getSubResults().length, 6);
+        for (SampleResult callResult : sampleResult.getSubResults()) {
+            Assert.assertEquals(callResult.getSampleLabel(), "batch - call");
+            Assert.assertTrue(new String(callResult.getResponseData()).contains("\"theme\": \"Hello server"));
+        }
+    }
+
+    @Test
+    public void testCanCountFailedCallsInBatch() throws Exception {
+        try (BookstoreTestServer server = BookstoreTestServer.start(PROTO_WITH_EXTERNAL_IMPORT_FOLDER.toString(),
+                LIB_FOLDER.toString(), 1, 1000)) {
+            HostAndPort hostAndPort = HostAndPort.fromString(server.getHostPort());
+            GRPCSampler grpcSampler = new GRPCSampler();
+            grpcSampler.setName("batch");
+            grpcSampler.setProtoFolder(PROTO_WITH_EXTERNAL_IMPORT_FOLDER.toString());
+            grpcSampler.setLibFolder(LIB_FOLDER.toString());
+            grpcSampler.setMetadata(METADATA);
+            grpcSampler.setHost(hostAndPort.getHost());
+            grpcSampler.setPort(Integer.toString(hostAndPort.getPort()));
+            grpcSampler.setFullMethod(FULL_METHOD);
+            grpcSampler.setDeadline("100");
+            grpcSampler.setRequestJson(REQUEST_JSON);
+            grpcSampler.setBatchSize("4");
+            grpcSampler.setBatchConcurrency("4");
+            SampleResult sampleResult = grpcSampler.sample(null);
+            grpcSampler.threadFinished();
+
+            Assert.assertEquals(sampleResult.getResponseCode(), "DEADLINE_EXCEEDED");
+            Assert.assertEquals(sampleResult.getSampleCount(), 4);
+            Assert.assertEquals(sampleResult.getErrorCount(), 4);
+            Assert.assertTrue(sampleResult.getResponseMessage().contains("DEADLINE_EXCEEDED"));
+            Assert.assertTrue(sampleResult.getResponseMessage().endsWith("(4 of 4 calls failed)"));
+            Assert.assertEquals(sampleResult.getSubResults().length, 0);
+        }
+    }
+
+    @Test
+    public void testSamplersShareRateLimitOfTheirScope() {
+        GRPCSampler[] samplers = new GRPCSampler[2];
+        for (int i = 0; i < samplers.length; i++) {
+            samplers[i] = new GRPCSampler();
+            samplers[i].setProtoFolder(PROTO_WITH_EXTERNAL_IMPORT_FOLDER.toString());
+            samplers[i].setLibFolder(LIB_FOLDER.toString());
+            samplers[i].setMetadata(METADATA);
+            samplers[i].setHost("localhost");
+            samplers[i].setPort("8005");
+            samplers[i].setFullMethod(FULL_METHOD);
+            samplers[i].setDeadline("2000");
+            samplers[i].setRequestJson(REQUEST_JSON);
+            samplers[i].setRateLimit("20");
+            samplers[i].setRateLimitScope(GRPCSampler.RATE_LIMIT_SCOPE_ENDPOINT);
+        }
+        long start = System.nanoTime();
+        SampleResult last = null;
+        for (int i = 0; i < 6; i++) {
+            last = samplers[i % 2].sample(null);
+            Assert.assertEquals(last.getResponseCode(), "200");
+        }
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        samplers[0].threadFinished();
+        samplers[1].threadFinished();
+        samplers[0].testEnded();
+
+        // Six calls at 20 calls/s across both samplers need five 50 ms intervals.
+        Assert.assertTrue(elapsedMs >= 245, "took " + elapsedMs + " ms");
+        Assert.assertTrue(last.getResponseHeaders().contains("grpc-rate-limit-wait-us: "));
+        Assert.assertTrue(last.getTime() < 45, "elapsed " + last.getTime() + " ms includes the wait");
+    }
+
     @Test
     public void testCanSendSampleRequest3times() {
         HostAndPort hostAndPort = HostAndPort.fromString(HOST_PORT);
@@ -103,7 +473,7 @@ public class GrpcSamplerTest extends BaseTest {
         SampleResult sampleResult = grpcSampler.sample(null);
         grpcSampler.threadFinished();
         grpcSampler.clear();
-        Assert.assertEquals(sampleResult.getResponseCode(), "500");
+        Assert.assertEquals(sampleResult.getResponseCode(), "DEADLINE_EXCEEDED");
         Assert.assertTrue(new String(sampleResult.getResponseData()).contains("io.grpc.StatusRuntimeException: DEADLINE_EXCEEDED:"));
     }
 
@@ -133,7 +503,7 @@ public class GrpcSamplerTest extends BaseTest {
         SampleResult sampleResult = grpcSampler.sample(null);
         grpcSampler.threadFinished();
         grpcSampler.clear();
-        Assert.assertEquals(sampleResult.getResponseCode(), "500");
+        Assert.assertEquals(sampleResult.getResponseCode(), "DEADLINE_EXCEEDED");
         Assert.assertTrue(new String(sampleResult.getResponseData()).contains("Exception: io.grpc.StatusRuntimeException"));
     }
 
@@ -179,4 +549,21 @@ public class GrpcSamplerTest extends BaseTest {
         Assert.assertEquals(sampleResult.getResponseCode(), "200");
         Assert.assertTrue(new String(sampleResult.getResponseData()).contains(EXPECTED_RESPONSE_DATA));
     }
+
+    private static class RecordingListener extends AbstractTestElement implements SampleListener {
+        private final List<SampleResult> results = new ArrayList<>();
+
+        @Override
+        public void sampleOccurred(SampleEvent e) {
+            results.add(e.getResult());
+        }
+
+        @Override
+        public void sampleStarted(SampleEvent e) {
+        }
+
+        @Override
+        public void sampleStopped(SampleEvent e) {
+        }
+    }
 }